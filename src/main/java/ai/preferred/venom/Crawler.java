@@ -17,6 +17,9 @@
 package ai.preferred.venom;
 
 import ai.preferred.venom.fetcher.*;
+import ai.preferred.venom.job.CheckpointJobQueue;
+import ai.preferred.venom.job.CompletionAware;
+import ai.preferred.venom.job.CrawlBudget;
 import ai.preferred.venom.job.Job;
 import ai.preferred.venom.job.PriorityJobQueue;
 import ai.preferred.venom.job.Scheduler;
@@ -30,10 +33,15 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -94,6 +102,18 @@ public final class Crawler implements Interruptible, AutoCloseable {
   @NotNull
   private final BlockingQueue<Job> jobQueue;
 
+  /**
+   * The job queue to report completed jobs to, or null if none.
+   */
+  @Nullable
+  private final CompletionAware completionAware;
+
+  /**
+   * The crawl budget enforced, or null if none.
+   */
+  @Nullable
+  private final CrawlBudget budget;
+
   /**
    * The scheduler used.
    */
@@ -153,8 +173,23 @@ public final class Crawler implements Interruptible, AutoCloseable {
     maxTries = builder.maxTries;
     propRetainProxy = builder.propRetainProxy;
     router = builder.router;
-    jobQueue = builder.jobQueue;
-    scheduler = new Scheduler(jobQueue);
+    if (builder.checkpoint != null) {
+      try {
+        final CheckpointJobQueue.Builder checkpointBuilder = CheckpointJobQueue
+            .builder(builder.checkpoint, builder.jobQueue)
+            .setResume(builder.resume)
+            .setHandlerRequired(builder.router == null);
+        builder.checkpointHandlers.forEach(checkpointBuilder::registerHandler);
+        jobQueue = checkpointBuilder.build();
+      } catch (final IOException e) {
+        throw new UncheckedIOException("Unable to open checkpoint " + builder.checkpoint + ".", e);
+      }
+    } else {
+      jobQueue = builder.jobQueue;
+    }
+    completionAware = jobQueue instanceof CompletionAware ? (CompletionAware) jobQueue : null;
+    budget = builder.budget;
+    scheduler = new Scheduler(jobQueue, budget);
     connections = new Semaphore(builder.maxConnections);
     session = builder.session;
     sleepScheduler = builder.sleepScheduler;
@@ -221,30 +256,74 @@ public final class Crawler implements Interruptible, AutoCloseable {
    * if true, otherwise wrap it with crawler request and return that.
    *
    * @param request An instance of request
+   * @param route   The route resolved for the request
    * @return An instance of crawler request
    */
-  private CrawlerRequest normalizeRequest(final Request request) {
-    if (request instanceof CrawlerRequest) {
+  private CrawlerRequest normalizeRequest(final Request request, final Route route) {
+    if (request instanceof CrawlerRequest && route == null) {
       return (CrawlerRequest) request;
     }
-    return new CrawlerRequest(request);
+    return new CrawlerRequest(request, route);
   }
 
   /**
    * Normalise request and check if specified proxy should be used.
    *
    * @param request  An instance of request
+   * @param route    The route resolved for the request
    * @param tryCount Current try count
    * @return An instance of crawler request
    */
-  private CrawlerRequest prepareRequest(final Request request, final int tryCount) {
-    final CrawlerRequest crawlerRequest = normalizeRequest(request);
+  private CrawlerRequest prepareRequest(final Request request, final Route route, final int tryCount) {
+    final CrawlerRequest crawlerRequest = normalizeRequest(request, route);
     if (request.getProxy() != null && ((double) tryCount) / maxTries > propRetainProxy) {
       crawlerRequest.removeProxy();
     }
     return crawlerRequest;
   }
 
+  /**
+   * Resolve the route of a job if the router supports it and the job
+   * has not been routed before.
+   *
+   * @param job The instance of job being processed.
+   * @return The route of the job or null.
+   */
+  private Route resolveRoute(final Job job) {
+    if (job.getRoute() == null && router instanceof Router) {
+      try {
+        job.setRoute(((Router) router).getRoute(job.getRequest()));
+      } catch (final RuntimeException e) {
+        LOGGER.warn("Unable to resolve route for request {}.", job.getRequest().getUrl(), e);
+      }
+    }
+    return job.getRoute();
+  }
+
+  /**
+   * Report a job as completed to the job queue, if it is completion
+   * aware.
+   *
+   * @param job The instance of job completed.
+   */
+  private void complete(final Job job) {
+    if (completionAware != null) {
+      completionAware.complete(job);
+    }
+  }
+
+  /**
+   * Report a job as abandoned to the job queue, if it is completion
+   * aware, so that it is not recorded as completed.
+   *
+   * @param job The instance of job abandoned.
+   */
+  private void abandon(final Job job) {
+    if (completionAware != null) {
+      completionAware.abandon(job);
+    }
+  }
+
   /**
    * Handle a successful response.
    *
@@ -253,14 +332,26 @@ public final class Crawler implements Interruptible, AutoCloseable {
    */
   private void handle(final Job job, final Response response) {
     try {
+      if (budget != null && response.getContent() != null) {
+        budget.addBytes(job.getRequest(), response.getContent().length);
+      }
+      final Handler handler;
       if (job.getHandler() != null) {
-        job.getHandler().handle(job.getRequest(), new VResponse(response), getScheduler(),
-            session, workerManager.getWorker());
+        handler = job.getHandler();
+      } else if (job.getRoute() != null) {
+        handler = job.getRoute().getHandler();
       } else if (router != null) {
-        final Handler routedHandler = router.getHandler(job.getRequest());
-        if (routedHandler != null) {
-          routedHandler.handle(job.getRequest(), new VResponse(response), getScheduler(),
-              session, workerManager.getWorker());
+        handler = router.getHandler(job.getRequest());
+      } else {
+        handler = null;
+      }
+
+      if (handler != null) {
+        final VResponse vResponse = new VResponse(response);
+        try {
+          handler.handle(job.getRequest(), vResponse, scheduler.forParent(job), session, workerManager.getWorker());
+        } finally {
+          vResponse.release();
         }
       } else {
         LOGGER.error("No handler to handle request {}.", job.getRequest().getUrl());
@@ -272,6 +363,7 @@ public final class Crawler implements Interruptible, AutoCloseable {
     } catch (final Exception e) {
       LOGGER.error("An exception occurred in handler when parsing response: {}", job.getRequest().getUrl(), e);
     } finally {
+      complete(job);
       jobsPending.decrementAndGet();
     }
   }
@@ -283,9 +375,13 @@ public final class Crawler implements Interruptible, AutoCloseable {
    * @param ex  Exception returned.
    */
   private void except(final Job job, final Throwable ex) {
-    if ((ex instanceof ValidationException && ((ValidationException) ex).getStatus() == Validator.Status.STOP)
-        || ex instanceof StopCodeException
-        || ex instanceof CancellationException) {
+    if (ex instanceof CancellationException) {
+      // Cancelled on close or interrupt, the job has no outcome and is left open to be resumed.
+      abandon(job);
+      jobsPending.decrementAndGet();
+    } else if ((ex instanceof ValidationException && ((ValidationException) ex).getStatus() == Validator.Status.STOP)
+        || ex instanceof StopCodeException) {
+      complete(job);
       jobsPending.decrementAndGet();
     } else {
       synchronized (jobsPending) { // Synchronisation required to prevent crawler stopping incorrectly.
@@ -295,6 +391,7 @@ public final class Crawler implements Interruptible, AutoCloseable {
           jobQueue.add(job);
           LOGGER.debug("Job {} - {} re-queued.", Integer.toHexString(job.hashCode()), job.getRequest().getUrl());
         } else {
+          complete(job);
           LOGGER.error("Max retries reached for request: {}", job.getRequest().getUrl());
         }
       }
@@ -317,7 +414,7 @@ public final class Crawler implements Interruptible, AutoCloseable {
           // This should only run if pendingJob == 0 && job == null
           synchronized (jobsPending) {
             LOGGER.debug("({}) Checking for exit conditions.", crawlerThread.getName());
-            if (jobQueue.peek() == null && jobsPending.get() <= 0 && exitWhenDone.get()) {
+            if (jobQueue.isEmpty() && jobsPending.get() <= 0 && exitWhenDone.get()) {
               break;
             }
           }
@@ -332,9 +429,10 @@ public final class Crawler implements Interruptible, AutoCloseable {
         threadPool.execute(() -> {
           LOGGER.debug("Preparing job {} - {} (try {}/{}).",
               Integer.toHexString(job.hashCode()), job.getRequest().getUrl(), job.getTryCount(), maxTries);
-          final CrawlerRequest crawlerRequest = prepareRequest(job.getRequest(), job.getTryCount());
+          final CrawlerRequest crawlerRequest = prepareRequest(job.getRequest(), resolveRoute(job), job.getTryCount());
           if (Thread.currentThread().isInterrupted()) {
             connections.release();
+            abandon(job);
             jobsPending.decrementAndGet();
             LOGGER.debug("The thread pool is interrupted");
             return;
@@ -427,6 +525,10 @@ public final class Crawler implements Interruptible, AutoCloseable {
     if (fetcher instanceof Interruptible) {
       ((Interruptible) fetcher).interrupt();
     }
+
+    if (jobQueue instanceof Interruptible) {
+      ((Interruptible) jobQueue).interrupt();
+    }
   }
 
   @Override
@@ -454,7 +556,13 @@ public final class Crawler implements Interruptible, AutoCloseable {
       }
 
       Exception cachedException = null;
-      for (final AutoCloseable closeable : new AutoCloseable[]{workerManager, fetcher}) {
+      final List<AutoCloseable> closeables = new ArrayList<>();
+      closeables.add(workerManager);
+      closeables.add(fetcher);
+      if (jobQueue instanceof AutoCloseable) {
+        closeables.add((AutoCloseable) jobQueue);
+      }
+      for (final AutoCloseable closeable : closeables) {
         try {
           closeable.close();
         } catch (final Exception e) {
@@ -603,6 +711,26 @@ public final class Crawler implements Interruptible, AutoCloseable {
      */
     private Session session;
 
+    /**
+     * The checkpoint file, or null if none.
+     */
+    private Path checkpoint;
+
+    /**
+     * Whether to resume from the checkpoint.
+     */
+    private boolean resume;
+
+    /**
+     * The handlers of checkpointed jobs, by key.
+     */
+    private final Map<String, Handler> checkpointHandlers = new LinkedHashMap<>();
+
+    /**
+     * The crawl budget, or null if none.
+     */
+    private CrawlBudget budget;
+
     /**
      * Constructs an instance of builder with default values.
      */
@@ -618,6 +746,9 @@ public final class Crawler implements Interruptible, AutoCloseable {
       jobQueue = new PriorityJobQueue();
       sleepScheduler = new SleepScheduler(250, 2000);
       session = Session.EMPTY_SESSION;
+      checkpoint = null;
+      resume = false;
+      budget = null;
     }
 
     /**
@@ -790,12 +921,80 @@ public final class Crawler implements Interruptible, AutoCloseable {
       return this;
     }
 
+    /**
+     * Sets the file to checkpoint the job queue to, so that queued,
+     * in flight and retrying jobs can be restored if the crawler dies.
+     * Defaults to none.
+     *
+     * @param checkpoint the checkpoint file
+     * @return this
+     * @see CheckpointJobQueue
+     */
+    public Builder setCheckpoint(final Path checkpoint) {
+      this.checkpoint = checkpoint;
+      return this;
+    }
+
+    /**
+     * Sets whether to restore jobs from the checkpoint file at startup,
+     * otherwise the checkpoint file is cleared. Defaults to false.
+     *
+     * @param resume true to resume from the checkpoint
+     * @return this
+     */
+    public Builder setResume(final boolean resume) {
+      this.resume = resume;
+      return this;
+    }
+
+    /**
+     * Registers the handler of jobs under a key in the checkpoint, so
+     * that restored jobs are handled by the same handler. Jobs must
+     * refer to the same instance of handler that is registered, adding
+     * a job with a handler that is not registered fails.
+     * <p>
+     * Without a handler router, every job must have a registered
+     * handler, otherwise adding the job fails.
+     * </p>
+     *
+     * @param key     the key recorded for jobs with the handler
+     * @param handler the handler
+     * @return this
+     * @see CheckpointJobQueue.Builder#registerHandler(String, Handler)
+     */
+    public Builder registerCheckpointHandler(final @NotNull String key, final @NotNull Handler handler) {
+      if (key == null || handler == null) {
+        throw new IllegalStateException("Attributes 'key' and 'handler' cannot be null.");
+      }
+      checkpointHandlers.put(key, handler);
+      return this;
+    }
+
+    /**
+     * Sets the crawl budget to enforce on jobs added to the scheduler,
+     * limiting the depth of jobs and the pages and bytes fetched per
+     * site. Defaults to none.
+     *
+     * @param budget the crawl budget
+     * @return this
+     */
+    public Builder setCrawlBudget(final CrawlBudget budget) {
+      this.budget = budget;
+      return this;
+    }
+
     /**
      * Builds the crawler with the options specified.
      *
      * @return an instance of Crawler
+     * @throws IllegalStateException if checkpointing without a handler
+     *                               router or registered handlers
      */
     public Crawler build() {
+      if (checkpoint != null && router == null && checkpointHandlers.isEmpty()) {
+        throw new IllegalStateException("Attribute 'router' must be set, or checkpoint handlers registered, "
+            + "to checkpoint jobs.");
+      }
       return new Crawler(this);
     }
 
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom;
+
+import ai.preferred.venom.validator.Validator;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+/**
+ * This class holds the result of routing a request, so that the rules
+ * only have to be evaluated once per job.
+ *
+ * @author Ween Jiann Lee
+ */
+public final class Route {
+
+  /**
+   * The router that resolved this route.
+   */
+  private final Router router;
+
+  /**
+   * The handler resolved for the request.
+   */
+  private final Handler handler;
+
+  /**
+   * The validator resolved for the request.
+   */
+  private final Validator validator;
+
+  /**
+   * Constructs an instance of route.
+   *
+   * @param router    The router that resolved this route
+   * @param handler   The handler resolved for the request
+   * @param validator The validator resolved for the request
+   */
+  public Route(final @NotNull Router router, final Handler handler, final Validator validator) {
+    this.router = router;
+    this.handler = handler;
+    this.validator = validator;
+  }
+
+  /**
+   * Get the router that resolved this route.
+   *
+   * @return the router used
+   */
+  @NotNull
+  public Router getRouter() {
+    return router;
+  }
+
+  /**
+   * Get the handler resolved for the request, or null if no rule
+   * matched and no default handler is set.
+   *
+   * @return the handler to be used or null
+   */
+  @Nullable
+  public Handler getHandler() {
+    return handler;
+  }
+
+  /**
+   * Get the validator resolved for the request.
+   *
+   * @return the validator to be used or null
+   */
+  @Nullable
+  public Validator getValidator() {
+    return validator;
+  }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom;
+
+import ai.preferred.venom.request.Request;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * This interface allows the user to map request to both handler and
+ * validator in a single lookup.
+ * <p>
+ * When used as the handler router of a crawler, the route is resolved once
+ * per job and shared with the fetcher, if the fetcher uses the same router
+ * as its validator router.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public interface Router extends HandlerRouter, ValidatorRouter {
+
+  /**
+   * Returns the handler and validator to be used for a specified request.
+   * <p>
+   * The default implementation calls {@link #getHandler(Request)} and
+   * {@link #getValidator(Request)}, implementations should override this
+   * to resolve both in one pass.
+   * </p>
+   *
+   * @param request request made
+   * @return the route to be used
+   */
+  @NotNull
+  default Route getRoute(@NotNull Request request) {
+    return new Route(this, getHandler(request), getValidator(request));
+  }
+
+}
@@ -31,7 +31,7 @@ import java.util.regex.Pattern;
  * @author Maksim Tkachenko
  * @author Ween Jiann Lee
  */
-public class UrlRouter implements HandlerRouter, ValidatorRouter {
+public class UrlRouter implements Router {
 
   /**
    * The default handler used if pattern does not match any rules.
@@ -131,21 +131,45 @@ public class UrlRouter implements HandlerRouter, ValidatorRouter {
     return this;
   }
 
+  /**
+   * Find the first rule matching the url.
+   *
+   * @param rules a list of rules
+   * @param url   the url to match
+   * @param <T>   the type of the rule value
+   * @return the value of the first matching rule or null
+   */
+  private static <T> T match(final Map<Pattern, T> rules, final String url) {
+    for (final Map.Entry<Pattern, T> rule : rules.entrySet()) {
+      if (rule.getKey().matcher(url).matches()) {
+        return rule.getValue();
+      }
+    }
+    return null;
+  }
+
   @Override
-  public final Handler getHandler(final Request request) {
+  public final Route getRoute(final Request request) {
+    final String url = request.getUrl();
     handlerRulesLock.readLock().lock();
+    validatorRulesLock.readLock().lock();
     try {
-      for (final Map.Entry<Pattern, Handler> rule : handlerRules.entrySet()) {
-        if (rule.getKey().matcher(request.getUrl()).matches()) {
-          return rule.getValue();
-        }
-      }
+      final Handler handler = match(handlerRules, url);
+      final Validator validator = match(validatorRules, url);
+      return new Route(this,
+          handler == null ? defaultHandler : handler,
+          validator == null ? Validator.ALWAYS_VALID : validator);
     } finally {
+      validatorRulesLock.readLock().unlock();
       handlerRulesLock.readLock().unlock();
     }
+  }
 
-    if (defaultHandler != null) {
-      return defaultHandler;
+  @Override
+  public final Handler getHandler(final Request request) {
+    final Handler handler = getRoute(request).getHandler();
+    if (handler != null) {
+      return handler;
     }
 
     throw new RuntimeException("Default handler is not set");
@@ -153,18 +177,7 @@ public class UrlRouter implements HandlerRouter, ValidatorRouter {
 
   @Override
   public final Validator getValidator(final Request request) {
-    validatorRulesLock.readLock().lock();
-    try {
-      for (final Map.Entry<Pattern, Validator> rule : validatorRules.entrySet()) {
-        if (rule.getKey().matcher(request.getUrl()).matches()) {
-          return rule.getValue();
-        }
-      }
-    } finally {
-      validatorRulesLock.readLock().unlock();
-    }
-
-    return Validator.ALWAYS_VALID;
+    return getRoute(request).getValidator();
   }
 
 }
@@ -17,7 +17,10 @@
 package ai.preferred.venom.fetcher;
 
 import ai.preferred.venom.ProxyProvider;
+import ai.preferred.venom.Route;
 import ai.preferred.venom.ValidatorRouter;
+import ai.preferred.venom.request.CrawlerRequest;
+import ai.preferred.venom.request.Headers;
 import ai.preferred.venom.request.HttpFetcherRequest;
 import ai.preferred.venom.request.Request;
 import ai.preferred.venom.response.Response;
@@ -96,7 +99,7 @@ public final class AsyncFetcher implements Fetcher {
    * A list of headers to append to request.
    */
   @NotNull
-  private final Map<String, String> headers;
+  private final Headers headers;
 
   /**
    * The HTTP client used for requests.
@@ -156,7 +159,7 @@ public final class AsyncFetcher implements Fetcher {
     }
     callbackListBuilder.addAll(builder.callbacks);
     callbacks = callbackListBuilder.build();
-    headers = builder.headers;
+    headers = Headers.of(builder.headers);
     proxyProvider = builder.proxyProvider;
     stopCodes = builder.stopCodes;
     userAgent = builder.userAgent;
@@ -345,6 +348,28 @@ public final class AsyncFetcher implements Fetcher {
     return requestBuilder.build();
   }
 
+  /**
+   * Get the routed validator for this request, reusing the route resolved
+   * by the crawler if it was resolved by the same router.
+   *
+   * @param request An instance of request
+   * @return An instance of validator or null
+   */
+  private Validator getRoutedValidator(final Request request) {
+    if (router == null) {
+      return null;
+    }
+
+    if (request instanceof CrawlerRequest) {
+      final Route route = ((CrawlerRequest) request).getRoute();
+      if (route != null && route.getRouter() == router) {
+        return route.getValidator();
+      }
+    }
+
+    return router.getValidator(request);
+  }
+
   /**
    * Append routed validator if present for this request.
    *
@@ -407,12 +432,7 @@ public final class AsyncFetcher implements Fetcher {
 
     LOGGER.debug("Fetching URL: {}", request.getUrl());
 
-    final Validator routedValidator;
-    if (router != null) {
-      routedValidator = router.getValidator(request);
-    } else {
-      routedValidator = null;
-    }
+    final Validator routedValidator = getRoutedValidator(request);
 
     if (!httpClient.isRunning() || Thread.currentThread().isInterrupted()) {
       return cancelRequest(requestCallback);
@@ -16,12 +16,15 @@
 
 package ai.preferred.venom.fetcher;
 
+import ai.preferred.venom.request.Headers;
 import ai.preferred.venom.request.Request;
 import ai.preferred.venom.request.StorageFetcherRequest;
 import ai.preferred.venom.request.Unwrappable;
 import ai.preferred.venom.response.Response;
 import ai.preferred.venom.response.StorageResponse;
+import ai.preferred.venom.storage.AsyncFileManager;
 import ai.preferred.venom.storage.FileManager;
+import ai.preferred.venom.storage.PooledFileManager;
 import ai.preferred.venom.storage.Record;
 import ai.preferred.venom.storage.StorageException;
 import ai.preferred.venom.validator.EmptyContentValidator;
@@ -34,13 +37,32 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.validation.constraints.NotNull;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Future;
 
 /**
  * This class holds the implementation to provide how items are fetched from a database,
  * to validate the item and to store it if specified.
+ * <p>
+ * Records are looked up through an {@link AsyncFileManager}, so fetch
+ * returns without waiting for storage and many lookups are in flight
+ * at once. A blocking {@link FileManager} is run on a
+ * {@link PooledFileManager} with its default options.
+ * </p>
+ * <p>
+ * With a prefetch size set, records of requests passed to
+ * {@link #prefetch(Iterable)} are looked up ahead in batches and kept
+ * in a bounded cache until they are fetched, so that storage latency
+ * is overlapped instead of paid once per job.
+ * </p>
  *
  * @author Ween Jiann Lee
  */
@@ -51,10 +73,16 @@ public final class StorageFetcher implements Fetcher {
    */
   private static final Logger LOGGER = LoggerFactory.getLogger(StorageFetcher.class);
 
+  /**
+   * The longest time to wait for a prefetched record to be fetched when
+   * the cache is full, before the oldest one is evicted.
+   */
+  private static final long PREFETCH_WAIT_MILLIS = 1000;
+
   /**
    * The file manager used to store raw responses.
    */
-  private final FileManager<?> fileManager;
+  private final AsyncFileManager<?> fileManager;
 
   /**
    * The validator used.
@@ -64,7 +92,22 @@ public final class StorageFetcher implements Fetcher {
   /**
    * A list of headers to append to request.
    */
-  private final Map<String, String> headers;
+  private final Headers headers;
+
+  /**
+   * The maximum number of prefetched records kept.
+   */
+  private final int prefetchSize;
+
+  /**
+   * The number of requests looked up together when prefetching.
+   */
+  private final int prefetchBatchSize;
+
+  /**
+   * The lookups of prefetched records, by request, oldest first.
+   */
+  private final Map<String, CompletableFuture<Record<?>>> prefetched = new LinkedHashMap<>();
 
   /**
    * Constructs an instance of StorageFetcher.
@@ -74,7 +117,9 @@ public final class StorageFetcher implements Fetcher {
   private StorageFetcher(final Builder builder) {
     this.fileManager = builder.fileManager;
     this.validator = builder.validator;
-    this.headers = builder.headers;
+    this.headers = Headers.of(builder.headers);
+    this.prefetchSize = builder.prefetchSize;
+    this.prefetchBatchSize = builder.prefetchBatchSize;
   }
 
   /**
@@ -84,6 +129,16 @@ public final class StorageFetcher implements Fetcher {
    * @return A new instance of builder
    */
   public static Builder builder(final FileManager<?> fileManager) {
+    return new Builder(fileManager == null ? null : PooledFileManager.builder(fileManager).build());
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @param fileManager the asynchronous file manager to use.
+   * @return A new instance of builder
+   */
+  public static Builder builder(final AsyncFileManager<?> fileManager) {
     return new Builder(fileManager);
   }
 
@@ -101,6 +156,131 @@ public final class StorageFetcher implements Fetcher {
     return new StorageFetcherRequest(request);
   }
 
+  /**
+   * Get the key of a normalized request in the prefetch cache.
+   *
+   * @param request the request
+   * @return the key
+   */
+  private static String prefetchKey(final Request request) {
+    return request.getMethod().name() + " " + request.getUrl() + "\n"
+        + Headers.of(request.getHeaders()).toJson() + "\n" + request.getBody();
+  }
+
+  /**
+   * Look up requests together, completing the lookup of each request.
+   *
+   * @param fileManager the file manager
+   * @param requests    the requests
+   * @param lookups     the lookups, in the order of requests
+   * @param <T>         type of id
+   */
+  private static <T> void lookupAll(final AsyncFileManager<T> fileManager, final List<StorageFetcherRequest> requests,
+                                    final List<CompletableFuture<Record<?>>> lookups) {
+    fileManager.getAllAsync(requests).whenComplete((records, ex) -> {
+      for (int i = 0; i < lookups.size(); i++) {
+        if (ex != null) {
+          lookups.get(i).completeExceptionally(ex);
+        } else {
+          lookups.get(i).complete(records.get(i));
+        }
+      }
+    });
+  }
+
+  /**
+   * Look up the records of requests ahead of them being fetched.
+   * <p>
+   * Requests are looked up in batches, and this method blocks while the
+   * prefetch cache is full, so it should be called on a thread of its
+   * own with the requests expected to be fetched, in order. A record
+   * that is not fetched is evicted when the cache has been full for a
+   * second.
+   * </p>
+   *
+   * @param requests the requests expected to be fetched
+   * @return the number of requests looked up
+   * @throws InterruptedException if interrupted while the cache is full
+   */
+  public int prefetch(final @NotNull Iterable<? extends Request> requests) throws InterruptedException {
+    if (prefetchSize == 0) {
+      throw new IllegalStateException("Prefetching is disabled, set a prefetch size.");
+    }
+    int count = 0;
+    List<StorageFetcherRequest> batch = new ArrayList<>(prefetchBatchSize);
+    for (final Request request : requests) {
+      batch.add(normalize(request).prependHeaders(headers));
+      if (batch.size() >= prefetchBatchSize) {
+        count += prefetchBatch(batch);
+        batch = new ArrayList<>(prefetchBatchSize);
+      }
+    }
+    if (!batch.isEmpty()) {
+      count += prefetchBatch(batch);
+    }
+    return count;
+  }
+
+  /**
+   * Add lookups of requests not prefetched yet to the cache, waiting for
+   * room, and look them up together.
+   *
+   * @param batch the normalized requests
+   * @return the number of requests looked up
+   * @throws InterruptedException if interrupted while the cache is full
+   */
+  private int prefetchBatch(final List<StorageFetcherRequest> batch) throws InterruptedException {
+    final List<StorageFetcherRequest> requests = new ArrayList<>(batch.size());
+    final List<CompletableFuture<Record<?>>> lookups = new ArrayList<>(batch.size());
+    synchronized (prefetched) {
+      for (final StorageFetcherRequest request : batch) {
+        final String key = prefetchKey(request);
+        if (prefetched.containsKey(key)) {
+          continue;
+        }
+        final long deadline = System.currentTimeMillis() + PREFETCH_WAIT_MILLIS;
+        while (prefetched.size() >= prefetchSize) {
+          final long remaining = deadline - System.currentTimeMillis();
+          if (remaining <= 0) {
+            final Iterator<CompletableFuture<Record<?>>> oldest = prefetched.values().iterator();
+            oldest.next();
+            oldest.remove();
+            LOGGER.debug("Evicted a prefetched record that was not fetched.");
+          } else {
+            prefetched.wait(remaining);
+          }
+        }
+        final CompletableFuture<Record<?>> lookup = new CompletableFuture<>();
+        prefetched.put(key, lookup);
+        requests.add(request);
+        lookups.add(lookup);
+      }
+    }
+    if (!requests.isEmpty()) {
+      lookupAll(fileManager, requests, lookups);
+    }
+    return requests.size();
+  }
+
+  /**
+   * Remove the prefetched lookup of a normalized request from the cache.
+   *
+   * @param request the request
+   * @return the lookup, or null if the request is not prefetched
+   */
+  private CompletableFuture<Record<?>> takePrefetched(final Request request) {
+    if (prefetchSize == 0) {
+      return null;
+    }
+    synchronized (prefetched) {
+      final CompletableFuture<Record<?>> lookup = prefetched.remove(prefetchKey(request));
+      if (lookup != null) {
+        prefetched.notifyAll();
+      }
+      return lookup;
+    }
+  }
+
   @Override
   public void start() {
     // do nothing
@@ -133,30 +313,44 @@ public final class StorageFetcher implements Fetcher {
       }
     });
 
-    try {
-      final Record<?> record = fileManager.get(storageFetcherRequest);
+    CompletableFuture<? extends Record<?>> lookup = takePrefetched(storageFetcherRequest);
+    if (lookup == null) {
+      lookup = fileManager.getAsync(storageFetcherRequest);
+    } else {
+      LOGGER.debug("Using prefetched record for: {}", request.getUrl());
+    }
+    lookup.whenComplete((record, ex) -> {
+      if (ex != null) {
+        final Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        LOGGER.warn("Error retrieving content for : {}", request.getUrl(), cause);
+        future.failed(cause instanceof Exception ? (Exception) cause : new StorageException(cause));
+        return;
+      }
       if (record == null) {
         future.cancel();
         LOGGER.info("No content found from storage for: {}", request.getUrl());
-        return future;
+        return;
       }
 
       LOGGER.debug("Record found with id: {}", record.getId());
 
       final StorageResponse response = new StorageResponse(record, request.getUrl());
-      final Validator.Status status = validator.isValid(Unwrappable.unwrapRequest(request), response);
+      final Validator.Status status;
+      try {
+        status = validator.isValid(Unwrappable.unwrapRequest(request), response);
+      } catch (UncheckedIOException e) {
+        LOGGER.warn("Error reading content for : {}", request.getUrl(), e.getCause());
+        future.failed(new StorageException("Error reading content for " + request.getUrl() + ".", e.getCause()));
+        return;
+      }
       if (status != Validator.Status.VALID) {
         future.failed(new ValidationException(status, response, "Invalid response."));
-        return future;
+        return;
       }
 
       future.completed(response);
-      return future;
-    } catch (StorageException e) {
-      LOGGER.warn("Error retrieving content for : {}", request.getUrl(), e);
-      future.failed(e);
-      return future;
-    }
+    });
+    return future;
   }
 
   @Override
@@ -174,7 +368,7 @@ public final class StorageFetcher implements Fetcher {
     /**
      * The file manager used to store raw responses.
      */
-    private final FileManager<?> fileManager;
+    private final AsyncFileManager<?> fileManager;
 
     /**
      * A list of headers to append to request.
@@ -186,18 +380,30 @@ public final class StorageFetcher implements Fetcher {
      */
     private Validator validator;
 
+    /**
+     * The maximum number of prefetched records kept.
+     */
+    private int prefetchSize;
+
+    /**
+     * The number of requests looked up together when prefetching.
+     */
+    private int prefetchBatchSize;
+
     /**
      * Construct an instance of builder.
      *
      * @param fileManager an instance file manager used to store raw responses.
      */
-    private Builder(final FileManager<?> fileManager) {
+    private Builder(final AsyncFileManager<?> fileManager) {
       this.fileManager = fileManager;
       headers = Collections.emptyMap();
       validator = new PipelineValidator(
           StatusOkValidator.INSTANCE,
           EmptyContentValidator.INSTANCE
       );
+      prefetchSize = 0;
+      prefetchBatchSize = 64;
     }
 
     /**
@@ -243,6 +449,36 @@ public final class StorageFetcher implements Fetcher {
       return this;
     }
 
+    /**
+     * Sets the maximum number of prefetched records kept until they are
+     * fetched. Defaults to 0, prefetching is disabled.
+     *
+     * @param prefetchSize the maximum number of prefetched records
+     * @return this
+     */
+    public Builder setPrefetchSize(final int prefetchSize) {
+      if (prefetchSize < 0) {
+        throw new IllegalStateException("Attribute 'prefetchSize' must be more or equal to 0.");
+      }
+      this.prefetchSize = prefetchSize;
+      return this;
+    }
+
+    /**
+     * Sets the number of requests looked up together when prefetching.
+     * Defaults to 64.
+     *
+     * @param prefetchBatchSize the batch size
+     * @return this
+     */
+    public Builder setPrefetchBatchSize(final int prefetchBatchSize) {
+      if (prefetchBatchSize < 1) {
+        throw new IllegalStateException("Attribute 'prefetchBatchSize' must be more or equal to 1.");
+      }
+      this.prefetchBatchSize = prefetchBatchSize;
+      return this;
+    }
+
     /**
      * Builds the fetcher with the options specified.
      *
@@ -17,8 +17,10 @@
 package ai.preferred.venom.job;
 
 import javax.annotation.Nonnull;
+import java.util.Collection;
 import java.util.Comparator;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -30,8 +32,18 @@ public abstract class AbstractPriorityJobQueue extends AbstractJobQueue {
    * Constructs an instance of AbstractJobQueue.
    */
   protected AbstractPriorityJobQueue() {
-    super(new PriorityBlockingQueue<>(11,
-        Comparator.comparing(o -> (o.getJobAttribute(PriorityJobAttribute.class)))));
+    super(new BatchBlockingQueue<>(new PriorityQueue<>(11,
+        Comparator.comparing(Job::getPriorityJobAttribute))));
+  }
+
+  /**
+   * Constructs an instance of AbstractJobQueue with a queue ordering
+   * jobs by their {@see PriorityJobAttribute}.
+   *
+   * @param queue an instance of BlockingQueue
+   */
+  protected AbstractPriorityJobQueue(final BlockingQueue<Job> queue) {
+    super(queue);
   }
 
   /**
@@ -42,7 +54,7 @@ public abstract class AbstractPriorityJobQueue extends AbstractJobQueue {
    * @return the input job.
    */
   private Job ensurePriorityJobAttribute(final Job job) {
-    if (job.getJobAttribute(PriorityJobAttribute.class) == null) {
+    if (job.getPriorityJobAttribute() == null) {
       job.setJobAttribute(new PriorityJobAttribute());
     }
     return job;
@@ -64,5 +76,18 @@ public abstract class AbstractPriorityJobQueue extends AbstractJobQueue {
     return getQueue().offer(ensurePriorityJobAttribute(job));
   }
 
+  /**
+   * Inserts all jobs into this queue with a single lock acquisition.
+   *
+   * @param jobs the jobs to insert
+   * @return true if this queue changed
+   */
+  @Override
+  public final boolean addAll(final @Nonnull Collection<? extends Job> jobs) {
+    for (final Job job : jobs) {
+      ensurePriorityJobAttribute(job);
+    }
+    return getQueue().addAll(jobs);
+  }
 
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import javax.annotation.Nonnull;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class provides an implementation of scheduler with a priority
+ * sensitive queue, where the priority of a job rises with the time it
+ * has waited.
+ * <p>
+ * Jobs with higher priority will be processed first, but a job that has
+ * waited one aging interval longer than another is processed as if it
+ * had one level higher priority, so that downgraded retries are not
+ * starved by a steady stream of new jobs. The time jobs wait is tracked
+ * for each priority.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public class AgingPriorityJobQueue extends AbstractPriorityJobQueue {
+
+  /**
+   * The queue ordering the jobs.
+   */
+  private final AgingQueue agingQueue;
+
+  /**
+   * Constructs an instance of aging priority job queue with an aging
+   * interval of 30 seconds.
+   */
+  public AgingPriorityJobQueue() {
+    this(30, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Constructs an instance of aging priority job queue.
+   *
+   * @param agingInterval the time a job waits to rise by one priority level
+   * @param unit          the unit of aging interval
+   */
+  public AgingPriorityJobQueue(final long agingInterval, final @NotNull TimeUnit unit) {
+    this(new AgingQueue(unit.toNanos(agingInterval)));
+  }
+
+  /**
+   * Constructs an instance of aging priority job queue.
+   *
+   * @param agingQueue the queue ordering the jobs
+   */
+  private AgingPriorityJobQueue(final AgingQueue agingQueue) {
+    super(new BatchBlockingQueue<>(agingQueue));
+    this.agingQueue = agingQueue;
+  }
+
+  /**
+   * Get the statistics of the time jobs of a priority have waited in
+   * this queue, by the priority they were queued at.
+   *
+   * @param priority the priority
+   * @return the wait statistics
+   */
+  public final WaitStatistics getWaitStatistics(final @NotNull Priority priority) {
+    return agingQueue.getWaitStatistics(priority.ordinal());
+  }
+
+  @Override
+  public final Job poll(final long timeout, final @Nonnull TimeUnit unit) throws InterruptedException {
+    return getQueue().poll(timeout, unit);
+  }
+
+  @Override
+  public final Job poll() {
+    return getQueue().poll();
+  }
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class provides a queue of jobs with one FIFO queue per priority,
+ * where the priority of a job rises with the time it has waited.
+ * <p>
+ * A job of a level enqueued at time {@code t} is ordered by
+ * {@code t + level * agingInterval}, so a job waiting one aging interval
+ * longer than another overtakes it by one priority level. As this key
+ * only grows with the enqueue time within a level, the next job is the
+ * best of the heads of the levels and no reordering is needed as time
+ * passes.
+ * </p>
+ * <p>
+ * This class is not thread-safe, except for {@link #getWaitStatistics(int)}.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+@SuppressWarnings("NullableProblems")
+final class AgingQueue extends AbstractQueue<Job> {
+
+  /**
+   * The number of priority levels.
+   */
+  private static final int LEVELS = Priority.values().length;
+
+  /**
+   * The time a job waits to rise by one level, in nanoseconds.
+   */
+  private final long agingInterval;
+
+  /**
+   * The queue of each level.
+   */
+  private final ArrayDeque<Entry>[] levels;
+
+  /**
+   * The number of jobs waiting in each level.
+   */
+  private final AtomicIntegerArray queued = new AtomicIntegerArray(LEVELS);
+
+  /**
+   * The number of jobs polled from each level.
+   */
+  private final AtomicLongArray counts = new AtomicLongArray(LEVELS);
+
+  /**
+   * The total time jobs polled from each level waited.
+   */
+  private final AtomicLongArray totalWaits = new AtomicLongArray(LEVELS);
+
+  /**
+   * The longest time a job polled from each level waited.
+   */
+  private final AtomicLongArray maxWaits = new AtomicLongArray(LEVELS);
+
+  /**
+   * The number of jobs in this queue.
+   */
+  private int size;
+
+  /**
+   * Constructs an instance of aging queue.
+   *
+   * @param agingInterval the time a job waits to rise by one level, in nanoseconds
+   */
+  @SuppressWarnings("unchecked")
+  AgingQueue(final long agingInterval) {
+    this.agingInterval = agingInterval;
+    this.levels = new ArrayDeque[LEVELS];
+    for (int i = 0; i < LEVELS; i++) {
+      levels[i] = new ArrayDeque<>();
+    }
+  }
+
+  /**
+   * Get the level of a job.
+   *
+   * @param job the job
+   * @return the level
+   */
+  private static int levelOf(final Job job) {
+    final PriorityJobAttribute attribute = job.getPriorityJobAttribute();
+    return attribute == null ? Priority.DEFAULT.ordinal() : attribute.getPriority().ordinal();
+  }
+
+  /**
+   * Find the level whose head should be polled next.
+   *
+   * @return the level or -1 if empty
+   */
+  private int nextLevel() {
+    int best = -1;
+    long bestKey = 0;
+    for (int i = 0; i < LEVELS; i++) {
+      final Entry head = levels[i].peek();
+      if (head != null) {
+        final long key = head.enqueueTime + i * agingInterval;
+        if (best < 0 || key - bestKey < 0) {
+          best = i;
+          bestKey = key;
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Get the wait statistics of a level.
+   *
+   * @param level the level
+   * @return the wait statistics
+   */
+  WaitStatistics getWaitStatistics(final int level) {
+    return new WaitStatistics(queued.get(level), counts.get(level), totalWaits.get(level), maxWaits.get(level));
+  }
+
+  @Override
+  public boolean offer(final Job job) {
+    final int level = levelOf(job);
+    levels[level].add(new Entry(job, System.nanoTime()));
+    queued.incrementAndGet(level);
+    size++;
+    return true;
+  }
+
+  @Override
+  public Job poll() {
+    final int level = nextLevel();
+    if (level < 0) {
+      return null;
+    }
+    final Entry entry = levels[level].poll();
+    final long wait = System.nanoTime() - entry.enqueueTime;
+    queued.decrementAndGet(level);
+    counts.incrementAndGet(level);
+    totalWaits.addAndGet(level, wait);
+    maxWaits.accumulateAndGet(level, wait, Math::max);
+    size--;
+    return entry.job;
+  }
+
+  @Override
+  public Job peek() {
+    final int level = nextLevel();
+    return level < 0 ? null : levels[level].peek().job;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Nonnull
+  @Override
+  public Iterator<Job> iterator() {
+    return new Iterator<Job>() {
+
+      /**
+       * The level being iterated.
+       */
+      private int level;
+
+      /**
+       * The iterator of the level being iterated.
+       */
+      private Iterator<Entry> iterator = levels[0].iterator();
+
+      /**
+       * The level of the last job returned.
+       */
+      private int lastLevel = -1;
+
+      /**
+       * The iterator of the last job returned.
+       */
+      private Iterator<Entry> lastIterator;
+
+      @Override
+      public boolean hasNext() {
+        while (!iterator.hasNext() && level < LEVELS - 1) {
+          level++;
+          iterator = levels[level].iterator();
+        }
+        return iterator.hasNext();
+      }
+
+      @Override
+      public Job next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        lastLevel = level;
+        lastIterator = iterator;
+        return iterator.next().job;
+      }
+
+      @Override
+      public void remove() {
+        if (lastIterator == null) {
+          throw new IllegalStateException();
+        }
+        lastIterator.remove();
+        queued.decrementAndGet(lastLevel);
+        size--;
+        lastIterator = null;
+      }
+    };
+  }
+
+  /**
+   * A job and the time it was enqueued.
+   */
+  private static final class Entry {
+
+    /**
+     * The job.
+     */
+    private final Job job;
+
+    /**
+     * The time the job was enqueued, in nanoseconds.
+     */
+    private final long enqueueTime;
+
+    /**
+     * Constructs an instance of entry.
+     *
+     * @param job         the job
+     * @param enqueueTime the time the job was enqueued, in nanoseconds
+     */
+    private Entry(final Job job, final long enqueueTime) {
+      this.job = job;
+      this.enqueueTime = enqueueTime;
+    }
+
+  }
+
+}
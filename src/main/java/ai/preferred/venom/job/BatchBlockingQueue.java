@@ -0,0 +1,353 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class provides an unbounded blocking queue guarded by a single
+ * lock, backed by any queue.
+ * <p>
+ * Unlike {@link java.util.concurrent.PriorityBlockingQueue} and
+ * {@link java.util.concurrent.LinkedBlockingQueue}, {@link #addAll(Collection)}
+ * inserts the whole collection with one lock acquisition.
+ * </p>
+ *
+ * @param <E> the type of elements held in this queue
+ * @author Ween Jiann Lee
+ */
+@SuppressWarnings("NullableProblems")
+final class BatchBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+  /**
+   * The lock guarding the queue.
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * Condition for waiting takes.
+   */
+  private final Condition notEmpty = lock.newCondition();
+
+  /**
+   * The backing queue, only accessed under lock.
+   */
+  private final Queue<E> queue;
+
+  /**
+   * Constructs an instance of batch blocking queue.
+   *
+   * @param queue the backing queue, which must not be used elsewhere
+   */
+  BatchBlockingQueue(final Queue<E> queue) {
+    this.queue = queue;
+  }
+
+  @Override
+  public boolean offer(final @Nonnull E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    lock.lock();
+    try {
+      queue.offer(e);
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+    return true;
+  }
+
+  @Override
+  public void put(final @Nonnull E e) {
+    offer(e);
+  }
+
+  @Override
+  public boolean offer(final E e, final long timeout, final @Nonnull TimeUnit unit) {
+    return offer(e);
+  }
+
+  @Override
+  public boolean addAll(final @Nonnull Collection<? extends E> c) {
+    if (c == this) {
+      throw new IllegalArgumentException();
+    }
+    for (final E e : c) {
+      if (e == null) {
+        throw new NullPointerException();
+      }
+    }
+    if (c.isEmpty()) {
+      return false;
+    }
+    lock.lock();
+    try {
+      for (final E e : c) {
+        queue.offer(e);
+      }
+      if (c.size() == 1) {
+        notEmpty.signal();
+      } else {
+        notEmpty.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+    return true;
+  }
+
+  @Override
+  public E poll() {
+    lock.lock();
+    try {
+      return queue.poll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public E poll(final long timeout, final @Nonnull TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (queue.isEmpty()) {
+        if (nanos <= 0) {
+          return null;
+        }
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      return queue.poll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Nonnull
+  @Override
+  public E take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (queue.isEmpty()) {
+        notEmpty.await();
+      }
+      return queue.poll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public E peek() {
+    lock.lock();
+    try {
+      return queue.peek();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.lock();
+    try {
+      return queue.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return Integer.MAX_VALUE;
+  }
+
+  @Override
+  public int drainTo(final @Nonnull Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(final @Nonnull Collection<? super E> c, final int maxElements) {
+    if (c == this) {
+      throw new IllegalArgumentException();
+    }
+    lock.lock();
+    try {
+      int n = 0;
+      while (n < maxElements && !queue.isEmpty()) {
+        c.add(queue.poll());
+        n++;
+      }
+      return n;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean remove(final Object o) {
+    lock.lock();
+    try {
+      return queue.remove(o);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean contains(final Object o) {
+    lock.lock();
+    try {
+      return queue.contains(o);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    lock.lock();
+    try {
+      queue.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Nonnull
+  @Override
+  public Object[] toArray() {
+    lock.lock();
+    try {
+      return queue.toArray();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Nonnull
+  @Override
+  public <T> T[] toArray(final @Nonnull T[] a) {
+    lock.lock();
+    try {
+      return queue.toArray(a);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns an iterator over a snapshot of the elements in this queue,
+   * in no particular order.
+   *
+   * @return an iterator
+   */
+  @Nonnull
+  @Override
+  public Iterator<E> iterator() {
+    return new SnapshotIterator(toArray());
+  }
+
+  @Override
+  public String toString() {
+    lock.lock();
+    try {
+      return queue.toString();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * An iterator over a snapshot of the queue.
+   */
+  private final class SnapshotIterator implements Iterator<E> {
+
+    /**
+     * The elements in the snapshot.
+     */
+    private final Object[] array;
+
+    /**
+     * The index of the next element to return.
+     */
+    private int cursor;
+
+    /**
+     * The index of the last element returned, or -1 if none.
+     */
+    private int lastReturned = -1;
+
+    /**
+     * Constructs an instance of snapshot iterator.
+     *
+     * @param array the elements in the snapshot
+     */
+    private SnapshotIterator(final Object[] array) {
+      this.array = array;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return cursor < array.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E next() {
+      if (cursor >= array.length) {
+        throw new NoSuchElementException();
+      }
+      lastReturned = cursor;
+      return (E) array[cursor++];
+    }
+
+    @Override
+    public void remove() {
+      if (lastReturned < 0) {
+        throw new IllegalStateException();
+      }
+      final Object o = array[lastReturned];
+      lastReturned = -1;
+      lock.lock();
+      try {
+        final Iterator<E> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+          if (iterator.next() == o) {
+            iterator.remove();
+            return;
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+/**
+ * This class provides the identity of a job in a checkpoint log.
+ *
+ * @author Ween Jiann Lee
+ */
+final class CheckpointJobAttribute implements JobAttribute {
+
+  /**
+   * The id of the job in the checkpoint log.
+   */
+  private final long id;
+
+  /**
+   * Constructs an instance of checkpoint job attribute.
+   *
+   * @param id the id of the job in the checkpoint log
+   */
+  CheckpointJobAttribute(final long id) {
+    this.id = id;
+  }
+
+  /**
+   * Get the id of the job in the checkpoint log.
+   *
+   * @return the id
+   */
+  long getId() {
+    return id;
+  }
+
+  @Override
+  public void prepareRetry() {
+    // The id is kept across retries.
+  }
+
+}
@@ -0,0 +1,469 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import ai.preferred.venom.Handler;
+import ai.preferred.venom.Interruptible;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class provides a job queue that checkpoints the jobs passing
+ * through another job queue to a log on local disk, so that a crawl
+ * can be resumed after the process dies.
+ * <p>
+ * Every job added, or re-queued for a retry, is recorded with its
+ * request, priority, try count, not before time, depth and task, and every
+ * job reported with {@link #complete(Job)} is recorded as done. Jobs are recorded on a
+ * background thread and the log is compacted there, so adding and
+ * polling jobs never waits on the disk. Jobs that were queued, in
+ * flight or waiting for a retry are restored into the queue on resume.
+ * </p>
+ * <p>
+ * Handlers of jobs are recorded by the key they are registered with
+ * through {@link Builder#registerHandler(String, Handler)}, and adding a
+ * job with a handler that is not registered throws an
+ * {@link IllegalStateException}, as it could not be restored. Restored
+ * jobs without a handler are handled by the handler router of the
+ * crawler. Without a router, {@link Builder#setHandlerRequired(boolean)}
+ * makes recording a job without a handler fail as well, instead of
+ * restoring a job that cannot be handled.
+ * </p>
+ * <p>
+ * Requests are restored as a {@link ai.preferred.venom.request.VRequest}
+ * with the method, url, body, headers and proxy recorded. Custom request
+ * types and the {@link ai.preferred.venom.SleepScheduler} of a request
+ * are not recorded, restored requests use the sleep scheduler of the
+ * crawler. Seed requests
+ * read by a {@link PrefetchingJobQueue} are recorded as they are
+ * polled, the request source should resume after the last seed polled,
+ * such as from {@link ai.preferred.venom.seed.SeedFileSource#getOffset()}.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+@SuppressWarnings("NullableProblems")
+public final class CheckpointJobQueue extends AbstractQueue<Job>
+    implements BlockingQueue<Job>, CompletionAware, Interruptible, AutoCloseable {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(CheckpointJobQueue.class);
+
+  /**
+   * The queue holding the jobs.
+   */
+  private final BlockingQueue<Job> queue;
+
+  /**
+   * The checkpoint log.
+   */
+  private final CheckpointLog log;
+
+  /**
+   * The id of the next new job.
+   */
+  private final AtomicLong nextId;
+
+  /**
+   * Whether every job recorded must have a registered handler.
+   */
+  private final boolean handlerRequired;
+
+  /**
+   * Constructs an instance of checkpoint job queue.
+   *
+   * @param builder an instance of builder
+   * @throws IOException if the checkpoint cannot be read or written
+   */
+  private CheckpointJobQueue(final Builder builder) throws IOException {
+    this.queue = builder.queue;
+    this.handlerRequired = builder.handlerRequired;
+    this.log = new CheckpointLog(builder.file, builder.resume, builder.syncInterval, builder.compactionThreshold,
+        builder.handlers);
+    this.nextId = new AtomicLong(log.getMaxId() + 1);
+    final List<Job> recovered = log.getRecovered();
+    if (!recovered.isEmpty()) {
+      queue.addAll(recovered);
+      LOGGER.info("Resumed {} jobs from checkpoint {}.", recovered.size(), builder.file);
+    }
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @param file  the checkpoint file
+   * @param queue the queue holding the jobs
+   * @return A new instance of builder
+   */
+  public static Builder builder(final @NotNull Path file, final @NotNull BlockingQueue<Job> queue) {
+    return new Builder(file, queue);
+  }
+
+  /**
+   * Record a job as added, assigning it an id if it has none.
+   *
+   * @param job the job
+   * @throws IllegalStateException if a handler is required and the job
+   *                               has no registered handler
+   */
+  private void record(final Job job) {
+    if (job.getHandler() != null && log.getHandlerKey(job.getHandler()) == null) {
+      throw new IllegalStateException("The handler of job for " + job.getRequest().getUrl()
+          + " must be registered to be checkpointed.");
+    }
+    if (handlerRequired && job.getHandler() == null) {
+      throw new IllegalStateException("The job for " + job.getRequest().getUrl()
+          + " must have a registered handler to be checkpointed without a handler router.");
+    }
+    final CheckpointJobAttribute attribute = job.getJobAttribute(CheckpointJobAttribute.class);
+    final long id;
+    if (attribute == null) {
+      id = nextId.getAndIncrement();
+      job.setJobAttribute(new CheckpointJobAttribute(id));
+    } else {
+      id = attribute.getId();
+    }
+    log.add(id, job);
+  }
+
+  /**
+   * Record a job that entered the underlying queue without passing
+   * through this queue, such as a prefetched seed.
+   *
+   * @param job the job or null
+   * @return the job
+   */
+  private Job recordIfNew(final Job job) {
+    if (job != null && job.getJobAttribute(CheckpointJobAttribute.class) == null) {
+      record(job);
+    }
+    return job;
+  }
+
+  /**
+   * Record a job as completed, it will not be restored on resume. The
+   * completion is passed on to the underlying queue if it is completion
+   * aware.
+   *
+   * @param job the job
+   */
+  @Override
+  public void complete(final @NotNull Job job) {
+    final CheckpointJobAttribute attribute = job.getJobAttribute(CheckpointJobAttribute.class);
+    if (attribute != null) {
+      log.done(attribute.getId());
+    }
+    if (queue instanceof CompletionAware) {
+      ((CompletionAware) queue).complete(job);
+    }
+  }
+
+  /**
+   * Passes the job on to the underlying queue if it is completion aware,
+   * without recording it as completed, so it is restored on resume.
+   *
+   * @param job the job
+   */
+  @Override
+  public void abandon(final @NotNull Job job) {
+    if (queue instanceof CompletionAware) {
+      ((CompletionAware) queue).abandon(job);
+    }
+  }
+
+  @Override
+  public boolean offer(final @Nonnull Job job) {
+    record(job);
+    return queue.offer(job);
+  }
+
+  @Override
+  public void put(final @Nonnull Job job) throws InterruptedException {
+    record(job);
+    queue.put(job);
+  }
+
+  @Override
+  public boolean offer(final Job job, final long timeout, final @Nonnull TimeUnit unit) throws InterruptedException {
+    record(job);
+    return queue.offer(job, timeout, unit);
+  }
+
+  @Override
+  public boolean addAll(final @Nonnull Collection<? extends Job> c) {
+    for (final Job job : c) {
+      record(job);
+    }
+    return queue.addAll(c);
+  }
+
+  @Nonnull
+  @Override
+  public Job take() throws InterruptedException {
+    return recordIfNew(queue.take());
+  }
+
+  @Override
+  public Job poll(final long timeout, final @Nonnull TimeUnit unit) throws InterruptedException {
+    return recordIfNew(queue.poll(timeout, unit));
+  }
+
+  @Override
+  public Job poll() {
+    return recordIfNew(queue.poll());
+  }
+
+  @Override
+  public Job peek() {
+    return queue.peek();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return queue.isEmpty();
+  }
+
+  @Override
+  public int size() {
+    return queue.size();
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return queue.remainingCapacity();
+  }
+
+  @Override
+  public int drainTo(final @Nonnull Collection<? super Job> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(final @Nonnull Collection<? super Job> c, final int maxElements) {
+    final List<Job> drained = new ArrayList<>();
+    final int n = queue.drainTo(drained, maxElements);
+    for (final Job job : drained) {
+      c.add(recordIfNew(job));
+    }
+    return n;
+  }
+
+  @Nonnull
+  @Override
+  public Iterator<Job> iterator() {
+    return queue.iterator();
+  }
+
+  @Override
+  public void interrupt() {
+    if (queue instanceof Interruptible) {
+      ((Interruptible) queue).interrupt();
+    }
+  }
+
+  /**
+   * Closes the underlying queue if it is closeable, then writes all
+   * pending records and closes the checkpoint.
+   *
+   * @throws Exception if the underlying queue cannot be closed
+   */
+  @Override
+  public void close() throws Exception {
+    try {
+      if (queue instanceof AutoCloseable) {
+        ((AutoCloseable) queue).close();
+      }
+    } finally {
+      log.close();
+    }
+  }
+
+  /**
+   * A builder for checkpoint job queue class.
+   */
+  public static final class Builder {
+
+    /**
+     * The checkpoint file.
+     */
+    private final Path file;
+
+    /**
+     * The queue holding the jobs.
+     */
+    private final BlockingQueue<Job> queue;
+
+    /**
+     * Whether to restore jobs from an existing checkpoint.
+     */
+    private boolean resume;
+
+    /**
+     * The interval between forcing the checkpoint to disk.
+     */
+    private long syncInterval;
+
+    /**
+     * The number of records at or above which compaction is considered.
+     */
+    private int compactionThreshold;
+
+    /**
+     * The handlers of jobs that are recorded, by key.
+     */
+    private final Map<String, Handler> handlers;
+
+    /**
+     * Whether every job recorded must have a registered handler.
+     */
+    private boolean handlerRequired;
+
+    /**
+     * Constructs an instance of builder with default values.
+     *
+     * @param file  the checkpoint file
+     * @param queue the queue holding the jobs
+     */
+    private Builder(final Path file, final BlockingQueue<Job> queue) {
+      if (file == null) {
+        throw new IllegalStateException("Attribute 'file' cannot be null.");
+      }
+      if (queue == null) {
+        throw new IllegalStateException("Attribute 'queue' cannot be null.");
+      }
+      this.file = file;
+      this.queue = queue;
+      resume = false;
+      syncInterval = 1000;
+      compactionThreshold = 65536;
+      handlers = new HashMap<>();
+      handlerRequired = false;
+    }
+
+    /**
+     * Sets whether to restore jobs from an existing checkpoint, otherwise
+     * the checkpoint is cleared. Defaults to false.
+     *
+     * @param resume true to resume from the checkpoint
+     * @return this
+     */
+    public Builder setResume(final boolean resume) {
+      this.resume = resume;
+      return this;
+    }
+
+    /**
+     * Sets the interval in milliseconds between forcing the checkpoint
+     * to disk. Records are written to the file as soon as possible, this
+     * bounds the loss if the machine, rather than the process, fails.
+     * Defaults to 1000.
+     *
+     * @param syncInterval the interval in milliseconds
+     * @return this
+     */
+    public Builder setSyncInterval(final long syncInterval) {
+      if (syncInterval < 1) {
+        throw new IllegalStateException("Attribute 'syncInterval' must be more or equal to 1.");
+      }
+      this.syncInterval = syncInterval;
+      return this;
+    }
+
+    /**
+     * Sets the number of records at or above which the checkpoint is
+     * compacted, once more than half of them are obsolete. Defaults to
+     * 65536.
+     *
+     * @param compactionThreshold the number of records
+     * @return this
+     */
+    public Builder setCompactionThreshold(final int compactionThreshold) {
+      if (compactionThreshold < 1) {
+        throw new IllegalStateException("Attribute 'compactionThreshold' must be more or equal to 1.");
+      }
+      this.compactionThreshold = compactionThreshold;
+      return this;
+    }
+
+    /**
+     * Registers a handler under a key, so that jobs with the handler are
+     * restored with it. The same key must be registered for the same
+     * handler when resuming.
+     *
+     * @param key     the key recorded for jobs with the handler
+     * @param handler the handler
+     * @return this
+     */
+    public Builder registerHandler(final @NotNull String key, final @NotNull Handler handler) {
+      if (key == null) {
+        throw new IllegalStateException("Attribute 'key' cannot be null.");
+      }
+      if (handler == null) {
+        throw new IllegalStateException("Attribute 'handler' cannot be null.");
+      }
+      if (handlers.containsKey(key)) {
+        throw new IllegalStateException("A handler is already registered under key '" + key + "'.");
+      }
+      handlers.put(key, handler);
+      return this;
+    }
+
+    /**
+     * Sets whether every job must have a registered handler, so that
+     * restored jobs can be handled without a handler router. Adding a
+     * job without a handler throws an {@link IllegalStateException}.
+     * Defaults to false.
+     *
+     * @param handlerRequired true to require a registered handler
+     * @return this
+     */
+    public Builder setHandlerRequired(final boolean handlerRequired) {
+      this.handlerRequired = handlerRequired;
+      return this;
+    }
+
+    /**
+     * Builds the job queue with the options specified, restoring jobs
+     * from the checkpoint if resuming.
+     *
+     * @return an instance of checkpoint job queue
+     * @throws IOException if the checkpoint cannot be read or written
+     */
+    public CheckpointJobQueue build() throws IOException {
+      return new CheckpointJobQueue(this);
+    }
+
+  }
+
+}
@@ -0,0 +1,740 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import ai.preferred.venom.Handler;
+import ai.preferred.venom.request.Request;
+import ai.preferred.venom.request.VRequest;
+import org.apache.http.HttpHost;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * This class provides an append-only log of jobs added to and completed
+ * by a crawler, written on a background thread.
+ * <p>
+ * Each record is framed with its length and a CRC-32 checksum, so that
+ * a record torn by a crash is detected and dropped on recovery. Records
+ * of added jobs carry a format version and a flags byte telling which
+ * optional fields follow the request, so that fields can be added
+ * without making older records ambiguous. The log
+ * is compacted by rewriting the latest record of each outstanding job
+ * to a new file and renaming it over the log, which happens on startup
+ * and whenever most records in the log are obsolete.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+final class CheckpointLog implements Closeable {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(CheckpointLog.class);
+
+  /**
+   * The type of record for a job that is added or re-queued.
+   */
+  private static final byte ADD = 1;
+
+  /**
+   * The type of record for a job that is completed.
+   */
+  private static final byte DONE = 2;
+
+  /**
+   * The version of the format of records of added jobs.
+   */
+  private static final byte ADD_VERSION = 1;
+
+  /**
+   * The flag of a record with a not before time.
+   */
+  private static final int HAS_NOT_BEFORE = 1;
+
+  /**
+   * The flag of a record with the key of a registered handler.
+   */
+  private static final int HAS_HANDLER = 2;
+
+  /**
+   * The flag of a record with a crawl depth.
+   */
+  private static final int HAS_DEPTH = 4;
+
+  /**
+   * The flag of a record with a crawl task.
+   */
+  private static final int HAS_TASK = 8;
+
+  /**
+   * The size of the type and id that start every record.
+   */
+  private static final int RECORD_HEAD_SIZE = 9;
+
+  /**
+   * The size of the length and checksum that frame every record.
+   */
+  private static final int FRAME_SIZE = 8;
+
+  /**
+   * The largest record accepted on recovery.
+   */
+  private static final int MAX_RECORD_SIZE = 1 << 26;
+
+  /**
+   * The maximum number of records written between flushes.
+   */
+  private static final int BATCH_SIZE = 4096;
+
+  /**
+   * The log file.
+   */
+  private final Path file;
+
+  /**
+   * The interval between forcing the log to disk.
+   */
+  private final long syncIntervalNanos;
+
+  /**
+   * The number of records at or above which compaction is considered.
+   */
+  private final int compactionThreshold;
+
+  /**
+   * The registered handlers, by key.
+   */
+  private final Map<String, Handler> handlers;
+
+  /**
+   * The keys of the registered handlers, by handler.
+   */
+  private final Map<Handler, String> handlerKeys = new IdentityHashMap<>();
+
+  /**
+   * The records waiting to be written.
+   */
+  private final BlockingQueue<Entry> entries = new LinkedBlockingQueue<>();
+
+  /**
+   * The offset of the latest record of each outstanding job, only
+   * accessed by the writer thread after construction.
+   */
+  private final Map<Long, Long> liveOffsets = new HashMap<>();
+
+  /**
+   * The outstanding jobs recovered from the log.
+   */
+  private final List<Job> recovered = new ArrayList<>();
+
+  /**
+   * The writer thread.
+   */
+  private final Thread writer;
+
+  /**
+   * The largest job id found in the log.
+   */
+  private long maxId;
+
+  /**
+   * The channel of the log file.
+   */
+  private FileChannel channel;
+
+  /**
+   * The buffered stream to the log file.
+   */
+  private DataOutputStream out;
+
+  /**
+   * The size of the log file.
+   */
+  private long position;
+
+  /**
+   * The number of records in the log file.
+   */
+  private long recordCount;
+
+  /**
+   * The time of the last sync.
+   */
+  private long lastSync;
+
+  /**
+   * Whether this log has been closed.
+   */
+  private volatile boolean closed;
+
+  /**
+   * Whether writing has failed, records are discarded if true.
+   */
+  private volatile boolean failed;
+
+  /**
+   * Constructs an instance of checkpoint log, recovering outstanding
+   * jobs and compacting the log if it exists.
+   *
+   * @param file                the log file
+   * @param resume              whether to recover jobs from an existing log
+   * @param syncIntervalMillis  the interval between forcing the log to disk
+   * @param compactionThreshold the number of records at or above which compaction is considered
+   * @param handlers            the handlers of jobs that are recorded, by key
+   * @throws IOException if the log cannot be read or written, or a job
+   *                     recovered has a handler that is not registered
+   */
+  CheckpointLog(final Path file, final boolean resume, final long syncIntervalMillis,
+                final int compactionThreshold, final Map<String, Handler> handlers) throws IOException {
+    this.file = file;
+    this.handlers = handlers;
+    for (final Map.Entry<String, Handler> handler : handlers.entrySet()) {
+      handlerKeys.put(handler.getValue(), handler.getKey());
+    }
+    this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+    this.compactionThreshold = compactionThreshold;
+
+    final Map<Long, byte[]> live = new LinkedHashMap<>();
+    if (resume && Files.exists(file)) {
+      replay(live);
+      for (final byte[] payload : live.values()) {
+        recovered.add(decode(payload));
+      }
+    }
+    rewrite(live);
+    lastSync = System.nanoTime();
+
+    writer = new Thread(this::write, "checkpoint " + file.getFileName());
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Encode a string, or null, to a stream.
+   *
+   * @param out   the stream
+   * @param value the string
+   * @throws IOException if an I/O error occurs
+   */
+  private static void writeString(final DataOutputStream out, final String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Decode a string, or null, from a stream.
+   *
+   * @param in the stream
+   * @return the string
+   * @throws IOException if an I/O error occurs
+   */
+  private static String readString(final DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Encode the record of a job that is added or re-queued.
+   *
+   * @param id  the id of the job
+   * @param job the job
+   * @return the record
+   */
+  private byte[] encode(final long id, final Job job) {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    try (DataOutputStream data = new DataOutputStream(bytes)) {
+      final NotBeforeJobAttribute notBefore = job.getJobAttribute(NotBeforeJobAttribute.class);
+      final String handlerKey = getHandlerKey(job.getHandler());
+      final int depth = DepthJobAttribute.getDepth(job);
+      final TaskJobAttribute task = job.getJobAttribute(TaskJobAttribute.class);
+      int flags = 0;
+      if (notBefore != null) {
+        flags |= HAS_NOT_BEFORE;
+      }
+      if (handlerKey != null) {
+        flags |= HAS_HANDLER;
+      }
+      if (depth > 0) {
+        flags |= HAS_DEPTH;
+      }
+      if (task != null) {
+        flags |= HAS_TASK;
+      }
+
+      data.writeByte(ADD);
+      data.writeLong(id);
+      data.writeByte(ADD_VERSION);
+      data.writeByte(flags);
+      data.writeInt(job.getTryCount());
+      final PriorityJobAttribute priority = job.getPriorityJobAttribute();
+      data.writeByte(priority == null ? -1 : priority.getPriority().ordinal());
+      data.writeByte(priority == null ? -1 : priority.getPriorityFloor().ordinal());
+
+      final Request request = job.getRequest();
+      data.writeByte(request.getMethod().ordinal());
+      writeString(data, request.getUrl());
+      writeString(data, request.getBody());
+      writeString(data, request.getProxy() == null ? null : request.getProxy().toURI());
+      final Map<String, String> headers = request.getHeaders();
+      data.writeInt(headers == null ? 0 : headers.size());
+      if (headers != null) {
+        for (final Map.Entry<String, String> header : headers.entrySet()) {
+          writeString(data, header.getKey());
+          writeString(data, header.getValue());
+        }
+      }
+      if (notBefore != null) {
+        data.writeLong(notBefore.getNotBefore());
+      }
+      if (handlerKey != null) {
+        writeString(data, handlerKey);
+      }
+      if (depth > 0) {
+        data.writeInt(depth);
+      }
+      if (task != null) {
+        writeString(data, task.getTask());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decode a job from its record.
+   *
+   * @param payload the record
+   * @return the job
+   * @throws IOException if the record is malformed or its handler is not registered
+   */
+  private Job decode(final byte[] payload) throws IOException {
+    final DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+    data.readByte();
+    final long id = data.readLong();
+    final int version = data.readByte();
+    if (version != ADD_VERSION) {
+      throw new IOException("Unsupported checkpoint record version " + version + ".");
+    }
+    final int flags = data.readByte();
+    final int tryCount = data.readInt();
+    final int priority = data.readByte();
+    final int priorityFloor = data.readByte();
+
+    final Request.Method method = Request.Method.values()[data.readByte()];
+    final VRequest.Builder<?> builder = VRequest.build(method, readString(data));
+    builder.setBody(readString(data));
+    final String proxy = readString(data);
+    if (proxy != null) {
+      builder.setProxy(HttpHost.create(proxy));
+    }
+    final int headerCount = data.readInt();
+    for (int i = 0; i < headerCount; i++) {
+      builder.addHeader(readString(data), readString(data));
+    }
+
+    final boolean hasNotBefore = (flags & HAS_NOT_BEFORE) != 0;
+    final long notBefore = hasNotBefore ? data.readLong() : 0;
+    Handler handler = null;
+    if ((flags & HAS_HANDLER) != 0) {
+      final String handlerKey = readString(data);
+      handler = handlers.get(handlerKey);
+      if (handler == null) {
+        throw new IOException("Handler '" + handlerKey + "' of checkpointed job " + id + " is not registered.");
+      }
+    }
+    final int depth = (flags & HAS_DEPTH) != 0 ? data.readInt() : 0;
+    final String task = (flags & HAS_TASK) != 0 ? readString(data) : null;
+
+    final Job job = new Job(builder.build(), handler, new CheckpointJobAttribute(id));
+    if (priority >= 0) {
+      job.setJobAttribute(new PriorityJobAttribute(Priority.values()[priority], Priority.values()[priorityFloor]));
+    }
+    if (hasNotBefore) {
+      job.setJobAttribute(new NotBeforeJobAttribute(notBefore));
+    }
+    if (depth > 0) {
+      job.setJobAttribute(new DepthJobAttribute(depth));
+    }
+    if (task != null) {
+      job.setJobAttribute(new TaskJobAttribute(task));
+    }
+    job.setTryCount(tryCount);
+    return job;
+  }
+
+  /**
+   * Write a framed record to a stream.
+   *
+   * @param out     the stream
+   * @param payload the record
+   * @return the number of bytes written
+   * @throws IOException if an I/O error occurs
+   */
+  private static int writeFrame(final DataOutputStream out, final byte[] payload) throws IOException {
+    final CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+    out.writeInt(payload.length);
+    out.write(payload);
+    out.writeInt((int) crc.getValue());
+    return payload.length + FRAME_SIZE;
+  }
+
+  /**
+   * Read a framed record from a stream.
+   *
+   * @param in the stream
+   * @return the record, or null at the end of the log or at a torn or corrupt record
+   * @throws IOException if an I/O error occurs
+   */
+  private static byte[] readFrame(final DataInputStream in) throws IOException {
+    final int length;
+    try {
+      length = in.readInt();
+    } catch (EOFException e) {
+      return null;
+    }
+    try {
+      if (length < RECORD_HEAD_SIZE || length > MAX_RECORD_SIZE) {
+        LOGGER.warn("Dropping corrupt checkpoint record of length {}.", length);
+        return null;
+      }
+      final byte[] payload = new byte[length];
+      in.readFully(payload);
+      final CRC32 crc = new CRC32();
+      crc.update(payload, 0, payload.length);
+      if (in.readInt() != (int) crc.getValue()) {
+        LOGGER.warn("Dropping checkpoint record with bad checksum.");
+        return null;
+      }
+      return payload;
+    } catch (EOFException e) {
+      LOGGER.warn("Dropping torn checkpoint record at end of log.");
+      return null;
+    }
+  }
+
+  /**
+   * Open a buffered stream to read the log file.
+   *
+   * @param path the log file
+   * @return the stream
+   * @throws IOException if an I/O error occurs
+   */
+  private static DataInputStream openRead(final Path path) throws IOException {
+    return new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+  }
+
+  /**
+   * Read the log, keeping the latest record of each outstanding job.
+   *
+   * @param live the map to put the outstanding records in
+   * @throws IOException if an I/O error occurs
+   */
+  private void replay(final Map<Long, byte[]> live) throws IOException {
+    try (DataInputStream in = openRead(file)) {
+      byte[] payload;
+      while ((payload = readFrame(in)) != null) {
+        final long id = ByteBuffer.wrap(payload, 1, 8).getLong();
+        maxId = Math.max(maxId, id);
+        if (payload[0] == ADD) {
+          live.remove(id);
+          live.put(id, payload);
+        } else {
+          live.remove(id);
+        }
+      }
+    }
+  }
+
+  /**
+   * Write a new log file containing only the given records, and open it
+   * for appending.
+   *
+   * @param live the records of outstanding jobs, by id
+   * @throws IOException if an I/O error occurs
+   */
+  private void rewrite(final Map<Long, byte[]> live) throws IOException {
+    final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    final Map<Long, Long> offsets = new HashMap<>();
+    long size = 0;
+    try (FileChannel tmpChannel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      final DataOutputStream tmpOut = new DataOutputStream(
+          new BufferedOutputStream(Channels.newOutputStream(tmpChannel), 1 << 16));
+      for (final Map.Entry<Long, byte[]> entry : live.entrySet()) {
+        offsets.put(entry.getKey(), size);
+        size += writeFrame(tmpOut, entry.getValue());
+      }
+      tmpOut.flush();
+      tmpChannel.force(true);
+    }
+    replace(tmp, offsets, size);
+  }
+
+  /**
+   * Rewrite the log file keeping only the latest record of each
+   * outstanding job, reading the records from the current log file.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  private void compact() throws IOException {
+    out.flush();
+    final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    final Map<Long, Long> offsets = new HashMap<>();
+    long size = 0;
+    try (DataInputStream in = openRead(file);
+         FileChannel tmpChannel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+             StandardOpenOption.TRUNCATE_EXISTING)) {
+      final DataOutputStream tmpOut = new DataOutputStream(
+          new BufferedOutputStream(Channels.newOutputStream(tmpChannel), 1 << 16));
+      long offset = 0;
+      byte[] payload;
+      while (offset < position && (payload = readFrame(in)) != null) {
+        final long id = ByteBuffer.wrap(payload, 1, 8).getLong();
+        final Long liveOffset = liveOffsets.get(id);
+        if (payload[0] == ADD && liveOffset != null && liveOffset == offset) {
+          offsets.put(id, size);
+          size += writeFrame(tmpOut, payload);
+        }
+        offset += payload.length + FRAME_SIZE;
+      }
+      tmpOut.flush();
+      tmpChannel.force(true);
+    }
+    LOGGER.debug("Compacted checkpoint {} from {} to {} records.", file, recordCount, offsets.size());
+    replace(tmp, offsets, size);
+  }
+
+  /**
+   * Rename a rewritten log file over the log file and open it for
+   * appending.
+   *
+   * @param tmp     the rewritten log file
+   * @param offsets the offset of the record of each outstanding job
+   * @param size    the size of the rewritten log file
+   * @throws IOException if an I/O error occurs
+   */
+  private void replace(final Path tmp, final Map<Long, Long> offsets, final long size) throws IOException {
+    if (channel != null) {
+      channel.close();
+    }
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+    liveOffsets.clear();
+    liveOffsets.putAll(offsets);
+    position = size;
+    recordCount = offsets.size();
+  }
+
+  /**
+   * Append a record to the log file.
+   *
+   * @param entry the record
+   * @throws IOException if an I/O error occurs
+   */
+  private void append(final Entry entry) throws IOException {
+    if (entry.payload[0] == ADD) {
+      liveOffsets.put(entry.id, position);
+    } else if (liveOffsets.remove(entry.id) == null) {
+      return;
+    }
+    position += writeFrame(out, entry.payload);
+    recordCount++;
+  }
+
+  /**
+   * Write records until closed, then compact and sync the log.
+   */
+  private void write() {
+    final List<Entry> batch = new ArrayList<>();
+    try {
+      while (!closed || !entries.isEmpty()) {
+        final Entry first = entries.poll(syncIntervalNanos, TimeUnit.NANOSECONDS);
+        if (first != null) {
+          batch.add(first);
+          entries.drainTo(batch, BATCH_SIZE - 1);
+          for (final Entry entry : batch) {
+            append(entry);
+          }
+          batch.clear();
+          out.flush();
+        }
+        if (System.nanoTime() - lastSync >= syncIntervalNanos) {
+          channel.force(false);
+          lastSync = System.nanoTime();
+        }
+        if (recordCount >= compactionThreshold && recordCount > 2L * liveOffsets.size()) {
+          compact();
+        }
+      }
+      if (recordCount > liveOffsets.size()) {
+        compact();
+      }
+      out.flush();
+      channel.force(false);
+    } catch (IOException e) {
+      failed = true;
+      entries.clear();
+      LOGGER.error("Unable to write checkpoint {}, checkpointing stopped.", file, e);
+    } catch (InterruptedException e) {
+      LOGGER.warn("Checkpoint writer interrupted.");
+      Thread.currentThread().interrupt();
+    } finally {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        LOGGER.warn("Unable to close checkpoint {}.", file, e);
+      }
+    }
+  }
+
+  /**
+   * Get the outstanding jobs recovered from the log.
+   *
+   * @return the recovered jobs
+   */
+  List<Job> getRecovered() {
+    return recovered;
+  }
+
+  /**
+   * Get the key a handler is registered with.
+   *
+   * @param handler the handler or null
+   * @return the key, or null if the handler is not registered
+   */
+  String getHandlerKey(final Handler handler) {
+    return handler == null ? null : handlerKeys.get(handler);
+  }
+
+  /**
+   * Get the largest job id found in the log.
+   *
+   * @return the largest job id or 0
+   */
+  long getMaxId() {
+    return maxId;
+  }
+
+  /**
+   * Record that a job is added or re-queued, with its current state.
+   *
+   * @param id  the id of the job
+   * @param job the job
+   */
+  void add(final long id, final Job job) {
+    if (!failed) {
+      entries.add(new Entry(id, encode(id, job)));
+    }
+  }
+
+  /**
+   * Record that a job is completed.
+   *
+   * @param id the id of the job
+   */
+  void done(final long id) {
+    if (!failed) {
+      entries.add(new Entry(id, ByteBuffer.allocate(RECORD_HEAD_SIZE).put(DONE).putLong(id).array()));
+    }
+  }
+
+  /**
+   * Write all pending records, compact and close the log.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      LOGGER.warn("Interrupted while closing checkpoint {}.", file);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * A record waiting to be written.
+   */
+  private static final class Entry {
+
+    /**
+     * The id of the job.
+     */
+    private final long id;
+
+    /**
+     * The record.
+     */
+    private final byte[] payload;
+
+    /**
+     * Constructs an instance of entry.
+     *
+     * @param id      the id of the job
+     * @param payload the record
+     */
+    private Entry(final long id, final byte[] payload) {
+      this.id = id;
+      this.payload = payload;
+    }
+
+  }
+
+}
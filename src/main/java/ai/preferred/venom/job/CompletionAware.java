@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * This interface represents a job queue that is told when a job polled
+ * from it has been processed, such as to release resources held for the
+ * job or to record its completion.
+ * <p>
+ * A job is either completed, when it has an outcome, or abandoned, when
+ * processing stopped without one, such as when the crawler is closed
+ * while the job is in flight. Queues decorating another queue should
+ * pass both on to it.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public interface CompletionAware {
+
+  /**
+   * Report a job polled from this queue as completed, it will not be
+   * added to this queue again.
+   *
+   * @param job the job
+   */
+  void complete(@NotNull Job job);
+
+  /**
+   * Report a job polled from this queue as abandoned, releasing what is
+   * held for it without recording an outcome, so it may be processed
+   * again on resume.
+   *
+   * @param job the job
+   */
+  void abandon(@NotNull Job job);
+
+}
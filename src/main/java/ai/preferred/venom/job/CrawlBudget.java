@@ -0,0 +1,358 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import ai.preferred.venom.request.Request;
+import ai.preferred.venom.utils.UrlUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * This class provides limits on the depth of jobs and on the number of
+ * pages and bytes fetched per site, enforced when jobs are added to a
+ * {@link Scheduler}, to protect a crawl from traps such as calendars and
+ * faceted search that generate unbounded links.
+ * <p>
+ * Pages are counted when a job is admitted, bytes are counted when a
+ * response is received. A site is a host by default, and can be any key
+ * derived from the request, such as a route. Counters are updated
+ * without locks.
+ * </p>
+ * <p>
+ * Counters are kept in memory only, so budgets apply per process. A
+ * crawl resumed from a checkpoint starts its counters from zero and
+ * jobs restored from the checkpoint are not counted, so a site may be
+ * admitted up to its full budget again after every restart.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public final class CrawlBudget {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(CrawlBudget.class);
+
+  /**
+   * The maximum depth of a job.
+   */
+  private final int maxDepth;
+
+  /**
+   * The maximum number of pages per site.
+   */
+  private final long maxPages;
+
+  /**
+   * The maximum number of bytes per site.
+   */
+  private final long maxBytes;
+
+  /**
+   * The function deriving the site of a request.
+   */
+  private final Function<Request, String> keyFunction;
+
+  /**
+   * The counters of each site.
+   */
+  private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+  /**
+   * The number of jobs dropped for exceeding the maximum depth.
+   */
+  private final LongAdder droppedByDepth = new LongAdder();
+
+  /**
+   * The number of jobs dropped for exceeding the page budget.
+   */
+  private final LongAdder droppedByPages = new LongAdder();
+
+  /**
+   * The number of jobs dropped for exceeding the byte budget.
+   */
+  private final LongAdder droppedByBytes = new LongAdder();
+
+  /**
+   * Constructs an instance of crawl budget.
+   *
+   * @param builder an instance of builder
+   */
+  private CrawlBudget(final Builder builder) {
+    this.maxDepth = builder.maxDepth;
+    this.maxPages = builder.maxPages;
+    this.maxBytes = builder.maxBytes;
+    this.keyFunction = builder.keyFunction;
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @return A new instance of builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Get the counter of the site of a request.
+   *
+   * @param request the request
+   * @return the counter
+   */
+  private Counter counter(final Request request) {
+    final String key = keyFunction.apply(request);
+    final Counter counter = counters.get(key);
+    if (counter != null) {
+      return counter;
+    }
+    return counters.computeIfAbsent(key, k -> new Counter());
+  }
+
+  /**
+   * Admit a job if it is within the depth limit and the budget of its
+   * site, counting it as a page of its site.
+   *
+   * @param request the request of the job
+   * @param depth   the depth of the job
+   * @return true if the job is admitted
+   */
+  boolean tryAdmit(final Request request, final int depth) {
+    if (depth > maxDepth) {
+      droppedByDepth.increment();
+      LOGGER.debug("Dropping {} at depth {}.", request.getUrl(), depth);
+      return false;
+    }
+    if (maxPages == Long.MAX_VALUE && maxBytes == Long.MAX_VALUE) {
+      return true;
+    }
+    final Counter counter = counter(request);
+    if (counter.bytes.get() >= maxBytes) {
+      droppedByBytes.increment();
+      LOGGER.debug("Dropping {}, byte budget exceeded.", request.getUrl());
+      return false;
+    }
+    long pages;
+    do {
+      pages = counter.pages.get();
+      if (pages >= maxPages) {
+        droppedByPages.increment();
+        LOGGER.debug("Dropping {}, page budget exceeded.", request.getUrl());
+        return false;
+      }
+    } while (!counter.pages.compareAndSet(pages, pages + 1));
+    return true;
+  }
+
+  /**
+   * Count the bytes of a response towards the budget of the site of its
+   * request.
+   *
+   * @param request the request
+   * @param bytes   the number of bytes received
+   */
+  public void addBytes(final @NotNull Request request, final long bytes) {
+    if (maxBytes != Long.MAX_VALUE || maxPages != Long.MAX_VALUE) {
+      counter(request).bytes.addAndGet(bytes);
+    }
+  }
+
+  /**
+   * Get the number of pages admitted for a site.
+   *
+   * @param key the site
+   * @return the number of pages
+   */
+  public long getPages(final @NotNull String key) {
+    final Counter counter = counters.get(key);
+    return counter == null ? 0 : counter.pages.get();
+  }
+
+  /**
+   * Get the number of bytes received for a site.
+   *
+   * @param key the site
+   * @return the number of bytes
+   */
+  public long getBytes(final @NotNull String key) {
+    final Counter counter = counters.get(key);
+    return counter == null ? 0 : counter.bytes.get();
+  }
+
+  /**
+   * Get the number of jobs dropped for exceeding the maximum depth.
+   *
+   * @return the number of jobs
+   */
+  public long getDroppedByDepth() {
+    return droppedByDepth.sum();
+  }
+
+  /**
+   * Get the number of jobs dropped for exceeding the page budget of
+   * their site.
+   *
+   * @return the number of jobs
+   */
+  public long getDroppedByPages() {
+    return droppedByPages.sum();
+  }
+
+  /**
+   * Get the number of jobs dropped for exceeding the byte budget of
+   * their site.
+   *
+   * @return the number of jobs
+   */
+  public long getDroppedByBytes() {
+    return droppedByBytes.sum();
+  }
+
+  /**
+   * The counters of a site.
+   */
+  private static final class Counter {
+
+    /**
+     * The number of pages admitted.
+     */
+    private final AtomicLong pages = new AtomicLong();
+
+    /**
+     * The number of bytes received.
+     */
+    private final AtomicLong bytes = new AtomicLong();
+
+  }
+
+  /**
+   * A builder for crawl budget class.
+   */
+  public static final class Builder {
+
+    /**
+     * The maximum depth of a job.
+     */
+    private int maxDepth;
+
+    /**
+     * The maximum number of pages per site.
+     */
+    private long maxPages;
+
+    /**
+     * The maximum number of bytes per site.
+     */
+    private long maxBytes;
+
+    /**
+     * The function deriving the site of a request.
+     */
+    private Function<Request, String> keyFunction;
+
+    /**
+     * Constructs an instance of builder with default values.
+     */
+    private Builder() {
+      maxDepth = Integer.MAX_VALUE;
+      maxPages = Long.MAX_VALUE;
+      maxBytes = Long.MAX_VALUE;
+      keyFunction = UrlUtil::getHost;
+    }
+
+    /**
+     * Sets the maximum depth of a job, seeds are at depth 0. Defaults to
+     * unlimited.
+     *
+     * @param maxDepth the maximum depth
+     * @return this
+     */
+    public Builder setMaxDepth(final int maxDepth) {
+      if (maxDepth < 0) {
+        throw new IllegalStateException("Attribute 'maxDepth' must be more or equal to 0.");
+      }
+      this.maxDepth = maxDepth;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of pages admitted per site by this
+     * process. Pages admitted before a crawl is resumed from a
+     * checkpoint are not counted. Defaults to unlimited.
+     *
+     * @param maxPages the maximum number of pages
+     * @return this
+     */
+    public Builder setMaxPages(final long maxPages) {
+      if (maxPages < 0) {
+        throw new IllegalStateException("Attribute 'maxPages' must be more or equal to 0.");
+      }
+      this.maxPages = maxPages;
+      return this;
+    }
+
+    /**
+     * Sets the number of bytes received per site by this process after
+     * which no more pages are admitted. Bytes received before a crawl is
+     * resumed from a checkpoint are not counted. Defaults to unlimited.
+     *
+     * @param maxBytes the maximum number of bytes
+     * @return this
+     */
+    public Builder setMaxBytes(final long maxBytes) {
+      if (maxBytes < 0) {
+        throw new IllegalStateException("Attribute 'maxBytes' must be more or equal to 0.");
+      }
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    /**
+     * Sets the function deriving the site of a request that budgets are
+     * kept for. Defaults to {@link UrlUtil#getHost(Request)}.
+     *
+     * @param keyFunction the function deriving the site
+     * @return this
+     */
+    public Builder setKeyFunction(final @NotNull Function<Request, String> keyFunction) {
+      if (keyFunction == null) {
+        throw new IllegalStateException("Attribute 'keyFunction' cannot be null.");
+      }
+      this.keyFunction = keyFunction;
+      return this;
+    }
+
+    /**
+     * Builds the crawl budget with the options specified.
+     *
+     * @return an instance of crawl budget
+     */
+    public CrawlBudget build() {
+      return new CrawlBudget(this);
+    }
+
+  }
+
+}
@@ -0,0 +1,538 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import ai.preferred.venom.Interruptible;
+import com.google.common.collect.Iterators;
+
+import javax.annotation.Nonnull;
+import javax.validation.constraints.NotNull;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class provides a job queue that holds jobs with a
+ * {@link NotBeforeJobAttribute} until they are due, then releases them
+ * into another job queue.
+ * <p>
+ * Future jobs are kept in a hierarchical timing wheel of eight levels of
+ * 64 slots each, so that scheduling and releasing a job takes constant
+ * time regardless of the number of jobs scheduled. Jobs are released
+ * within one tick after they are due, and are released whenever this
+ * queue is polled, without a background thread.
+ * </p>
+ * <p>
+ * This queue is only empty when no jobs are scheduled, so that a crawler
+ * keeps running until its scheduled jobs are done.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+@SuppressWarnings("NullableProblems")
+public final class DelayedJobQueue extends AbstractQueue<Job>
+    implements BlockingQueue<Job>, CompletionAware, Interruptible, AutoCloseable {
+
+  /**
+   * The number of bits of a tick indexing the slots of a level.
+   */
+  private static final int SLOT_BITS = 6;
+
+  /**
+   * The number of slots in a level.
+   */
+  private static final int SLOTS = 1 << SLOT_BITS;
+
+  /**
+   * The mask for the slot index of a level.
+   */
+  private static final long SLOT_MASK = SLOTS - 1;
+
+  /**
+   * The number of levels in the wheel.
+   */
+  private static final int LEVELS = 8;
+
+  /**
+   * The furthest number of ticks ahead a job can be scheduled, jobs
+   * further ahead are scheduled this far ahead and rescheduled.
+   */
+  private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+  /**
+   * The queue holding jobs that are due.
+   */
+  private final BlockingQueue<Job> queue;
+
+  /**
+   * The length of a tick in milliseconds.
+   */
+  private final long tickMillis;
+
+  /**
+   * The time of tick zero in milliseconds since the epoch.
+   */
+  private final long origin;
+
+  /**
+   * An object to synchronise upon, guarding the wheel.
+   */
+  private final Object lock = new Object();
+
+  /**
+   * The slots of each level, allocated as needed.
+   */
+  @SuppressWarnings("unchecked")
+  private final List<Job>[][] wheel = new List[LEVELS][];
+
+  /**
+   * The occupied slots of each level, one bit per slot.
+   */
+  private final long[] occupied = new long[LEVELS];
+
+  /**
+   * The tick the wheel has advanced to.
+   */
+  private long currentTick;
+
+  /**
+   * The number of jobs in the wheel.
+   */
+  private volatile int scheduled;
+
+  /**
+   * Constructs an instance of delayed job queue.
+   *
+   * @param builder an instance of builder
+   */
+  private DelayedJobQueue(final Builder builder) {
+    this.queue = builder.queue;
+    this.tickMillis = builder.tickMillis;
+    this.origin = System.currentTimeMillis();
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @return A new instance of builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Get the tick at which a job is due.
+   *
+   * @param job the job
+   * @return the tick or {@link Long#MIN_VALUE} if the job has no time
+   */
+  private long dueTick(final Job job) {
+    final NotBeforeJobAttribute attribute = job.getJobAttribute(NotBeforeJobAttribute.class);
+    if (attribute == null || attribute.getNotBefore() <= origin) {
+      return Long.MIN_VALUE;
+    }
+    final long millis = attribute.getNotBefore() - origin;
+    return millis / tickMillis + (millis % tickMillis == 0 ? 0 : 1);
+  }
+
+  /**
+   * Get the current tick.
+   *
+   * @return the tick
+   */
+  private long nowTick() {
+    return Math.floorDiv(System.currentTimeMillis() - origin, tickMillis);
+  }
+
+  /**
+   * Put a job in the wheel or the due list, must be called with lock.
+   *
+   * @param job the job
+   * @param due the list of due jobs
+   */
+  @SuppressWarnings("unchecked")
+  private void schedule(final Job job, final List<Job> due) {
+    long dueTick = dueTick(job);
+    if (dueTick <= currentTick) {
+      due.add(job);
+      return;
+    }
+    final long delta = Math.min(dueTick - currentTick, MAX_DELTA);
+    dueTick = currentTick + delta;
+    final int level = (63 - Long.numberOfLeadingZeros(delta)) / SLOT_BITS;
+    final int slot = (int) ((dueTick >>> (level * SLOT_BITS)) & SLOT_MASK);
+    if (wheel[level] == null) {
+      wheel[level] = new List[SLOTS];
+    }
+    final List<Job>[] slots = wheel[level];
+    if (slots[slot] == null) {
+      slots[slot] = new ArrayList<>();
+    }
+    slots[slot].add(job);
+    occupied[level] |= 1L << slot;
+    scheduled++;
+  }
+
+  /**
+   * Remove the jobs in a slot, must be called with lock.
+   *
+   * @param level the level
+   * @param slot  the slot
+   * @return the jobs
+   */
+  private List<Job> detach(final int level, final int slot) {
+    if ((occupied[level] & (1L << slot)) == 0) {
+      return Collections.emptyList();
+    }
+    final List<Job> jobs = wheel[level][slot];
+    wheel[level][slot] = null;
+    occupied[level] &= ~(1L << slot);
+    scheduled -= jobs.size();
+    return jobs;
+  }
+
+  /**
+   * Move the jobs of the current slot of a level, and of higher levels
+   * if this level has wrapped around, to lower levels, must be called
+   * with lock.
+   *
+   * @param level the level
+   * @param due   the list of due jobs
+   */
+  private void cascade(final int level, final List<Job> due) {
+    final int slot = (int) ((currentTick >>> (level * SLOT_BITS)) & SLOT_MASK);
+    for (final Job job : detach(level, slot)) {
+      schedule(job, due);
+    }
+    if (slot == 0 && level + 1 < LEVELS) {
+      cascade(level + 1, due);
+    }
+  }
+
+  /**
+   * Advance the wheel to a tick, skipping empty slots, must be called
+   * with lock.
+   *
+   * @param toTick the tick to advance to
+   * @param due    the list of due jobs
+   */
+  private void advance(final long toTick, final List<Job> due) {
+    while (currentTick < toTick) {
+      if (scheduled == 0) {
+        currentTick = toTick;
+        return;
+      }
+      final int index = (int) (currentTick & SLOT_MASK);
+      final long later = index == SLOTS - 1 ? 0 : occupied[0] & (-1L << (index + 1));
+      final long next = later == 0
+          ? (currentTick | SLOT_MASK) + 1
+          : (currentTick & ~SLOT_MASK) + Long.numberOfTrailingZeros(later);
+      if (next > toTick) {
+        currentTick = toTick;
+        return;
+      }
+      currentTick = next;
+      if ((currentTick & SLOT_MASK) == 0) {
+        cascade(1, due);
+      }
+      due.addAll(detach(0, (int) (currentTick & SLOT_MASK)));
+    }
+  }
+
+  /**
+   * Release jobs that are due into the queue.
+   */
+  private void release() {
+    if (scheduled == 0) {
+      return;
+    }
+    final List<Job> due = new ArrayList<>();
+    synchronized (lock) {
+      advance(nowTick(), due);
+    }
+    if (!due.isEmpty()) {
+      queue.addAll(due);
+    }
+  }
+
+  /**
+   * Schedule jobs that are not due, and return the rest.
+   *
+   * @param jobs the jobs
+   * @return the jobs that are due
+   */
+  private List<Job> scheduleAll(final Collection<? extends Job> jobs) {
+    final List<Job> due = new ArrayList<>(jobs.size());
+    synchronized (lock) {
+      advance(nowTick(), due);
+      for (final Job job : jobs) {
+        schedule(job, due);
+      }
+    }
+    return due;
+  }
+
+  /**
+   * Get the number of jobs waiting for their time.
+   *
+   * @return the number of scheduled jobs
+   */
+  public int getScheduledCount() {
+    return scheduled;
+  }
+
+  @Override
+  public boolean offer(final @Nonnull Job job) {
+    final List<Job> due = scheduleAll(Collections.singletonList(job));
+    return due.isEmpty() || queue.addAll(due);
+  }
+
+  @Override
+  public void put(final @Nonnull Job job) {
+    offer(job);
+  }
+
+  @Override
+  public boolean offer(final Job job, final long timeout, final @Nonnull TimeUnit unit) {
+    return offer(job);
+  }
+
+  @Override
+  public boolean addAll(final @Nonnull Collection<? extends Job> jobs) {
+    final List<Job> due = scheduleAll(jobs);
+    return due.isEmpty() ? !jobs.isEmpty() : queue.addAll(due);
+  }
+
+  @Override
+  public Job poll() {
+    release();
+    return queue.poll();
+  }
+
+  @Override
+  public Job poll(final long timeout, final @Nonnull TimeUnit unit) throws InterruptedException {
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    final long tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+    while (true) {
+      release();
+      final long remaining = deadline - System.nanoTime();
+      final long wait = scheduled == 0 ? remaining : Math.min(remaining, tickNanos);
+      final Job job = queue.poll(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+      if (job != null || wait >= remaining) {
+        return job;
+      }
+    }
+  }
+
+  @Nonnull
+  @Override
+  public Job take() throws InterruptedException {
+    Job job;
+    while ((job = poll(tickMillis, TimeUnit.MILLISECONDS)) == null) {
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedException();
+      }
+    }
+    return job;
+  }
+
+  @Override
+  public Job peek() {
+    release();
+    return queue.peek();
+  }
+
+  /**
+   * Returns true if no jobs are due or scheduled.
+   *
+   * @return true if no more jobs
+   */
+  @Override
+  public boolean isEmpty() {
+    return scheduled == 0 && queue.isEmpty();
+  }
+
+  /**
+   * Returns the number of jobs due and scheduled.
+   *
+   * @return the number of jobs
+   */
+  @Override
+  public int size() {
+    return queue.size() + scheduled;
+  }
+
+  /**
+   * Returns an iterator over the jobs that are due, followed by a
+   * snapshot of the jobs that are scheduled.
+   *
+   * @return an iterator
+   */
+  @Nonnull
+  @Override
+  public Iterator<Job> iterator() {
+    final List<Job> snapshot = new ArrayList<>(scheduled);
+    synchronized (lock) {
+      for (final List<Job>[] slots : wheel) {
+        if (slots != null) {
+          for (final List<Job> jobs : slots) {
+            if (jobs != null) {
+              snapshot.addAll(jobs);
+            }
+          }
+        }
+      }
+    }
+    return Iterators.concat(queue.iterator(), Collections.unmodifiableList(snapshot).iterator());
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return queue.remainingCapacity();
+  }
+
+  @Override
+  public int drainTo(final @Nonnull Collection<? super Job> c) {
+    release();
+    return queue.drainTo(c);
+  }
+
+  @Override
+  public int drainTo(final @Nonnull Collection<? super Job> c, final int maxElements) {
+    release();
+    return queue.drainTo(c, maxElements);
+  }
+
+  /**
+   * Passes the completion on to the underlying queue if it is
+   * completion aware.
+   *
+   * @param job the job
+   */
+  @Override
+  public void complete(final @NotNull Job job) {
+    if (queue instanceof CompletionAware) {
+      ((CompletionAware) queue).complete(job);
+    }
+  }
+
+  /**
+   * Passes the abandonment on to the underlying queue if it is
+   * completion aware.
+   *
+   * @param job the job
+   */
+  @Override
+  public void abandon(final @NotNull Job job) {
+    if (queue instanceof CompletionAware) {
+      ((CompletionAware) queue).abandon(job);
+    }
+  }
+
+  @Override
+  public void interrupt() {
+    if (queue instanceof Interruptible) {
+      ((Interruptible) queue).interrupt();
+    }
+  }
+
+  /**
+   * Closes the underlying queue if it is closeable, scheduled jobs are
+   * discarded.
+   *
+   * @throws Exception if the underlying queue cannot be closed
+   */
+  @Override
+  public void close() throws Exception {
+    if (queue instanceof AutoCloseable) {
+      ((AutoCloseable) queue).close();
+    }
+  }
+
+  /**
+   * A builder for delayed job queue class.
+   */
+  public static final class Builder {
+
+    /**
+     * The queue holding jobs that are due.
+     */
+    private BlockingQueue<Job> queue;
+
+    /**
+     * The length of a tick in milliseconds.
+     */
+    private long tickMillis;
+
+    /**
+     * Constructs an instance of builder with default values.
+     */
+    private Builder() {
+      queue = null;
+      tickMillis = 100;
+    }
+
+    /**
+     * Sets the queue to release due jobs into. Defaults to a new
+     * {@link PriorityJobQueue}.
+     *
+     * @param queue the queue holding jobs that are due
+     * @return this
+     */
+    public Builder setQueue(final @NotNull BlockingQueue<Job> queue) {
+      if (queue == null) {
+        throw new IllegalStateException("Attribute 'queue' cannot be null.");
+      }
+      this.queue = queue;
+      return this;
+    }
+
+    /**
+     * Sets the length of a tick in milliseconds, jobs are released
+     * within one tick after they are due. Defaults to 100.
+     *
+     * @param tickMillis the length of a tick
+     * @return this
+     */
+    public Builder setTickMillis(final long tickMillis) {
+      if (tickMillis < 1) {
+        throw new IllegalStateException("Attribute 'tickMillis' must be more or equal to 1.");
+      }
+      this.tickMillis = tickMillis;
+      return this;
+    }
+
+    /**
+     * Builds the job queue with the options specified.
+     *
+     * @return an instance of delayed job queue
+     */
+    public DelayedJobQueue build() {
+      if (queue == null) {
+        queue = new PriorityJobQueue();
+      }
+      return new DelayedJobQueue(this);
+    }
+
+  }
+
+}
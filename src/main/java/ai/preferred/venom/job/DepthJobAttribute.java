@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+/**
+ * This class provides the depth of a job, the number of links followed
+ * from a seed to reach it.
+ * <p>
+ * Jobs added from a handler through the scheduler passed to it are one
+ * level deeper than the job being handled. Jobs without this attribute
+ * are seeds, at depth 0.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public final class DepthJobAttribute implements JobAttribute {
+
+  /**
+   * The depth of the job.
+   */
+  private final int depth;
+
+  /**
+   * Constructs an instance of depth job attribute.
+   *
+   * @param depth the depth of the job
+   */
+  public DepthJobAttribute(final int depth) {
+    this.depth = depth;
+  }
+
+  /**
+   * Get the depth of a job.
+   *
+   * @param job the job
+   * @return the depth, or 0 if the job has no depth attribute
+   */
+  public static int getDepth(final Job job) {
+    final DepthJobAttribute attribute = job.getJobAttribute(DepthJobAttribute.class);
+    return attribute == null ? 0 : attribute.depth;
+  }
+
+  /**
+   * Get the depth of the job.
+   *
+   * @return the depth
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  @Override
+  public void prepareRetry() {
+    // The depth is kept across retries.
+  }
+
+}
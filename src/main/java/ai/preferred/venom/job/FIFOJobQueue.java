@@ -17,7 +17,8 @@
 package ai.preferred.venom.job;
 
 import javax.annotation.Nonnull;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayDeque;
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -35,7 +36,7 @@ public class FIFOJobQueue extends AbstractJobQueue {
    * Constructs an instance of FIFOJobQueue.
    */
   public FIFOJobQueue() {
-    super(new LinkedBlockingQueue<>());
+    super(new BatchBlockingQueue<>(new ArrayDeque<>()));
   }
 
   @Override
@@ -54,6 +55,17 @@ public class FIFOJobQueue extends AbstractJobQueue {
     return getQueue().offer(job);
   }
 
+  /**
+   * Inserts all jobs into this queue with a single lock acquisition.
+   *
+   * @param jobs the jobs to insert
+   * @return true if this queue changed
+   */
+  @Override
+  public final boolean addAll(final @Nonnull Collection<? extends Job> jobs) {
+    return getQueue().addAll(jobs);
+  }
+
   @Override
   public final Job poll(final long timeout, final @Nonnull TimeUnit unit) throws InterruptedException {
     return getQueue().poll(timeout, unit);
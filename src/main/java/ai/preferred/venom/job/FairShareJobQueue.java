@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import javax.annotation.Nonnull;
+import javax.validation.constraints.NotNull;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class provides an implementation of scheduler that shares the
+ * crawler between crawl tasks by weight.
+ * <p>
+ * Jobs are grouped by the task in their {@link TaskJobAttribute}, jobs
+ * without one belong to {@link TaskJobAttribute#DEFAULT_TASK}. Tasks
+ * are polled by weighted round robin, so that a task with many jobs
+ * cannot hold back a task with few, and within a task jobs with higher
+ * priority are processed first. A task can be capped on the number of
+ * its jobs in flight, a job is in flight from when it is polled until
+ * it is completed or re-queued for a retry.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public class FairShareJobQueue extends AbstractPriorityJobQueue implements CompletionAware {
+
+  /**
+   * The queue ordering the jobs.
+   */
+  private final FairShareQueue fairShareQueue;
+
+  /**
+   * Constructs an instance of fair share job queue.
+   */
+  public FairShareJobQueue() {
+    this(new FairShareQueue());
+  }
+
+  /**
+   * Constructs an instance of fair share job queue.
+   *
+   * @param fairShareQueue the queue ordering the jobs
+   */
+  private FairShareJobQueue(final FairShareQueue fairShareQueue) {
+    super(fairShareQueue);
+    this.fairShareQueue = fairShareQueue;
+  }
+
+  /**
+   * Sets the weight and the cap on jobs in flight of a task. Tasks have
+   * a weight of 1 and no cap unless set.
+   *
+   * @param task        the name of the task
+   * @param weight      the number of jobs polled from the task in each round
+   * @param maxInFlight the maximum number of jobs of the task in flight
+   * @return this
+   */
+  public final FairShareJobQueue setTask(final @NotNull String task, final int weight, final int maxInFlight) {
+    if (task == null) {
+      throw new IllegalArgumentException("Task cannot be null.");
+    }
+    if (weight < 1) {
+      throw new IllegalArgumentException("Weight must be more or equal to 1.");
+    }
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("Max in flight must be more or equal to 1.");
+    }
+    fairShareQueue.setTask(task, weight, maxInFlight);
+    return this;
+  }
+
+  /**
+   * Get the names of the tasks seen by this queue.
+   *
+   * @return the names of the tasks
+   */
+  public final Set<String> getTasks() {
+    return fairShareQueue.getTasks();
+  }
+
+  /**
+   * Get the statistics of a task.
+   *
+   * @param task the name of the task
+   * @return the statistics, or null if the task is unknown
+   */
+  public final TaskStatistics getTaskStatistics(final @NotNull String task) {
+    return fairShareQueue.getStatistics(task);
+  }
+
+  /**
+   * Report a job as completed, releasing its slot in flight.
+   *
+   * @param job the job
+   */
+  @Override
+  public final void complete(final @NotNull Job job) {
+    fairShareQueue.complete(job);
+  }
+
+  /**
+   * Report a job as abandoned, releasing its slot in flight without
+   * counting it as completed.
+   *
+   * @param job the job
+   */
+  @Override
+  public final void abandon(final @NotNull Job job) {
+    fairShareQueue.abandon(job);
+  }
+
+  @Override
+  public final Job poll(final long timeout, final @Nonnull TimeUnit unit) throws InterruptedException {
+    return getQueue().poll(timeout, unit);
+  }
+
+  @Override
+  public final Job poll() {
+    return getQueue().poll();
+  }
+
+}
@@ -0,0 +1,557 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class provides a blocking queue of jobs with a subqueue for each
+ * crawl task, polled by weighted deficit round robin.
+ * <p>
+ * Every job costs one unit, a task with weight w is polled up to w
+ * times in each round. Jobs within a task are ordered by priority. A
+ * task that has as many jobs in flight as its cap is skipped until one
+ * of its jobs is completed or re-queued.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+@SuppressWarnings("NullableProblems")
+final class FairShareQueue extends AbstractQueue<Job> implements BlockingQueue<Job> {
+
+  /**
+   * The lock guarding the queue.
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * Condition for waiting polls, signalled when a job is added or a
+   * job in flight is released.
+   */
+  private final Condition available = lock.newCondition();
+
+  /**
+   * The tasks by name, only accessed under lock.
+   */
+  private final Map<String, Task> tasks = new HashMap<>();
+
+  /**
+   * The tasks with queued jobs in round robin order, only accessed
+   * under lock.
+   */
+  private final ArrayDeque<Task> active = new ArrayDeque<>();
+
+  /**
+   * The number of queued jobs, only accessed under lock.
+   */
+  private int count;
+
+  /**
+   * Sets the weight and cap on jobs in flight of a task.
+   *
+   * @param name        the name of the task
+   * @param weight      the number of jobs polled from the task in each round
+   * @param maxInFlight the maximum number of jobs of the task in flight
+   */
+  void setTask(final String name, final int weight, final int maxInFlight) {
+    lock.lock();
+    try {
+      final Task task = task(name);
+      task.weight = weight;
+      task.maxInFlight = maxInFlight;
+      task.deficit = Math.min(task.deficit, weight);
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get the statistics of a task.
+   *
+   * @param name the name of the task
+   * @return the statistics, or null if the task is unknown
+   */
+  TaskStatistics getStatistics(final String name) {
+    lock.lock();
+    try {
+      final Task task = tasks.get(name);
+      if (task == null) {
+        return null;
+      }
+      final long elapsed = task.dispatched == 0 ? 0 : System.nanoTime() - task.firstDispatch;
+      return new TaskStatistics(task.jobs.size(), task.inFlight, task.dispatched, task.completed, elapsed);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get the names of the tasks seen by this queue.
+   *
+   * @return the names of the tasks, sorted
+   */
+  Set<String> getTasks() {
+    lock.lock();
+    try {
+      return new TreeSet<>(tasks.keySet());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Report a job as completed, releasing its slot in flight.
+   *
+   * @param job the job
+   */
+  void complete(final Job job) {
+    final TaskJobAttribute attribute = job.getJobAttribute(TaskJobAttribute.class);
+    if (attribute == null) {
+      return;
+    }
+    lock.lock();
+    try {
+      if (release(attribute)) {
+        tasks.get(attribute.getTask()).completed++;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Report a job as abandoned, releasing its slot in flight without
+   * counting it as completed.
+   *
+   * @param job the job
+   */
+  void abandon(final Job job) {
+    final TaskJobAttribute attribute = job.getJobAttribute(TaskJobAttribute.class);
+    if (attribute == null) {
+      return;
+    }
+    lock.lock();
+    try {
+      release(attribute);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get the task of a name, creating it if absent, must be called under
+   * lock.
+   *
+   * @param name the name of the task
+   * @return the task
+   */
+  private Task task(final String name) {
+    return tasks.computeIfAbsent(name, key -> new Task());
+  }
+
+  /**
+   * Release the slot in flight held by a job, must be called under lock.
+   *
+   * @param attribute the task attribute of the job
+   * @return true if the job was in flight
+   */
+  private boolean release(final TaskJobAttribute attribute) {
+    if (!attribute.isInFlight()) {
+      return false;
+    }
+    attribute.setInFlight(false);
+    final Task task = task(attribute.getTask());
+    if (task.inFlight-- == task.maxInFlight) {
+      available.signal();
+    }
+    return true;
+  }
+
+  /**
+   * Insert a job, must be called under lock.
+   *
+   * @param job the job
+   */
+  private void insert(final Job job) {
+    TaskJobAttribute attribute = job.getJobAttribute(TaskJobAttribute.class);
+    if (attribute == null) {
+      attribute = new TaskJobAttribute(TaskJobAttribute.DEFAULT_TASK);
+      job.setJobAttribute(attribute);
+    } else {
+      release(attribute);
+    }
+    final Task task = task(attribute.getTask());
+    if (task.jobs.isEmpty()) {
+      active.addLast(task);
+    }
+    task.jobs.add(job);
+    count++;
+  }
+
+  /**
+   * Poll a job from the next task that is under its cap, must be called
+   * under lock.
+   *
+   * @return a job, or null if no task under its cap has queued jobs
+   */
+  private Job dequeue() {
+    int skipped = 0;
+    while (skipped < active.size()) {
+      final Task task = active.peekFirst();
+      if (task.inFlight >= task.maxInFlight) {
+        active.addLast(active.pollFirst());
+        skipped++;
+        continue;
+      }
+      if (task.deficit <= 0) {
+        task.deficit = task.weight;
+      }
+      final Job job = task.jobs.poll();
+      task.deficit--;
+      if (task.jobs.isEmpty()) {
+        active.pollFirst();
+        task.deficit = 0;
+      } else if (task.deficit <= 0) {
+        active.addLast(active.pollFirst());
+      }
+      count--;
+      task.inFlight++;
+      if (task.dispatched++ == 0) {
+        task.firstDispatch = System.nanoTime();
+      }
+      job.getJobAttribute(TaskJobAttribute.class).setInFlight(true);
+      return job;
+    }
+    return null;
+  }
+
+  @Override
+  public boolean offer(final @Nonnull Job job) {
+    if (job == null) {
+      throw new NullPointerException();
+    }
+    lock.lock();
+    try {
+      insert(job);
+      available.signal();
+    } finally {
+      lock.unlock();
+    }
+    return true;
+  }
+
+  @Override
+  public void put(final @Nonnull Job job) {
+    offer(job);
+  }
+
+  @Override
+  public boolean offer(final Job job, final long timeout, final @Nonnull TimeUnit unit) {
+    return offer(job);
+  }
+
+  @Override
+  public boolean addAll(final @Nonnull Collection<? extends Job> c) {
+    if (c == this) {
+      throw new IllegalArgumentException();
+    }
+    for (final Job job : c) {
+      if (job == null) {
+        throw new NullPointerException();
+      }
+    }
+    if (c.isEmpty()) {
+      return false;
+    }
+    lock.lock();
+    try {
+      for (final Job job : c) {
+        insert(job);
+      }
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    return true;
+  }
+
+  @Override
+  public Job poll() {
+    lock.lock();
+    try {
+      return dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Job poll(final long timeout, final @Nonnull TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      Job job;
+      while ((job = dequeue()) == null) {
+        if (nanos <= 0) {
+          return null;
+        }
+        nanos = available.awaitNanos(nanos);
+      }
+      return job;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Nonnull
+  @Override
+  public Job take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      Job job;
+      while ((job = dequeue()) == null) {
+        available.await();
+      }
+      return job;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the job that would be polled next, without the effect of
+   * polling on the round robin.
+   *
+   * @return a job, or null if no task under its cap has queued jobs
+   */
+  @Override
+  public Job peek() {
+    lock.lock();
+    try {
+      for (final Task task : active) {
+        if (task.inFlight < task.maxInFlight) {
+          return task.jobs.peek();
+        }
+      }
+      return null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.lock();
+    try {
+      return count;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return Integer.MAX_VALUE;
+  }
+
+  @Override
+  public int drainTo(final @Nonnull Collection<? super Job> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(final @Nonnull Collection<? super Job> c, final int maxElements) {
+    if (c == this) {
+      throw new IllegalArgumentException();
+    }
+    lock.lock();
+    try {
+      int n = 0;
+      Job job;
+      while (n < maxElements && (job = dequeue()) != null) {
+        c.add(job);
+        n++;
+      }
+      return n;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean remove(final Object o) {
+    if (!(o instanceof Job)) {
+      return false;
+    }
+    final TaskJobAttribute attribute = ((Job) o).getJobAttribute(TaskJobAttribute.class);
+    if (attribute == null) {
+      return false;
+    }
+    lock.lock();
+    try {
+      final Task task = tasks.get(attribute.getTask());
+      if (task == null || !task.jobs.remove(o)) {
+        return false;
+      }
+      count--;
+      if (task.jobs.isEmpty()) {
+        active.remove(task);
+        task.deficit = 0;
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    lock.lock();
+    try {
+      for (final Task task : active) {
+        task.jobs.clear();
+        task.deficit = 0;
+      }
+      active.clear();
+      count = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns an iterator over a snapshot of the jobs in this queue, in no
+   * particular order.
+   *
+   * @return an iterator
+   */
+  @Nonnull
+  @Override
+  public Iterator<Job> iterator() {
+    final List<Job> snapshot = new ArrayList<>();
+    lock.lock();
+    try {
+      for (final Task task : active) {
+        snapshot.addAll(task.jobs);
+      }
+    } finally {
+      lock.unlock();
+    }
+    return new Iterator<Job>() {
+
+      /**
+       * The index of the next job to return.
+       */
+      private int cursor;
+
+      /**
+       * The last job returned, or null if none.
+       */
+      private Job lastReturned;
+
+      @Override
+      public boolean hasNext() {
+        return cursor < snapshot.size();
+      }
+
+      @Override
+      public Job next() {
+        if (cursor >= snapshot.size()) {
+          throw new NoSuchElementException();
+        }
+        lastReturned = snapshot.get(cursor++);
+        return lastReturned;
+      }
+
+      @Override
+      public void remove() {
+        if (lastReturned == null) {
+          throw new IllegalStateException();
+        }
+        FairShareQueue.this.remove(lastReturned);
+        lastReturned = null;
+      }
+    };
+  }
+
+  /**
+   * The state of a crawl task, only accessed under lock.
+   */
+  private static final class Task {
+
+    /**
+     * The queued jobs of the task, by priority.
+     */
+    private final PriorityQueue<Job> jobs = new PriorityQueue<>(11,
+        Comparator.comparing(Job::getPriorityJobAttribute));
+
+    /**
+     * The number of jobs polled from the task in each round.
+     */
+    private int weight = 1;
+
+    /**
+     * The maximum number of jobs of the task in flight.
+     */
+    private int maxInFlight = Integer.MAX_VALUE;
+
+    /**
+     * The number of jobs the task may still be polled for in this round.
+     */
+    private int deficit;
+
+    /**
+     * The number of jobs of the task in flight.
+     */
+    private int inFlight;
+
+    /**
+     * The number of jobs polled.
+     */
+    private long dispatched;
+
+    /**
+     * The number of jobs completed.
+     */
+    private long completed;
+
+    /**
+     * The time the first job was polled, set when dispatched becomes 1.
+     */
+    private long firstDispatch;
+
+  }
+
+}
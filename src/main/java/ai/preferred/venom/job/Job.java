@@ -17,14 +17,14 @@
 package ai.preferred.venom.job;
 
 import ai.preferred.venom.Handler;
+import ai.preferred.venom.Route;
 import ai.preferred.venom.request.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * This class will be placed in a scheduler for queuing requests.
@@ -50,9 +50,21 @@ public class Job {
   private final Handler handler;
 
   /**
-   *
+   * The priority attribute of this job, kept apart from the other
+   * attributes as it is looked up on every queue comparison.
+   */
+  private PriorityJobAttribute priorityJobAttribute;
+
+  /**
+   * The other attributes of this job, at most one per class, or null
+   * if there are none.
+   */
+  private JobAttribute[] jobAttributes;
+
+  /**
+   * The route resolved for this job.
    */
-  private final Map<Class<? extends JobAttribute>, JobAttribute> jobAttributeMap = new HashMap<>();
+  private Route route;
 
   /**
    * The current try of this job.
@@ -70,7 +82,7 @@ public class Job {
     this.request = request;
     this.handler = handler;
     for (final JobAttribute jobAttribute : jobAttributes) {
-      jobAttributeMap.put(jobAttribute.getClass(), jobAttribute);
+      setJobAttribute(jobAttribute);
     }
   }
 
@@ -117,6 +129,29 @@ public class Job {
     return handler;
   }
 
+  /**
+   * Get the route resolved for this job, or null if the job has
+   * not been routed.
+   *
+   * @return Route of the job or null.
+   */
+  @Nullable
+  public final Route getRoute() {
+    return route;
+  }
+
+  /**
+   * Sets the route resolved for this job, the route is kept across
+   * retries so that routing is only done once.
+   *
+   * @param route the route resolved for this job.
+   * @return this.
+   */
+  public final Job setRoute(final Route route) {
+    this.route = route;
+    return this;
+  }
+
   /**
    * Get attempt number of this job.
    *
@@ -126,6 +161,16 @@ public class Job {
     return tryCount;
   }
 
+  /**
+   * Set the attempt number of this job, for restoring a job from a
+   * checkpoint.
+   *
+   * @param tryCount Attempt (try) count of the job.
+   */
+  final void setTryCount(final int tryCount) {
+    this.tryCount = tryCount;
+  }
+
   /**
    * This method is called before the job is scheduled
    * for a retry.
@@ -136,7 +181,14 @@ public class Job {
    */
   public final void prepareRetry() {
     LOGGER.debug("Preparing job {} - {} for next state.", Integer.toHexString(this.hashCode()), request.getUrl());
-    jobAttributeMap.forEach((k, jobAttribute) -> jobAttribute.prepareRetry());
+    if (priorityJobAttribute != null) {
+      priorityJobAttribute.prepareRetry();
+    }
+    if (jobAttributes != null) {
+      for (final JobAttribute jobAttribute : jobAttributes) {
+        jobAttribute.prepareRetry();
+      }
+    }
     tryCount++;
   }
 
@@ -148,10 +200,35 @@ public class Job {
    * @return this.
    */
   public final Job setJobAttribute(final JobAttribute jobAttribute) {
-    jobAttributeMap.put(jobAttribute.getClass(), jobAttribute);
+    if (jobAttribute.getClass() == PriorityJobAttribute.class) {
+      priorityJobAttribute = (PriorityJobAttribute) jobAttribute;
+      return this;
+    }
+    if (jobAttributes == null) {
+      jobAttributes = new JobAttribute[]{jobAttribute};
+      return this;
+    }
+    for (int i = 0; i < jobAttributes.length; i++) {
+      if (jobAttributes[i].getClass() == jobAttribute.getClass()) {
+        jobAttributes[i] = jobAttribute;
+        return this;
+      }
+    }
+    jobAttributes = Arrays.copyOf(jobAttributes, jobAttributes.length + 1);
+    jobAttributes[jobAttributes.length - 1] = jobAttribute;
     return this;
   }
 
+  /**
+   * Get the priority attribute of this job without a lookup, for use
+   * by priority queues.
+   *
+   * @return the priority attribute or null.
+   */
+  final PriorityJobAttribute getPriorityJobAttribute() {
+    return priorityJobAttribute;
+  }
+
   /**
    * Get the job attribute for a specific attribute class or
    * return {@code null} if not found.
@@ -161,8 +238,19 @@ public class Job {
    * @return an instance of job attribute for class or null.
    */
   public final <T extends JobAttribute> T getJobAttribute(final Class<T> clazz) {
-    //noinspection unchecked
-    return (T) jobAttributeMap.get(clazz);
+    if (clazz == PriorityJobAttribute.class) {
+      //noinspection unchecked
+      return (T) priorityJobAttribute;
+    }
+    if (jobAttributes != null) {
+      for (final JobAttribute jobAttribute : jobAttributes) {
+        if (jobAttribute.getClass() == clazz) {
+          //noinspection unchecked
+          return (T) jobAttribute;
+        }
+      }
+    }
+    return null;
   }
 
 }
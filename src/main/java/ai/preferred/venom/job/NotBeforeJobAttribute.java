@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class provides the earliest time at which a job may be run.
+ * <p>
+ * The time is only honoured by a {@link DelayedJobQueue}, other job
+ * queues run the job as soon as possible.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public final class NotBeforeJobAttribute implements JobAttribute {
+
+  /**
+   * The earliest time to run the job, in milliseconds since the epoch.
+   */
+  private final long notBefore;
+
+  /**
+   * Constructs an instance of not before job attribute.
+   *
+   * @param notBefore the earliest time to run the job, in milliseconds since the epoch
+   */
+  public NotBeforeJobAttribute(final long notBefore) {
+    this.notBefore = notBefore;
+  }
+
+  /**
+   * Create an attribute for a job to run after a delay from now.
+   *
+   * @param delay the delay
+   * @param unit  the unit of delay
+   * @return a new instance of not before job attribute
+   */
+  public static NotBeforeJobAttribute after(final long delay, final TimeUnit unit) {
+    return new NotBeforeJobAttribute(System.currentTimeMillis() + unit.toMillis(delay));
+  }
+
+  /**
+   * Get the earliest time to run the job.
+   *
+   * @return the time in milliseconds since the epoch
+   */
+  public long getNotBefore() {
+    return notBefore;
+  }
+
+  @Override
+  public void prepareRetry() {
+    // A retry is run as soon as possible, as the time has passed.
+  }
+
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import ai.preferred.venom.Handler;
+import ai.preferred.venom.Interruptible;
+import ai.preferred.venom.request.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.validation.constraints.NotNull;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class provides an implementation of scheduler with a priority
+ * sensitive queue and a buffer of seed requests, prefetched from a
+ * request source on a background thread.
+ * <p>
+ * Jobs in queue will be processed first in order of higher priority,
+ * followed by requests in the buffer. The buffer is refilled up to the
+ * high watermark whenever it drops to the low watermark, so that polls
+ * do not wait on a slow source. The background thread stops when the
+ * source is exhausted or the queue is closed.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public final class PrefetchingJobQueue extends AbstractPriorityJobQueue implements Interruptible, AutoCloseable {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(PrefetchingJobQueue.class);
+
+  /**
+   * The longest time to wait on the queue before checking the buffer again.
+   */
+  private static final long POLL_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  /**
+   * An object to synchronise upon, to signal the prefetcher.
+   */
+  private final Object lock = new Object();
+
+  /**
+   * The source to prefetch requests from.
+   */
+  private final RequestSource source;
+
+  /**
+   * The default handler for prefetched requests.
+   */
+  private final Handler handler;
+
+  /**
+   * The buffer size at or below which prefetching starts.
+   */
+  private final int lowWatermark;
+
+  /**
+   * The buffer size up to which prefetching fills.
+   */
+  private final int highWatermark;
+
+  /**
+   * The buffer of prefetched jobs.
+   */
+  private final BlockingQueue<Job> buffer;
+
+  /**
+   * The prefetcher thread.
+   */
+  private final Thread prefetcher;
+
+  /**
+   * Whether the source has been exhausted, all prefetched jobs are in
+   * buffer when this is set.
+   */
+  private volatile boolean exhausted;
+
+  /**
+   * Whether this queue has been closed.
+   */
+  private volatile boolean closed;
+
+  /**
+   * Constructs an instance of prefetching job queue.
+   *
+   * @param builder an instance of builder
+   */
+  private PrefetchingJobQueue(final Builder builder) {
+    this.source = builder.source;
+    this.handler = builder.handler;
+    this.lowWatermark = builder.lowWatermark;
+    this.highWatermark = builder.highWatermark;
+    this.buffer = new ArrayBlockingQueue<>(builder.highWatermark);
+    this.prefetcher = new Thread(this::prefetch, builder.name);
+    prefetcher.setDaemon(true);
+    prefetcher.start();
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @param source the source to prefetch requests from
+   * @return A new instance of builder
+   */
+  public static Builder builder(final @NotNull RequestSource source) {
+    return new Builder(source);
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @param requests the iterator to prefetch requests from
+   * @return A new instance of builder
+   */
+  public static Builder builder(final @NotNull Iterator<? extends Request> requests) {
+    return new Builder(RequestSource.of(requests));
+  }
+
+  /**
+   * Read from the source into buffer until the source is exhausted or
+   * this queue is closed.
+   */
+  private void prefetch() {
+    try {
+      while (!closed) {
+        synchronized (lock) {
+          while (!closed && buffer.size() > lowWatermark) {
+            lock.wait();
+          }
+        }
+        if (closed) {
+          break;
+        }
+        final List<? extends Request> batch = source.next(highWatermark - buffer.size());
+        if (batch.isEmpty()) {
+          LOGGER.debug("Request source exhausted.");
+          break;
+        }
+        for (final Request request : batch) {
+          buffer.put(new Job(request, handler, new PriorityJobAttribute()));
+        }
+      }
+    } catch (InterruptedException e) {
+      LOGGER.debug("Prefetcher interrupted.");
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException e) {
+      LOGGER.error("Request source failed, no more requests will be read from it.", e);
+    } finally {
+      exhausted = true;
+    }
+  }
+
+  /**
+   * Poll a job from buffer, notifying the source, and signalling the
+   * prefetcher if the buffer drops to the low watermark.
+   *
+   * @return a job or null if buffer is empty
+   */
+  private Job pollBuffer() {
+    final Job job = buffer.poll();
+    if (job == null) {
+      return null;
+    }
+    source.polled(job.getRequest());
+    if (buffer.size() <= lowWatermark) {
+      synchronized (lock) {
+        lock.notifyAll();
+      }
+    }
+    return job;
+  }
+
+  @Override
+  public Job poll(final long timeout, final @Nonnull TimeUnit unit) throws InterruptedException {
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (true) {
+      final Job job = poll();
+      if (job != null) {
+        return job;
+      }
+      final long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return null;
+      }
+      if (exhausted && buffer.isEmpty()) {
+        return getQueue().poll(remaining, TimeUnit.NANOSECONDS);
+      }
+      final Job queued = getQueue().poll(Math.min(remaining, POLL_SLICE_NANOS), TimeUnit.NANOSECONDS);
+      if (queued != null) {
+        return queued;
+      }
+    }
+  }
+
+  @Override
+  public Job poll() {
+    final Job job = getQueue().poll();
+    if (job != null) {
+      return job;
+    }
+    return pollBuffer();
+  }
+
+  /**
+   * Returns true if the queue and buffer are empty, and the source is
+   * exhausted.
+   *
+   * @return true if no more jobs
+   */
+  @Override
+  public boolean isEmpty() {
+    final boolean done = exhausted;
+    return done && buffer.isEmpty() && getQueue().isEmpty();
+  }
+
+  /**
+   * Get the number of prefetched jobs waiting in buffer.
+   *
+   * @return number of jobs in buffer
+   */
+  public int getBufferSize() {
+    return buffer.size();
+  }
+
+  /**
+   * Stops prefetching, jobs already in buffer can still be polled.
+   */
+  @Override
+  public void interrupt() {
+    closed = true;
+    prefetcher.interrupt();
+  }
+
+  /**
+   * Stops prefetching, jobs already in buffer can still be polled.
+   */
+  @Override
+  public void close() {
+    interrupt();
+  }
+
+  /**
+   * A builder for prefetching job queue class.
+   */
+  public static final class Builder {
+
+    /**
+     * The source to prefetch requests from.
+     */
+    private final RequestSource source;
+
+    /**
+     * The default handler for prefetched requests.
+     */
+    private Handler handler;
+
+    /**
+     * The buffer size at or below which prefetching starts.
+     */
+    private int lowWatermark;
+
+    /**
+     * The buffer size up to which prefetching fills.
+     */
+    private int highWatermark;
+
+    /**
+     * The name of the prefetcher thread.
+     */
+    private String name;
+
+    /**
+     * Constructs an instance of builder with default values.
+     *
+     * @param source the source to prefetch requests from
+     */
+    private Builder(final RequestSource source) {
+      if (source == null) {
+        throw new IllegalStateException("Attribute 'source' cannot be null.");
+      }
+      this.source = source;
+      handler = null;
+      lowWatermark = 256;
+      highWatermark = 1024;
+      name = "prefetcher";
+    }
+
+    /**
+     * Sets the default handler for prefetched requests, defaults to none,
+     * the routed handler will be used.
+     *
+     * @param handler the default handler
+     * @return this
+     */
+    public Builder setHandler(final Handler handler) {
+      this.handler = handler;
+      return this;
+    }
+
+    /**
+     * Sets the buffer size at or below which prefetching starts. Defaults
+     * to 256.
+     *
+     * @param lowWatermark the low watermark
+     * @return this
+     */
+    public Builder setLowWatermark(final int lowWatermark) {
+      if (lowWatermark < 0) {
+        throw new IllegalStateException("Attribute 'lowWatermark' must be more or equal to 0.");
+      }
+      this.lowWatermark = lowWatermark;
+      return this;
+    }
+
+    /**
+     * Sets the buffer size up to which prefetching fills. Defaults to
+     * 1024.
+     *
+     * @param highWatermark the high watermark
+     * @return this
+     */
+    public Builder setHighWatermark(final int highWatermark) {
+      if (highWatermark < 1) {
+        throw new IllegalStateException("Attribute 'highWatermark' must be more or equal to 1.");
+      }
+      this.highWatermark = highWatermark;
+      return this;
+    }
+
+    /**
+     * Sets the name of the prefetcher thread. Defaults to "prefetcher".
+     *
+     * @param name the name of the thread
+     * @return this
+     */
+    public Builder setName(final @NotNull String name) {
+      if (name == null) {
+        throw new IllegalStateException("Attribute 'name' cannot be null.");
+      }
+      this.name = name;
+      return this;
+    }
+
+    /**
+     * Builds the job queue with the options specified and starts
+     * prefetching.
+     *
+     * @return an instance of prefetching job queue
+     */
+    public PrefetchingJobQueue build() {
+      if (lowWatermark >= highWatermark) {
+        throw new IllegalStateException("Attribute 'lowWatermark' must be less than 'highWatermark'.");
+      }
+      return new PrefetchingJobQueue(this);
+    }
+
+  }
+
+}
@@ -72,6 +72,15 @@ public class PriorityJobAttribute implements JobAttribute, Comparable<PriorityJo
     return priority;
   }
 
+  /**
+   * Get the priority floor in this attribute.
+   *
+   * @return the priority floor in this attribute.
+   */
+  public final Priority getPriorityFloor() {
+    return priorityFloor;
+  }
+
   @Override
   public final void prepareRetry() {
     priority = priority.downgrade(priorityFloor);
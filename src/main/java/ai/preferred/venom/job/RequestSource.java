@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import ai.preferred.venom.request.Request;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This interface represents a source of seed requests that is read in
+ * batches, such as a file, a database cursor or a paged api.
+ *
+ * @author Ween Jiann Lee
+ */
+@FunctionalInterface
+public interface RequestSource {
+
+  /**
+   * Create a request source reading from an iterator.
+   *
+   * @param iterator the iterator to read from
+   * @return a new request source
+   */
+  static RequestSource of(final @NotNull Iterator<? extends Request> iterator) {
+    return maxSize -> {
+      final List<Request> batch = new ArrayList<>(Math.min(maxSize, 1024));
+      while (batch.size() < maxSize && iterator.hasNext()) {
+        batch.add(iterator.next());
+      }
+      return batch;
+    };
+  }
+
+  /**
+   * Returns the next batch of requests.
+   * <p>
+   * This method is only called from a single thread. It may block, and
+   * may return fewer requests than asked for.
+   * </p>
+   *
+   * @param maxSize the maximum number of requests to return
+   * @return the next requests, or an empty list if the source is exhausted
+   */
+  @NotNull
+  List<? extends Request> next(int maxSize);
+
+  /**
+   * Notifies the source that a request it returned has been polled from
+   * the job queue it was read into.
+   * <p>
+   * Requests are polled in the order they were returned, but this method
+   * may be called from a different thread than {@link #next(int)}.
+   * Sources that save a position to resume from should only advance it
+   * past requests that have been polled.
+   * </p>
+   *
+   * @param request the request polled
+   */
+  default void polled(@NotNull Request request) {
+  }
+
+}
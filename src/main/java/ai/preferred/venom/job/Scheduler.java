@@ -22,7 +22,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.function.Function;
 
 /**
  * This interface represents only the adding part a scheduler.
@@ -42,19 +47,102 @@ public class Scheduler {
    */
   private final BlockingQueue<Job> queue;
 
+  /**
+   * The budget enforced on jobs added, or null if none.
+   */
+  private final CrawlBudget budget;
+
+  /**
+   * The depth of jobs added through this scheduler.
+   */
+  private final int depth;
+
+  /**
+   * The task of jobs added through this scheduler, or null if none.
+   */
+  private final String task;
+
   /**
    * Constructs an instance of Scheduler.
    *
    * @param queue an instance of BlockingQueue
    */
   public Scheduler(final BlockingQueue<Job> queue) {
+    this(queue, null);
+  }
+
+  /**
+   * Constructs an instance of Scheduler.
+   *
+   * @param queue  an instance of BlockingQueue
+   * @param budget the budget enforced on jobs added, or null if none
+   */
+  public Scheduler(final BlockingQueue<Job> queue, final CrawlBudget budget) {
+    this(queue, budget, 0, null);
+  }
+
+  /**
+   * Constructs an instance of Scheduler.
+   *
+   * @param queue  an instance of BlockingQueue
+   * @param budget the budget enforced on jobs added, or null if none
+   * @param depth  the depth of jobs added
+   * @param task   the task of jobs added, or null if none
+   */
+  private Scheduler(final BlockingQueue<Job> queue, final CrawlBudget budget, final int depth, final String task) {
     this.queue = queue;
+    this.budget = budget;
+    this.depth = depth;
+    this.task = task;
+  }
+
+  /**
+   * Get a scheduler adding to the same queue, for requests found while
+   * handling a job.
+   * <p>
+   * Jobs added through the scheduler returned are one level deeper than
+   * the parent job, unless a {@link DepthJobAttribute} is given, and
+   * belong to the task of the parent job, unless a
+   * {@link TaskJobAttribute} is given.
+   * </p>
+   *
+   * @param parent the job being handled
+   * @return an instance of scheduler
+   */
+  public final Scheduler forParent(final @NotNull Job parent) {
+    final TaskJobAttribute parentTask = parent.getJobAttribute(TaskJobAttribute.class);
+    return new Scheduler(queue, budget, DepthJobAttribute.getDepth(parent) + 1,
+        parentTask == null ? null : parentTask.getTask());
+  }
+
+  /**
+   * Create a job, attaching the depth and task of this scheduler if they
+   * are not given and this scheduler is for a parent job.
+   *
+   * @param request       request to fetch when dequeued.
+   * @param handler       handler to be used to parse the request.
+   * @param jobAttributes attributes to insert to the job.
+   * @return the job, or null if it is over budget.
+   */
+  private Job createJob(final Request request, final Handler handler, final JobAttribute[] jobAttributes) {
+    final Job job = new Job(request, handler, jobAttributes);
+    if (depth > 0 && job.getJobAttribute(DepthJobAttribute.class) == null) {
+      job.setJobAttribute(new DepthJobAttribute(depth));
+    }
+    if (task != null && job.getJobAttribute(TaskJobAttribute.class) == null) {
+      job.setJobAttribute(new TaskJobAttribute(task));
+    }
+    if (budget != null && !budget.tryAdmit(request, DepthJobAttribute.getDepth(job))) {
+      return null;
+    }
+    return job;
   }
 
   /**
    * Adds a request to the queue.
    * <p>
-   * This request would be parsed by the handler specified.
+   * This request would be parsed by the handler specified. The request
+   * is dropped if it exceeds the crawl budget, if any.
    * </p>
    *
    * @param request       request to fetch when dequeued.
@@ -63,7 +151,10 @@ public class Scheduler {
    */
   public final void add(final @NotNull Request request, final Handler handler,
                         final @NotNull JobAttribute... jobAttributes) {
-    final Job job = new Job(request, handler, jobAttributes);
+    final Job job = createJob(request, handler, jobAttributes);
+    if (job == null) {
+      return;
+    }
     queue.add(job);
     LOGGER.debug("Job {} - {} added to queue.", job.toString(), request.getUrl());
   }
@@ -107,6 +198,75 @@ public class Scheduler {
     add(request, null, new JobAttribute[0]);
   }
 
+  /**
+   * Adds requests to the queue in a single batch.
+   * <p>
+   * All requests would be parsed by the handler specified. The jobs
+   * are created first and then inserted with a single queue operation,
+   * so that pages with many links do not contend on the queue. Requests
+   * exceeding the crawl budget, if any, are dropped.
+   * </p>
+   *
+   * @param requests      requests to fetch when dequeued.
+   * @param handler       handler to be used to parse the requests.
+   * @param distinct      whether to drop requests with the same method, url
+   *                      and body as an earlier request in this batch.
+   * @param jobAttributes creates the attributes to insert to the job of each
+   *                      request, attributes must not be shared between jobs.
+   * @return the number of requests added.
+   */
+  public final int addAll(final @NotNull Iterable<? extends Request> requests, final Handler handler,
+                          final boolean distinct,
+                          final @NotNull Function<? super Request, JobAttribute[]> jobAttributes) {
+    final List<Job> jobs = new ArrayList<>();
+    final Set<String> seen = distinct ? new HashSet<>() : null;
+    for (final Request request : requests) {
+      if (seen != null && !seen.add(request.getMethod() + " " + request.getUrl() + " " + request.getBody())) {
+        continue;
+      }
+      final Job job = createJob(request, handler, jobAttributes.apply(request));
+      if (job != null) {
+        jobs.add(job);
+      }
+    }
+    if (jobs.isEmpty()) {
+      return 0;
+    }
+    queue.addAll(jobs);
+    LOGGER.debug("{} jobs added to queue.", jobs.size());
+    return jobs.size();
+  }
+
+  /**
+   * Adds requests to the queue in a single batch, dropping duplicates
+   * within the batch.
+   * <p>
+   * All requests would be parsed by the handler specified.
+   * </p>
+   *
+   * @param requests requests to fetch when dequeued.
+   * @param handler  handler to be used to parse the requests.
+   * @return the number of requests added.
+   */
+  public final int addAll(final @NotNull Iterable<? extends Request> requests, final Handler handler) {
+    return addAll(requests, handler, true, request -> new JobAttribute[0]);
+  }
+
+  /**
+   * Adds requests to the queue in a single batch, dropping duplicates
+   * within the batch.
+   * <p>
+   * All requests would be parsed by a handler defined in Router
+   * or otherwise defined.
+   * </p>
+   *
+   * @param requests requests to fetch when dequeued.
+   * @return the number of requests added.
+   */
+  public final int addAll(final @NotNull Iterable<? extends Request> requests) {
+    return addAll(requests, null);
+  }
+
   /**
    * Adds a request to the queue. Will be removed in the next release.
    * <p>
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * This class provides the crawl task a job belongs to, for queues that
+ * share capacity between tasks such as {@link FairShareJobQueue}.
+ *
+ * @author Ween Jiann Lee
+ */
+public final class TaskJobAttribute implements JobAttribute {
+
+  /**
+   * The name of the task that jobs without this attribute belong to.
+   */
+  public static final String DEFAULT_TASK = "";
+
+  /**
+   * The name of the task.
+   */
+  private final String task;
+
+  /**
+   * Whether the job has been polled and not yet completed or re-queued.
+   */
+  private boolean inFlight;
+
+  /**
+   * Constructs an instance of task job attribute.
+   *
+   * @param task the name of the task
+   */
+  public TaskJobAttribute(final @NotNull String task) {
+    if (task == null) {
+      throw new IllegalArgumentException("Task cannot be null.");
+    }
+    this.task = task;
+  }
+
+  /**
+   * Get the name of the task.
+   *
+   * @return the name of the task
+   */
+  public String getTask() {
+    return task;
+  }
+
+  /**
+   * Get whether the job has been polled and not yet completed or
+   * re-queued.
+   *
+   * @return true if the job is in flight
+   */
+  boolean isInFlight() {
+    return inFlight;
+  }
+
+  /**
+   * Sets whether the job has been polled and not yet completed or
+   * re-queued.
+   *
+   * @param inFlight true if the job is in flight
+   */
+  void setInFlight(final boolean inFlight) {
+    this.inFlight = inFlight;
+  }
+
+  @Override
+  public void prepareRetry() {
+    // The task is kept across retries.
+  }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+/**
+ * This class provides a snapshot of the jobs of a crawl task in a
+ * {@link FairShareJobQueue}.
+ *
+ * @author Ween Jiann Lee
+ */
+public final class TaskStatistics {
+
+  /**
+   * The number of jobs waiting in queue.
+   */
+  private final int queued;
+
+  /**
+   * The number of jobs polled and not yet completed.
+   */
+  private final int inFlight;
+
+  /**
+   * The number of jobs polled.
+   */
+  private final long dispatched;
+
+  /**
+   * The number of jobs completed.
+   */
+  private final long completed;
+
+  /**
+   * The time in nanoseconds since the first job of the task was polled.
+   */
+  private final long elapsed;
+
+  /**
+   * Constructs an instance of task statistics.
+   *
+   * @param queued     the number of jobs waiting in queue
+   * @param inFlight   the number of jobs polled and not yet completed
+   * @param dispatched the number of jobs polled
+   * @param completed  the number of jobs completed
+   * @param elapsed    the time in nanoseconds since the first job was polled
+   */
+  TaskStatistics(final int queued, final int inFlight, final long dispatched, final long completed,
+                 final long elapsed) {
+    this.queued = queued;
+    this.inFlight = inFlight;
+    this.dispatched = dispatched;
+    this.completed = completed;
+    this.elapsed = elapsed;
+  }
+
+  /**
+   * Get the number of jobs waiting in queue.
+   *
+   * @return the number of jobs
+   */
+  public int getQueued() {
+    return queued;
+  }
+
+  /**
+   * Get the number of jobs polled and not yet completed or re-queued.
+   *
+   * @return the number of jobs
+   */
+  public int getInFlight() {
+    return inFlight;
+  }
+
+  /**
+   * Get the number of jobs polled, including retries.
+   *
+   * @return the number of jobs
+   */
+  public long getDispatched() {
+    return dispatched;
+  }
+
+  /**
+   * Get the number of jobs completed.
+   *
+   * @return the number of jobs
+   */
+  public long getCompleted() {
+    return completed;
+  }
+
+  /**
+   * Get the number of jobs completed per second since the first job of
+   * the task was polled.
+   *
+   * @return the throughput, or 0 if no job has been polled
+   */
+  public double getThroughput() {
+    if (elapsed <= 0) {
+      return 0;
+    }
+    return completed * 1e9 / elapsed;
+  }
+
+}
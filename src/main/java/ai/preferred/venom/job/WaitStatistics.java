@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+/**
+ * This class represents the time jobs of a priority have waited in a
+ * job queue.
+ *
+ * @author Ween Jiann Lee
+ */
+public final class WaitStatistics {
+
+  /**
+   * The number of jobs waiting.
+   */
+  private final int queued;
+
+  /**
+   * The number of jobs polled.
+   */
+  private final long count;
+
+  /**
+   * The total time polled jobs waited, in nanoseconds.
+   */
+  private final long totalWait;
+
+  /**
+   * The longest time a polled job waited, in nanoseconds.
+   */
+  private final long maxWait;
+
+  /**
+   * Constructs an instance of wait statistics.
+   *
+   * @param queued    the number of jobs waiting
+   * @param count     the number of jobs polled
+   * @param totalWait the total time polled jobs waited, in nanoseconds
+   * @param maxWait   the longest time a polled job waited, in nanoseconds
+   */
+  WaitStatistics(final int queued, final long count, final long totalWait, final long maxWait) {
+    this.queued = queued;
+    this.count = count;
+    this.totalWait = totalWait;
+    this.maxWait = maxWait;
+  }
+
+  /**
+   * Get the number of jobs waiting.
+   *
+   * @return the number of jobs
+   */
+  public int getQueued() {
+    return queued;
+  }
+
+  /**
+   * Get the number of jobs polled.
+   *
+   * @return the number of jobs
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Get the total time polled jobs waited.
+   *
+   * @return the time in nanoseconds
+   */
+  public long getTotalWait() {
+    return totalWait;
+  }
+
+  /**
+   * Get the mean time polled jobs waited.
+   *
+   * @return the time in nanoseconds, or 0 if no jobs were polled
+   */
+  public double getMeanWait() {
+    return count == 0 ? 0 : (double) totalWait / count;
+  }
+
+  /**
+   * Get the longest time a polled job waited.
+   *
+   * @return the time in nanoseconds
+   */
+  public long getMaxWait() {
+    return maxWait;
+  }
+
+  @Override
+  public String toString() {
+    return "WaitStatistics{queued=" + queued + ", count=" + count + ", meanWait=" + (long) getMeanWait()
+        + "ns, maxWait=" + maxWait + "ns}";
+  }
+
+}
@@ -16,13 +16,16 @@
 
 package ai.preferred.venom.request;
 
+import ai.preferred.venom.Route;
 import ai.preferred.venom.SleepScheduler;
 import org.apache.http.HttpHost;
 
+import javax.annotation.Nullable;
 import java.util.Map;
 
 /**
- * This class allows the removal of proxy from request.
+ * This class allows the removal of proxy from request, and carries
+ * the route resolved by the crawler to the fetcher.
  *
  * @author Maksim Tkachenko
  * @author Ween Jiann Lee
@@ -39,6 +42,11 @@ public class CrawlerRequest implements Request, Unwrappable {
    */
   private HttpHost proxy;
 
+  /**
+   * The route resolved for this request.
+   */
+  private final Route route;
+
   /**
    * Constructs an instance of crawler request with an underlying
    * request.
@@ -46,8 +54,20 @@ public class CrawlerRequest implements Request, Unwrappable {
    * @param request An instance of the underlying request
    */
   public CrawlerRequest(final Request request) {
+    this(request, null);
+  }
+
+  /**
+   * Constructs an instance of crawler request with an underlying
+   * request and the route resolved for it.
+   *
+   * @param request An instance of the underlying request
+   * @param route   The route resolved for the request
+   */
+  public CrawlerRequest(final Request request, final Route route) {
     this.inner = request;
     this.proxy = request.getProxy();
+    this.route = route;
   }
 
   @Override
@@ -82,6 +102,17 @@ public class CrawlerRequest implements Request, Unwrappable {
     proxy = null;
   }
 
+  /**
+   * Get the route resolved for this request, or null if the request
+   * has not been routed.
+   *
+   * @return the route resolved or null
+   */
+  @Nullable
+  public final Route getRoute() {
+    return route;
+  }
+
   @Override
   public final SleepScheduler getSleepScheduler() {
     return inner.getSleepScheduler();
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.request;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.json.JSONObject;
+
+import javax.annotation.Nonnull;
+import javax.validation.constraints.NotNull;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * This class provides an immutable and interned set of request headers.
+ * <p>
+ * Requests typically share a few distinct sets of headers. Instances
+ * are interned, so that equal sets of headers share one instance, and
+ * hash code, serialised form and merges with default headers are
+ * computed once per instance instead of once per request.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+@SuppressWarnings("NullableProblems")
+public final class Headers extends AbstractMap<String, String> {
+
+  /**
+   * An instance without headers.
+   */
+  public static final Headers EMPTY = new Headers(new String[0], new String[0]);
+
+  /**
+   * The interner for header sets.
+   */
+  private static final Interner<Headers> INTERNER = Interners.newWeakInterner();
+
+  /**
+   * The header names, sorted.
+   */
+  private final String[] names;
+
+  /**
+   * The header values, in the order of names.
+   */
+  private final String[] values;
+
+  /**
+   * The precomputed hash code.
+   */
+  private final int hash;
+
+  /**
+   * The lazily computed JSON form.
+   */
+  private volatile String json;
+
+  /**
+   * The last merge with prepended headers.
+   */
+  private volatile Merge lastPrepend;
+
+  /**
+   * The entry set view.
+   */
+  private Set<Entry<String, String>> entrySet;
+
+  /**
+   * Constructs an instance of headers.
+   *
+   * @param names  the header names, sorted
+   * @param values the header values, in the order of names
+   */
+  private Headers(final String[] names, final String[] values) {
+    this.names = names;
+    this.values = values;
+    int h = 0;
+    for (int i = 0; i < names.length; i++) {
+      h += names[i].hashCode() ^ Objects.hashCode(values[i]);
+    }
+    this.hash = h;
+  }
+
+  /**
+   * Get an instance of headers with the same mappings as a map.
+   * <p>
+   * If the map is an instance of headers, it is returned as is.
+   * </p>
+   *
+   * @param headers the headers
+   * @return interned instance of headers
+   */
+  @NotNull
+  public static Headers of(final @NotNull Map<String, String> headers) {
+    if (headers instanceof Headers) {
+      return (Headers) headers;
+    }
+    if (headers.isEmpty()) {
+      return EMPTY;
+    }
+    final String[] names = new String[headers.size()];
+    int i = 0;
+    for (final String name : headers.keySet()) {
+      names[i++] = Objects.requireNonNull(name, "Header name cannot be null.");
+    }
+    Arrays.sort(names);
+    final String[] values = new String[names.length];
+    for (int j = 0; j < names.length; j++) {
+      values[j] = headers.get(names[j]);
+    }
+    return INTERNER.intern(new Headers(names, values));
+  }
+
+  /**
+   * Returns headers with the mappings of this instance, and mappings
+   * of the specified headers for names that are absent in this instance.
+   * <p>
+   * The result of the last merge is cached, so that prepending the same
+   * default headers to requests sharing this instance does not allocate.
+   * </p>
+   *
+   * @param preHeaders headers to be prepended
+   * @return interned instance of merged headers
+   */
+  @NotNull
+  public Headers prepend(final @NotNull Map<String, String> preHeaders) {
+    final Headers pre = of(preHeaders);
+    if (pre.isEmpty() || pre == this) {
+      return this;
+    }
+    if (isEmpty()) {
+      return pre;
+    }
+    final Merge merge = lastPrepend;
+    if (merge != null && merge.pre == pre) {
+      return merge.result;
+    }
+
+    final String[] mergedNames = new String[names.length + pre.names.length];
+    final String[] mergedValues = new String[mergedNames.length];
+    int i = 0;
+    int j = 0;
+    int n = 0;
+    while (i < names.length || j < pre.names.length) {
+      final int cmp;
+      if (i >= names.length) {
+        cmp = 1;
+      } else if (j >= pre.names.length) {
+        cmp = -1;
+      } else {
+        cmp = names[i].compareTo(pre.names[j]);
+      }
+      if (cmp <= 0) {
+        mergedNames[n] = names[i];
+        mergedValues[n] = values[i];
+        i++;
+        if (cmp == 0) {
+          j++;
+        }
+      } else {
+        mergedNames[n] = pre.names[j];
+        mergedValues[n] = pre.values[j];
+        j++;
+      }
+      n++;
+    }
+    final Headers result = INTERNER.intern(new Headers(Arrays.copyOf(mergedNames, n), Arrays.copyOf(mergedValues, n)));
+    lastPrepend = new Merge(pre, result);
+    return result;
+  }
+
+  /**
+   * Get the headers as a JSON object string, computed once.
+   *
+   * @return JSON string
+   */
+  @NotNull
+  public String toJson() {
+    String result = json;
+    if (result == null) {
+      result = new JSONObject(this).toString();
+      json = result;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the index of a name, or a negative value if absent.
+   *
+   * @param name the header name
+   * @return index of name
+   */
+  private int indexOf(final Object name) {
+    if (!(name instanceof String)) {
+      return -1;
+    }
+    return Arrays.binarySearch(names, name);
+  }
+
+  @Override
+  public int size() {
+    return names.length;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return names.length == 0;
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public String get(final Object key) {
+    final int index = indexOf(key);
+    return index >= 0 ? values[index] : null;
+  }
+
+  @Nonnull
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+    }
+    return entrySet;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o instanceof Headers) {
+      final Headers other = (Headers) o;
+      return hash == other.hash && Arrays.equals(names, other.names) && Arrays.equals(values, other.values);
+    }
+    return super.equals(o);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  /**
+   * The result of a merge with prepended headers.
+   */
+  private static final class Merge {
+
+    /**
+     * The prepended headers.
+     */
+    private final Headers pre;
+
+    /**
+     * The merged headers.
+     */
+    private final Headers result;
+
+    /**
+     * Constructs an instance of merge.
+     *
+     * @param pre    the prepended headers
+     * @param result the merged headers
+     */
+    private Merge(final Headers pre, final Headers result) {
+      this.pre = pre;
+      this.result = result;
+    }
+
+  }
+
+  /**
+   * The entry set view of headers.
+   */
+  private final class EntrySet extends AbstractSet<Entry<String, String>> {
+
+    @Nonnull
+    @Override
+    public Iterator<Entry<String, String>> iterator() {
+      return new Iterator<Entry<String, String>>() {
+
+        /**
+         * The index of the next entry.
+         */
+        private int index;
+
+        @Override
+        public boolean hasNext() {
+          return index < names.length;
+        }
+
+        @Override
+        public Entry<String, String> next() {
+          if (index >= names.length) {
+            throw new NoSuchElementException();
+          }
+          final Entry<String, String> entry = new SimpleImmutableEntry<>(names[index], values[index]);
+          index++;
+          return entry;
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return names.length;
+    }
+
+  }
+
+}
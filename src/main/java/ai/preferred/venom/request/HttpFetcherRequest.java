@@ -20,8 +20,6 @@ import ai.preferred.venom.SleepScheduler;
 import org.apache.http.HttpHost;
 
 import javax.annotation.Nullable;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -39,7 +37,7 @@ public class HttpFetcherRequest implements Request, Unwrappable {
   /**
    * The headers to append to global headers.
    */
-  private final Map<String, String> headers;
+  private final Headers headers;
 
   /**
    * The proxy to be used for this request.
@@ -57,7 +55,7 @@ public class HttpFetcherRequest implements Request, Unwrappable {
    * @param innerRequest An instance of underlying request
    */
   public HttpFetcherRequest(final Request innerRequest) {
-    this(innerRequest, new HashMap<>(innerRequest.getHeaders()), innerRequest.getProxy());
+    this(innerRequest, Headers.of(innerRequest.getHeaders()), innerRequest.getProxy());
   }
 
   /**
@@ -67,7 +65,7 @@ public class HttpFetcherRequest implements Request, Unwrappable {
    * @param headers      Headers to append to global headers
    * @param proxy        Proxy to be used for this request
    */
-  private HttpFetcherRequest(final Request innerRequest, final Map<String, String> headers, final HttpHost proxy) {
+  private HttpFetcherRequest(final Request innerRequest, final Headers headers, final HttpHost proxy) {
     this.innerRequest = innerRequest;
     this.headers = headers;
     this.proxy = proxy;
@@ -81,9 +79,7 @@ public class HttpFetcherRequest implements Request, Unwrappable {
    * @return A new instance of http fetcher request
    */
   public final HttpFetcherRequest prependHeaders(final Map<String, String> preHeaders) {
-    final Map<String, String> newHeaders = new HashMap<>(headers);
-    preHeaders.forEach(newHeaders::putIfAbsent);
-    return new HttpFetcherRequest(innerRequest, newHeaders, proxy);
+    return new HttpFetcherRequest(innerRequest, headers.prepend(preHeaders), proxy);
   }
 
   @Override
@@ -103,7 +99,7 @@ public class HttpFetcherRequest implements Request, Unwrappable {
 
   @Override
   public final Map<String, String> getHeaders() {
-    return Collections.unmodifiableMap(headers);
+    return headers;
   }
 
   @Override
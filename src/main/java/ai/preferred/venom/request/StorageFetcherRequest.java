@@ -20,8 +20,6 @@ import ai.preferred.venom.SleepScheduler;
 import org.apache.http.HttpHost;
 
 import javax.validation.constraints.NotNull;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -37,7 +35,7 @@ public class StorageFetcherRequest implements Request, Unwrappable {
   /**
    * The headers to append to global headers.
    */
-  private final Map<String, String> headers;
+  private final Headers headers;
 
   /**
    * Constructs an instance of StorageFetcherRequest.
@@ -45,7 +43,7 @@ public class StorageFetcherRequest implements Request, Unwrappable {
    * @param innerRequest An instance of underlying request
    */
   public StorageFetcherRequest(final Request innerRequest) {
-    this(innerRequest, new HashMap<>(innerRequest.getHeaders()));
+    this(innerRequest, Headers.of(innerRequest.getHeaders()));
   }
 
   /**
@@ -54,7 +52,7 @@ public class StorageFetcherRequest implements Request, Unwrappable {
    * @param innerRequest An instance of underlying request
    * @param headers      Headers to append to global headers
    */
-  private StorageFetcherRequest(final Request innerRequest, final Map<String, String> headers) {
+  private StorageFetcherRequest(final Request innerRequest, final Headers headers) {
     this.innerRequest = innerRequest;
     this.headers = headers;
   }
@@ -66,9 +64,7 @@ public class StorageFetcherRequest implements Request, Unwrappable {
    * @return A new instance of http fetcher request
    */
   public final StorageFetcherRequest prependHeaders(final Map<String, String> preHeaders) {
-    final Map<String, String> newHeaders = new HashMap<>(headers);
-    preHeaders.forEach(newHeaders::putIfAbsent);
-    return new StorageFetcherRequest(innerRequest, newHeaders);
+    return new StorageFetcherRequest(innerRequest, headers.prepend(preHeaders));
   }
 
   @Override
@@ -88,7 +84,7 @@ public class StorageFetcherRequest implements Request, Unwrappable {
 
   @Override
   public final @NotNull Map<String, String> getHeaders() {
-    return Collections.unmodifiableMap(headers);
+    return headers;
   }
 
   @Override
@@ -19,7 +19,6 @@ package ai.preferred.venom.request;
 import ai.preferred.venom.SleepScheduler;
 import org.apache.http.HttpHost;
 
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -43,7 +42,7 @@ public class VRequest implements Request {
   /**
    * The headers to append to global headers.
    */
-  private final Map<String, String> headers;
+  private final Headers headers;
   /**
    * The body of this request.
    */
@@ -63,7 +62,7 @@ public class VRequest implements Request {
    * @param url The url for this request.
    */
   public VRequest(final String url) {
-    this(url, Collections.emptyMap());
+    this(Method.GET, url, Headers.EMPTY, null, null, null);
   }
 
   /**
@@ -73,7 +72,7 @@ public class VRequest implements Request {
    * @param headers The headers to append for this request
    */
   public VRequest(final String url, final Map<String, String> headers) {
-    this(Method.GET, url, new HashMap<>(headers), null, null, null);
+    this(Method.GET, url, Headers.of(headers), null, null, null);
   }
 
   /**
@@ -84,7 +83,7 @@ public class VRequest implements Request {
   protected VRequest(final Builder<?> builder) {
     this(builder.method == null ? Method.GET : builder.method,
         builder.url,
-        new HashMap<>(builder.headers),
+        Headers.of(builder.headers),
         builder.body,
         builder.scheduler,
         builder.proxy
@@ -101,7 +100,7 @@ public class VRequest implements Request {
    * @param sleepScheduler The sleep scheduler to use
    * @param proxy          The proxy to use
    */
-  private VRequest(final Method method, final String url, final Map<String, String> headers, final String body,
+  private VRequest(final Method method, final String url, final Headers headers, final String body,
                    final SleepScheduler sleepScheduler, final HttpHost proxy) {
     this.method = method;
     this.url = url;
@@ -139,7 +138,7 @@ public class VRequest implements Request {
 
   @Override
   public final Map<String, String> getHeaders() {
-    return Collections.unmodifiableMap(headers);
+    return headers;
   }
 
   @Override
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.response;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds an element matched by a {@link HtmlExtractor}.
+ * <p>
+ * Only the attributes, text and links of the matched subtree are
+ * retained, the markup itself is discarded.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public final class HtmlElement {
+
+  /**
+   * The selector that matched this element.
+   */
+  private final String selector;
+
+  /**
+   * The lower cased tag name.
+   */
+  private final String tagName;
+
+  /**
+   * The attributes of this element.
+   */
+  private final Map<String, String> attributes;
+
+  /**
+   * The normalised text of this element and its descendants.
+   */
+  private final String text;
+
+  /**
+   * The absolute links within this element and its descendants.
+   */
+  private final List<String> links;
+
+  /**
+   * The base url used to resolve relative urls.
+   */
+  private final URL baseUrl;
+
+  /**
+   * Constructs an instance of html element.
+   *
+   * @param selector   the selector that matched this element
+   * @param tagName    the lower cased tag name
+   * @param attributes the attributes of this element
+   * @param text       the normalised text
+   * @param links      the absolute links
+   * @param baseUrl    the base url used to resolve relative urls
+   */
+  HtmlElement(final String selector, final String tagName, final Map<String, String> attributes, final String text,
+              final List<String> links, final URL baseUrl) {
+    this.selector = selector;
+    this.tagName = tagName;
+    this.attributes = Collections.unmodifiableMap(attributes);
+    this.text = text;
+    this.links = Collections.unmodifiableList(links);
+    this.baseUrl = baseUrl;
+  }
+
+  /**
+   * Resolve a url against a base url.
+   *
+   * @param baseUrl the base url, may be null
+   * @param url     the url to resolve
+   * @return the absolute url or null if it cannot be resolved
+   */
+  @Nullable
+  static String resolve(final URL baseUrl, final String url) {
+    try {
+      if (baseUrl == null) {
+        return new URL(url.trim()).toExternalForm();
+      }
+      return new URL(baseUrl, url.trim()).toExternalForm();
+    } catch (MalformedURLException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Get the selector that matched this element.
+   *
+   * @return selector string
+   */
+  @NotNull
+  public String getSelector() {
+    return selector;
+  }
+
+  /**
+   * Get the lower cased tag name of this element.
+   *
+   * @return tag name
+   */
+  @NotNull
+  public String getTagName() {
+    return tagName;
+  }
+
+  /**
+   * Get the attributes of this element, keyed by lower cased name.
+   *
+   * @return attributes
+   */
+  @NotNull
+  public Map<String, String> getAttributes() {
+    return attributes;
+  }
+
+  /**
+   * Get the value of an attribute of this element.
+   *
+   * @param key the attribute name
+   * @return value of the attribute or null if absent
+   */
+  @Nullable
+  public String getAttribute(final String key) {
+    return attributes.get(key);
+  }
+
+  /**
+   * Get the value of an attribute of this element as an absolute url.
+   *
+   * @param key the attribute name
+   * @return absolute url or null if absent or malformed
+   */
+  @Nullable
+  public String absUrl(final String key) {
+    final String value = attributes.get(key);
+    if (value == null) {
+      return null;
+    }
+    return resolve(baseUrl, value);
+  }
+
+  /**
+   * Get the text of this element and its descendants, with whitespace
+   * normalised.
+   *
+   * @return text
+   */
+  @NotNull
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Get the absolute urls of links (<code>a[href]</code> and
+   * <code>area[href]</code>) within this element, including itself.
+   *
+   * @return list of links in document order
+   */
+  @NotNull
+  public List<String> getLinks() {
+    return links;
+  }
+
+  @Override
+  public String toString() {
+    return "<" + tagName + attributes + ">" + text;
+  }
+
+}
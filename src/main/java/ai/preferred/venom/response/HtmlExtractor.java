@@ -0,0 +1,516 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.constraints.NotNull;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * This class extracts elements and links from html as it is read,
+ * without building a document tree.
+ * <p>
+ * Callbacks are registered against css-like selectors, see
+ * {@link Builder#select(String, Consumer)} for the supported syntax. Only
+ * the text and links of elements that are currently matched are
+ * buffered, so memory is bounded by the largest matched subtree instead
+ * of the size of the page. An extractor holds no parsing state and may
+ * be shared between threads.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public final class HtmlExtractor {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(HtmlExtractor.class);
+
+  /**
+   * Elements that never have content.
+   */
+  private static final Set<String> VOID_ELEMENTS = new HashSet<>(Arrays.asList(
+      "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "param", "source", "track", "wbr"
+  ));
+
+  /**
+   * Elements whose end tag is commonly omitted, closed when a sibling
+   * of the same name starts.
+   */
+  private static final Set<String> SELF_NESTING_ELEMENTS = new HashSet<>(Arrays.asList(
+      "li", "p", "option", "tr", "td", "th", "dt", "dd"
+  ));
+
+  /**
+   * Elements that separate text.
+   */
+  private static final Set<String> BLOCK_ELEMENTS = new HashSet<>(Arrays.asList(
+      "address", "article", "aside", "blockquote", "br", "dd", "div", "dl", "dt", "fieldset", "figcaption",
+      "figure", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "li", "main", "nav", "ol",
+      "option", "p", "pre", "section", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul"
+  ));
+
+  /**
+   * The selectors and their callbacks.
+   */
+  private final List<Entry> entries;
+
+  /**
+   * The callback for every link in the document, or null.
+   */
+  private final Consumer<String> linkCallback;
+
+  /**
+   * Constructs an instance of html extractor.
+   *
+   * @param builder an instance of builder
+   */
+  private HtmlExtractor(final Builder builder) {
+    this.entries = Collections.unmodifiableList(new ArrayList<>(builder.entries));
+    this.linkCallback = builder.linkCallback;
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @return A new instance of builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Extract from html content.
+   *
+   * @param content the html content
+   * @param charset the charset of the content
+   * @param url     the url of the document, used to resolve relative links
+   */
+  public void extract(final @NotNull byte[] content, final @NotNull Charset charset, final String url) {
+    try {
+      extract(new ByteArrayInputStream(content), charset, url);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Extract from an html stream, the stream is read to its end but not
+   * closed.
+   *
+   * @param inputStream the html stream
+   * @param charset     the charset of the stream
+   * @param url         the url of the document, used to resolve relative links
+   * @throws IOException if the stream throws
+   */
+  public void extract(final @NotNull InputStream inputStream, final @NotNull Charset charset, final String url)
+      throws IOException {
+    URL baseUrl = null;
+    if (url != null) {
+      try {
+        baseUrl = new URL(url);
+      } catch (MalformedURLException e) {
+        baseUrl = null;
+      }
+    }
+    final Run run = new Run(baseUrl);
+    new HtmlTokenizer(new InputStreamReader(inputStream, charset), run).run();
+    run.finish();
+  }
+
+  /**
+   * A selector and its callback.
+   */
+  private static final class Entry {
+
+    /**
+     * The parsed selector.
+     */
+    private final HtmlSelector selector;
+
+    /**
+     * The callback for matched elements.
+     */
+    private final Consumer<HtmlElement> callback;
+
+    /**
+     * Constructs an instance of entry.
+     *
+     * @param selector the parsed selector
+     * @param callback the callback for matched elements
+     */
+    private Entry(final HtmlSelector selector, final Consumer<HtmlElement> callback) {
+      this.selector = selector;
+      this.callback = callback;
+    }
+
+  }
+
+  /**
+   * An open element.
+   */
+  private static final class Frame implements HtmlSelector.Element {
+
+    /**
+     * The lower cased tag name.
+     */
+    private final String tagName;
+
+    /**
+     * The attributes of the element.
+     */
+    private final Map<String, String> attributes;
+
+    /**
+     * The class names of the element, split on first use.
+     */
+    private Set<String> classes;
+
+    /**
+     * Constructs an instance of frame.
+     *
+     * @param tagName    the lower cased tag name
+     * @param attributes the attributes
+     */
+    private Frame(final String tagName, final Map<String, String> attributes) {
+      this.tagName = tagName;
+      this.attributes = attributes;
+    }
+
+    @Override
+    public String getTagName() {
+      return tagName;
+    }
+
+    @Override
+    public Map<String, String> getAttributes() {
+      return attributes;
+    }
+
+    @Override
+    public boolean hasClass(final String className) {
+      if (classes == null) {
+        final String value = attributes.get("class");
+        if (value == null || value.trim().isEmpty()) {
+          classes = Collections.emptySet();
+        } else {
+          classes = new HashSet<>(Arrays.asList(value.trim().split("\\s+")));
+        }
+      }
+      return classes.contains(className);
+    }
+
+  }
+
+  /**
+   * An element that is matched and still open.
+   */
+  private static final class Capture {
+
+    /**
+     * The matched element.
+     */
+    private final Frame frame;
+
+    /**
+     * The entry that matched.
+     */
+    private final Entry entry;
+
+    /**
+     * The normalised text so far.
+     */
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * The links so far.
+     */
+    private final List<String> links = new ArrayList<>();
+
+    /**
+     * Whether a space is to be added before the next non-whitespace.
+     */
+    private boolean pendingSpace;
+
+    /**
+     * Constructs an instance of capture.
+     *
+     * @param frame the matched element
+     * @param entry the entry that matched
+     */
+    private Capture(final Frame frame, final Entry entry) {
+      this.frame = frame;
+      this.entry = entry;
+    }
+
+    /**
+     * Append text, collapsing whitespace.
+     *
+     * @param value the text to append
+     */
+    private void append(final String value) {
+      for (int i = 0; i < value.length(); i++) {
+        final char c = value.charAt(i);
+        if (Character.isWhitespace(c) || c == ' ') {
+          space();
+        } else {
+          if (pendingSpace) {
+            text.append(' ');
+            pendingSpace = false;
+          }
+          text.append(c);
+        }
+      }
+    }
+
+    /**
+     * Separate the text before from the text after.
+     */
+    private void space() {
+      pendingSpace = text.length() > 0;
+    }
+
+  }
+
+  /**
+   * The state of a single extraction.
+   */
+  private final class Run implements HtmlTokenizer.Listener {
+
+    /**
+     * The stack of open elements.
+     */
+    private final List<Frame> stack = new ArrayList<>();
+
+    /**
+     * The matched elements that are still open, in the order matched.
+     */
+    private final List<Capture> captures = new ArrayList<>();
+
+    /**
+     * The base url used to resolve relative urls.
+     */
+    private URL baseUrl;
+
+    /**
+     * Whether a base element has been seen.
+     */
+    private boolean baseSeen;
+
+    /**
+     * Constructs an instance of run.
+     *
+     * @param baseUrl the url of the document
+     */
+    private Run(final URL baseUrl) {
+      this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public void startTag(final String name, final Map<String, String> attributes, final boolean selfClosing) {
+      if (!baseSeen && "base".equals(name) && attributes.containsKey("href")) {
+        baseSeen = true;
+        final String href = HtmlElement.resolve(baseUrl, attributes.get("href"));
+        if (href != null) {
+          try {
+            baseUrl = new URL(href);
+          } catch (MalformedURLException e) {
+            LOGGER.debug("Ignoring malformed base url: {}", href);
+          }
+        }
+      }
+
+      if (SELF_NESTING_ELEMENTS.contains(name) && !stack.isEmpty()
+          && stack.get(stack.size() - 1).tagName.equals(name)) {
+        pop();
+      }
+      if (BLOCK_ELEMENTS.contains(name)) {
+        space();
+      }
+
+      final Frame frame = new Frame(name, attributes);
+      stack.add(frame);
+      for (final Entry entry : entries) {
+        if (entry.selector.matches(stack)) {
+          captures.add(new Capture(frame, entry));
+        }
+      }
+
+      if (("a".equals(name) || "area".equals(name)) && attributes.containsKey("href")) {
+        final String link = HtmlElement.resolve(baseUrl, attributes.get("href"));
+        if (link != null) {
+          for (final Capture capture : captures) {
+            capture.links.add(link);
+          }
+          if (linkCallback != null) {
+            linkCallback.accept(link);
+          }
+        }
+      }
+
+      if (selfClosing || VOID_ELEMENTS.contains(name)) {
+        pop();
+      }
+    }
+
+    @Override
+    public void endTag(final String name) {
+      for (int i = stack.size() - 1; i >= 0; i--) {
+        if (stack.get(i).tagName.equals(name)) {
+          while (stack.size() > i) {
+            pop();
+          }
+          if (BLOCK_ELEMENTS.contains(name)) {
+            space();
+          }
+          return;
+        }
+      }
+    }
+
+    @Override
+    public void text(final String text) {
+      for (final Capture capture : captures) {
+        capture.append(text);
+      }
+    }
+
+    @Override
+    public boolean isTextRequired() {
+      return !captures.isEmpty();
+    }
+
+    /**
+     * Separate text in all open captures.
+     */
+    private void space() {
+      for (final Capture capture : captures) {
+        capture.space();
+      }
+    }
+
+    /**
+     * Close the innermost open element, emitting it if matched.
+     */
+    private void pop() {
+      final Frame frame = stack.remove(stack.size() - 1);
+      int first = captures.size();
+      while (first > 0 && captures.get(first - 1).frame == frame) {
+        first--;
+      }
+      if (first == captures.size()) {
+        return;
+      }
+      final List<Capture> closed = new ArrayList<>(captures.subList(first, captures.size()));
+      captures.subList(first, captures.size()).clear();
+      for (final Capture capture : closed) {
+        capture.entry.callback.accept(new HtmlElement(capture.entry.selector.toString(), frame.tagName,
+            frame.attributes, capture.text.toString(), capture.links, baseUrl));
+      }
+    }
+
+    /**
+     * Close all elements still open at the end of the document.
+     */
+    private void finish() {
+      while (!stack.isEmpty()) {
+        pop();
+      }
+    }
+
+  }
+
+  /**
+   * A builder for html extractor class.
+   */
+  public static final class Builder {
+
+    /**
+     * The selectors and their callbacks.
+     */
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * The callback for every link in the document.
+     */
+    private Consumer<String> linkCallback;
+
+    /**
+     * Register a callback for elements matching a selector.
+     * <p>
+     * Supported are type selectors, <code>*</code>, <code>#id</code>,
+     * <code>.class</code>, <code>[attr]</code>, <code>[attr=value]</code>,
+     * the descendant and child (<code>&gt;</code>) combinators, and
+     * comma separated groups, e.g. <code>div.item &gt; a[href]</code>.
+     * The callback is invoked when the matched element is closed.
+     * </p>
+     *
+     * @param selector the selector
+     * @param callback the callback for matched elements
+     * @return this
+     * @throws IllegalArgumentException if the selector is not supported
+     */
+    public Builder select(final @NotNull String selector, final @NotNull Consumer<HtmlElement> callback) {
+      for (final String group : HtmlSelector.splitGroup(selector)) {
+        entries.add(new Entry(HtmlSelector.parse(group), callback));
+      }
+      return this;
+    }
+
+    /**
+     * Register a callback for every link (<code>a[href]</code> and
+     * <code>area[href]</code>) in the document, resolved against the
+     * document url or its <code>base</code> element.
+     *
+     * @param callback the callback for absolute links
+     * @return this
+     */
+    public Builder onLink(final @NotNull Consumer<String> callback) {
+      this.linkCallback = callback;
+      return this;
+    }
+
+    /**
+     * Builds the html extractor with the options specified.
+     *
+     * @return an instance of html extractor
+     */
+    public HtmlExtractor build() {
+      return new HtmlExtractor(this);
+    }
+
+  }
+
+}
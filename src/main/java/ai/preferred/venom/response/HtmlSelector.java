@@ -0,0 +1,375 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class matches a subset of css selectors against the stack of
+ * open elements.
+ * <p>
+ * Supported are type selectors, universal selector, <code>#id</code>,
+ * <code>.class</code>, <code>[attr]</code>, <code>[attr=value]</code>,
+ * and the descendant and child (<code>&gt;</code>) combinators.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+final class HtmlSelector {
+
+  /**
+   * The compound selectors, from the outermost to the innermost.
+   */
+  private final Compound[] compounds;
+
+  /**
+   * Whether compound at index <code>i</code> must be a direct child of
+   * compound at <code>i - 1</code>.
+   */
+  private final boolean[] child;
+
+  /**
+   * The selector string.
+   */
+  private final String selector;
+
+  /**
+   * Constructs an instance of html selector.
+   *
+   * @param compounds the compound selectors
+   * @param child     the combinators
+   * @param selector  the selector string
+   */
+  private HtmlSelector(final Compound[] compounds, final boolean[] child, final String selector) {
+    this.compounds = compounds;
+    this.child = child;
+    this.selector = selector;
+  }
+
+  /**
+   * Split a selector group on the commas outside of attribute brackets
+   * and quoted values.
+   *
+   * @param selector the selector string
+   * @return the selectors of the group, trimmed
+   */
+  static List<String> splitGroup(final String selector) {
+    final List<String> groups = new ArrayList<>();
+    char quote = 0;
+    int depth = 0;
+    int start = 0;
+    for (int i = 0; i < selector.length(); i++) {
+      final char c = selector.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '"' || c == '\'') {
+        quote = c;
+      } else if (c == '[') {
+        depth++;
+      } else if (c == ']' && depth > 0) {
+        depth--;
+      } else if (c == ',' && depth == 0) {
+        groups.add(selector.substring(start, i).trim());
+        start = i + 1;
+      }
+    }
+    groups.add(selector.substring(start).trim());
+    return groups;
+  }
+
+  /**
+   * Parse a selector.
+   *
+   * @param selector the selector string
+   * @return parsed selector
+   * @throws IllegalArgumentException if the selector is not supported
+   */
+  static HtmlSelector parse(final String selector) {
+    final List<Compound> compounds = new ArrayList<>();
+    final List<Boolean> combinators = new ArrayList<>();
+    final int length = selector.length();
+    boolean childCombinator = false;
+    int i = 0;
+    while (i < length) {
+      final char c = selector.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+        continue;
+      }
+      if (c == '>') {
+        if (compounds.isEmpty() || childCombinator) {
+          throw new IllegalArgumentException("Unexpected '>' in selector: " + selector);
+        }
+        childCombinator = true;
+        i++;
+        continue;
+      }
+      final Compound compound = new Compound();
+      i = compound.parse(selector, i);
+      combinators.add(childCombinator);
+      compounds.add(compound);
+      childCombinator = false;
+    }
+    if (compounds.isEmpty() || childCombinator) {
+      throw new IllegalArgumentException("Incomplete selector: " + selector);
+    }
+
+    final boolean[] child = new boolean[combinators.size()];
+    for (int j = 0; j < child.length; j++) {
+      child[j] = combinators.get(j);
+    }
+    return new HtmlSelector(compounds.toArray(new Compound[0]), child, selector);
+  }
+
+  /**
+   * Returns true if the last element of the stack matches this selector.
+   *
+   * @param stack the stack of open elements, the root first
+   * @return true if matches
+   */
+  boolean matches(final List<? extends Element> stack) {
+    final int last = compounds.length - 1;
+    final int top = stack.size() - 1;
+    return top >= 0 && compounds[last].matches(stack.get(top)) && matches(stack, last - 1, top - 1, child[last]);
+  }
+
+  /**
+   * Returns true if compound <code>index</code> and all before it match
+   * the stack at or below <code>top</code>.
+   *
+   * @param stack  the stack of open elements
+   * @param index  the index of the compound to match
+   * @param top    the highest stack index to consider
+   * @param direct whether the compound must match exactly at top
+   * @return true if matches
+   */
+  private boolean matches(final List<? extends Element> stack, final int index, final int top, final boolean direct) {
+    if (index < 0) {
+      return true;
+    }
+    for (int j = top; j >= 0; j--) {
+      if (compounds[index].matches(stack.get(j)) && matches(stack, index - 1, j - 1, child[index])) {
+        return true;
+      }
+      if (direct) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return selector;
+  }
+
+  /**
+   * Returns true if the char may be part of an identifier.
+   *
+   * @param c the char
+   * @return true if identifier char
+   */
+  private static boolean isIdentifier(final char c) {
+    return Character.isLetterOrDigit(c) || c == '-' || c == '_';
+  }
+
+  /**
+   * Read an identifier.
+   *
+   * @param selector the selector string
+   * @param start    start index
+   * @return end index, exclusive
+   */
+  private static int readIdentifier(final String selector, final int start) {
+    int i = start;
+    while (i < selector.length() && isIdentifier(selector.charAt(i))) {
+      i++;
+    }
+    if (i == start) {
+      throw new IllegalArgumentException("Expected identifier at " + start + " in selector: " + selector);
+    }
+    return i;
+  }
+
+  /**
+   * An open element as seen by a selector.
+   */
+  interface Element {
+
+    /**
+     * Get the lower cased tag name.
+     *
+     * @return tag name
+     */
+    String getTagName();
+
+    /**
+     * Get the attributes, keyed by lower cased name.
+     *
+     * @return attributes
+     */
+    Map<String, String> getAttributes();
+
+    /**
+     * Returns true if the element has the class.
+     *
+     * @param className class name
+     * @return true if has class
+     */
+    boolean hasClass(String className);
+
+  }
+
+  /**
+   * A sequence of simple selectors without combinators.
+   */
+  private static final class Compound {
+
+    /**
+     * The attribute names to match, or the attribute names followed by the
+     * value to match, in pairs.
+     */
+    private final List<String[]> attributes = new ArrayList<>();
+
+    /**
+     * The class names to match.
+     */
+    private final List<String> classes = new ArrayList<>();
+
+    /**
+     * The tag name to match, or null for any.
+     */
+    private String tagName;
+
+    /**
+     * The id to match, or null for any.
+     */
+    private String id;
+
+    /**
+     * Parse a compound selector.
+     *
+     * @param selector the selector string
+     * @param start    start index
+     * @return end index, exclusive
+     */
+    private int parse(final String selector, final int start) {
+      int i = start;
+      if (selector.charAt(i) == '*') {
+        i++;
+      } else if (isIdentifier(selector.charAt(i))) {
+        final int end = readIdentifier(selector, i);
+        tagName = selector.substring(i, end).toLowerCase(Locale.ROOT);
+        i = end;
+      }
+      while (i < selector.length()) {
+        final char c = selector.charAt(i);
+        if (c == '#') {
+          final int end = readIdentifier(selector, i + 1);
+          id = selector.substring(i + 1, end);
+          i = end;
+        } else if (c == '.') {
+          final int end = readIdentifier(selector, i + 1);
+          classes.add(selector.substring(i + 1, end));
+          i = end;
+        } else if (c == '[') {
+          i = parseAttribute(selector, i + 1);
+        } else if (Character.isWhitespace(c) || c == '>') {
+          break;
+        } else {
+          throw new IllegalArgumentException("Unexpected '" + c + "' at " + i + " in selector: " + selector);
+        }
+      }
+      if (i == start) {
+        throw new IllegalArgumentException("Expected selector at " + start + " in selector: " + selector);
+      }
+      return i;
+    }
+
+    /**
+     * Parse an attribute selector after the opening bracket.
+     *
+     * @param selector the selector string
+     * @param start    start index
+     * @return end index, exclusive
+     */
+    private int parseAttribute(final String selector, final int start) {
+      final int nameEnd = readIdentifier(selector, start);
+      final String name = selector.substring(start, nameEnd).toLowerCase(Locale.ROOT);
+      if (nameEnd < selector.length() && selector.charAt(nameEnd) == ']') {
+        attributes.add(new String[]{name});
+        return nameEnd + 1;
+      }
+      if (nameEnd >= selector.length() || selector.charAt(nameEnd) != '=') {
+        throw new IllegalArgumentException("Expected '=' or ']' at " + nameEnd + " in selector: " + selector);
+      }
+      int i = nameEnd + 1;
+      final String value;
+      if (i < selector.length() && (selector.charAt(i) == '"' || selector.charAt(i) == '\'')) {
+        final int close = selector.indexOf(selector.charAt(i), i + 1);
+        if (close < 0) {
+          throw new IllegalArgumentException("Unclosed quote at " + i + " in selector: " + selector);
+        }
+        value = selector.substring(i + 1, close);
+        i = close + 1;
+      } else {
+        final int end = readIdentifier(selector, i);
+        value = selector.substring(i, end);
+        i = end;
+      }
+      if (i >= selector.length() || selector.charAt(i) != ']') {
+        throw new IllegalArgumentException("Expected ']' at " + i + " in selector: " + selector);
+      }
+      attributes.add(new String[]{name, value});
+      return i + 1;
+    }
+
+    /**
+     * Returns true if the element matches this compound selector.
+     *
+     * @param element the element
+     * @return true if matches
+     */
+    private boolean matches(final Element element) {
+      if (tagName != null && !tagName.equals(element.getTagName())) {
+        return false;
+      }
+      if (id != null && !id.equals(element.getAttributes().get("id"))) {
+        return false;
+      }
+      for (final String className : classes) {
+        if (!element.hasClass(className)) {
+          return false;
+        }
+      }
+      for (final String[] attribute : attributes) {
+        final String value = element.getAttributes().get(attribute[0]);
+        if (value == null || (attribute.length > 1 && !attribute[1].equals(value))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+  }
+
+}
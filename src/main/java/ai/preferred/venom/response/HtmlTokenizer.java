@@ -0,0 +1,565 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.response;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class tokenizes html incrementally from a reader and reports
+ * tags and text to a listener, without building a document tree.
+ * <p>
+ * The tokenizer is lenient, malformed markup is reported as text or
+ * skipped, it never throws on bad input.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+final class HtmlTokenizer {
+
+  /**
+   * The size of the read buffer.
+   */
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Named character references that are decoded.
+   */
+  private static final Map<String, Character> ENTITIES;
+
+  static {
+    final Map<String, Character> entities = new HashMap<>();
+    entities.put("amp", '&');
+    entities.put("lt", '<');
+    entities.put("gt", '>');
+    entities.put("quot", '"');
+    entities.put("apos", '\'');
+    entities.put("nbsp", ' ');
+    entities.put("copy", '\u00a9');
+    entities.put("reg", '\u00ae');
+    entities.put("hellip", '\u2026');
+    entities.put("mdash", '\u2014');
+    entities.put("ndash", '\u2013');
+    ENTITIES = Collections.unmodifiableMap(entities);
+  }
+
+  /**
+   * The reader to tokenize.
+   */
+  private final Reader reader;
+
+  /**
+   * The listener to report to.
+   */
+  private final Listener listener;
+
+  /**
+   * The read buffer.
+   */
+  private final char[] buffer = new char[BUFFER_SIZE];
+
+  /**
+   * The pending text since the last tag.
+   */
+  private final StringBuilder text = new StringBuilder();
+
+  /**
+   * The position of the next char in buffer.
+   */
+  private int position;
+
+  /**
+   * The number of chars in buffer.
+   */
+  private int limit;
+
+  /**
+   * A char pushed back, or -1 if none.
+   */
+  private int pushback = -1;
+
+  /**
+   * Constructs an instance of html tokenizer.
+   *
+   * @param reader   the reader to tokenize
+   * @param listener the listener to report to
+   */
+  HtmlTokenizer(final Reader reader, final Listener listener) {
+    this.reader = reader;
+    this.listener = listener;
+  }
+
+  /**
+   * Decode character references in a string.
+   *
+   * @param value the string to decode
+   * @return decoded string
+   */
+  static String decode(final CharSequence value) {
+    final int length = value.length();
+    final StringBuilder builder = new StringBuilder(length);
+    int i = 0;
+    while (i < length) {
+      final char c = value.charAt(i);
+      if (c != '&') {
+        builder.append(c);
+        i++;
+        continue;
+      }
+      final int end = indexOf(value, ';', i + 1, Math.min(length, i + 12));
+      if (end < 0) {
+        builder.append(c);
+        i++;
+        continue;
+      }
+      final String name = value.subSequence(i + 1, end).toString();
+      final int codePoint = toCodePoint(name);
+      if (codePoint < 0) {
+        builder.append(c);
+        i++;
+        continue;
+      }
+      builder.appendCodePoint(codePoint);
+      i = end + 1;
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Returns the index of a char within a range, or -1 if not found.
+   *
+   * @param value the string to search
+   * @param c     the char to find
+   * @param from  start index, inclusive
+   * @param to    end index, exclusive
+   * @return index of char or -1
+   */
+  private static int indexOf(final CharSequence value, final char c, final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      if (value.charAt(i) == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the code point of a character reference, or -1 if unknown.
+   *
+   * @param name the reference without the ampersand and semicolon
+   * @return code point or -1
+   */
+  private static int toCodePoint(final String name) {
+    if (name.length() > 1 && name.charAt(0) == '#') {
+      try {
+        final int codePoint;
+        if (name.charAt(1) == 'x' || name.charAt(1) == 'X') {
+          codePoint = Integer.parseInt(name.substring(2), 16);
+        } else {
+          codePoint = Integer.parseInt(name.substring(1));
+        }
+        return Character.isValidCodePoint(codePoint) ? codePoint : -1;
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+    }
+    final Character c = ENTITIES.get(name);
+    return c == null ? -1 : c;
+  }
+
+  /**
+   * Returns true if the char is a whitespace in html.
+   *
+   * @param c the char
+   * @return true if whitespace
+   */
+  private static boolean isWhitespace(final int c) {
+    return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+  }
+
+  /**
+   * Returns true if the char is an ascii letter.
+   *
+   * @param c the char
+   * @return true if letter
+   */
+  private static boolean isLetter(final int c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  /**
+   * Tokenize the reader until the end of input.
+   *
+   * @throws IOException if the reader throws
+   */
+  void run() throws IOException {
+    int c;
+    while ((c = read()) != -1) {
+      if (c != '<') {
+        appendText(c);
+        continue;
+      }
+      final int next = read();
+      if (next == '/') {
+        flushText();
+        readEndTag();
+      } else if (next == '!') {
+        flushText();
+        readDeclaration();
+      } else if (next == '?') {
+        flushText();
+        skipPast('>');
+      } else if (isLetter(next)) {
+        flushText();
+        readStartTag(next);
+      } else {
+        appendText(c);
+        unread(next);
+      }
+    }
+    flushText();
+  }
+
+  /**
+   * Read a char from the buffer, refilling it as necessary.
+   *
+   * @return the char or -1 if end of input
+   * @throws IOException if the reader throws
+   */
+  private int read() throws IOException {
+    if (pushback != -1) {
+      final int c = pushback;
+      pushback = -1;
+      return c;
+    }
+    if (position >= limit) {
+      limit = reader.read(buffer, 0, buffer.length);
+      position = 0;
+      if (limit <= 0) {
+        limit = 0;
+        return -1;
+      }
+    }
+    return buffer[position++];
+  }
+
+  /**
+   * Push back a char to be returned by the next read.
+   *
+   * @param c the char or -1
+   */
+  private void unread(final int c) {
+    pushback = c;
+  }
+
+  /**
+   * Append a char to the pending text, if required by the listener.
+   *
+   * @param c the char
+   */
+  private void appendText(final int c) {
+    if (listener.isTextRequired()) {
+      text.append((char) c);
+    }
+  }
+
+  /**
+   * Report the pending text to the listener.
+   */
+  private void flushText() {
+    if (text.length() > 0) {
+      listener.text(decode(text));
+      text.setLength(0);
+    }
+  }
+
+  /**
+   * Skip whitespace and return the next char.
+   *
+   * @return the next non-whitespace char or -1
+   * @throws IOException if the reader throws
+   */
+  private int skipWhitespace() throws IOException {
+    int c = read();
+    while (isWhitespace(c)) {
+      c = read();
+    }
+    return c;
+  }
+
+  /**
+   * Skip past the next occurrence of a char.
+   *
+   * @param end the char to skip past
+   * @throws IOException if the reader throws
+   */
+  private void skipPast(final char end) throws IOException {
+    int c = read();
+    while (c != -1 && c != end) {
+      c = read();
+    }
+  }
+
+  /**
+   * Read a tag or attribute name, lower cased.
+   *
+   * @param first the first char of the name
+   * @return the name
+   * @throws IOException if the reader throws
+   */
+  private String readName(final int first) throws IOException {
+    final StringBuilder name = new StringBuilder();
+    int c = first;
+    while (c != -1 && !isWhitespace(c) && c != '>' && c != '/' && c != '=') {
+      name.append((char) c);
+      c = read();
+    }
+    unread(c);
+    return name.toString().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Read a start tag and its attributes after the opening bracket.
+   *
+   * @param first the first char of the tag name
+   * @throws IOException if the reader throws
+   */
+  private void readStartTag(final int first) throws IOException {
+    final String name = readName(first);
+    final Map<String, String> attributes = new LinkedHashMap<>();
+    boolean selfClosing = false;
+    while (true) {
+      final int c = skipWhitespace();
+      if (c == -1 || c == '>') {
+        break;
+      }
+      if (c == '/') {
+        final int next = read();
+        if (next == '>') {
+          selfClosing = true;
+          break;
+        }
+        unread(next);
+        continue;
+      }
+      final String attribute = readName(c);
+      if (attribute.isEmpty()) {
+        // stray '=', skip it
+        read();
+        continue;
+      }
+      int next = skipWhitespace();
+      String value = "";
+      if (next == '=') {
+        value = readAttributeValue();
+      } else {
+        unread(next);
+      }
+      attributes.putIfAbsent(attribute, value);
+    }
+
+    listener.startTag(name, attributes, selfClosing);
+    if (!selfClosing && isRawText(name)) {
+      readRawText(name);
+    }
+  }
+
+  /**
+   * Read an attribute value after the equal sign.
+   *
+   * @return the decoded value
+   * @throws IOException if the reader throws
+   */
+  private String readAttributeValue() throws IOException {
+    final StringBuilder value = new StringBuilder();
+    int c = skipWhitespace();
+    if (c == '"' || c == '\'') {
+      final int quote = c;
+      c = read();
+      while (c != -1 && c != quote) {
+        value.append((char) c);
+        c = read();
+      }
+    } else {
+      while (c != -1 && !isWhitespace(c) && c != '>') {
+        value.append((char) c);
+        c = read();
+      }
+      unread(c);
+    }
+    return decode(value);
+  }
+
+  /**
+   * Returns true if the contents of the element are not markup.
+   *
+   * @param name the tag name
+   * @return true if raw text element
+   */
+  private static boolean isRawText(final String name) {
+    return "script".equals(name) || "style".equals(name) || "textarea".equals(name) || "title".equals(name);
+  }
+
+  /**
+   * Read the contents of a raw text element up to and including its end tag.
+   * <p>
+   * The contents are only buffered if text is required by the listener,
+   * otherwise they are skipped.
+   * </p>
+   *
+   * @param name the tag name
+   * @throws IOException if the reader throws
+   */
+  private void readRawText(final String name) throws IOException {
+    final boolean escapable = "textarea".equals(name) || "title".equals(name);
+    final StringBuilder raw = listener.isTextRequired() ? new StringBuilder() : null;
+    int c;
+    while ((c = read()) != -1) {
+      if (c != '<') {
+        if (raw != null) {
+          raw.append((char) c);
+        }
+        continue;
+      }
+      final int mark = raw == null ? 0 : raw.length();
+      if (raw != null) {
+        raw.append((char) c);
+      }
+      c = read();
+      if (c != '/') {
+        unread(c);
+        continue;
+      }
+      if (raw != null) {
+        raw.append((char) c);
+      }
+      int i = 0;
+      while (i < name.length() && (c = read()) != -1 && Character.toLowerCase((char) c) == name.charAt(i)) {
+        if (raw != null) {
+          raw.append((char) c);
+        }
+        i++;
+      }
+      if (i == name.length()) {
+        c = read();
+        if (isWhitespace(c) || c == '>' || c == '/' || c == -1) {
+          if (raw != null) {
+            raw.setLength(mark);
+          }
+          if (c != '>') {
+            skipPast('>');
+          }
+          break;
+        }
+      }
+      unread(c);
+    }
+    if (raw != null && raw.length() > 0) {
+      listener.text(escapable ? decode(raw) : raw.toString());
+    }
+    listener.endTag(name);
+  }
+
+  /**
+   * Read an end tag after the opening bracket and slash.
+   *
+   * @throws IOException if the reader throws
+   */
+  private void readEndTag() throws IOException {
+    final int first = read();
+    if (!isLetter(first)) {
+      unread(first);
+      skipPast('>');
+      return;
+    }
+    final String name = readName(first);
+    skipPast('>');
+    listener.endTag(name);
+  }
+
+  /**
+   * Read a comment, doctype or other declaration after the opening
+   * bracket and exclamation mark.
+   *
+   * @throws IOException if the reader throws
+   */
+  private void readDeclaration() throws IOException {
+    int c = read();
+    if (c != '-') {
+      unread(c);
+      skipPast('>');
+      return;
+    }
+    c = read();
+    if (c != '-') {
+      unread(c);
+      skipPast('>');
+      return;
+    }
+    int dashes = 0;
+    while ((c = read()) != -1) {
+      if (c == '>' && dashes >= 2) {
+        return;
+      }
+      dashes = c == '-' ? dashes + 1 : 0;
+    }
+  }
+
+  /**
+   * The listener that receives the tokens.
+   */
+  interface Listener {
+
+    /**
+     * Called when a start tag is read.
+     *
+     * @param name        the lower cased tag name
+     * @param attributes  the decoded attributes, keyed by lower cased name
+     * @param selfClosing true if the tag ends with a slash
+     */
+    void startTag(String name, Map<String, String> attributes, boolean selfClosing);
+
+    /**
+     * Called when an end tag is read.
+     *
+     * @param name the lower cased tag name
+     */
+    void endTag(String name);
+
+    /**
+     * Called with decoded text between tags.
+     *
+     * @param text the text
+     */
+    void text(String text);
+
+    /**
+     * Returns true if the listener needs text at this point, text is
+     * not buffered otherwise.
+     *
+     * @return true if text is required
+     */
+    boolean isTextRequired();
+
+  }
+
+}
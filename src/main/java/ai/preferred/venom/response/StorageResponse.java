@@ -22,6 +22,8 @@ import org.apache.http.HttpHost;
 import org.apache.http.entity.ContentType;
 
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.InputStream;
 
 
 /**
@@ -60,6 +62,17 @@ public class StorageResponse implements Response, Retrievable {
     return record.getResponseContent();
   }
 
+  /**
+   * Open a stream of the content, read from storage as the stream is
+   * read if the record has not loaded its content.
+   *
+   * @return stream of the content, or null if there is none
+   * @throws IOException if the content cannot be read
+   */
+  public final InputStream getContentStream() throws IOException {
+    return record.getResponseContentStream();
+  }
+
   @Override
   public final @NotNull ContentType getContentType() {
     return record.getContentType();
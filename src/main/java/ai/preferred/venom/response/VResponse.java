@@ -27,6 +27,14 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
 /**
+ * This class provides convenience views of a response.
+ * <p>
+ * The decoded html and the parsed jsoup document are computed lazily
+ * and cached, so that they are only computed once per charset. The
+ * cached jsoup document is shared between callers, any modification
+ * to it will be visible to subsequent calls of {@link #getJsoup()}.
+ * </p>
+ *
  * @author Maksim Tkachenko
  * @author Truong Quoc Tuan
  * @author Ween Jiann Lee
@@ -43,6 +51,21 @@ public class VResponse implements Response, Unwrappable {
    */
   private final Response innerResponse;
 
+  /**
+   * An object to synchronise upon when computing cached views.
+   */
+  private final Object lock = new Object();
+
+  /**
+   * The cached html of the response.
+   */
+  private volatile Cached<String> html;
+
+  /**
+   * The cached jsoup document of the response.
+   */
+  private volatile Cached<Document> document;
+
   /**
    * Constructs a VResponse.
    *
@@ -88,16 +111,25 @@ public class VResponse implements Response, Unwrappable {
   }
 
   /**
-   * Returns the html in string format.
+   * Get the charset of the content type or the default charset.
    *
-   * @return string of html response
+   * @return charset of this response
    */
-  public final String getHtml() {
+  private Charset getCharset() {
     final Charset charset = getContentType().getCharset();
     if (charset == null) {
-      return getHtml(DEFAULT_CHARSET);
+      return DEFAULT_CHARSET;
     }
-    return getHtml(charset);
+    return charset;
+  }
+
+  /**
+   * Returns the html in string format.
+   *
+   * @return string of html response
+   */
+  public final String getHtml() {
+    return getHtml(getCharset());
   }
 
   /**
@@ -107,7 +139,17 @@ public class VResponse implements Response, Unwrappable {
    * @return string of html response
    */
   public final String getHtml(final Charset charset) {
-    return new String(getContent(), charset);
+    Cached<String> cached = html;
+    if (cached == null || !cached.charset.equals(charset)) {
+      synchronized (lock) {
+        cached = html;
+        if (cached == null || !cached.charset.equals(charset)) {
+          cached = new Cached<>(charset, new String(getContent(), charset));
+          html = cached;
+        }
+      }
+    }
+    return cached.value;
   }
 
   /**
@@ -116,7 +158,7 @@ public class VResponse implements Response, Unwrappable {
    * @return jsoup document of response
    */
   public final Document getJsoup() {
-    return Jsoup.parse(getHtml(), getUrl());
+    return getJsoup(getCharset());
   }
 
   /**
@@ -126,11 +168,86 @@ public class VResponse implements Response, Unwrappable {
    * @return jsoup document of response
    */
   public final Document getJsoup(final Charset charset) {
-    return Jsoup.parse(getHtml(charset), getUrl());
+    Cached<Document> cached = document;
+    if (cached == null || !cached.charset.equals(charset)) {
+      synchronized (lock) {
+        cached = document;
+        if (cached == null || !cached.charset.equals(charset)) {
+          cached = new Cached<>(charset, Jsoup.parse(getHtml(charset), getUrl()));
+          document = cached;
+        }
+      }
+    }
+    return cached.value;
+  }
+
+  /**
+   * Stream the content of this response through an html extractor,
+   * without decoding it to a string or building a jsoup document.
+   *
+   * @param extractor the extractor to run
+   */
+  public final void extract(final @NotNull HtmlExtractor extractor) {
+    extract(extractor, getCharset());
+  }
+
+  /**
+   * Stream the content of this response through an html extractor,
+   * without decoding it to a string or building a jsoup document.
+   *
+   * @param extractor the extractor to run
+   * @param charset   use specified charset for this html document
+   */
+  public final void extract(final @NotNull HtmlExtractor extractor, final @NotNull Charset charset) {
+    extractor.extract(getContent(), charset, getUrl());
+  }
+
+  /**
+   * Release the cached html and jsoup document of this response.
+   * <p>
+   * They will be computed again if requested after release.
+   * </p>
+   */
+  public final void release() {
+    synchronized (lock) {
+      html = null;
+      document = null;
+    }
   }
 
   @Override
   public final Response getInner() {
     return innerResponse;
   }
+
+  /**
+   * A value computed from the content with a specific charset.
+   *
+   * @param <T> the type of value
+   */
+  private static final class Cached<T> {
+
+    /**
+     * The charset used to compute the value.
+     */
+    private final Charset charset;
+
+    /**
+     * The computed value.
+     */
+    private final T value;
+
+    /**
+     * Constructs an instance of cached.
+     *
+     * @param charset the charset used to compute the value
+     * @param value   the computed value
+     */
+    private Cached(final Charset charset, final T value) {
+      this.charset = charset;
+      this.value = value;
+    }
+
+  }
+
 }
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.revisit;
+
+import ai.preferred.venom.job.Priority;
+import ai.preferred.venom.request.Request;
+import ai.preferred.venom.storage.FetchHistory;
+import ai.preferred.venom.storage.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class provides a revisit policy that estimates how often the
+ * content of a url changes from the md5 hashes of its past fetches.
+ * <p>
+ * Changes are modelled as a Poisson process. Its rate is estimated
+ * from the number of fetches that found changed content, with the
+ * bias-reduced estimator of Cho and Garcia-Molina, since fetches only
+ * tell whether content changed at least once in between. A url is
+ * revisited once the probability that it has changed since its last
+ * fetch reaches a target, within a minimum and maximum interval, and
+ * urls that change more often are revisited at a higher priority.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public final class ChangeRateRevisitPolicy implements RevisitPolicy {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChangeRateRevisitPolicy.class);
+
+  /**
+   * The priorities from the most to the least often changed.
+   */
+  private static final Priority[] PRIORITIES = Priority.values();
+
+  /**
+   * The store of past fetches.
+   */
+  private final FetchHistory history;
+
+  /**
+   * The maximum number of past fetches to estimate from.
+   */
+  private final int historySize;
+
+  /**
+   * The probability of change at which to revisit.
+   */
+  private final double targetProbability;
+
+  /**
+   * The shortest interval between fetches.
+   */
+  private final long minInterval;
+
+  /**
+   * The longest interval between fetches.
+   */
+  private final long maxInterval;
+
+  /**
+   * The interval after the first fetch.
+   */
+  private final long initialInterval;
+
+  /**
+   * Constructs an instance of change rate revisit policy.
+   *
+   * @param builder an instance of builder
+   */
+  private ChangeRateRevisitPolicy(final Builder builder) {
+    this.history = builder.history;
+    this.historySize = builder.historySize;
+    this.targetProbability = builder.targetProbability;
+    this.minInterval = builder.minInterval;
+    this.maxInterval = builder.maxInterval;
+    this.initialInterval = builder.initialInterval;
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @param history the store of past fetches
+   * @return A new instance of builder
+   */
+  public static Builder builder(final @NotNull FetchHistory history) {
+    return new Builder(history);
+  }
+
+  /**
+   * Estimate the rate of change from past fetches.
+   *
+   * @param fetches the past fetches, latest first
+   * @return the estimated number of changes per millisecond, or NaN if unknown
+   */
+  static double estimateChangeRate(final List<FetchHistory.Fetch> fetches) {
+    final int n = fetches.size() - 1;
+    if (n < 1) {
+      return Double.NaN;
+    }
+    final long span = fetches.get(0).getDateCreated() - fetches.get(n).getDateCreated();
+    if (span <= 0) {
+      return Double.NaN;
+    }
+    int changes = 0;
+    for (int i = 0; i < n; i++) {
+      if (!Objects.equals(fetches.get(i).getMD5(), fetches.get(i + 1).getMD5())) {
+        changes++;
+      }
+    }
+    final double meanInterval = (double) span / n;
+    return Math.log((n + 0.5) / (n - changes + 0.5)) / meanInterval;
+  }
+
+  /**
+   * Get the priority for a revisit interval, the shortest intervals
+   * getting the highest priority.
+   *
+   * @param interval the revisit interval
+   * @return the priority
+   */
+  private Priority getPriority(final long interval) {
+    if (maxInterval == minInterval) {
+      return Priority.DEFAULT;
+    }
+    final double position = Math.log((double) interval / minInterval) / Math.log((double) maxInterval / minInterval);
+    final int index = (int) Math.round(position * (PRIORITIES.length - 1));
+    return PRIORITIES[Math.max(0, Math.min(PRIORITIES.length - 1, index))];
+  }
+
+  @Override
+  public Revisit getRevisit(final Request request) {
+    final long now = System.currentTimeMillis();
+    final List<FetchHistory.Fetch> fetches;
+    try {
+      fetches = history.getHistory(request, historySize);
+    } catch (final StorageException e) {
+      LOGGER.warn("Unable to get history of {}, revisiting after the initial interval.", request.getUrl(), e);
+      return new Revisit(now + initialInterval, Priority.DEFAULT, Double.NaN);
+    }
+    if (fetches.isEmpty()) {
+      return new Revisit(now, Priority.DEFAULT, Double.NaN);
+    }
+
+    final long lastFetch = fetches.get(0).getDateCreated();
+    final double rate = estimateChangeRate(fetches);
+    if (Double.isNaN(rate)) {
+      return new Revisit(lastFetch + initialInterval, Priority.DEFAULT, rate);
+    }
+
+    final double interval = rate > 0 ? -Math.log(1 - targetProbability) / rate : Double.POSITIVE_INFINITY;
+    final long clamped = (long) Math.max(minInterval, Math.min(maxInterval, interval));
+    return new Revisit(lastFetch + clamped, getPriority(clamped), rate * TimeUnit.DAYS.toMillis(1));
+  }
+
+  /**
+   * A builder for change rate revisit policy class.
+   */
+  public static final class Builder {
+
+    /**
+     * The store of past fetches.
+     */
+    private final FetchHistory history;
+
+    /**
+     * The maximum number of past fetches to estimate from.
+     */
+    private int historySize;
+
+    /**
+     * The probability of change at which to revisit.
+     */
+    private double targetProbability;
+
+    /**
+     * The shortest interval between fetches.
+     */
+    private long minInterval;
+
+    /**
+     * The longest interval between fetches.
+     */
+    private long maxInterval;
+
+    /**
+     * The interval after the first fetch.
+     */
+    private long initialInterval;
+
+    /**
+     * Constructs an instance of builder with default values.
+     *
+     * @param history the store of past fetches
+     */
+    private Builder(final FetchHistory history) {
+      if (history == null) {
+        throw new IllegalStateException("Attribute 'history' cannot be null.");
+      }
+      this.history = history;
+      historySize = 16;
+      targetProbability = 0.5;
+      minInterval = TimeUnit.HOURS.toMillis(1);
+      maxInterval = TimeUnit.DAYS.toMillis(30);
+      initialInterval = TimeUnit.DAYS.toMillis(1);
+    }
+
+    /**
+     * Sets the maximum number of past fetches to estimate from. Defaults
+     * to 16.
+     *
+     * @param historySize the number of fetches
+     * @return this
+     */
+    public Builder setHistorySize(final int historySize) {
+      if (historySize < 2) {
+        throw new IllegalStateException("Attribute 'historySize' must be more or equal to 2.");
+      }
+      this.historySize = historySize;
+      return this;
+    }
+
+    /**
+     * Sets the probability that a url has changed at which it is
+     * revisited. Lower values revisit more often. Defaults to 0.5.
+     *
+     * @param targetProbability the probability
+     * @return this
+     */
+    public Builder setTargetProbability(final double targetProbability) {
+      if (!(targetProbability > 0 && targetProbability < 1)) {
+        throw new IllegalStateException("Attribute 'targetProbability' must be between 0 and 1.");
+      }
+      this.targetProbability = targetProbability;
+      return this;
+    }
+
+    /**
+     * Sets the shortest interval between fetches. Defaults to 1 hour.
+     *
+     * @param interval the interval
+     * @param unit     the unit of interval
+     * @return this
+     */
+    public Builder setMinInterval(final long interval, final @NotNull TimeUnit unit) {
+      if (interval < 1) {
+        throw new IllegalStateException("Attribute 'minInterval' must be more or equal to 1.");
+      }
+      this.minInterval = unit.toMillis(interval);
+      return this;
+    }
+
+    /**
+     * Sets the longest interval between fetches. Defaults to 30 days.
+     *
+     * @param interval the interval
+     * @param unit     the unit of interval
+     * @return this
+     */
+    public Builder setMaxInterval(final long interval, final @NotNull TimeUnit unit) {
+      if (interval < 1) {
+        throw new IllegalStateException("Attribute 'maxInterval' must be more or equal to 1.");
+      }
+      this.maxInterval = unit.toMillis(interval);
+      return this;
+    }
+
+    /**
+     * Sets the interval after the first fetch, when there is no history
+     * to estimate from. Defaults to 1 day.
+     *
+     * @param interval the interval
+     * @param unit     the unit of interval
+     * @return this
+     */
+    public Builder setInitialInterval(final long interval, final @NotNull TimeUnit unit) {
+      if (interval < 0) {
+        throw new IllegalStateException("Attribute 'initialInterval' must be more or equal to 0.");
+      }
+      this.initialInterval = unit.toMillis(interval);
+      return this;
+    }
+
+    /**
+     * Builds the revisit policy with the options specified.
+     *
+     * @return an instance of change rate revisit policy
+     */
+    public ChangeRateRevisitPolicy build() {
+      if (minInterval > maxInterval) {
+        throw new IllegalStateException("Attribute 'minInterval' must be less or equal to 'maxInterval'.");
+      }
+      return new ChangeRateRevisitPolicy(this);
+    }
+
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.revisit;
+
+import ai.preferred.venom.job.JobAttribute;
+import ai.preferred.venom.job.NotBeforeJobAttribute;
+import ai.preferred.venom.job.Priority;
+import ai.preferred.venom.job.PriorityJobAttribute;
+
+/**
+ * This class represents when, and at what priority, a url should be
+ * fetched again.
+ *
+ * @author Ween Jiann Lee
+ */
+public final class Revisit {
+
+  /**
+   * The time to fetch again, in milliseconds since the epoch.
+   */
+  private final long time;
+
+  /**
+   * The priority to fetch again at.
+   */
+  private final Priority priority;
+
+  /**
+   * The estimated number of changes per day.
+   */
+  private final double changeRate;
+
+  /**
+   * Constructs an instance of revisit.
+   *
+   * @param time       the time to fetch again, in milliseconds since the epoch
+   * @param priority   the priority to fetch again at
+   * @param changeRate the estimated number of changes per day, or NaN if unknown
+   */
+  public Revisit(final long time, final Priority priority, final double changeRate) {
+    this.time = time;
+    this.priority = priority;
+    this.changeRate = changeRate;
+  }
+
+  /**
+   * Get the time to fetch again.
+   *
+   * @return the time in milliseconds since the epoch
+   */
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * Get the priority to fetch again at.
+   *
+   * @return the priority
+   */
+  public Priority getPriority() {
+    return priority;
+  }
+
+  /**
+   * Get the estimated number of changes per day.
+   *
+   * @return the change rate, or NaN if unknown
+   */
+  public double getChangeRate() {
+    return changeRate;
+  }
+
+  /**
+   * Get new job attributes to schedule a job for this revisit.
+   *
+   * @return the job attributes
+   */
+  public JobAttribute[] toJobAttributes() {
+    return new JobAttribute[]{new NotBeforeJobAttribute(time), new PriorityJobAttribute(priority)};
+  }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.revisit;
+
+import ai.preferred.venom.job.JobAttribute;
+import ai.preferred.venom.request.Request;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * This interface represents a policy deciding when, and at what
+ * priority, a url should be fetched again.
+ * <p>
+ * The attributes returned by {@link #getJobAttributes(Request)} can be
+ * passed to the scheduler, for use with a
+ * {@link ai.preferred.venom.job.DelayedJobQueue}, for example
+ * {@code scheduler.addAll(requests, handler, true, policy::getJobAttributes)}.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+@FunctionalInterface
+public interface RevisitPolicy {
+
+  /**
+   * Decide when and at what priority to fetch a request again.
+   *
+   * @param request request
+   * @return the revisit
+   */
+  @NotNull
+  Revisit getRevisit(@NotNull Request request);
+
+  /**
+   * Get the job attributes to schedule a request for its revisit.
+   *
+   * @param request request
+   * @return new job attributes
+   */
+  @NotNull
+  default JobAttribute[] getJobAttributes(final @NotNull Request request) {
+    return getRevisit(request).toJobAttributes();
+  }
+
+}
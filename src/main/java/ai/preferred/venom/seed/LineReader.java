@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.seed;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * This interface reads UTF-8 lines and keeps track of the byte offset
+ * of the next line.
+ *
+ * @author Ween Jiann Lee
+ */
+interface LineReader extends Closeable {
+
+  /**
+   * Read the next line without the line terminator.
+   *
+   * @return the line or null if end of input
+   * @throws IOException if an I/O error occurs
+   */
+  @Nullable
+  String readLine() throws IOException;
+
+  /**
+   * Get the byte offset of the next line in the uncompressed input.
+   *
+   * @return byte offset
+   */
+  long getOffset();
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.seed;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class reads lines from an uncompressed file by mapping it into
+ * memory one window at a time, avoiding copies through a stream buffer.
+ *
+ * @author Ween Jiann Lee
+ */
+final class MappedLineReader implements LineReader {
+
+  /**
+   * The default size of a mapped window.
+   */
+  static final int DEFAULT_WINDOW_SIZE = 1 << 26;
+
+  /**
+   * The channel of the file.
+   */
+  private final FileChannel channel;
+
+  /**
+   * The size of the file.
+   */
+  private final long size;
+
+  /**
+   * The size of a mapped window, grows for lines longer than a window.
+   */
+  private int windowSize;
+
+  /**
+   * The mapped window.
+   */
+  private MappedByteBuffer window;
+
+  /**
+   * The file position of the start of the mapped window.
+   */
+  private long windowStart;
+
+  /**
+   * The buffer to copy lines into for decoding.
+   */
+  private byte[] line = new byte[256];
+
+  /**
+   * The offset of the next line.
+   */
+  private long offset;
+
+  /**
+   * Constructs an instance of mapped line reader.
+   *
+   * @param path       the file to read
+   * @param offset     the offset of the first line to read
+   * @param windowSize the size of a mapped window
+   * @throws IOException if an I/O error occurs or the offset is past the end
+   */
+  MappedLineReader(final Path path, final long offset, final int windowSize) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    this.size = channel.size();
+    if (offset > size) {
+      channel.close();
+      throw new IOException("Offset " + offset + " is past the end of input.");
+    }
+    this.windowSize = windowSize;
+    this.offset = offset;
+  }
+
+  /**
+   * Map a window starting at the offset of the next line.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  private void map() throws IOException {
+    windowStart = offset;
+    window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(windowSize, size - offset));
+  }
+
+  @Override
+  public String readLine() throws IOException {
+    if (offset >= size) {
+      return null;
+    }
+    if (window == null || offset >= windowStart + window.limit()) {
+      map();
+    }
+    while (true) {
+      final int from = (int) (offset - windowStart);
+      final int limit = window.limit();
+      int end = from;
+      while (end < limit && window.get(end) != '\n') {
+        end++;
+      }
+      if (end < limit || windowStart + limit == size) {
+        offset = windowStart + Math.min(end + 1, limit);
+        return decode(from, end - from);
+      }
+      if (from == 0) {
+        if (windowSize == Integer.MAX_VALUE) {
+          throw new IOException("Line at offset " + offset + " is too long.");
+        }
+        windowSize = (int) Math.min(Integer.MAX_VALUE, windowSize * 2L);
+      }
+      map();
+    }
+  }
+
+  /**
+   * Decode a line in the mapped window, removing a trailing carriage
+   * return.
+   *
+   * @param from   start index in window
+   * @param length number of bytes
+   * @return the line
+   */
+  private String decode(final int from, final int length) {
+    if (length > line.length) {
+      line = new byte[Math.max(length, line.length * 2)];
+    }
+    final ByteBuffer view = window.duplicate();
+    ((Buffer) view).position(from);
+    view.get(line, 0, length);
+    int end = length;
+    if (end > 0 && line[end - 1] == '\r') {
+      end--;
+    }
+    return new String(line, 0, end, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public long getOffset() {
+    return offset;
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    channel.close();
+  }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.seed;
+
+/**
+ * The compression of seed files.
+ *
+ * @author Ween Jiann Lee
+ */
+public enum SeedCompression {
+
+  /**
+   * Detect compression from the leading bytes of the file.
+   */
+  AUTO,
+
+  /**
+   * Uncompressed, the file is memory-mapped.
+   */
+  NONE,
+
+  /**
+   * Gzip compressed.
+   */
+  GZIP,
+
+  /**
+   * Zstandard compressed, requires {@code com.github.luben:zstd-jni} on
+   * the classpath.
+   */
+  ZSTD
+
+}
@@ -0,0 +1,652 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.seed;
+
+import ai.preferred.venom.job.RequestSource;
+import ai.preferred.venom.request.Request;
+import ai.preferred.venom.request.VRequest;
+import com.github.luben.zstd.ZstdInputStream;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.constraints.NotNull;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class provides a request source that streams seed urls from a
+ * file, without loading the file into memory.
+ * <p>
+ * Uncompressed files are memory-mapped, gzip and zstd files are
+ * decompressed as they are read. The offset following the last seed
+ * polled from a {@link ai.preferred.venom.job.PrefetchingJobQueue} can
+ * be saved with {@link #getOffset()} and passed to
+ * {@link Builder#setOffset(long)} to resume reading, seeds that were
+ * prefetched but not polled are read again. For compressed files the
+ * offset is in uncompressed bytes, and resuming decompresses and
+ * discards the input up to the offset.
+ * </p>
+ * <p>
+ * Requests are kept until they are reported polled, so a source read
+ * directly with {@link #next(int)} should report them with
+ * {@link #polled(Request)}, or resume from {@link #getReadOffset()}.
+ * </p>
+ * <p>
+ * Records are read one line at a time, so CSV values and JSON objects
+ * cannot span lines. Records without a url are skipped.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public final class SeedFileSource implements RequestSource, AutoCloseable {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(SeedFileSource.class);
+
+  /**
+   * The leading bytes of a gzip file.
+   */
+  private static final int GZIP_MAGIC = 0x1f8b;
+
+  /**
+   * The leading bytes of a zstd frame.
+   */
+  private static final int ZSTD_MAGIC = 0x28b52ffd;
+
+  /**
+   * The file to read.
+   */
+  private final Path path;
+
+  /**
+   * The format of the file.
+   */
+  private final SeedFormat format;
+
+  /**
+   * The compression of the file.
+   */
+  private final SeedCompression compression;
+
+  /**
+   * The field of the url in JSONL records.
+   */
+  private final String field;
+
+  /**
+   * The column of the url in CSV records.
+   */
+  private final int column;
+
+  /**
+   * The factory for requests from urls.
+   */
+  private final Function<String, ? extends Request> requestFactory;
+
+  /**
+   * The reader of the file.
+   */
+  private final LineReader reader;
+
+  /**
+   * The requests returned but not polled, with the offset following
+   * each of them, in the order returned.
+   */
+  private final Deque<Pending> pending = new ArrayDeque<>();
+
+  /**
+   * The offset following the last request polled.
+   */
+  private volatile long polledOffset;
+
+  /**
+   * Constructs an instance of seed file source.
+   *
+   * @param builder an instance of builder
+   * @throws IOException if the file cannot be opened
+   */
+  private SeedFileSource(final Builder builder) throws IOException {
+    this.path = builder.path;
+    this.format = builder.format;
+    this.compression = builder.compression == SeedCompression.AUTO
+        ? detectCompression(builder.path)
+        : builder.compression;
+    this.field = builder.field;
+    this.requestFactory = builder.requestFactory;
+
+    if (format == SeedFormat.CSV && builder.header) {
+      try (LineReader headerReader = open(0, builder.windowSize)) {
+        final String header = headerReader.readLine();
+        this.column = header == null ? -1 : resolveColumn(header, builder);
+        this.reader = open(builder.offset == 0 ? headerReader.getOffset() : builder.offset, builder.windowSize);
+      }
+    } else {
+      this.column = builder.column;
+      this.reader = open(builder.offset, builder.windowSize);
+    }
+    this.polledOffset = reader.getOffset();
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @param path the seed file to read
+   * @return A new instance of builder
+   */
+  public static Builder builder(final @NotNull Path path) {
+    return new Builder(path);
+  }
+
+  /**
+   * Detect the compression of a file from its leading bytes.
+   *
+   * @param path the file
+   * @return the compression
+   * @throws IOException if the file cannot be read
+   */
+  private static SeedCompression detectCompression(final Path path) throws IOException {
+    final byte[] magic = new byte[4];
+    int read = 0;
+    try (InputStream in = Files.newInputStream(path)) {
+      int n;
+      while (read < magic.length && (n = in.read(magic, read, magic.length - read)) > 0) {
+        read += n;
+      }
+    }
+    if (read >= 2 && ((magic[0] & 0xff) << 8 | (magic[1] & 0xff)) == GZIP_MAGIC) {
+      return SeedCompression.GZIP;
+    }
+    if (read == 4 && ((magic[0] & 0xff) << 24 | (magic[1] & 0xff) << 16 | (magic[2] & 0xff) << 8
+        | (magic[3] & 0xff)) == ZSTD_MAGIC) {
+      return SeedCompression.ZSTD;
+    }
+    return SeedCompression.NONE;
+  }
+
+  /**
+   * Open a zstd decompressing stream, if zstd-jni is on the classpath.
+   *
+   * @param in the compressed stream
+   * @return the decompressing stream
+   * @throws IOException if zstd-jni is not available or the stream cannot be opened
+   */
+  private static InputStream openZstd(final InputStream in) throws IOException {
+    try {
+      return Zstd.open(in);
+    } catch (LinkageError e) {
+      throw new IOException("Reading zstd seed files requires com.github.luben:zstd-jni on the classpath.", e);
+    }
+  }
+
+  /**
+   * Find the column of the url from the CSV header.
+   *
+   * @param header  the header line
+   * @param builder an instance of builder
+   * @return the column index
+   * @throws IOException if the header cannot be parsed or has no such column
+   */
+  private static int resolveColumn(final String header, final Builder builder) throws IOException {
+    if (builder.field == null) {
+      return builder.column;
+    }
+    final CSVRecord record = parseCsv(header);
+    if (record != null) {
+      for (int i = 0; i < record.size(); i++) {
+        if (builder.field.equals(record.get(i).trim())) {
+          return i;
+        }
+      }
+    }
+    throw new IOException("Column '" + builder.field + "' not found in header of " + builder.path + ".");
+  }
+
+  /**
+   * Parse a line of CSV.
+   *
+   * @param line the line
+   * @return the record or null if none
+   * @throws IOException if the line cannot be parsed
+   */
+  private static CSVRecord parseCsv(final String line) throws IOException {
+    final Iterator<CSVRecord> records = CSVFormat.DEFAULT.parse(new StringReader(line)).iterator();
+    return records.hasNext() ? records.next() : null;
+  }
+
+  /**
+   * Open a line reader at an offset.
+   *
+   * @param offset     the offset in uncompressed bytes
+   * @param windowSize the size of a mapped window
+   * @return a line reader
+   * @throws IOException if the file cannot be opened
+   */
+  private LineReader open(final long offset, final int windowSize) throws IOException {
+    if (compression == SeedCompression.NONE) {
+      return new MappedLineReader(path, offset, windowSize);
+    }
+    final InputStream in = new BufferedInputStream(Files.newInputStream(path));
+    try {
+      final InputStream decompressed = compression == SeedCompression.GZIP
+          ? new GZIPInputStream(in, 1 << 16)
+          : openZstd(in);
+      return new StreamLineReader(decompressed, offset);
+    } catch (IOException | RuntimeException e) {
+      in.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Extract the url from a line.
+   *
+   * @param line the line
+   * @return the url or null if none
+   */
+  private String extractUrl(final String line) {
+    final String trimmed = line.trim();
+    if (trimmed.isEmpty()) {
+      return null;
+    }
+    switch (format) {
+      case CSV:
+        try {
+          final CSVRecord record = parseCsv(line);
+          if (record == null || column < 0 || column >= record.size()) {
+            return null;
+          }
+          return record.get(column).trim();
+        } catch (IOException | IllegalStateException e) {
+          LOGGER.warn("Skipping malformed CSV record in {}: {}", path, line);
+          return null;
+        }
+      case JSONL:
+        try {
+          return new JSONObject(trimmed).optString(field, null);
+        } catch (JSONException e) {
+          LOGGER.warn("Skipping malformed JSON record in {}: {}", path, line);
+          return null;
+        }
+      default:
+        return trimmed.charAt(0) == '#' ? null : trimmed;
+    }
+  }
+
+  /**
+   * Returns the next batch of requests read from the file.
+   *
+   * @param maxSize the maximum number of requests to return
+   * @return the next requests, or an empty list if the file is exhausted
+   * @throws UncheckedIOException if the file cannot be read
+   */
+  @Override
+  public List<? extends Request> next(final int maxSize) {
+    final List<Request> batch = new ArrayList<>(Math.min(maxSize, 1024));
+    try {
+      String line;
+      while (batch.size() < maxSize && (line = reader.readLine()) != null) {
+        final String url = extractUrl(line);
+        if (url != null && !url.isEmpty()) {
+          final Request request = requestFactory.apply(url);
+          batch.add(request);
+          synchronized (pending) {
+            pending.add(new Pending(request, reader.getOffset()));
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to read seed file " + path + ".", e);
+    }
+    return batch;
+  }
+
+  /**
+   * Advance the resume offset past a polled request, and past any
+   * request returned before it.
+   *
+   * @param request the request polled
+   */
+  @Override
+  public void polled(final @NotNull Request request) {
+    synchronized (pending) {
+      boolean found = false;
+      for (final Pending entry : pending) {
+        if (entry.request == request) {
+          found = true;
+          break;
+        }
+      }
+      if (!found) {
+        return;
+      }
+      Pending entry;
+      do {
+        entry = pending.poll();
+      } while (entry.request != request);
+      polledOffset = entry.offset;
+    }
+  }
+
+  /**
+   * Get the offset following the last seed polled from the job queue,
+   * in uncompressed bytes. This is the offset to resume reading from,
+   * seeds read ahead into the buffer of the job queue are read again.
+   *
+   * @return the offset to resume reading from
+   */
+  public long getOffset() {
+    return polledOffset;
+  }
+
+  /**
+   * Get the offset of the next record to be read, in uncompressed
+   * bytes, including seeds read ahead but not polled.
+   *
+   * @return the offset of the next record
+   */
+  public long getReadOffset() {
+    return reader.getOffset();
+  }
+
+  /**
+   * Get the compression of the file.
+   *
+   * @return the compression
+   */
+  public SeedCompression getCompression() {
+    return compression;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  /**
+   * A request returned but not polled.
+   */
+  private static final class Pending {
+
+    /**
+     * The request.
+     */
+    private final Request request;
+
+    /**
+     * The offset following the record of the request.
+     */
+    private final long offset;
+
+    /**
+     * Constructs an instance of pending.
+     *
+     * @param request the request
+     * @param offset  the offset following the record of the request
+     */
+    private Pending(final Request request, final long offset) {
+      this.request = request;
+      this.offset = offset;
+    }
+
+  }
+
+  /**
+   * Opens zstd streams, loaded only when a zstd file is read so that
+   * zstd-jni is not needed otherwise.
+   */
+  private static final class Zstd {
+
+    /**
+     * Prevent construction of Zstd.
+     */
+    private Zstd() {
+
+    }
+
+    /**
+     * Open a zstd decompressing stream.
+     *
+     * @param in the compressed stream
+     * @return the decompressing stream
+     * @throws IOException if the stream cannot be opened
+     */
+    private static InputStream open(final InputStream in) throws IOException {
+      return new ZstdInputStream(in);
+    }
+
+  }
+
+  /**
+   * A builder for seed file source class.
+   */
+  public static final class Builder {
+
+    /**
+     * The file to read.
+     */
+    private final Path path;
+
+    /**
+     * The format of the file.
+     */
+    private SeedFormat format;
+
+    /**
+     * The compression of the file.
+     */
+    private SeedCompression compression;
+
+    /**
+     * The field or header name of the url.
+     */
+    private String field;
+
+    /**
+     * The column of the url in CSV records.
+     */
+    private int column;
+
+    /**
+     * Whether CSV files start with a header.
+     */
+    private boolean header;
+
+    /**
+     * The offset to start reading from.
+     */
+    private long offset;
+
+    /**
+     * The factory for requests from urls.
+     */
+    private Function<String, ? extends Request> requestFactory;
+
+    /**
+     * The size of a mapped window.
+     */
+    private int windowSize;
+
+    /**
+     * Constructs an instance of builder with default values.
+     *
+     * @param path the file to read
+     */
+    private Builder(final Path path) {
+      if (path == null) {
+        throw new IllegalStateException("Attribute 'path' cannot be null.");
+      }
+      this.path = path;
+      format = SeedFormat.LINES;
+      compression = SeedCompression.AUTO;
+      field = null;
+      column = 0;
+      header = false;
+      offset = 0;
+      requestFactory = VRequest::new;
+      windowSize = MappedLineReader.DEFAULT_WINDOW_SIZE;
+    }
+
+    /**
+     * Sets the format of the file. Defaults to {@link SeedFormat#LINES}.
+     *
+     * @param format the format
+     * @return this
+     */
+    public Builder setFormat(final @NotNull SeedFormat format) {
+      if (format == null) {
+        throw new IllegalStateException("Attribute 'format' cannot be null.");
+      }
+      this.format = format;
+      return this;
+    }
+
+    /**
+     * Sets the compression of the file. Defaults to
+     * {@link SeedCompression#AUTO}.
+     *
+     * @param compression the compression
+     * @return this
+     */
+    public Builder setCompression(final @NotNull SeedCompression compression) {
+      if (compression == null) {
+        throw new IllegalStateException("Attribute 'compression' cannot be null.");
+      }
+      this.compression = compression;
+      return this;
+    }
+
+    /**
+     * Sets the name of the url field in JSONL records, or of the url
+     * column in the header of CSV files. Defaults to "url" for JSONL.
+     *
+     * @param field the field name
+     * @return this
+     */
+    public Builder setField(final String field) {
+      this.field = field;
+      return this;
+    }
+
+    /**
+     * Sets the index of the url column in CSV records, used if no field
+     * is set. Defaults to 0.
+     *
+     * @param column the column index
+     * @return this
+     */
+    public Builder setColumn(final int column) {
+      if (column < 0) {
+        throw new IllegalStateException("Attribute 'column' must be more or equal to 0.");
+      }
+      this.column = column;
+      return this;
+    }
+
+    /**
+     * Sets whether CSV files start with a header line. Defaults to false.
+     *
+     * @param header true if the file has a header
+     * @return this
+     */
+    public Builder setHeader(final boolean header) {
+      this.header = header;
+      return this;
+    }
+
+    /**
+     * Sets the offset to resume reading from, as returned by
+     * {@link SeedFileSource#getOffset()}. Defaults to 0.
+     *
+     * @param offset the offset in uncompressed bytes
+     * @return this
+     */
+    public Builder setOffset(final long offset) {
+      if (offset < 0) {
+        throw new IllegalStateException("Attribute 'offset' must be more or equal to 0.");
+      }
+      this.offset = offset;
+      return this;
+    }
+
+    /**
+     * Sets the factory to create requests from urls. Defaults to
+     * {@link VRequest#VRequest(String)}.
+     *
+     * @param requestFactory the request factory
+     * @return this
+     */
+    public Builder setRequestFactory(final @NotNull Function<String, ? extends Request> requestFactory) {
+      if (requestFactory == null) {
+        throw new IllegalStateException("Attribute 'requestFactory' cannot be null.");
+      }
+      this.requestFactory = requestFactory;
+      return this;
+    }
+
+    /**
+     * Sets the size of a memory-mapped window for uncompressed files.
+     * Defaults to 64 MiB.
+     *
+     * @param windowSize the window size in bytes
+     * @return this
+     */
+    public Builder setWindowSize(final int windowSize) {
+      if (windowSize < 1) {
+        throw new IllegalStateException("Attribute 'windowSize' must be more or equal to 1.");
+      }
+      this.windowSize = windowSize;
+      return this;
+    }
+
+    /**
+     * Builds the seed file source with the options specified and opens
+     * the file.
+     *
+     * @return an instance of seed file source
+     * @throws IOException if the file cannot be opened
+     */
+    public SeedFileSource build() throws IOException {
+      if (format == SeedFormat.JSONL && field == null) {
+        field = "url";
+      }
+      if (format == SeedFormat.CSV && field != null && !header) {
+        throw new IllegalStateException("Attribute 'field' requires 'header' for CSV files.");
+      }
+      return new SeedFileSource(this);
+    }
+
+  }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.seed;
+
+/**
+ * The formats of seed files.
+ *
+ * @author Ween Jiann Lee
+ */
+public enum SeedFormat {
+
+  /**
+   * One url per line, blank lines and lines starting with {@code #} are
+   * skipped.
+   */
+  LINES,
+
+  /**
+   * Comma separated values, one record per line, with the url in a
+   * column selected by index or by header name.
+   */
+  CSV,
+
+  /**
+   * One JSON object per line, with the url in a field selected by name.
+   */
+  JSONL
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.seed;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class reads lines from a stream, such as a decompressing stream.
+ *
+ * @author Ween Jiann Lee
+ */
+final class StreamLineReader implements LineReader {
+
+  /**
+   * The size of the read buffer.
+   */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * The stream to read from.
+   */
+  private final InputStream inputStream;
+
+  /**
+   * The read buffer.
+   */
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+
+  /**
+   * The bytes of a line that spans reads.
+   */
+  private byte[] line = new byte[256];
+
+  /**
+   * The position of the next byte in buffer.
+   */
+  private int position;
+
+  /**
+   * The number of bytes in buffer.
+   */
+  private int limit;
+
+  /**
+   * The offset of the next line.
+   */
+  private long offset;
+
+  /**
+   * Constructs an instance of stream line reader, skipping to an offset.
+   *
+   * @param inputStream the stream to read from
+   * @param offset      the offset of the first line to read
+   * @throws IOException if an I/O error occurs or the offset is past the end
+   */
+  StreamLineReader(final InputStream inputStream, final long offset) throws IOException {
+    this.inputStream = inputStream;
+    long remaining = offset;
+    while (remaining > 0) {
+      final int read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+      if (read < 0) {
+        throw new IOException("Offset " + offset + " is past the end of input.");
+      }
+      remaining -= read;
+    }
+    this.offset = offset;
+  }
+
+  /**
+   * Refill the buffer.
+   *
+   * @return false if end of input
+   * @throws IOException if an I/O error occurs
+   */
+  private boolean fill() throws IOException {
+    int read = inputStream.read(buffer, 0, buffer.length);
+    while (read == 0) {
+      read = inputStream.read(buffer, 0, buffer.length);
+    }
+    position = 0;
+    limit = Math.max(read, 0);
+    return read > 0;
+  }
+
+  @Override
+  public String readLine() throws IOException {
+    int length = 0;
+    while (true) {
+      if (position >= limit && !fill()) {
+        return length == 0 ? null : decode(line, 0, length);
+      }
+      int end = position;
+      while (end < limit && buffer[end] != '\n') {
+        end++;
+      }
+      final int chunk = end - position;
+      if (end < limit) {
+        offset += chunk + 1;
+        final int from = position;
+        position = end + 1;
+        if (length == 0) {
+          return decode(buffer, from, chunk);
+        }
+        length = append(length, from, chunk);
+        return decode(line, 0, length);
+      }
+      offset += chunk;
+      length = append(length, position, chunk);
+      position = limit;
+    }
+  }
+
+  /**
+   * Append bytes from buffer to a line that spans reads.
+   *
+   * @param length the number of bytes of the line so far
+   * @param from   start index in buffer
+   * @param count  number of bytes
+   * @return the number of bytes of the line
+   */
+  private int append(final int length, final int from, final int count) {
+    final int newLength = length + count;
+    if (newLength > line.length) {
+      line = Arrays.copyOf(line, Math.max(newLength, line.length * 2));
+    }
+    System.arraycopy(buffer, from, line, length, count);
+    return newLength;
+  }
+
+  /**
+   * Decode a line, removing a trailing carriage return.
+   *
+   * @param bytes  the bytes
+   * @param from   start index
+   * @param length number of bytes
+   * @return the line
+   */
+  private static String decode(final byte[] bytes, final int from, final int length) {
+    int end = from + length;
+    if (end > from && bytes[end - 1] == '\r') {
+      end--;
+    }
+    return new String(bytes, from, end - from, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public long getOffset() {
+    return offset;
+  }
+
+  @Override
+  public void close() throws IOException {
+    inputStream.close();
+  }
+
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ai.preferred.venom.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.constraints.NotNull;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class provides a skeletal implementation of a storage codec
+ * compressing content with a dictionary per site.
+ * <p>
+ * Small pages from the same site share most of their markup, which
+ * cannot be used when each page is compressed on its own. A dictionary
+ * is trained from the first pages encoded for a site, and later pages
+ * of the site are compressed against it. Samples are kept for a
+ * bounded number of sites, the least recently encoded being dropped
+ * first, and a site whose training fails is not sampled again while it
+ * remains among them. Dictionaries are kept in the directory given and
+ * never removed, and the id of the dictionary used is stored with the
+ * content, so content remains readable after a site is trained again.
+ * Codecs of different classes must not share a directory.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public abstract class AbstractDictionaryCodec implements StorageCodec {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(AbstractDictionaryCodec.class);
+
+  /**
+   * The suffix of dictionary files.
+   */
+  private static final String SUFFIX = ".dict";
+
+  /**
+   * The directory holding the dictionaries.
+   */
+  private final Path directory;
+
+  /**
+   * The number of bytes of pages to sample from a site before training.
+   */
+  private final int sampleSize;
+
+  /**
+   * The dictionaries, by id.
+   */
+  private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+
+  /**
+   * The id of the latest dictionary of each site.
+   */
+  private final Map<String, Integer> active = new ConcurrentHashMap<>();
+
+  /**
+   * The pages sampled from sites without a dictionary, in access order.
+   */
+  private final Map<String, Samples> samples;
+
+  /**
+   * An object to synchronise upon, to add dictionaries.
+   */
+  private final Object trainLock = new Object();
+
+  /**
+   * The id of the last dictionary added.
+   */
+  private int lastId;
+
+  /**
+   * Constructs an instance of dictionary codec, loading the dictionaries
+   * in the directory.
+   *
+   * @param directory       the directory holding the dictionaries
+   * @param sampleSize      the number of bytes of pages to sample from a site before training
+   * @param maxSampledSites the maximum number of sites to keep samples of
+   * @throws IOException if the dictionaries cannot be read
+   */
+  protected AbstractDictionaryCodec(final Path directory, final int sampleSize, final int maxSampledSites)
+      throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.sampleSize = sampleSize;
+    this.samples = new LinkedHashMap<String, Samples>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, Samples> eldest) {
+        return size() > maxSampledSites;
+      }
+    };
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "*" + SUFFIX)) {
+      for (final Path file : files) {
+        final String name = file.getFileName().toString();
+        final int id;
+        try {
+          id = Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+          LOGGER.warn("Ignoring unknown file {} in dictionary directory.", file);
+          continue;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+          final String key = in.readUTF();
+          final byte[] dictionary = new byte[in.readInt()];
+          in.readFully(dictionary);
+          dictionaries.put(id, dictionary);
+          active.merge(key, id, Math::max);
+          lastId = Math.max(lastId, id);
+        }
+      }
+    }
+  }
+
+  /**
+   * Create a dictionary from sample pages of a site.
+   *
+   * @param pages the sample pages
+   * @return the dictionary, empty if the pages have nothing in common
+   * @throws IOException if the dictionary cannot be created
+   */
+  protected abstract byte[] createDictionary(List<byte[]> pages) throws IOException;
+
+  /**
+   * Compress content, with a dictionary unless the id is 0.
+   *
+   * @param content the content
+   * @param id      the id of the dictionary, or 0 if none
+   * @param out     the stream to write the compressed content to
+   * @throws IOException if the content cannot be compressed
+   */
+  protected abstract void compress(byte[] content, int id, ByteArrayOutputStream out) throws IOException;
+
+  /**
+   * Decompress content, with a dictionary unless the id is 0.
+   *
+   * @param data   the encoded content
+   * @param offset the offset of the compressed content in the data
+   * @param id     the id of the dictionary, or 0 if none
+   * @return the content
+   * @throws IOException if the content cannot be decompressed
+   */
+  protected abstract byte[] decompress(byte[] data, int offset, int id) throws IOException;
+
+  /**
+   * Get a dictionary.
+   *
+   * @param id the id of the dictionary
+   * @return the dictionary
+   * @throws IOException if the dictionary is unknown
+   */
+  protected final byte[] getDictionary(final int id) throws IOException {
+    final byte[] dictionary = dictionaries.get(id);
+    if (dictionary == null) {
+      throw new IOException("Unknown dictionary " + id + ".");
+    }
+    return dictionary;
+  }
+
+  /**
+   * Train a dictionary for a site from sample pages, replacing the
+   * dictionary of the site, if any, for content encoded afterwards.
+   *
+   * @param key   the site
+   * @param pages the sample pages
+   * @return the id of the dictionary, or 0 if the pages have nothing in common
+   * @throws IOException if the dictionary cannot be created or written
+   */
+  public final int train(final @NotNull String key, final @NotNull List<byte[]> pages) throws IOException {
+    final byte[] dictionary = createDictionary(pages);
+    if (dictionary.length == 0) {
+      LOGGER.debug("No common content to train dictionary for {}.", key);
+      return 0;
+    }
+    synchronized (trainLock) {
+      final int id = lastId + 1;
+      final Path file = directory.resolve(String.format("%08d%s", id, SUFFIX));
+      final Path temp = directory.resolve(file.getFileName() + ".tmp");
+      try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+        out.writeUTF(key);
+        out.writeInt(dictionary.length);
+        out.write(dictionary);
+      }
+      Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+      lastId = id;
+      dictionaries.put(id, dictionary);
+      active.put(key, id);
+      LOGGER.info("Trained dictionary {} of {} bytes for {}.", id, dictionary.length, key);
+      return id;
+    }
+  }
+
+  /**
+   * Get the id of the dictionary used to encode content of a site.
+   *
+   * @param key the site
+   * @return the id of the dictionary, or 0 if none
+   */
+  public final int getDictionaryId(final @NotNull String key) {
+    return active.getOrDefault(key, 0);
+  }
+
+  /**
+   * Sample a page of a site without a dictionary, and train a dictionary
+   * for the site once enough pages are sampled. A site whose training
+   * fails is remembered, so it is not sampled again.
+   *
+   * @param key     the site
+   * @param content the page
+   */
+  private void sample(final String key, final byte[] content) {
+    final Samples site;
+    synchronized (samples) {
+      site = samples.computeIfAbsent(key, k -> new Samples());
+    }
+    final List<byte[]> pages;
+    synchronized (site) {
+      if (site.pages == null) {
+        return;
+      }
+      site.pages.add(content);
+      site.size += content.length;
+      if (site.size < sampleSize) {
+        return;
+      }
+      pages = site.pages;
+      site.pages = null;
+    }
+    int id = 0;
+    try {
+      id = train(key, pages);
+    } catch (IOException e) {
+      LOGGER.warn("Unable to train dictionary for {}.", key, e);
+    }
+    if (id != 0) {
+      synchronized (samples) {
+        samples.remove(key);
+      }
+    }
+  }
+
+  @Override
+  public final byte[] encode(final @NotNull byte[] content, final String key) throws IOException {
+    final int id = key == null ? 0 : getDictionaryId(key);
+    if (id == 0 && key != null && sampleSize > 0) {
+      sample(key, content);
+    }
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 4 + 64);
+    out.write(ByteBuffer.allocate(4).putInt(id).array());
+    compress(content, id, out);
+    return out.toByteArray();
+  }
+
+  @Override
+  public final byte[] decode(final @NotNull byte[] data) throws IOException {
+    if (data.length < 4) {
+      throw new IOException("Invalid dictionary encoded content.");
+    }
+    return decompress(data, 4, ByteBuffer.wrap(data).getInt());
+  }
+
+  /**
+   * The pages sampled from a site.
+   */
+  private static final class Samples {
+
+    /**
+     * The pages, or null once training has started for the site.
+     */
+    private List<byte[]> pages = new ArrayList<>();
+
+    /**
+     * The total size of the pages.
+     */
+    private int size;
+
+  }
+
+}
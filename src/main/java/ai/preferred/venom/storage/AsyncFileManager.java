@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ai.preferred.venom.storage;
+
+import ai.preferred.venom.request.Request;
+import ai.preferred.venom.response.Response;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This interface represents a FileManager that does not block the
+ * calling thread.
+ * <p>
+ * Futures returned complete exceptionally with a {@link StorageException}
+ * if the operation fails. Use {@link PooledFileManager} to run a
+ * blocking {@link FileManager} on a pool of I/O threads.
+ * </p>
+ *
+ * @param <T> type of id
+ * @author Ween Jiann Lee
+ */
+public interface AsyncFileManager<T> extends AutoCloseable {
+
+  /**
+   * Puts record into database.
+   *
+   * @param request  request
+   * @param response response
+   * @return a future completed with the id of record
+   */
+  @NotNull
+  CompletableFuture<String> putAsync(@NotNull Request request, @NotNull Response response);
+
+  /**
+   * Returns record by the internal record id.
+   *
+   * @param id record id
+   * @return a future completed with the stored record, or null if none
+   */
+  @NotNull
+  CompletableFuture<Record<T>> getAsync(T id);
+
+  /**
+   * Returns latest record matching request.
+   *
+   * @param request request
+   * @return a future completed with the stored record, or null if none
+   */
+  @NotNull
+  CompletableFuture<Record<T>> getAsync(@NotNull Request request);
+
+  /**
+   * Returns latest records matching requests.
+   *
+   * @param requests requests
+   * @return a future completed with the stored records, in the order of
+   * requests, null if none
+   */
+  @NotNull
+  default CompletableFuture<List<Record<T>>> getAllAsync(@NotNull List<? extends Request> requests) {
+    final List<CompletableFuture<Record<T>>> futures = new ArrayList<>(requests.size());
+    for (final Request request : requests) {
+      futures.add(getAsync(request));
+    }
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+      final List<Record<T>> records = new ArrayList<>(futures.size());
+      for (final CompletableFuture<Record<T>> future : futures) {
+        records.add(future.join());
+      }
+      return records;
+    });
+  }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ai.preferred.venom.storage;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This interface represents the stored content of a record that has
+ * not been read yet.
+ * <p>
+ * File managers return records with a content source, so that the
+ * content is only read and decompressed when it is used, and not when
+ * only the metadata of a record is needed.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+@FunctionalInterface
+public interface ContentSource {
+
+  /**
+   * Open a stream of the content, decompressed.
+   * <p>
+   * This method may be called more than once, and from many threads at
+   * once, each call returning a new stream.
+   * </p>
+   *
+   * @return a stream of the content
+   * @throws IOException if the content cannot be read
+   */
+  @NotNull
+  InputStream openStream() throws IOException;
+
+}
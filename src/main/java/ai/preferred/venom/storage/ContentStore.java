@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.storage;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This interface represents a store of response content, addressed by
+ * an opaque location that a file manager keeps in its record.
+ *
+ * @author Ween Jiann Lee
+ */
+public interface ContentStore extends AutoCloseable {
+
+  /**
+   * Write content to the store.
+   * <p>
+   * This method may be called from many threads at once.
+   * </p>
+   *
+   * @param content the content
+   * @return the location of the content, at most 64 characters
+   * @throws IOException if an I/O error occurs
+   */
+  @NotNull
+  String write(@NotNull byte[] content) throws IOException;
+
+  /**
+   * Write content of a site to the store.
+   * <p>
+   * Stores compressing content with per-site dictionaries use the key
+   * to choose a dictionary, other stores ignore it.
+   * </p>
+   *
+   * @param content the content
+   * @param key     the site of the content, such as its host, or null if unknown
+   * @return the location of the content, at most 64 characters
+   * @throws IOException if an I/O error occurs
+   */
+  @NotNull
+  default String write(@NotNull byte[] content, @Nullable String key) throws IOException {
+    return write(content);
+  }
+
+  /**
+   * Read content from the store.
+   *
+   * @param location the location returned when the content was written
+   * @return the content
+   * @throws IOException if the location is invalid or an I/O error occurs
+   */
+  @NotNull
+  byte[] read(@NotNull String location) throws IOException;
+
+  /**
+   * Open a stream of content in the store.
+   * <p>
+   * Stores that can decode content incrementally should override this
+   * method, so that content is not held in memory to be read.
+   * </p>
+   *
+   * @param location the location returned when the content was written
+   * @return a stream of the content
+   * @throws IOException if the location is invalid or an I/O error occurs
+   */
+  @NotNull
+  default InputStream openStream(@NotNull String location) throws IOException {
+    return new ByteArrayInputStream(read(location));
+  }
+
+  /**
+   * Makes content written so far durable, so that a location returned
+   * by a write can be committed to a record and still refer to the same
+   * content after a crash.
+   * <p>
+   * Stores that do not make content durable as it is written should
+   * override this method.
+   * </p>
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  default void sync() throws IOException {
+  }
+
+  /**
+   * Makes content written durable and closes the store.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  void close() throws IOException;
+
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ai.preferred.venom.storage;
+
+import javax.validation.constraints.NotNull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This class implements a storage codec compressing content with
+ * deflate and a preset dictionary per site.
+ * <p>
+ * The dictionary of a site is built from the lines that occur in many
+ * of its sampled pages. Prefer {@link ZstdDictionaryCodec}, which
+ * trains better dictionaries and decodes faster, this codec only needs
+ * the JDK and serves where zstd-jni is not available.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public final class DictionaryCodec extends AbstractDictionaryCodec {
+
+  /**
+   * The id of this codec.
+   */
+  public static final int ID = 3;
+
+  /**
+   * The maximum size of a dictionary, the window size of deflate.
+   */
+  private static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+  /**
+   * The compression level.
+   */
+  private final int level;
+
+  /**
+   * Constructs an instance of dictionary codec.
+   *
+   * @param builder an instance of builder
+   * @throws IOException if the dictionaries cannot be read
+   */
+  private DictionaryCodec(final Builder builder) throws IOException {
+    super(builder.directory, builder.sampleSize, builder.maxSampledSites);
+    this.level = builder.level;
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @param directory the directory holding the dictionaries
+   * @return A new instance of builder
+   */
+  public static Builder builder(final @NotNull Path directory) {
+    return new Builder(directory);
+  }
+
+  /**
+   * Build a dictionary from the lines occurring in more than one sample,
+   * with the lines saving the most bytes last, where deflate matches
+   * them with the shortest distance.
+   *
+   * @param pages the sample pages
+   * @return the dictionary
+   */
+  @Override
+  protected byte[] createDictionary(final List<byte[]> pages) {
+    final Map<String, Integer> frequency = new HashMap<>();
+    for (final byte[] page : pages) {
+      final Set<String> lines = new HashSet<>();
+      int start = 0;
+      for (int i = 0; i <= page.length; i++) {
+        if (i == page.length || page[i] == '\n') {
+          if (i - start >= 4) {
+            lines.add(new String(page, start, i - start + (i < page.length ? 1 : 0), StandardCharsets.ISO_8859_1));
+          }
+          start = i + 1;
+        }
+      }
+      for (final String line : lines) {
+        frequency.merge(line, 1, Integer::sum);
+      }
+    }
+
+    final List<Map.Entry<String, Integer>> common = new ArrayList<>();
+    for (final Map.Entry<String, Integer> entry : frequency.entrySet()) {
+      if (entry.getValue() > 1) {
+        common.add(entry);
+      }
+    }
+    final Comparator<Map.Entry<String, Integer>> saving = Comparator.comparingLong(
+        entry -> (long) entry.getKey().length() * (entry.getValue() - 1));
+    common.sort(saving.reversed());
+    final List<String> selected = new ArrayList<>();
+    int size = 0;
+    for (final Map.Entry<String, Integer> entry : common) {
+      if (size + entry.getKey().length() <= MAX_DICTIONARY_SIZE) {
+        selected.add(entry.getKey());
+        size += entry.getKey().length();
+      }
+    }
+
+    final StringBuilder dictionary = new StringBuilder(size);
+    for (int i = selected.size() - 1; i >= 0; i--) {
+      dictionary.append(selected.get(i));
+    }
+    return dictionary.toString().getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  protected void compress(final byte[] content, final int id, final ByteArrayOutputStream out) throws IOException {
+    final Deflater deflater = new Deflater(level);
+    try {
+      if (id != 0) {
+        deflater.setDictionary(getDictionary(id));
+      }
+      deflater.setInput(content);
+      deflater.finish();
+      final byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+    } finally {
+      deflater.end();
+    }
+  }
+
+  @Override
+  protected byte[] decompress(final byte[] data, final int offset, final int id) throws IOException {
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(data, offset, data.length - offset);
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+      final byte[] buffer = new byte[8192];
+      while (!inflater.finished()) {
+        final int n = inflater.inflate(buffer);
+        if (n == 0) {
+          if (inflater.needsDictionary()) {
+            inflater.setDictionary(getDictionary(id));
+          } else if (inflater.needsInput()) {
+            throw new IOException("Truncated dictionary encoded content.");
+          }
+        }
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+    } catch (DataFormatException e) {
+      throw new IOException("Invalid dictionary encoded content.", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * A builder for dictionary codec class.
+   */
+  public static final class Builder {
+
+    /**
+     * The directory holding the dictionaries.
+     */
+    private final Path directory;
+
+    /**
+     * The compression level.
+     */
+    private int level;
+
+    /**
+     * The number of bytes of pages to sample from a site before training.
+     */
+    private int sampleSize;
+
+    /**
+     * The maximum number of sites to keep samples of.
+     */
+    private int maxSampledSites;
+
+    /**
+     * Constructs an instance of builder with default values.
+     *
+     * @param directory the directory holding the dictionaries
+     */
+    private Builder(final Path directory) {
+      if (directory == null) {
+        throw new IllegalStateException("Attribute 'directory' cannot be null.");
+      }
+      this.directory = directory;
+      level = Deflater.DEFAULT_COMPRESSION;
+      sampleSize = 256 * 1024;
+      maxSampledSites = 64;
+    }
+
+    /**
+     * Sets the deflate compression level. Defaults to the default level
+     * of deflate.
+     *
+     * @param level the compression level, from 1 to 9
+     * @return this
+     */
+    public Builder setLevel(final int level) {
+      if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+        throw new IllegalStateException("Attribute 'level' must be between 1 and 9.");
+      }
+      this.level = level;
+      return this;
+    }
+
+    /**
+     * Sets the number of bytes of pages sampled from a site without a
+     * dictionary before one is trained for it, or 0 to only use
+     * dictionaries trained with {@link DictionaryCodec#train(String, List)}.
+     * Defaults to 256 KiB.
+     *
+     * @param sampleSize the sample size in bytes
+     * @return this
+     */
+    public Builder setSampleSize(final int sampleSize) {
+      if (sampleSize < 0) {
+        throw new IllegalStateException("Attribute 'sampleSize' must be more or equal to 0.");
+      }
+      this.sampleSize = sampleSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of sites to keep samples of, bounding the
+     * memory held by samples to this many times the sample size. The
+     * samples of the least recently encoded site are dropped first.
+     * Defaults to 64.
+     *
+     * @param maxSampledSites the maximum number of sites
+     * @return this
+     */
+    public Builder setMaxSampledSites(final int maxSampledSites) {
+      if (maxSampledSites < 1) {
+        throw new IllegalStateException("Attribute 'maxSampledSites' must be more or equal to 1.");
+      }
+      this.maxSampledSites = maxSampledSites;
+      return this;
+    }
+
+    /**
+     * Opens the codec with the options specified, loading the
+     * dictionaries in the directory.
+     *
+     * @return an instance of dictionary codec
+     * @throws IOException if the dictionaries cannot be read
+     */
+    public DictionaryCodec build() throws IOException {
+      return new DictionaryCodec(this);
+    }
+
+  }
+
+}
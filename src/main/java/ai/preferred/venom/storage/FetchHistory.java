@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.storage;
+
+import ai.preferred.venom.request.Request;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * This interface represents a store that can list the past fetches of
+ * a url, for estimating how often its content changes.
+ *
+ * @author Ween Jiann Lee
+ */
+public interface FetchHistory {
+
+  /**
+   * Returns the latest fetches of the url and method of a request,
+   * latest first.
+   *
+   * @param request request
+   * @param limit   the maximum number of fetches to return
+   * @return the fetches
+   * @throws StorageException throws StorageException
+   */
+  @NotNull
+  List<Fetch> getHistory(@NotNull Request request, int limit) throws StorageException;
+
+  /**
+   * This class represents a past fetch of a url.
+   */
+  final class Fetch {
+
+    /**
+     * The md5 hash of the content fetched.
+     */
+    private final String md5;
+
+    /**
+     * The time of the fetch in milliseconds since the epoch.
+     */
+    private final long dateCreated;
+
+    /**
+     * Constructs an instance of fetch.
+     *
+     * @param md5         the md5 hash of the content fetched
+     * @param dateCreated the time of the fetch in milliseconds since the epoch
+     */
+    public Fetch(final String md5, final long dateCreated) {
+      this.md5 = md5;
+      this.dateCreated = dateCreated;
+    }
+
+    /**
+     * Get the md5 hash of the content fetched.
+     *
+     * @return the md5 hash
+     */
+    public String getMD5() {
+      return md5;
+    }
+
+    /**
+     * Get the time of the fetch.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long getDateCreated() {
+      return dateCreated;
+    }
+
+  }
+
+}
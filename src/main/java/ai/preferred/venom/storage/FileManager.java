@@ -22,6 +22,8 @@ import ai.preferred.venom.response.Response;
 
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This interface represents the basic functions a FileManager should have.
@@ -76,4 +78,24 @@ public interface FileManager<T> extends AutoCloseable {
   @NotNull
   Record<T> get(@NotNull Request request) throws StorageException;
 
+  /**
+   * Returns latest records matching requests.
+   * <p>
+   * File managers backed by a database should override this to look up
+   * all requests with one query.
+   * </p>
+   *
+   * @param requests requests
+   * @return stored records, in the order of requests, null if none
+   * @throws StorageException throws StorageException
+   */
+  @NotNull
+  default List<Record<T>> getAll(@NotNull List<? extends Request> requests) throws StorageException {
+    final List<Record<T>> records = new ArrayList<>(requests.size());
+    for (final Request request : requests) {
+      records.add(get(request));
+    }
+    return records;
+  }
+
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ai.preferred.venom.storage;
+
+import org.apache.commons.io.IOUtils;
+
+import javax.validation.constraints.NotNull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class implements a storage codec compressing content with gzip,
+ * the codec of content stored without a codec id.
+ *
+ * @author Ween Jiann Lee
+ */
+public final class GzipCodec implements StorageCodec {
+
+  /**
+   * The id of this codec.
+   */
+  public static final int ID = 1;
+
+  /**
+   * An instance of this codec.
+   */
+  public static final GzipCodec INSTANCE = new GzipCodec();
+
+  /**
+   * Prevent construction of GzipCodec.
+   */
+  private GzipCodec() {
+
+  }
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  public byte[] encode(final @NotNull byte[] content, final String key) throws IOException {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 4 + 64);
+    try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+      out.write(content);
+    }
+    return compressed.toByteArray();
+  }
+
+  @Override
+  public byte[] decode(final @NotNull byte[] data) throws IOException {
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+      return IOUtils.toByteArray(in);
+    }
+  }
+
+  @Override
+  public InputStream decode(final @NotNull InputStream data) throws IOException {
+    return new GZIPInputStream(data);
+  }
+
+}
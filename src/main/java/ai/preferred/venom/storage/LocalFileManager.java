@@ -0,0 +1,692 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ai.preferred.venom.storage;
+
+import ai.preferred.venom.fetcher.Callback;
+import ai.preferred.venom.request.Request;
+import ai.preferred.venom.response.Response;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.constraints.NotNull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class implements a FileManager that stores records in an
+ * append-only log on the local file system, without a database.
+ * <p>
+ * Each record, with its request, response headers and compressed
+ * content, is appended to the log as a frame of [length][crc32][data],
+ * and its id is the offset of the frame in the log. Records are looked
+ * up by request with the fingerprint used by {@link MysqlFileManager},
+ * through an index of the latest record of each fingerprint. The index
+ * is held in memory and appended to an index file in blocks, so that
+ * it is loaded instead of rebuilt when the file manager is opened.
+ * </p>
+ * <p>
+ * When opened, index entries pointing past the last valid frame are
+ * dropped, the frames after the last valid index entry are indexed
+ * again from the log, and frames at the end of the log that were not
+ * completely written before a crash are truncated. Records are forced
+ * to disk on {@link #flush()} and {@link #close()}, or on every put if
+ * sync is set.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public final class LocalFileManager implements FileManager<Long> {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(LocalFileManager.class);
+
+  /**
+   * The name of the log file.
+   */
+  private static final String LOG_FILE = "records.log";
+
+  /**
+   * The name of the index file.
+   */
+  private static final String INDEX_FILE = "records.idx";
+
+  /**
+   * The size of the header of a frame.
+   */
+  private static final int HEADER_SIZE = 8;
+
+  /**
+   * The size of a request fingerprint.
+   */
+  private static final int FINGERPRINT_SIZE = 20;
+
+  /**
+   * The size of an entry in the index file.
+   */
+  private static final int INDEX_ENTRY_SIZE = FINGERPRINT_SIZE + 8;
+
+  /**
+   * The number of index entries written to the index file at once.
+   */
+  private static final int INDEX_BLOCK_SIZE = 1024;
+
+  /**
+   * Default content type of response if not given.
+   */
+  private static final ContentType DEFAULT_CONTENT_TYPE = ContentType.APPLICATION_OCTET_STREAM;
+
+  /**
+   * The directory holding the log and index.
+   */
+  private final Path directory;
+
+  /**
+   * Whether to force every record to disk when it is put.
+   */
+  private final boolean sync;
+
+  /**
+   * The callback to trigger upon response.
+   */
+  private final Callback callback;
+
+  /**
+   * The offset of the latest record of each fingerprint.
+   */
+  private final Map<ByteBuffer, Long> index = new ConcurrentHashMap<>();
+
+  /**
+   * The index entries not written to the index file yet.
+   */
+  private final ByteBuffer indexBlock = ByteBuffer.allocate(INDEX_ENTRY_SIZE * INDEX_BLOCK_SIZE);
+
+  /**
+   * An object to synchronise upon, to append to the log and index.
+   */
+  private final Object writeLock = new Object();
+
+  /**
+   * The channel of the log.
+   */
+  private final FileChannel log;
+
+  /**
+   * The channel of the index file.
+   */
+  private final FileChannel indexFile;
+
+  /**
+   * The size of the index file.
+   */
+  private long indexPosition;
+
+  /**
+   * The size of the log, only the frames before it are complete.
+   */
+  private volatile long position;
+
+  /**
+   * Whether this file manager has been closed.
+   */
+  private boolean closed;
+
+  /**
+   * Constructs an instance of local file manager.
+   *
+   * @param builder an instance of builder
+   * @throws IOException if the log or index cannot be opened
+   */
+  private LocalFileManager(final Builder builder) throws IOException {
+    this.directory = Files.createDirectories(builder.directory);
+    this.sync = builder.sync;
+    this.callback = new FileManagerCallback(this);
+    this.log = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      this.indexFile = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+    } catch (IOException e) {
+      log.close();
+      throw e;
+    }
+    try {
+      recover();
+    } catch (IOException e) {
+      log.close();
+      indexFile.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @param directory the directory holding the log and index
+   * @return A new instance of builder
+   */
+  public static Builder builder(final @NotNull Path directory) {
+    return new Builder(directory);
+  }
+
+  /**
+   * Read from a channel until the buffer is full.
+   *
+   * @param channel  the channel
+   * @param buffer   the buffer
+   * @param position the position to read from
+   * @throws IOException if an I/O error occurs or the channel ends first
+   */
+  private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+      throws IOException {
+    final int start = buffer.position();
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position() - start) < 0) {
+        throw new EOFException("Unexpected end of file at " + (position + buffer.position() - start) + ".");
+      }
+    }
+  }
+
+  /**
+   * Compute the crc32 of bytes.
+   *
+   * @param bytes the bytes
+   * @return the crc32
+   */
+  private static int crc(final byte[] bytes) {
+    final CRC32 crc = new CRC32();
+    crc.update(bytes, 0, bytes.length);
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Read the data of a frame in the log.
+   *
+   * @param offset the offset of the frame
+   * @param limit  the end of the valid part of the log
+   * @return the data, or null if there is no valid frame at offset
+   * @throws IOException if an I/O error occurs
+   */
+  private byte[] readFrame(final long offset, final long limit) throws IOException {
+    if (offset < 0 || offset + HEADER_SIZE > limit) {
+      return null;
+    }
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    readFully(log, header, offset);
+    final int length = header.getInt(0);
+    if (length < FINGERPRINT_SIZE || offset + HEADER_SIZE + length > limit) {
+      return null;
+    }
+    final ByteBuffer data = ByteBuffer.allocate(length);
+    readFully(log, data, offset + HEADER_SIZE);
+    if (crc(data.array()) != header.getInt(4)) {
+      return null;
+    }
+    return data.array();
+  }
+
+  /**
+   * Load the index, dropping entries past the last valid frame, and
+   * index the frames after the last valid entry, truncating the log
+   * after its last complete frame.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  private void recover() throws IOException {
+    final long logSize = log.size();
+    long entries = indexFile.size() / INDEX_ENTRY_SIZE;
+    long start = 0;
+    final ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+    while (entries > 0) {
+      ((Buffer) entry).clear();
+      readFully(indexFile, entry, (entries - 1) * INDEX_ENTRY_SIZE);
+      final long offset = entry.getLong(FINGERPRINT_SIZE);
+      final byte[] data = readFrame(offset, logSize);
+      if (data != null) {
+        start = offset + HEADER_SIZE + data.length;
+        break;
+      }
+      entries--;
+    }
+
+    final ByteBuffer block = ByteBuffer.allocate(INDEX_ENTRY_SIZE * INDEX_BLOCK_SIZE);
+    for (long i = 0; i < entries; i += INDEX_BLOCK_SIZE) {
+      final int n = (int) Math.min(INDEX_BLOCK_SIZE, entries - i);
+      ((Buffer) block).clear();
+      ((Buffer) block).limit(n * INDEX_ENTRY_SIZE);
+      readFully(indexFile, block, i * INDEX_ENTRY_SIZE);
+      for (int j = 0; j < n; j++) {
+        final byte[] fingerprint = new byte[FINGERPRINT_SIZE];
+        System.arraycopy(block.array(), j * INDEX_ENTRY_SIZE, fingerprint, 0, FINGERPRINT_SIZE);
+        index.put(ByteBuffer.wrap(fingerprint), block.getLong(j * INDEX_ENTRY_SIZE + FINGERPRINT_SIZE));
+      }
+    }
+    indexPosition = entries * INDEX_ENTRY_SIZE;
+    if (indexFile.size() > indexPosition) {
+      indexFile.truncate(indexPosition);
+    }
+
+    long offset = start;
+    int recovered = 0;
+    byte[] data;
+    while ((data = readFrame(offset, logSize)) != null) {
+      addIndex(data, offset);
+      offset += HEADER_SIZE + data.length;
+      recovered++;
+    }
+    if (offset < logSize) {
+      LOGGER.warn("Truncating {} incomplete bytes from log {}.", logSize - offset, directory.resolve(LOG_FILE));
+      log.truncate(offset);
+    }
+    position = offset;
+    if (recovered > 0) {
+      LOGGER.info("Indexed {} records from log {}.", recovered, directory.resolve(LOG_FILE));
+      writeIndex();
+    }
+  }
+
+  /**
+   * Add a record to the index, must be called with the write lock or
+   * from the constructor.
+   *
+   * @param data   the data of the frame of the record
+   * @param offset the offset of the frame
+   * @throws IOException if the index file cannot be written
+   */
+  private void addIndex(final byte[] data, final long offset) throws IOException {
+    final byte[] fingerprint = new byte[FINGERPRINT_SIZE];
+    System.arraycopy(data, 0, fingerprint, 0, FINGERPRINT_SIZE);
+    index.put(ByteBuffer.wrap(fingerprint), offset);
+    indexBlock.put(fingerprint).putLong(offset);
+    if (!indexBlock.hasRemaining()) {
+      writeIndex();
+    }
+  }
+
+  /**
+   * Write the pending index entries to the index file, must be called
+   * with the write lock or from the constructor.
+   *
+   * @throws IOException if the index file cannot be written
+   */
+  private void writeIndex() throws IOException {
+    ((Buffer) indexBlock).flip();
+    while (indexBlock.hasRemaining()) {
+      indexPosition += indexFile.write(indexBlock, indexPosition);
+    }
+    ((Buffer) indexBlock).clear();
+  }
+
+  /**
+   * Write a nullable string.
+   *
+   * @param out   the output
+   * @param value the string
+   * @throws IOException if an I/O error occurs
+   */
+  private static void writeString(final DataOutputStream out, final String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Read a nullable string.
+   *
+   * @param in the input
+   * @return the string
+   * @throws IOException if an I/O error occurs
+   */
+  private static String readString(final DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Write a map of strings.
+   *
+   * @param out the output
+   * @param map the map
+   * @throws IOException if an I/O error occurs
+   */
+  private static void writeMap(final DataOutputStream out, final Map<String, String> map) throws IOException {
+    out.writeInt(map.size());
+    for (final Map.Entry<String, String> entry : map.entrySet()) {
+      writeString(out, entry.getKey());
+      writeString(out, entry.getValue());
+    }
+  }
+
+  /**
+   * Read a map of strings.
+   *
+   * @param in the input
+   * @return the map
+   * @throws IOException if an I/O error occurs
+   */
+  private static Map<String, String> readMap(final DataInputStream in) throws IOException {
+    final int size = in.readInt();
+    final Map<String, String> map = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      map.put(readString(in), readString(in));
+    }
+    return map;
+  }
+
+  /**
+   * Encode a record as the data of a frame, starting with the
+   * fingerprint of its request.
+   *
+   * @param request     the request
+   * @param response    the response
+   * @param fingerprint the fingerprint of the request
+   * @return the data
+   * @throws IOException if an I/O error occurs
+   */
+  private static byte[] encode(final Request request, final Response response, final byte[] fingerprint)
+      throws IOException {
+    final byte[] content = response.getContent();
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 4 + 512);
+    final DataOutputStream out = new DataOutputStream(bytes);
+    out.write(fingerprint);
+    out.writeLong(System.currentTimeMillis());
+    writeString(out, request.getUrl());
+    writeString(out, request.getMethod().name());
+    writeMap(out, request.getHeaders());
+    writeMap(out, StorageUtil.getRequestBody(request));
+    out.writeInt(response.getStatusCode());
+    final Header[] headers = response.getHeaders();
+    out.writeInt(headers.length);
+    for (final Header header : headers) {
+      writeString(out, header.getName());
+      writeString(out, header.getValue());
+    }
+    final ContentType contentType = response.getContentType();
+    writeString(out, contentType.getMimeType());
+    writeString(out, contentType.getCharset() != null ? contentType.getCharset().name() : null);
+    writeString(out, DigestUtils.md5Hex(content));
+    out.flush();
+    try (OutputStream gzip = new GZIPOutputStream(bytes)) {
+      gzip.write(content);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Get content type from record, if not found return default.
+   *
+   * @param mimeType name of mime type
+   * @param encoding name of encoding
+   * @return an instance of content type
+   */
+  private static ContentType getContentType(final String mimeType, final String encoding) {
+    try {
+      return ContentType.create(mimeType, encoding != null ? Charset.forName(encoding) : null);
+    } catch (IllegalArgumentException e) {
+      LOGGER.warn("Could not parse content type", e);
+    }
+    return DEFAULT_CONTENT_TYPE;
+  }
+
+  /**
+   * Decode a record from the data of its frame.
+   *
+   * @param id   the id of the record
+   * @param data the data
+   * @return an instance of record
+   * @throws IOException if the data cannot be decoded
+   */
+  private static StorageRecord<Long> decode(final long id, final byte[] data) throws IOException {
+    final DataInputStream in = new DataInputStream(
+        new ByteArrayInputStream(data, FINGERPRINT_SIZE, data.length - FINGERPRINT_SIZE));
+    final long dateCreated = in.readLong();
+    final String url = readString(in);
+    final Request.Method method = Request.Method.valueOf(readString(in));
+    final Map<String, String> requestHeaders = readMap(in);
+    final Map<String, String> requestBody = readMap(in);
+    final int statusCode = in.readInt();
+    final Header[] responseHeaders = new Header[in.readInt()];
+    for (int i = 0; i < responseHeaders.length; i++) {
+      responseHeaders[i] = new BasicHeader(readString(in), readString(in));
+    }
+    final ContentType contentType = getContentType(readString(in), readString(in));
+    final String md5 = readString(in);
+    final byte[] content;
+    try (InputStream gzip = new GZIPInputStream(in)) {
+      content = IOUtils.toByteArray(gzip);
+    }
+    return StorageRecord.builder(id)
+        .setUrl(url)
+        .setRequestMethod(method)
+        .setRequestHeaders(requestHeaders)
+        .setRequestBody(requestBody)
+        .setStatusCode(statusCode)
+        .setResponseHeaders(responseHeaders)
+        .setContentType(contentType)
+        .setMD5(md5)
+        .setDateCreated(dateCreated)
+        .setResponseContent(content)
+        .build();
+  }
+
+  @Override
+  public Callback getCallback() {
+    return callback;
+  }
+
+  @Override
+  public String put(final @NotNull Request request, final @NotNull Response response) throws StorageException {
+    final byte[] data;
+    try {
+      data = encode(request, response, StorageUtil.getFingerprint(request));
+    } catch (IOException e) {
+      throw new StorageException("Cannot encode the record for " + request.getUrl() + ".", e);
+    }
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(data.length).putInt(crc(data));
+    ((Buffer) header).flip();
+    final ByteBuffer[] frame = {header, ByteBuffer.wrap(data)};
+
+    synchronized (writeLock) {
+      if (closed) {
+        throw new StorageException("File manager is closed.");
+      }
+      final long offset = position;
+      try {
+        log.position(offset);
+        while (frame[1].hasRemaining()) {
+          log.write(frame);
+        }
+        if (sync) {
+          log.force(false);
+        }
+        addIndex(data, offset);
+      } catch (IOException e) {
+        LOGGER.error("Cannot append the record for {}", request.getUrl(), e);
+        throw new StorageException("Cannot append the record for " + request.getUrl() + ".", e);
+      }
+      position = offset + HEADER_SIZE + data.length;
+      LOGGER.debug("Response from request {} has been saved to record {}", request.getUrl(), offset);
+      return String.valueOf(offset);
+    }
+  }
+
+  @Override
+  public Record<Long> get(final Long id) throws StorageException {
+    if (id == null || id < 0 || id >= position) {
+      LOGGER.debug("No record found for id: {}", id);
+      return null;
+    }
+    try {
+      final byte[] data = readFrame(id, position);
+      if (data == null) {
+        throw new StorageException("No valid record at id " + id + ".");
+      }
+      return decode(id, data);
+    } catch (IOException e) {
+      LOGGER.error("Record read failure for id: {}", id, e);
+      throw new StorageException("Cannot retrieve the record", e);
+    }
+  }
+
+  @Override
+  public Record<Long> get(final @NotNull Request request) throws StorageException {
+    final Long id = index.get(ByteBuffer.wrap(StorageUtil.getFingerprint(request)));
+    if (id != null) {
+      final Record<Long> record = get(id);
+      if (record != null && request.getUrl().equals(record.getURL())) {
+        LOGGER.debug("Record found for request: {}", request.getUrl());
+        return record;
+      }
+    }
+    LOGGER.debug("No record found for request: {}", request.getUrl());
+    return null;
+  }
+
+  /**
+   * Get the number of requests with a record.
+   *
+   * @return the number of distinct requests stored
+   */
+  public int size() {
+    return index.size();
+  }
+
+  /**
+   * Write pending index entries and force records put to disk.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  public void flush() throws IOException {
+    synchronized (writeLock) {
+      if (closed) {
+        return;
+      }
+      writeIndex();
+      log.force(false);
+      indexFile.force(false);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (writeLock) {
+      if (closed) {
+        return;
+      }
+      try {
+        writeIndex();
+        log.force(false);
+        indexFile.force(false);
+      } finally {
+        closed = true;
+        log.close();
+        indexFile.close();
+      }
+    }
+  }
+
+  /**
+   * A builder for local file manager class.
+   */
+  public static final class Builder {
+
+    /**
+     * The directory holding the log and index.
+     */
+    private final Path directory;
+
+    /**
+     * Whether to force every record to disk when it is put.
+     */
+    private boolean sync;
+
+    /**
+     * Constructs an instance of builder with default values.
+     *
+     * @param directory the directory holding the log and index
+     */
+    private Builder(final Path directory) {
+      if (directory == null) {
+        throw new IllegalStateException("Attribute 'directory' cannot be null.");
+      }
+      this.directory = directory;
+      sync = false;
+    }
+
+    /**
+     * Sets whether to force every record to disk when it is put,
+     * instead of on flush and close. Defaults to false, records put
+     * since the last flush may be lost on a crash but the log remains
+     * readable.
+     *
+     * @param sync whether to force every record to disk
+     * @return this
+     */
+    public Builder setSync(final boolean sync) {
+      this.sync = sync;
+      return this;
+    }
+
+    /**
+     * Opens the file manager with the options specified.
+     *
+     * @return an instance of local file manager
+     * @throws IOException if the log or index cannot be opened
+     */
+    public LocalFileManager build() throws IOException {
+      return new LocalFileManager(this);
+    }
+
+  }
+
+}
@@ -17,8 +17,11 @@
 package ai.preferred.venom.storage;
 
 import ai.preferred.venom.fetcher.Callback;
+import ai.preferred.venom.request.Headers;
 import ai.preferred.venom.request.Request;
 import ai.preferred.venom.response.Response;
+import ai.preferred.venom.utils.UrlUtil;
+import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.zaxxer.hikari.HikariDataSource;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -35,12 +38,21 @@ import org.slf4j.LoggerFactory;
 import javax.sql.DataSource;
 import javax.validation.constraints.NotNull;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -48,12 +60,48 @@ import java.util.zip.GZIPOutputStream;
  * This class implements a FileManager that writes response content to a
  * file on the file system and a record in MySQL database pointing to the
  * record and allows retrieving the file using an id or request.
+ * <p>
+ * The md5 hash and time of every fetch are kept, and can be listed
+ * with {@link #getHistory(Request, int)} to estimate how often the
+ * content of a url changes.
+ * </p>
+ * <p>
+ * Records are looked up by request with an index on a SHA-1
+ * fingerprint of the method, url, headers and body of the request.
+ * Tables created by earlier versions are migrated when opened, the
+ * fingerprint of existing records is computed in batches.
+ * </p>
+ * <p>
+ * Content is written to a file per record under the storage path,
+ * unless a {@link ContentStore} is set, in which case the location of
+ * the content in the store is kept in the record. Records written to
+ * files remain readable after a content store is set. Content is
+ * written to the store with the host of its request, for stores that
+ * compress with per-site dictionaries, such as {@link ZstdDictionaryCodec}.
+ * </p>
+ * <p>
+ * With deduplication, bodies in the content store are tracked in a
+ * table keyed by their hashes and size, so a body identical to one
+ * already stored, such as an unchanged page on recrawl, is not written
+ * again. Bodies are looked up by a fast 64-bit hash and their size, and
+ * only compared by SHA-256 when those match. The key is unique, so
+ * writers storing the same new body at once record it only once, the
+ * copies written by the others are left unreferenced in the store.
+ * </p>
+ * <p>
+ * Responses passed to the callback are stored behind the crawl. They
+ * wait in a bounded queue, the callback blocks when it is full, and a
+ * writer thread inserts them in JDBC batches committed together, while
+ * their files are written in parallel by a fixed pool of I/O threads.
+ * Responses queued are stored before {@link #close()} returns, and
+ * {@link #flush()} waits for them without closing.
+ * </p>
  *
  * @author Maksim Tkachenko
  * @author Truong Quoc Tuan
  * @author Ween Jiann Lee
  */
-public class MysqlFileManager implements FileManager<Integer> {
+public class MysqlFileManager implements FileManager<Integer>, FetchHistory {
 
   /**
    * Logger.
@@ -65,6 +113,12 @@ public class MysqlFileManager implements FileManager<Integer> {
    */
   private static final ContentType DEFAULT_CONTENT_TYPE = ContentType.APPLICATION_OCTET_STREAM;
 
+  /**
+   * The number of records to compute the fingerprint of in each batch
+   * when migrating a table.
+   */
+  private static final int MIGRATION_BATCH_SIZE = 1000;
+
   /**
    * The DataSource to use for connecting to database.
    */
@@ -80,10 +134,30 @@ public class MysqlFileManager implements FileManager<Integer> {
    */
   private final File storagePath;
 
+  /**
+   * The store to write content to, or null to write a file per record.
+   */
+  private final ContentStore contentStore;
+
+  /**
+   * Whether to deduplicate content in the content store.
+   */
+  private final boolean deduplicate;
+
+  /**
+   * The name of the table in the database tracking deduplicated content.
+   */
+  private final String contentTable;
+
+  /**
+   * The statement inserting a record.
+   */
+  private final String insertSql;
+
   /**
    * The callback to trigger upon response.
    */
-  private final Callback callback;
+  private final WriteBehindCallback callback;
 
   /**
    * Constructs an instance of MysqlFileManager.
@@ -125,11 +199,49 @@ public class MysqlFileManager implements FileManager<Integer> {
    */
   public MysqlFileManager(final String url, final String table, final String username, final String password,
                           final File storagePath, final int maxPoolSize) {
-    this.dataSource = setupDataSource(url, username, password, maxPoolSize);
-    ensureTable(table);
-    this.table = table;
-    this.storagePath = storagePath;
-    this.callback = new CompletedThreadedCallback(this);
+    this(builder(url, table, username, password, storagePath).setMaxPoolSize(maxPoolSize));
+  }
+
+  /**
+   * Constructs an instance of MysqlFileManager.
+   *
+   * @param builder an instance of builder
+   */
+  private MysqlFileManager(final Builder builder) {
+    final HikariDataSource hikariDataSource = setupDataSource(builder.url, builder.username, builder.password,
+        builder.maxPoolSize);
+    this.dataSource = hikariDataSource;
+    try {
+      ensureTable(builder.table, builder.deduplicate);
+    } catch (IllegalStateException e) {
+      hikariDataSource.close();
+      throw e;
+    }
+    this.table = builder.table;
+    this.storagePath = builder.storagePath;
+    this.contentStore = builder.contentStore;
+    this.deduplicate = builder.deduplicate;
+    this.contentTable = builder.table + "_content";
+    this.insertSql = "INSERT INTO `" + table + "` (url, method, request_headers, request_body, "
+        + "status_code, response_headers, mime_type, encoding, md5, location, fingerprint, content_location) "
+        + "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    this.callback = new WriteBehindCallback(builder.queueCapacity, builder.batchSize, builder.ioThreads);
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @param url         a JDBC URL to the database
+   * @param table       name of table in the database to use for record storage
+   * @param username    username for the database
+   * @param password    password for the database
+   * @param storagePath storage path to use for content storage
+   * @return A new instance of builder
+   */
+  public static Builder builder(final @NotNull String url, final @NotNull String table,
+                                final @NotNull String username, final @NotNull String password,
+                                final @NotNull File storagePath) {
+    return new Builder(url, table, username, password, storagePath);
   }
 
   /**
@@ -140,7 +252,7 @@ public class MysqlFileManager implements FileManager<Integer> {
    * @param password password for the database
    * @return an instance of DataSource
    */
-  private DataSource setupDataSource(final String url, final String username, final String password,
+  private HikariDataSource setupDataSource(final String url, final String username, final String password,
                                      final int maxPoolSize) {
     final HikariDataSource dataSource = new HikariDataSource();
     dataSource.setJdbcUrl(url);
@@ -154,9 +266,11 @@ public class MysqlFileManager implements FileManager<Integer> {
   /**
    * Check if table exists, if not create it.
    *
-   * @param table name of table in the database to use for record storage
+   * @param table       name of table in the database to use for record storage
+   * @param deduplicate whether to create the table tracking deduplicated content
+   * @throws IllegalStateException if the table cannot be created or migrated
    */
-  private void ensureTable(final String table) {
+  private void ensureTable(final String table, final boolean deduplicate) {
     try (Connection conn = dataSource.getConnection();
          Statement statement = conn.createStatement()) {
       final String sql = "CREATE TABLE IF NOT EXISTS `" + table + "` ("
@@ -165,20 +279,167 @@ public class MysqlFileManager implements FileManager<Integer> {
           + "`method` ENUM('GET', 'POST', 'HEAD', 'PUT', 'DELETE', 'OPTIONS') NOT NULL,\n"
           + "`request_headers` JSON DEFAULT NULL,\n"
           + "`request_body` JSON DEFAULT NULL,\n"
+          + "`fingerprint` BINARY(20) NULL DEFAULT NULL,\n"
           + "`status_code` int(3) NOT NULL DEFAULT 200,\n"
           + "`response_headers` JSON DEFAULT NULL,\n"
           + "`mime_type` varchar(255) NOT NULL,\n"
           + "`encoding` varchar(255) NULL DEFAULT NULL,\n"
           + "`md5` varchar(32) NOT NULL,\n"
           + "`location` varchar(3) NOT NULL,\n"
+          + "`content_location` varchar(64) NULL DEFAULT NULL,\n"
           + "`date_created` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,\n"
           + "PRIMARY KEY (`id`),\n"
-          + "INDEX `url_idx` (`url` ASC)\n"
+          + "INDEX `url_idx` (`url` ASC),\n"
+          + "INDEX `fingerprint_idx` (`fingerprint`, `date_created`)\n"
           + ") CHARACTER SET latin1 COLLATE latin1_swedish_ci;";
       statement.execute(sql);
       conn.commit();
-    } catch (SQLException e) {
-      LOGGER.error("Unable to execute ensure table query", e);
+      if (!hasColumn(conn, table, "fingerprint")) {
+        addFingerprint(conn, table);
+      }
+      migrateFingerprint(conn, table);
+      if (!hasColumn(conn, table, "content_location")) {
+        LOGGER.info("Adding content location to table {}.", table);
+        statement.execute("ALTER TABLE `" + table + "` "
+            + "ADD COLUMN `content_location` varchar(64) NULL DEFAULT NULL AFTER `location`");
+        conn.commit();
+      }
+      if (deduplicate) {
+        statement.execute("CREATE TABLE IF NOT EXISTS `" + table + "_content` ("
+            + "`id` int(11) NOT NULL AUTO_INCREMENT,\n"
+            + "`prehash` bigint(20) NOT NULL,\n"
+            + "`size` int(11) NOT NULL,\n"
+            + "`sha256` BINARY(32) NULL DEFAULT NULL,\n"
+            + "`location` varchar(64) NOT NULL,\n"
+            + "`date_created` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,\n"
+            + "PRIMARY KEY (`id`),\n"
+            + "UNIQUE INDEX `content_idx` (`prehash`, `size`, `sha256`),\n"
+            + "INDEX `location_idx` (`location`)\n"
+            + ") CHARACTER SET latin1 COLLATE latin1_swedish_ci;");
+        conn.commit();
+        if (!hasIndex(conn, table + "_content", "content_idx")) {
+          LOGGER.info("Adding unique content key to table {}_content.", table);
+          // Copies stored by racing writers keep their rows, only the oldest keeps its hash.
+          statement.execute("UPDATE `" + table + "_content` c JOIN `" + table + "_content` d "
+              + "ON c.prehash = d.prehash AND c.size = d.size AND c.sha256 = d.sha256 AND c.id > d.id "
+              + "SET c.sha256 = NULL");
+          statement.execute("ALTER TABLE `" + table + "_content` "
+              + "ADD UNIQUE INDEX `content_idx` (`prehash`, `size`, `sha256`)");
+          conn.commit();
+        }
+      }
+    } catch (SQLException | RuntimeException e) {
+      throw new IllegalStateException("Unable to ensure table " + table + ".", e);
+    }
+  }
+
+  /**
+   * Check if a table has a column.
+   *
+   * @param conn   the connection to the database
+   * @param table  name of table in the database to use for record storage
+   * @param column name of the column
+   * @return true if the column exists
+   * @throws SQLException if a database access error occurs
+   */
+  private boolean hasColumn(final Connection conn, final String table, final String column) throws SQLException {
+    try (PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS "
+        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?")) {
+      pstmt.setString(1, table);
+      pstmt.setString(2, column);
+      try (ResultSet rs = pstmt.executeQuery()) {
+        return rs.next() && rs.getInt(1) > 0;
+      }
+    } finally {
+      conn.commit();
+    }
+  }
+
+  /**
+   * Check if a table has an index.
+   *
+   * @param conn  the connection to the database
+   * @param table name of the table
+   * @param index name of the index
+   * @return true if the index exists
+   * @throws SQLException if a database access error occurs
+   */
+  private boolean hasIndex(final Connection conn, final String table, final String index) throws SQLException {
+    try (PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS "
+        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ?")) {
+      pstmt.setString(1, table);
+      pstmt.setString(2, index);
+      try (ResultSet rs = pstmt.executeQuery()) {
+        return rs.next() && rs.getInt(1) > 0;
+      }
+    } finally {
+      conn.commit();
+    }
+  }
+
+  /**
+   * Add the fingerprint column and index to a table created by an
+   * earlier version.
+   *
+   * @param conn  the connection to the database
+   * @param table name of table in the database to use for record storage
+   * @throws SQLException if a database access error occurs
+   */
+  private void addFingerprint(final Connection conn, final String table) throws SQLException {
+    LOGGER.info("Adding fingerprint to table {}.", table);
+    try (Statement statement = conn.createStatement()) {
+      statement.execute("ALTER TABLE `" + table + "` "
+          + "ADD COLUMN `fingerprint` BINARY(20) NULL DEFAULT NULL AFTER `request_body`, "
+          + "ADD INDEX `fingerprint_idx` (`fingerprint`, `date_created`)");
+    }
+    conn.commit();
+  }
+
+  /**
+   * Compute the fingerprint of records that do not have one yet. Each
+   * batch is committed, so an interrupted migration resumes where it
+   * stopped on the next start.
+   *
+   * @param conn  the connection to the database
+   * @param table name of table in the database to use for record storage
+   * @throws SQLException if a database access error occurs
+   */
+  private void migrateFingerprint(final Connection conn, final String table) throws SQLException {
+    long migrated = 0;
+    int lastId = 0;
+    try (PreparedStatement select = conn.prepareStatement("SELECT `id`, `url`, `method`, `request_headers`, "
+        + "`request_body` FROM `" + table + "` WHERE `fingerprint` IS NULL AND `id` > ? ORDER BY `id` LIMIT "
+        + MIGRATION_BATCH_SIZE);
+         PreparedStatement update = conn.prepareStatement("UPDATE `" + table + "` SET `fingerprint` = ? "
+             + "WHERE `id` = ?")) {
+      while (true) {
+        select.setInt(1, lastId);
+        int n = 0;
+        try (ResultSet rs = select.executeQuery()) {
+          while (rs.next()) {
+            lastId = rs.getInt("id");
+            update.setBytes(1, StorageUtil.getFingerprint(
+                rs.getString("method"),
+                rs.getString("url"),
+                parseRequestHeaders(parseJson(rs.getString("request_headers"))),
+                parseRequestHeaders(parseJson(rs.getString("request_body")))
+            ));
+            update.setInt(2, lastId);
+            update.addBatch();
+            n++;
+          }
+        }
+        if (n == 0) {
+          break;
+        }
+        update.executeBatch();
+        conn.commit();
+        migrated += n;
+        LOGGER.debug("Computed fingerprint of {} records in table {}.", migrated, table);
+      }
+    }
+    if (migrated > 0) {
+      LOGGER.info("Added fingerprint to {} records in table {}.", migrated, table);
     }
   }
 
@@ -204,6 +465,17 @@ public class MysqlFileManager implements FileManager<Integer> {
     }
   }
 
+  /**
+   * Parse a JSON column, treating NULL written by earlier versions as
+   * an empty object.
+   *
+   * @param json the value of the column
+   * @return an instance of JSONObject
+   */
+  private static JSONObject parseJson(final String json) {
+    return json == null ? new JSONObject() : new JSONObject(json);
+  }
+
   /**
    * Convert request headers from JSON to map.
    *
@@ -239,25 +511,6 @@ public class MysqlFileManager implements FileManager<Integer> {
     return headers.toArray(headersArray);
   }
 
-  /**
-   * Convert request body into map.
-   *
-   * @param request the instance of request with body
-   * @return a map of request body
-   */
-  private Map<String, String> prepareRequestBody(final Request request) {
-    Map<String, String> requestBody = new HashMap<>();
-    if (request.getBody() != null) {
-      for (String pair : request.getBody().split("&")) {
-        String[] nvp = pair.split("=");
-        String value = nvp.length > 1 ? nvp[1] : "";
-        requestBody.put(nvp[0], value);
-      }
-    }
-
-    return requestBody;
-  }
-
   /**
    * Get content type from record, if not found return default.
    *
@@ -283,19 +536,28 @@ public class MysqlFileManager implements FileManager<Integer> {
   }
 
   /**
-   * Create an instance of Record using the result from database.
+   * Get the source of the content of a record, in the content store, or
+   * in its file if it was not written to a content store.
+   * <p>
+   * Only the presence of the content is checked, it is read when the
+   * content of the record is first accessed.
+   * </p>
    *
    * @param rs an instance of result set from database
-   * @return an instance of Record
-   * @throws SQLException     if the columnLabel is not valid;
-   *                          if a database access error occurs or this method is
-   *                          called on a closed result set
-   * @throws StorageException if file is not found
+   * @return the source of the content
+   * @throws SQLException     if a database access error occurs
+   * @throws StorageException if the content cannot be found
    */
-  private StorageRecord<Integer> createRecord(final ResultSet rs) throws SQLException, StorageException {
-    final Map<String, String> requestHeaders = parseRequestHeaders(new JSONObject(rs.getString("request_headers")));
-    final Header[] responseHeaders = parseResponseHeaders(new JSONObject(rs.getString("response_headers")));
-    final String location = rs.getString("location");
+  private ContentSource getContentSource(final ResultSet rs) throws SQLException, StorageException {
+    final String contentLocation = rs.getString("content_location");
+    if (contentLocation != null) {
+      if (contentStore == null) {
+        throw new StorageException("Record found in content store but no content store is set for "
+            + rs.getString("url") + ".");
+      }
+      return () -> contentStore.openStream(contentLocation);
+    }
+
     String tryFileExtension;
     try {
       tryFileExtension = StorageUtil.getFileExtension(rs.getString("mime_type"));
@@ -304,25 +566,30 @@ public class MysqlFileManager implements FileManager<Integer> {
       tryFileExtension = "";
     }
     final String fileExtension = tryFileExtension;
-    final File file = new File(new File(storagePath, location), rs.getString("id") + fileExtension + ".gz");
+    final File file = new File(new File(storagePath, rs.getString("location")),
+        rs.getString("id") + fileExtension + ".gz");
+    if (!file.isFile()) {
+      throw new StorageException("Record found but file not found for " + rs.getString("url") + ".");
+    }
+    return () -> new BufferedInputStream(new GZIPInputStream(new FileInputStream(file)));
+  }
 
+  /**
+   * Create an instance of Record using the result from database.
+   *
+   * @param rs an instance of result set from database
+   * @return an instance of Record
+   * @throws SQLException     if the columnLabel is not valid;
+   *                          if a database access error occurs or this method is
+   *                          called on a closed result set
+   * @throws StorageException if file is not found
+   */
+  private StorageRecord<Integer> createRecord(final ResultSet rs) throws SQLException, StorageException {
+    final Map<String, String> requestHeaders = parseRequestHeaders(parseJson(rs.getString("request_headers")));
+    final Header[] responseHeaders = parseResponseHeaders(parseJson(rs.getString("response_headers")));
     final ContentType contentType = getContentType(
         rs.getString("mime_type"), rs.getString("encoding"));
-
-    final byte[] responseContent;
-    try {
-      responseContent = IOUtils.toByteArray(
-          new BufferedInputStream(
-              new GZIPInputStream(
-                  new FileInputStream(file)
-              )
-          )
-      );
-    } catch (FileNotFoundException e) {
-      throw new StorageException("Record found but file not found for " + rs.getString("url") + ".", e);
-    } catch (IOException e) {
-      throw new StorageException("Error reading file for " + rs.getString("url") + ".", e);
-    }
+    final ContentSource contentSource = getContentSource(rs);
 
     LOGGER.debug("Record found for request: {}", rs.getString("url"));
 
@@ -333,8 +600,8 @@ public class MysqlFileManager implements FileManager<Integer> {
         .setResponseHeaders(responseHeaders)
         .setContentType(contentType)
         .setMD5(rs.getString("md5"))
-        .setDateCreated(rs.getLong("date_created"))
-        .setResponseContent(responseContent)
+        .setDateCreated(rs.getTimestamp("date_created").getTime())
+        .setContentSource(contentSource)
         .build();
   }
 
@@ -343,93 +610,345 @@ public class MysqlFileManager implements FileManager<Integer> {
     return callback;
   }
 
-  @Override
-  public final String put(final Request request, final Response response) throws StorageException {
-    Connection conn = null;
+  /**
+   * Set the parameters of the insert statement for a response.
+   *
+   * @param pstmt    the insert statement
+   * @param request  the request
+   * @param response the response
+   * @param md5      the md5 hash of the response content
+   * @param content  the location of the content in the content store, or null if none
+   * @throws SQLException if a database access error occurs
+   */
+  private void setInsertParameters(final PreparedStatement pstmt, final Request request, final Response response,
+                                   final String md5, final String content) throws SQLException {
+    final Map<String, String> responseHeaders = new HashMap<>();
+    for (final Header header : response.getHeaders()) {
+      responseHeaders.put(header.getName(), header.getValue());
+    }
+
+    pstmt.setString(1, request.getUrl());
+    pstmt.setString(2, request.getMethod().name());
+    pstmt.setString(3, Headers.of(request.getHeaders()).toJson());
+    pstmt.setString(4, new JSONObject(StorageUtil.getRequestBody(request)).toString());
+    pstmt.setInt(5, response.getStatusCode());
+    pstmt.setString(6, new JSONObject(responseHeaders).toString());
+    pstmt.setString(7, response.getContentType().getMimeType());
+    if (response.getContentType().getCharset() != null) {
+      pstmt.setString(8, response.getContentType().getCharset().name());
+    } else {
+      pstmt.setString(8, null);
+    }
+    pstmt.setString(9, md5);
+    pstmt.setString(10, md5.substring(0, 3));
+    pstmt.setBytes(11, StorageUtil.getFingerprint(request));
+    pstmt.setString(12, content);
+  }
+
+  /**
+   * Write the content of a response to the file of its record.
+   *
+   * @param id       the id of the record
+   * @param md5      the md5 hash of the response content
+   * @param request  the request
+   * @param response the response
+   * @throws IOException if an I/O error occurs
+   */
+  private void writeContent(final int id, final String md5, final Request request, final Response response)
+      throws IOException {
+    String tryFileExtension;
     try {
-      conn = dataSource.getConnection();
+      tryFileExtension = StorageUtil.getFileExtension(response);
+    } catch (MimeTypeException e) {
+      LOGGER.warn("Cannot find mime type defaulting to no extension");
+      tryFileExtension = "";
+    }
+    final String fileExtension = tryFileExtension;
 
-      final ByteArrayInputStream content = new ByteArrayInputStream(response.getContent());
-      final String md5 = DigestUtils.md5Hex(content);
-      content.reset();
+    LOGGER.debug("Using extension ({}) for: {}", fileExtension, request.getUrl());
+    createFile(new ByteArrayInputStream(response.getContent()), new File(storagePath, md5.substring(0, 3)),
+        id + fileExtension + ".gz");
+  }
 
-      final Map<String, String> responseHeaders = new HashMap<>();
+  /**
+   * Roll back and close a connection.
+   *
+   * @param conn the connection, or null if none
+   * @param e    the exception causing the roll back, or null if none
+   * @throws StorageException if the connection cannot be closed
+   */
+  private void release(final Connection conn, final Exception e) throws StorageException {
+    if (conn == null) {
+      return;
+    }
+    try {
+      if (e != null) {
+        conn.rollback();
+      }
+    } catch (SQLException e2) {
+      e.addSuppressed(e2);
+    }
+    try {
+      conn.close();
+    } catch (SQLException e2) {
+      throw new StorageException("Unable to close the connection", e2);
+    }
+  }
 
-      for (final Header header : response.getHeaders()) {
-        responseHeaders.put(header.getName(), header.getValue());
+  /**
+   * Write bodies to the content store, reusing bodies already stored if
+   * deduplicating. Bodies written are synced to disk before returning,
+   * so that records committed afterwards never refer to content lost in
+   * a crash. New bodies are recorded in the transaction of the
+   * connection given.
+   *
+   * @param conn      the connection to the database
+   * @param bodies    the bodies
+   * @param keys      the sites of the bodies
+   * @param ioThreads the executor to write bodies on, or null to write them on this thread
+   * @return the locations of the bodies in the content store
+   * @throws SQLException         if a database access error occurs
+   * @throws IOException          if a body cannot be read or written
+   * @throws ExecutionException   if a body cannot be written on the executor
+   * @throws InterruptedException if interrupted while waiting for the executor
+   */
+  private String[] storeContents(final Connection conn, final List<byte[]> bodies, final List<String> keys,
+                                 final ExecutorService ioThreads)
+      throws SQLException, IOException, ExecutionException, InterruptedException {
+    final String[] locations = new String[bodies.size()];
+    final ContentBlob[] blobs = new ContentBlob[bodies.size()];
+    final int[] copyOf = new int[bodies.size()];
+    final List<Integer> fresh = new ArrayList<>(bodies.size());
+    for (int i = 0; i < bodies.size(); i++) {
+      copyOf[i] = -1;
+      if (deduplicate) {
+        blobs[i] = new ContentBlob(bodies.get(i));
+        for (final int j : fresh) {
+          if (blobs[j].prehash == blobs[i].prehash && Arrays.equals(bodies.get(j), bodies.get(i))) {
+            copyOf[i] = j;
+            break;
+          }
+        }
+        if (copyOf[i] < 0) {
+          locations[i] = findContent(conn, blobs[i], bodies.get(i));
+        }
+      }
+      if (locations[i] == null && copyOf[i] < 0) {
+        fresh.add(i);
       }
+    }
 
-      final Map<String, String> requestBody = prepareRequestBody(request);
+    if (ioThreads == null || fresh.size() == 1) {
+      for (final int i : fresh) {
+        locations[i] = contentStore.write(bodies.get(i), keys.get(i));
+      }
+    } else {
+      final List<Future<String>> written = new ArrayList<>(fresh.size());
+      for (final int i : fresh) {
+        written.add(ioThreads.submit(() -> contentStore.write(bodies.get(i), keys.get(i))));
+      }
+      for (int j = 0; j < fresh.size(); j++) {
+        locations[fresh.get(j)] = written.get(j).get();
+      }
+    }
+    if (!fresh.isEmpty()) {
+      contentStore.sync();
+    }
 
-      final PreparedStatement pstmt = conn.prepareStatement(
-          "INSERT INTO `" + table + "` (url, method, request_headers, request_body, "
-              + "status_code, response_headers, mime_type, encoding, md5, location) "
-              + "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
-          Statement.RETURN_GENERATED_KEYS
-      );
-      final String subDirName = md5.substring(0, 3);
-      pstmt.setString(1, request.getUrl());
-      pstmt.setString(2, request.getMethod().name());
-      pstmt.setString(3, new JSONObject(request.getHeaders()).toString());
-      pstmt.setString(4, new JSONObject(requestBody).toString());
-      pstmt.setInt(5, response.getStatusCode());
-      pstmt.setString(6, new JSONObject(responseHeaders).toString());
-      pstmt.setString(7, response.getContentType().getMimeType());
-      if (response.getContentType().getCharset() != null) {
-        pstmt.setString(8, response.getContentType().getCharset().name());
-      } else {
-        pstmt.setString(8, null);
-      }
-      pstmt.setString(9, md5);
-      pstmt.setString(10, subDirName);
-      LOGGER.debug("Executing for: {}", request.getUrl());
-
-      if (pstmt.executeUpdate() == 1) {
-        final ResultSet rs = pstmt.getGeneratedKeys();
-        if (rs.next()) {
-          LOGGER.debug("MySQL insert successfully for: {}", request.getUrl());
-          final int id = rs.getInt(1);
-          final String sId = String.valueOf(id);
-
-          String tryFileExtension;
-          try {
-            tryFileExtension = StorageUtil.getFileExtension(response);
-          } catch (MimeTypeException e) {
-            LOGGER.warn("Cannot find mime type defaulting to no extension");
-            tryFileExtension = "";
+    if (deduplicate && !fresh.isEmpty()) {
+      // A body recorded by another writer since it was looked up keeps that writer's row.
+      try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO `" + contentTable + "` "
+          + "(prehash, size, sha256, location) VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE `id` = `id`")) {
+        for (final int i : fresh) {
+          if (blobs[i].sha256 == null) {
+            blobs[i].sha256 = DigestUtils.sha256(bodies.get(i));
           }
-          final String fileExtension = tryFileExtension;
+          pstmt.setLong(1, blobs[i].prehash);
+          pstmt.setInt(2, blobs[i].size);
+          pstmt.setBytes(3, blobs[i].sha256);
+          pstmt.setString(4, locations[i]);
+          pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+      }
+      for (int i = 0; i < copyOf.length; i++) {
+        if (copyOf[i] >= 0) {
+          locations[i] = locations[copyOf[i]];
+        }
+      }
+    }
+    return locations;
+  }
 
-          LOGGER.debug("Using extension ({}) for: {}", fileExtension, request.getUrl());
-          createFile(content, new File(storagePath, subDirName), sId + fileExtension + ".gz");
-          conn.commit();
-          pstmt.close();
-          LOGGER.debug("Record stored successfully for: {}", request.getUrl());
-          return sId;
+  /**
+   * Find a body already in the content store. The SHA-256 of the body,
+   * and of stored bodies that have none, is only computed when a stored
+   * body has the same hash and size.
+   *
+   * @param conn the connection to the database
+   * @param blob the hashes of the body
+   * @param body the body
+   * @return the location of the stored body, or null if none
+   * @throws SQLException if a database access error occurs
+   * @throws IOException  if a stored body cannot be read
+   */
+  private String findContent(final Connection conn, final ContentBlob blob, final byte[] body)
+      throws SQLException, IOException {
+    try (PreparedStatement select = conn.prepareStatement("SELECT `id`, `sha256`, `location` FROM `"
+        + contentTable + "` WHERE `prehash` = ? AND `size` = ?")) {
+      select.setLong(1, blob.prehash);
+      select.setInt(2, blob.size);
+      try (ResultSet rs = select.executeQuery()) {
+        while (rs.next()) {
+          if (blob.sha256 == null) {
+            blob.sha256 = DigestUtils.sha256(body);
+          }
+          final String location = rs.getString("location");
+          byte[] sha256 = rs.getBytes("sha256");
+          if (sha256 == null) {
+            sha256 = DigestUtils.sha256(contentStore.read(location));
+            updateSha256(conn, rs.getInt("id"), sha256);
+          }
+          if (Arrays.equals(sha256, blob.sha256)) {
+            return location;
+          }
         }
       }
+    }
+    return null;
+  }
 
-      conn.rollback();
-      throw new StorageException("Cannot store the record");
-    } catch (SQLException | IOException e) {
-      if (conn != null) {
-        try {
-          conn.rollback();
-        } catch (SQLException e2) {
-          e.addSuppressed(e2);
-          throw new StorageException("Cannot store the record", e);
+  /**
+   * Set the SHA-256 of a row of the table tracking deduplicated content
+   * written before it was computed. A row duplicating another row that
+   * already has the hash is left without it.
+   *
+   * @param conn   the connection to the database
+   * @param id     the id of the row
+   * @param sha256 the SHA-256 of the body of the row
+   * @throws SQLException if a database access error occurs
+   */
+  private void updateSha256(final Connection conn, final int id, final byte[] sha256) throws SQLException {
+    try (PreparedStatement pstmt = conn.prepareStatement("UPDATE `" + contentTable + "` SET `sha256` = ? "
+        + "WHERE `id` = ?")) {
+      pstmt.setBytes(1, sha256);
+      pstmt.setInt(2, id);
+      pstmt.executeUpdate();
+    } catch (SQLIntegrityConstraintViolationException e) {
+      LOGGER.debug("Content {} duplicates content already hashed.", id);
+    }
+  }
+
+  @Override
+  public final String put(final Request request, final Response response) throws StorageException {
+    Connection conn = null;
+    Exception failure = null;
+    try {
+      conn = dataSource.getConnection();
+      final String md5 = DigestUtils.md5Hex(response.getContent());
+      final String content = contentStore == null ? null
+          : storeContents(conn, Collections.singletonList(response.getContent()),
+          Collections.singletonList(UrlUtil.getHost(request)), null)[0];
+      try (PreparedStatement pstmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+        setInsertParameters(pstmt, request, response, md5, content);
+        LOGGER.debug("Executing for: {}", request.getUrl());
+
+        if (pstmt.executeUpdate() == 1) {
+          final ResultSet rs = pstmt.getGeneratedKeys();
+          if (rs.next()) {
+            LOGGER.debug("MySQL insert successfully for: {}", request.getUrl());
+            final int id = rs.getInt(1);
+            if (content == null) {
+              writeContent(id, md5, request, response);
+            }
+            conn.commit();
+            LOGGER.debug("Record stored successfully for: {}", request.getUrl());
+            return String.valueOf(id);
+          }
         }
       }
-      throw new StorageException("Cannot store the record", e);
+      failure = new StorageException("Cannot store the record");
+    } catch (SQLException | IOException e) {
+      failure = e;
+    } catch (ExecutionException e) {
+      failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failure = e;
     } finally {
-      if (conn != null) {
-        try {
-          conn.close();
-        } catch (SQLException e) {
-          throw new StorageException("Unable to close the connection", e);
+      release(conn, failure);
+    }
+    throw new StorageException("Cannot store the record", failure);
+  }
+
+  /**
+   * Store responses with one batch insert and one commit, writing their
+   * content in parallel.
+   *
+   * @param writes    the responses to store
+   * @param ioThreads the executor to write content on
+   * @throws StorageException if the batch cannot be stored, none of it is committed
+   */
+  private void putBatch(final List<PendingWrite> writes, final ExecutorService ioThreads) throws StorageException {
+    Connection conn = null;
+    Exception failure = null;
+    try {
+      conn = dataSource.getConnection();
+      final String[] md5s = new String[writes.size()];
+      final int[] ids = new int[writes.size()];
+      String[] contents = new String[writes.size()];
+      if (contentStore != null) {
+        final List<byte[]> bodies = new ArrayList<>(writes.size());
+        final List<String> keys = new ArrayList<>(writes.size());
+        for (final PendingWrite write : writes) {
+          bodies.add(write.response.getContent());
+          keys.add(UrlUtil.getHost(write.request));
         }
+        contents = storeContents(conn, bodies, keys, ioThreads);
       }
+      try (PreparedStatement pstmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+        for (int i = 0; i < writes.size(); i++) {
+          md5s[i] = DigestUtils.md5Hex(writes.get(i).response.getContent());
+          setInsertParameters(pstmt, writes.get(i).request, writes.get(i).response, md5s[i], contents[i]);
+          pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+        try (ResultSet rs = pstmt.getGeneratedKeys()) {
+          int n = 0;
+          while (n < ids.length && rs.next()) {
+            ids[n++] = rs.getInt(1);
+          }
+          if (n != ids.length) {
+            throw new SQLException("Expected " + ids.length + " generated keys, got " + n + ".");
+          }
+        }
+      }
+
+      final List<Future<?>> files = new ArrayList<>(writes.size());
+      for (int i = 0; contentStore == null && i < writes.size(); i++) {
+        final int index = i;
+        files.add(ioThreads.submit(() -> {
+          writeContent(ids[index], md5s[index], writes.get(index).request, writes.get(index).response);
+          return null;
+        }));
+      }
+      for (final Future<?> file : files) {
+        file.get();
+      }
+      conn.commit();
+      LOGGER.debug("Batch of {} records stored successfully.", writes.size());
+      return;
+    } catch (SQLException | IOException e) {
+      failure = e;
+    } catch (ExecutionException e) {
+      failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failure = e;
+    } finally {
+      release(conn, failure);
     }
+    throw new StorageException("Cannot store the batch of records", failure);
   }
 
   @Override
@@ -454,16 +973,13 @@ public class MysqlFileManager implements FileManager<Integer> {
   public final Record<Integer> get(final Request request) throws StorageException {
     try (Connection conn = dataSource.getConnection();
          PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM `" + table + "` "
-             + "WHERE url = ? "
-             + "AND method = ? "
-             + "AND request_headers = CAST(? AS JSON) "
-             + "AND request_body = CAST(? AS JSON) "
-             + "ORDER BY `date_created` DESC "
+             + "WHERE fingerprint = ? "
+             + "AND url = ? "
+             + "ORDER BY `date_created` DESC, `id` DESC "
+             + "LIMIT 1"
          )) {
-      pstmt.setString(1, request.getUrl());
-      pstmt.setString(2, request.getMethod().name());
-      pstmt.setString(3, new JSONObject(request.getHeaders()).toString());
-      pstmt.setString(4, new JSONObject(prepareRequestBody(request)).toString());
+      pstmt.setBytes(1, StorageUtil.getFingerprint(request));
+      pstmt.setString(2, request.getUrl());
       final ResultSet rs = pstmt.executeQuery();
       if (rs.next()) {
         return createRecord(rs);
@@ -477,8 +993,133 @@ public class MysqlFileManager implements FileManager<Integer> {
     return null;
   }
 
+  /**
+   * Returns latest records matching requests, looked up with one query
+   * for all requests. Only the latest row of each fingerprint and url is
+   * read, older versions of a record are not loaded.
+   * <p>
+   * Batches are looked up ahead of use, so unlike {@link #get(Request)}
+   * the content of the records is read before returning, on the thread
+   * of the caller, such as the I/O pool of a {@link PooledFileManager}.
+   * Content that cannot be read is left to be read, and to fail, when it
+   * is used.
+   * </p>
+   *
+   * @param requests requests
+   * @return stored records, in the order of requests, null if none
+   * @throws StorageException throws StorageException
+   */
+  @Override
+  public final List<Record<Integer>> getAll(final @NotNull List<? extends Request> requests)
+      throws StorageException {
+    final List<Record<Integer>> records = new ArrayList<>(Collections.nCopies(requests.size(), null));
+    if (requests.isEmpty()) {
+      return records;
+    }
+    final Map<ByteBuffer, List<Integer>> positions = new LinkedHashMap<>();
+    for (int i = 0; i < requests.size(); i++) {
+      positions.computeIfAbsent(ByteBuffer.wrap(StorageUtil.getFingerprint(requests.get(i))),
+          k -> new ArrayList<>()).add(i);
+    }
+    final StringBuilder sql = new StringBuilder("SELECT t.* FROM `").append(table).append("` t ")
+        .append("JOIN (SELECT MAX(`id`) AS `id` FROM `").append(table).append("` WHERE fingerprint IN (");
+    for (int i = 0; i < positions.size(); i++) {
+      sql.append(i == 0 ? "?" : ", ?");
+    }
+    sql.append(") GROUP BY `fingerprint`, `url`) latest ON t.`id` = latest.`id`");
+
+    try (Connection conn = dataSource.getConnection();
+         PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+      int parameter = 1;
+      for (final ByteBuffer fingerprint : positions.keySet()) {
+        pstmt.setBytes(parameter++, fingerprint.array());
+      }
+      try (ResultSet rs = pstmt.executeQuery()) {
+        while (rs.next()) {
+          final List<Integer> matches = positions.get(ByteBuffer.wrap(rs.getBytes("fingerprint")));
+          if (matches == null) {
+            continue;
+          }
+          Record<Integer> record = null;
+          for (final int i : matches) {
+            if (records.get(i) == null && requests.get(i).getUrl().equals(rs.getString("url"))) {
+              if (record == null) {
+                record = createRecord(rs);
+              }
+              records.set(i, record);
+            }
+          }
+        }
+      }
+    } catch (SQLException e) {
+      LOGGER.error("Record query failure for {} requests", requests.size(), e);
+      throw new StorageException("Cannot retrieve the records", e);
+    }
+    for (final Record<Integer> record : records) {
+      if (record != null) {
+        try {
+          record.getResponseContent();
+        } catch (UncheckedIOException e) {
+          LOGGER.debug("Unable to read content of record {} ahead of use.", record.getId(), e);
+        }
+      }
+    }
+    return records;
+  }
+
+  @Override
+  public final List<Fetch> getHistory(final Request request, final int limit) throws StorageException {
+    final List<Fetch> history = new ArrayList<>();
+    try (Connection conn = dataSource.getConnection();
+         PreparedStatement pstmt = conn.prepareStatement("SELECT `md5`, `date_created` FROM `" + table + "` "
+             + "WHERE url = ? "
+             + "AND method = ? "
+             + "ORDER BY `date_created` DESC, `id` DESC "
+             + "LIMIT ?"
+         )) {
+      pstmt.setString(1, request.getUrl());
+      pstmt.setString(2, request.getMethod().name());
+      pstmt.setInt(3, limit);
+      try (ResultSet rs = pstmt.executeQuery()) {
+        while (rs.next()) {
+          history.add(new Fetch(rs.getString("md5"), rs.getTimestamp("date_created").getTime()));
+        }
+      }
+      conn.commit();
+    } catch (SQLException e) {
+      LOGGER.error("History query failure for request: {}", request.getUrl(), e);
+      throw new StorageException("Cannot retrieve the history for " + request.getUrl() + ".", e);
+    }
+    return history;
+  }
+
+  /**
+   * Waits until all responses passed to the callback so far have been
+   * stored, or have failed to be stored.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public final void flush() throws InterruptedException {
+    callback.flush();
+  }
+
+  /**
+   * Stores the responses queued, then closes the connections to the
+   * database. Responses passed to the callback after close are not
+   * stored.
+   *
+   * @throws SQLException if the data source cannot be closed
+   */
   @Override
   public final void close() throws SQLException {
+    callback.close();
+    if (contentStore != null) {
+      try {
+        contentStore.close();
+      } catch (IOException e) {
+        LOGGER.error("Unable to close the content store", e);
+      }
+    }
     if (dataSource instanceof AutoCloseable) {
       try {
         ((AutoCloseable) dataSource).close();
@@ -490,9 +1131,265 @@ public class MysqlFileManager implements FileManager<Integer> {
     }
   }
 
+  /**
+   * The hashes of a body being deduplicated.
+   */
+  private static final class ContentBlob {
+
+    /**
+     * The fast 64-bit hash of the body.
+     */
+    private final long prehash;
+
+    /**
+     * The size of the body.
+     */
+    private final int size;
+
+    /**
+     * The SHA-256 of the body, or null if not computed.
+     */
+    private byte[] sha256;
+
+    /**
+     * Constructs an instance of content blob.
+     *
+     * @param body the body
+     */
+    private ContentBlob(final byte[] body) {
+      this.prehash = Hashing.murmur3_128().hashBytes(body).asLong();
+      this.size = body.length;
+    }
+
+  }
+
+  /**
+   * A response waiting to be stored.
+   */
+  private static final class PendingWrite {
+
+    /**
+     * The request.
+     */
+    private final Request request;
+
+    /**
+     * The response.
+     */
+    private final Response response;
+
+    /**
+     * Constructs an instance of pending write.
+     *
+     * @param request  the request
+     * @param response the response
+     */
+    private PendingWrite(final Request request, final Response response) {
+      this.request = request;
+      this.response = response;
+    }
+
+  }
+
+  /**
+   * A callback queueing responses to be stored in batches by a writer
+   * thread.
+   */
+  private final class WriteBehindCallback implements Callback {
+
+    /**
+     * The longest time the writer waits for a response before checking
+     * whether it is closed.
+     */
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * The responses waiting to be stored.
+     */
+    private final BlockingQueue<PendingWrite> queue;
+
+    /**
+     * The maximum number of responses stored in a batch.
+     */
+    private final int batchSize;
+
+    /**
+     * The executor to write files on.
+     */
+    private final ExecutorService ioThreads;
+
+    /**
+     * The writer thread.
+     */
+    private final Thread writer;
+
+    /**
+     * The number of responses queued and not yet stored.
+     */
+    private final AtomicLong pending = new AtomicLong();
+
+    /**
+     * An object to synchronise upon, to signal flushes.
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * A lock held to queue responses, and exclusively to close, so that
+     * no response is queued after the writer may have stopped.
+     */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    /**
+     * Whether the callback has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructs an instance of write behind callback.
+     *
+     * @param queueCapacity the maximum number of responses waiting to be stored
+     * @param batchSize     the maximum number of responses stored in a batch
+     * @param ioThreads     the number of threads to write files on
+     */
+    private WriteBehindCallback(final int queueCapacity, final int batchSize, final int ioThreads) {
+      this.queue = new ArrayBlockingQueue<>(queueCapacity);
+      this.batchSize = batchSize;
+      this.ioThreads = Executors.newFixedThreadPool(ioThreads,
+          new ThreadFactoryBuilder().setNameFormat("FileManager I/O %d").setDaemon(true).build());
+      this.writer = new Thread(this::write, "FileManager writer");
+      writer.setDaemon(true);
+      writer.start();
+    }
+
+    /**
+     * Store queued responses in batches until closed and the queue is
+     * empty.
+     */
+    private void write() {
+      final List<PendingWrite> batch = new ArrayList<>(batchSize);
+      while (true) {
+        final PendingWrite first;
+        try {
+          first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          LOGGER.warn("File manager writer interrupted, {} responses not stored.", queue.size());
+          Thread.currentThread().interrupt();
+          return;
+        }
+        if (first == null) {
+          // Nothing is queued once closed, check the queue again for responses queued before.
+          if (closed && queue.isEmpty()) {
+            return;
+          }
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        store(batch);
+        pending.addAndGet(-batch.size());
+        batch.clear();
+        synchronized (flushLock) {
+          flushLock.notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Store a batch of responses, one by one if the batch fails so that
+     * one bad response does not lose the others.
+     *
+     * @param batch the responses to store
+     */
+    private void store(final List<PendingWrite> batch) {
+      try {
+        putBatch(batch, ioThreads);
+        return;
+      } catch (StorageException e) {
+        if (batch.size() == 1) {
+          LOGGER.error("Unable to store response for {}", batch.get(0).request.getUrl(), e);
+          return;
+        }
+        LOGGER.warn("Unable to store batch of {} responses, storing one by one.", batch.size(), e);
+      }
+      for (final PendingWrite write : batch) {
+        try {
+          put(write.request, write.response);
+        } catch (StorageException e) {
+          LOGGER.error("Unable to store response for {}", write.request.getUrl(), e);
+        }
+      }
+    }
+
+    /**
+     * Waits until all responses queued so far have been stored.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private void flush() throws InterruptedException {
+      synchronized (flushLock) {
+        while (pending.get() > 0 && writer.isAlive()) {
+          flushLock.wait(POLL_MILLIS);
+        }
+      }
+    }
+
+    /**
+     * Stores the responses queued and stops the writer.
+     */
+    private void close() {
+      closeLock.writeLock().lock();
+      try {
+        closed = true;
+      } finally {
+        closeLock.writeLock().unlock();
+      }
+      try {
+        writer.join();
+      } catch (InterruptedException e) {
+        LOGGER.warn("Interrupted while storing queued responses.");
+        Thread.currentThread().interrupt();
+      }
+      ioThreads.shutdown();
+    }
+
+    @Override
+    public void completed(final @NotNull Request request, final @NotNull Response response) {
+      closeLock.readLock().lock();
+      try {
+        if (closed) {
+          LOGGER.error("File manager is closed, unable to store response for {}", request.getUrl());
+          return;
+        }
+        pending.incrementAndGet();
+        queue.put(new PendingWrite(request, response));
+      } catch (InterruptedException e) {
+        pending.decrementAndGet();
+        LOGGER.error("Interrupted, unable to store response for {}", request.getUrl());
+        Thread.currentThread().interrupt();
+      } finally {
+        closeLock.readLock().unlock();
+      }
+    }
+
+    @Override
+    public void failed(final @NotNull Request request, final @NotNull Exception ex) {
+      // do nothing
+    }
+
+    @Override
+    public void cancelled(final @NotNull Request request) {
+      // do nothing
+    }
+
+  }
+
   /**
    * A callback wrapper for to run complete multithreaded.
+   *
+   * @deprecated responses are stored behind the crawl by the callback of
+   * {@link #getCallback()}, this class is no longer used.
    */
+  @Deprecated
   public static final class CompletedThreadedCallback implements Callback {
 
     /**
@@ -532,4 +1429,187 @@ public class MysqlFileManager implements FileManager<Integer> {
     }
   }
 
+  /**
+   * A builder for MysqlFileManager class.
+   */
+  public static final class Builder {
+
+    /**
+     * A JDBC URL to the database.
+     */
+    private final String url;
+
+    /**
+     * The name of the table in the database to use for record storage.
+     */
+    private final String table;
+
+    /**
+     * The username for the database.
+     */
+    private final String username;
+
+    /**
+     * The password for the database.
+     */
+    private final String password;
+
+    /**
+     * The storage path on the file system to use for content storage.
+     */
+    private final File storagePath;
+
+    /**
+     * The maximum connection pool size.
+     */
+    private int maxPoolSize;
+
+    /**
+     * The maximum number of responses waiting to be stored.
+     */
+    private int queueCapacity;
+
+    /**
+     * The maximum number of responses stored in a batch.
+     */
+    private int batchSize;
+
+    /**
+     * The number of threads to write files on.
+     */
+    private int ioThreads;
+
+    /**
+     * The store to write content to, or null to write a file per record.
+     */
+    private ContentStore contentStore;
+
+    /**
+     * Whether to deduplicate content in the content store.
+     */
+    private boolean deduplicate;
+
+    /**
+     * Constructs an instance of builder with default values.
+     *
+     * @param url         a JDBC URL to the database
+     * @param table       name of table in the database to use for record storage
+     * @param username    username for the database
+     * @param password    password for the database
+     * @param storagePath storage path to use for content storage
+     */
+    private Builder(final String url, final String table, final String username, final String password,
+                    final File storagePath) {
+      this.url = url;
+      this.table = table;
+      this.username = username;
+      this.password = password;
+      this.storagePath = storagePath;
+      maxPoolSize = 10;
+      queueCapacity = 1024;
+      batchSize = 64;
+      ioThreads = 4;
+      contentStore = null;
+      deduplicate = false;
+    }
+
+    /**
+     * Sets the maximum connection pool size. Defaults to 10.
+     *
+     * @param maxPoolSize the maximum connection pool size
+     * @return this
+     */
+    public Builder setMaxPoolSize(final int maxPoolSize) {
+      if (maxPoolSize < 1) {
+        throw new IllegalStateException("Attribute 'maxPoolSize' must be more or equal to 1.");
+      }
+      this.maxPoolSize = maxPoolSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of responses waiting to be stored, the
+     * callback blocks when it is reached. Defaults to 1024.
+     *
+     * @param queueCapacity the maximum number of responses waiting
+     * @return this
+     */
+    public Builder setQueueCapacity(final int queueCapacity) {
+      if (queueCapacity < 1) {
+        throw new IllegalStateException("Attribute 'queueCapacity' must be more or equal to 1.");
+      }
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of responses inserted and committed
+     * together. Defaults to 64.
+     *
+     * @param batchSize the maximum number of responses in a batch
+     * @return this
+     */
+    public Builder setBatchSize(final int batchSize) {
+      if (batchSize < 1) {
+        throw new IllegalStateException("Attribute 'batchSize' must be more or equal to 1.");
+      }
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Sets the number of threads writing content files. Defaults to 4.
+     *
+     * @param ioThreads the number of threads
+     * @return this
+     */
+    public Builder setIoThreads(final int ioThreads) {
+      if (ioThreads < 1) {
+        throw new IllegalStateException("Attribute 'ioThreads' must be more or equal to 1.");
+      }
+      this.ioThreads = ioThreads;
+      return this;
+    }
+
+    /**
+     * Sets the store to write content to, instead of a file per record.
+     * The content store is closed with the file manager. Defaults to
+     * none.
+     *
+     * @param contentStore the content store
+     * @return this
+     */
+    public Builder setContentStore(final ContentStore contentStore) {
+      this.contentStore = contentStore;
+      return this;
+    }
+
+    /**
+     * Sets whether to write bodies identical to one already in the
+     * content store only once, tracking them in a table named after the
+     * record table with the suffix "_content". Requires a content store.
+     * Defaults to false.
+     *
+     * @param deduplicate true to deduplicate content
+     * @return this
+     */
+    public Builder setDeduplicate(final boolean deduplicate) {
+      this.deduplicate = deduplicate;
+      return this;
+    }
+
+    /**
+     * Builds the file manager with the options specified.
+     *
+     * @return an instance of MysqlFileManager
+     */
+    public MysqlFileManager build() {
+      if (deduplicate && contentStore == null) {
+        throw new IllegalStateException("Attribute 'deduplicate' requires a content store.");
+      }
+      return new MysqlFileManager(this);
+    }
+
+  }
+
 }
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ai.preferred.venom.storage;
+
+import ai.preferred.venom.request.Request;
+import ai.preferred.venom.response.Response;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class implements an AsyncFileManager that runs the operations
+ * of a blocking FileManager on a fixed pool of I/O threads.
+ * <p>
+ * Operations wait in a bounded queue. When it is full, the operation is
+ * run on the calling thread instead, which slows callers down to the
+ * rate the file manager can serve rather than queueing without bound.
+ * </p>
+ *
+ * @param <T> type of id
+ * @author Ween Jiann Lee
+ */
+public final class PooledFileManager<T> implements AsyncFileManager<T> {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(PooledFileManager.class);
+
+  /**
+   * The blocking file manager.
+   */
+  private final FileManager<T> fileManager;
+
+  /**
+   * The pool of I/O threads.
+   */
+  private final ThreadPoolExecutor executor;
+
+  /**
+   * Constructs an instance of pooled file manager.
+   *
+   * @param builder an instance of builder
+   */
+  private PooledFileManager(final Builder<T> builder) {
+    this.fileManager = builder.fileManager;
+    this.executor = new ThreadPoolExecutor(builder.threads, builder.threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(builder.queueCapacity),
+        new ThreadFactoryBuilder().setNameFormat("FileManager I/O %d").setDaemon(true).build(),
+        (task, pool) -> {
+          if (pool.isShutdown()) {
+            throw new RejectedExecutionException("File manager is closed.");
+          }
+          task.run();
+        });
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @param fileManager the blocking file manager
+   * @param <T>         type of id
+   * @return A new instance of builder
+   */
+  public static <T> Builder<T> builder(final @NotNull FileManager<T> fileManager) {
+    return new Builder<>(fileManager);
+  }
+
+  /**
+   * Run an operation on the pool.
+   *
+   * @param operation the operation
+   * @param <R>       type of result
+   * @return a future completed with the result of the operation
+   */
+  private <R> CompletableFuture<R> submit(final Operation<R> operation) {
+    final CompletableFuture<R> future = new CompletableFuture<>();
+    try {
+      executor.execute(() -> {
+        try {
+          future.complete(operation.run());
+        } catch (StorageException | RuntimeException e) {
+          future.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(new StorageException("File manager is closed.", e));
+    }
+    return future;
+  }
+
+  /**
+   * Get the blocking file manager.
+   *
+   * @return the file manager
+   */
+  public FileManager<T> getFileManager() {
+    return fileManager;
+  }
+
+  @Override
+  public CompletableFuture<String> putAsync(final @NotNull Request request, final @NotNull Response response) {
+    return submit(() -> fileManager.put(request, response));
+  }
+
+  @Override
+  public CompletableFuture<Record<T>> getAsync(final T id) {
+    return submit(() -> fileManager.get(id));
+  }
+
+  @Override
+  public CompletableFuture<Record<T>> getAsync(final @NotNull Request request) {
+    return submit(() -> fileManager.get(request));
+  }
+
+  @Override
+  public CompletableFuture<List<Record<T>>> getAllAsync(final @NotNull List<? extends Request> requests) {
+    return submit(() -> fileManager.getAll(requests));
+  }
+
+  /**
+   * Waits for operations submitted to complete, and closes the file
+   * manager.
+   *
+   * @throws Exception if the file manager cannot be closed
+   */
+  @Override
+  public void close() throws Exception {
+    executor.shutdown();
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        LOGGER.info("Waiting for file manager operations to complete.");
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    fileManager.close();
+  }
+
+  /**
+   * An operation of a blocking file manager.
+   *
+   * @param <R> type of result
+   */
+  @FunctionalInterface
+  private interface Operation<R> {
+
+    /**
+     * Run the operation.
+     *
+     * @return the result
+     * @throws StorageException if the operation fails
+     */
+    R run() throws StorageException;
+
+  }
+
+  /**
+   * A builder for pooled file manager class.
+   *
+   * @param <T> type of id
+   */
+  public static final class Builder<T> {
+
+    /**
+     * The blocking file manager.
+     */
+    private final FileManager<T> fileManager;
+
+    /**
+     * The number of I/O threads.
+     */
+    private int threads;
+
+    /**
+     * The number of operations that may wait for a thread.
+     */
+    private int queueCapacity;
+
+    /**
+     * Constructs an instance of builder with default values.
+     *
+     * @param fileManager the blocking file manager
+     */
+    private Builder(final FileManager<T> fileManager) {
+      if (fileManager == null) {
+        throw new IllegalStateException("Attribute 'fileManager' cannot be null.");
+      }
+      this.fileManager = fileManager;
+      threads = 8;
+      queueCapacity = 1024;
+    }
+
+    /**
+     * Sets the number of I/O threads. Defaults to 8.
+     *
+     * @param threads the number of threads
+     * @return this
+     */
+    public Builder<T> setThreads(final int threads) {
+      if (threads < 1) {
+        throw new IllegalStateException("Attribute 'threads' must be more or equal to 1.");
+      }
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * Sets the number of operations that may wait for a thread, further
+     * operations run on the calling thread. Defaults to 1024.
+     *
+     * @param queueCapacity the queue capacity
+     * @return this
+     */
+    public Builder<T> setQueueCapacity(final int queueCapacity) {
+      if (queueCapacity < 1) {
+        throw new IllegalStateException("Attribute 'queueCapacity' must be more or equal to 1.");
+      }
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * Builds the file manager with the options specified and starts the
+     * I/O threads.
+     *
+     * @return an instance of pooled file manager
+     */
+    public PooledFileManager<T> build() {
+      return new PooledFileManager<>(this);
+    }
+
+  }
+
+}
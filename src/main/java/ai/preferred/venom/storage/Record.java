@@ -22,6 +22,9 @@ import org.apache.http.entity.ContentType;
 
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
 
 /**
@@ -83,6 +86,22 @@ public interface Record<T> {
    */
   byte[] getResponseContent();
 
+  /**
+   * Open a stream of the raw response file (uncompressed).
+   * <p>
+   * Records loading their content lazily read it as the stream is read,
+   * without holding all of it in memory.
+   * </p>
+   *
+   * @return stream of the raw response file, or null if there is none
+   * @throws IOException if the content cannot be read
+   */
+  @Nullable
+  default InputStream getResponseContentStream() throws IOException {
+    final byte[] content = getResponseContent();
+    return content == null ? null : new ByteArrayInputStream(content);
+  }
+
   /**
    * @return valid timestamp if the record is stored, -1 otherwise
    */
@@ -0,0 +1,561 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * This class implements a content store that appends compressed
+ * content to large segment files.
+ * <p>
+ * Content is compressed by the writing thread with the codec of the
+ * store, gzip by default, and appended to the active segment as a frame
+ * of [length][crc32][data]. A new segment is
+ * started when the active one would exceed the segment size. The
+ * location of content is its segment, offset and length, so no index
+ * is kept besides the records of the file manager. Segments are read
+ * through memory maps, and the frames at the end of the active segment
+ * that were not completely written before a crash are truncated when
+ * the store is opened. Content must be made durable with
+ * {@link #sync()} before its location is committed to a record, as a
+ * truncated frame may be overwritten by other content.
+ * </p>
+ * <p>
+ * The id of the codec is kept in the location of content unless it is
+ * gzip, so content written before the codec of a store is changed
+ * remains readable, as long as its codec is given with
+ * {@link Builder#addCodec(StorageCodec)}.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public final class SegmentContentStore implements ContentStore {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentContentStore.class);
+
+  /**
+   * The suffix of segment files.
+   */
+  private static final String SUFFIX = ".seg";
+
+  /**
+   * The size of the header of a frame.
+   */
+  private static final int HEADER_SIZE = 8;
+
+  /**
+   * The directory holding the segments.
+   */
+  private final Path directory;
+
+  /**
+   * The size at which a new segment is started.
+   */
+  private final long segmentSize;
+
+  /**
+   * The codec to write content with.
+   */
+  private final StorageCodec codec;
+
+  /**
+   * The codecs to read content with, by id.
+   */
+  private final Map<Integer, StorageCodec> codecs;
+
+  /**
+   * The memory maps of segments, by segment number.
+   */
+  private final Map<Integer, MappedByteBuffer> maps = new ConcurrentHashMap<>();
+
+  /**
+   * An object to synchronise upon, to append to the active segment.
+   */
+  private final Object writeLock = new Object();
+
+  /**
+   * The number of the active segment.
+   */
+  private int active;
+
+  /**
+   * The channel of the active segment.
+   */
+  private FileChannel channel;
+
+  /**
+   * The size of the active segment, only the frames before it are
+   * complete.
+   */
+  private volatile long position;
+
+  /**
+   * Constructs an instance of segment content store.
+   *
+   * @param builder an instance of builder
+   * @throws IOException if the segments cannot be opened
+   */
+  private SegmentContentStore(final Builder builder) throws IOException {
+    this.directory = Files.createDirectories(builder.directory);
+    this.segmentSize = builder.segmentSize;
+    this.codec = builder.codec;
+    this.codecs = new HashMap<>(builder.codecs);
+    int last = 0;
+    try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+      for (final Path segment : segments) {
+        final String name = segment.getFileName().toString();
+        try {
+          last = Math.max(last, Integer.parseInt(name.substring(0, name.length() - SUFFIX.length())));
+        } catch (NumberFormatException e) {
+          LOGGER.warn("Ignoring unknown file {} in content store.", segment);
+        }
+      }
+    }
+    open(Math.max(last, 1));
+    recover();
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @param directory the directory holding the segments
+   * @return A new instance of builder
+   */
+  public static Builder builder(final @NotNull Path directory) {
+    return new Builder(directory);
+  }
+
+  /**
+   * Get the path of a segment.
+   *
+   * @param segment the number of the segment
+   * @return the path
+   */
+  private Path segmentPath(final int segment) {
+    return directory.resolve(String.format("%08d%s", segment, SUFFIX));
+  }
+
+  /**
+   * Open a segment for appending, must be called with the write lock
+   * or from the constructor.
+   *
+   * @param segment the number of the segment
+   * @throws IOException if the segment cannot be opened
+   */
+  private void open(final int segment) throws IOException {
+    channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    active = segment;
+    position = channel.size();
+  }
+
+  /**
+   * Truncate the active segment after its last complete frame.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  private void recover() throws IOException {
+    final long size = channel.size();
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    long offset = 0;
+    while (offset + HEADER_SIZE <= size) {
+      ((Buffer) header).clear();
+      channel.read(header, offset);
+      final int length = header.getInt(0);
+      if (length < 0 || offset + HEADER_SIZE + length > size) {
+        break;
+      }
+      final ByteBuffer data = ByteBuffer.allocate(length);
+      channel.read(data, offset + HEADER_SIZE);
+      if (crc(data.array(), length) != header.getInt(4)) {
+        break;
+      }
+      offset += HEADER_SIZE + length;
+    }
+    if (offset < size) {
+      LOGGER.warn("Truncating {} incomplete bytes from segment {}.", size - offset, segmentPath(active));
+      channel.truncate(offset);
+    }
+    position = offset;
+  }
+
+  /**
+   * Compute the crc32 of bytes.
+   *
+   * @param bytes  the bytes
+   * @param length the number of bytes
+   * @return the crc32
+   */
+  private static int crc(final byte[] bytes, final int length) {
+    final CRC32 crc = new CRC32();
+    crc.update(bytes, 0, length);
+    return (int) crc.getValue();
+  }
+
+  @Override
+  public String write(final @NotNull byte[] content) throws IOException {
+    return write(content, null);
+  }
+
+  @Override
+  public String write(final @NotNull byte[] content, final String key) throws IOException {
+    final byte[] data = codec.encode(content, key);
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(data.length).putInt(crc(data, data.length));
+    ((Buffer) header).flip();
+    final ByteBuffer[] frame = {header, ByteBuffer.wrap(data)};
+
+    synchronized (writeLock) {
+      if (channel == null) {
+        throw new IOException("Content store is closed.");
+      }
+      if (position > 0 && position + HEADER_SIZE + data.length > segmentSize) {
+        channel.force(false);
+        channel.close();
+        open(active + 1);
+      }
+      final long offset = position;
+      channel.position(offset);
+      while (frame[1].hasRemaining()) {
+        channel.write(frame);
+      }
+      position = offset + HEADER_SIZE + data.length;
+      final String location = active + ":" + offset + ":" + data.length;
+      return codec.getId() == GzipCodec.ID ? location : location + ":" + codec.getId();
+    }
+  }
+
+  /**
+   * Get a memory map of a segment covering a range.
+   *
+   * @param segment the number of the segment
+   * @param end     the end of the range
+   * @return the memory map
+   * @throws IOException if the segment cannot be mapped or is shorter than the range
+   */
+  private MappedByteBuffer map(final int segment, final long end) throws IOException {
+    final MappedByteBuffer map = maps.get(segment);
+    if (map != null && map.capacity() >= end) {
+      return map;
+    }
+    synchronized (maps) {
+      final MappedByteBuffer current = maps.get(segment);
+      if (current != null && current.capacity() >= end) {
+        return current;
+      }
+      try (FileChannel readChannel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+        final long size = readChannel.size();
+        if (size < end) {
+          throw new IOException("Segment " + segment + " is shorter than " + end + " bytes.");
+        }
+        if (size > Integer.MAX_VALUE) {
+          throw new IOException("Segment " + segment + " is too large to map.");
+        }
+        final MappedByteBuffer mapped = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        maps.put(segment, mapped);
+        return mapped;
+      }
+    }
+  }
+
+  /**
+   * Get the verified data of the frame at a location.
+   *
+   * @param location the location of the content
+   * @return the frame
+   * @throws IOException if the location is invalid or the frame is corrupted
+   */
+  private Frame frame(final String location) throws IOException {
+    final String[] parts = location.split(":");
+    final int segment;
+    final long offset;
+    final int length;
+    final int codecId;
+    try {
+      if (parts.length != 3 && parts.length != 4) {
+        throw new NumberFormatException();
+      }
+      segment = Integer.parseInt(parts[0]);
+      offset = Long.parseLong(parts[1]);
+      length = Integer.parseInt(parts[2]);
+      codecId = parts.length == 4 ? Integer.parseInt(parts[3]) : GzipCodec.ID;
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid content location " + location + ".");
+    }
+    final StorageCodec reader = codecs.get(codecId);
+    if (reader == null) {
+      throw new IOException("No codec with id " + codecId + " for content at " + location + ".");
+    }
+
+    final ByteBuffer view = map(segment, offset + HEADER_SIZE + length).duplicate();
+    if (view.getInt((int) offset) != length) {
+      throw new IOException("Frame length mismatch at " + location + ".");
+    }
+    final int checksum = view.getInt((int) offset + 4);
+    ((Buffer) view).position((int) offset + HEADER_SIZE);
+    ((Buffer) view).limit((int) offset + HEADER_SIZE + length);
+    final ByteBuffer data = view.slice();
+    final CRC32 crc = new CRC32();
+    crc.update(data.duplicate());
+    if ((int) crc.getValue() != checksum) {
+      throw new IOException("Checksum mismatch at " + location + ".");
+    }
+    return new Frame(reader, data);
+  }
+
+  @Override
+  public byte[] read(final @NotNull String location) throws IOException {
+    final Frame frame = frame(location);
+    final byte[] data = new byte[frame.data.remaining()];
+    frame.data.get(data);
+    return frame.codec.decode(data);
+  }
+
+  /**
+   * Open a stream of content, decoded from the memory map of its segment
+   * as it is read when the codec of the content supports it.
+   *
+   * @param location the location returned when the content was written
+   * @return a stream of the content
+   * @throws IOException if the location is invalid or the frame is corrupted
+   */
+  @Override
+  public InputStream openStream(final @NotNull String location) throws IOException {
+    final Frame frame = frame(location);
+    return frame.codec.decode(new BufferInputStream(frame.data));
+  }
+
+  /**
+   * Forces the active segment to disk, earlier segments are forced when
+   * a new segment is started.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  public void sync() throws IOException {
+    synchronized (writeLock) {
+      if (channel == null) {
+        throw new IOException("Content store is closed.");
+      }
+      channel.force(false);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (writeLock) {
+      if (channel != null) {
+        channel.force(false);
+        channel.close();
+        channel = null;
+      }
+    }
+    maps.clear();
+  }
+
+  /**
+   * A builder for segment content store class.
+   */
+  public static final class Builder {
+
+    /**
+     * The directory holding the segments.
+     */
+    private final Path directory;
+
+    /**
+     * The size at which a new segment is started.
+     */
+    private long segmentSize;
+
+    /**
+     * The codec to write content with.
+     */
+    private StorageCodec codec;
+
+    /**
+     * The codecs to read content with, by id.
+     */
+    private final Map<Integer, StorageCodec> codecs;
+
+    /**
+     * Constructs an instance of builder with default values.
+     *
+     * @param directory the directory holding the segments
+     */
+    private Builder(final Path directory) {
+      if (directory == null) {
+        throw new IllegalStateException("Attribute 'directory' cannot be null.");
+      }
+      this.directory = directory;
+      segmentSize = 1L << 30;
+      codec = GzipCodec.INSTANCE;
+      codecs = new HashMap<>();
+      codecs.put(GzipCodec.ID, GzipCodec.INSTANCE);
+    }
+
+    /**
+     * Sets the size at which a new segment is started, content larger
+     * than it is written to a segment of its own. Defaults to 1 GiB.
+     *
+     * @param segmentSize the segment size in bytes
+     * @return this
+     */
+    public Builder setSegmentSize(final long segmentSize) {
+      if (segmentSize < HEADER_SIZE || segmentSize > Integer.MAX_VALUE) {
+        throw new IllegalStateException("Attribute 'segmentSize' must be between 8 and 2^31 - 1.");
+      }
+      this.segmentSize = segmentSize;
+      return this;
+    }
+
+    /**
+     * Sets the codec to write content with, content is also read with
+     * it. Defaults to gzip.
+     *
+     * @param codec the codec
+     * @return this
+     */
+    public Builder setCodec(final @NotNull StorageCodec codec) {
+      addCodec(codec);
+      this.codec = codec;
+      return this;
+    }
+
+    /**
+     * Adds a codec to read content with, for content written with a
+     * codec other than the current one. Gzip is always added.
+     *
+     * @param codec the codec
+     * @return this
+     */
+    public Builder addCodec(final @NotNull StorageCodec codec) {
+      if (codec == null) {
+        throw new IllegalStateException("Attribute 'codec' cannot be null.");
+      }
+      final StorageCodec existing = codecs.get(codec.getId());
+      if (existing != null && existing != codec) {
+        throw new IllegalStateException("Attribute 'codec' has the same id as another codec.");
+      }
+      codecs.put(codec.getId(), codec);
+      return this;
+    }
+
+    /**
+     * Opens the content store with the options specified.
+     *
+     * @return an instance of segment content store
+     * @throws IOException if the segments cannot be opened
+     */
+    public SegmentContentStore build() throws IOException {
+      return new SegmentContentStore(this);
+    }
+
+  }
+
+  /**
+   * The verified data of a frame and the codec it was encoded with.
+   */
+  private static final class Frame {
+
+    /**
+     * The codec of the data.
+     */
+    private final StorageCodec codec;
+
+    /**
+     * The encoded data.
+     */
+    private final ByteBuffer data;
+
+    /**
+     * Constructs an instance of frame.
+     *
+     * @param codec the codec of the data
+     * @param data  the encoded data
+     */
+    private Frame(final StorageCodec codec, final ByteBuffer data) {
+      this.codec = codec;
+      this.data = data;
+    }
+
+  }
+
+  /**
+   * An input stream reading the remaining bytes of a buffer.
+   */
+  private static final class BufferInputStream extends InputStream {
+
+    /**
+     * The buffer to read from.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructs an instance of buffer input stream.
+     *
+     * @param buffer the buffer to read from
+     */
+    private BufferInputStream(final ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      final int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ai.preferred.venom.storage;
+
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This interface represents a codec compressing response content for
+ * storage.
+ * <p>
+ * Every codec has a distinct id that is stored with the content it
+ * encoded, so that content remains readable after the codec of a store
+ * is changed.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public interface StorageCodec {
+
+  /**
+   * Get the id of this codec, stored with the content it encoded.
+   *
+   * @return the id, more than 0
+   */
+  int getId();
+
+  /**
+   * Encode content.
+   * <p>
+   * This method may be called from many threads at once.
+   * </p>
+   *
+   * @param content the content
+   * @param key     the site of the content, such as its host, used by
+   *                codecs that compress with per-site dictionaries, or
+   *                null if unknown
+   * @return the encoded content
+   * @throws IOException if the content cannot be encoded
+   */
+  @NotNull
+  byte[] encode(@NotNull byte[] content, @Nullable String key) throws IOException;
+
+  /**
+   * Decode content encoded by this codec.
+   *
+   * @param data the encoded content
+   * @return the content
+   * @throws IOException if the content cannot be decoded
+   */
+  @NotNull
+  byte[] decode(@NotNull byte[] data) throws IOException;
+
+  /**
+   * Decode content encoded by this codec as a stream.
+   * <p>
+   * Codecs that can decode incrementally should override this method,
+   * so that content does not have to be held in memory to be read.
+   * </p>
+   *
+   * @param data the encoded content
+   * @return a stream of the content
+   * @throws IOException if the content cannot be decoded
+   */
+  @NotNull
+  default InputStream decode(@NotNull InputStream data) throws IOException {
+    return new ByteArrayInputStream(decode(IOUtils.toByteArray(data)));
+  }
+
+}
@@ -18,12 +18,22 @@ package ai.preferred.venom.storage;
 
 import ai.preferred.venom.request.Request;
 import org.apache.http.Header;
+import org.apache.commons.io.IOUtils;
 import org.apache.http.entity.ContentType;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Map;
 
 /**
  * This class implements a default storage record.
+ * <p>
+ * The content of a record is either given, or read from a
+ * {@link ContentSource} the first time it is accessed, so that records
+ * of which only the metadata is used are never decompressed.
+ * </p>
  *
  * @param <T> the type of id
  * @author Ween Jiann Lee
@@ -71,9 +81,14 @@ public final class StorageRecord<T> implements Record<T> {
   private final ContentType contentType;
 
   /**
-   * The content of the response.
+   * The source of the content, or null if the content was given.
    */
-  private final byte[] responseContent;
+  private final ContentSource contentSource;
+
+  /**
+   * The content of the response, or null if it has not been read.
+   */
+  private volatile byte[] responseContent;
 
   /**
    * The md5 hash of the content.
@@ -100,6 +115,7 @@ public final class StorageRecord<T> implements Record<T> {
     this.responseHeaders = builder.responseHeaders;
     this.contentType = builder.contentType;
     this.responseContent = builder.responseContent;
+    this.contentSource = builder.responseContent == null ? builder.contentSource : null;
     this.md5 = builder.md5;
     this.dateCreated = builder.dateCreated;
   }
@@ -155,9 +171,56 @@ public final class StorageRecord<T> implements Record<T> {
     return contentType;
   }
 
+  /**
+   * Get the content of the response, reading it from its source if it
+   * has not been read.
+   *
+   * @return raw response file (uncompressed)
+   * @throws UncheckedIOException if the content cannot be read
+   */
   @Override
   public byte[] getResponseContent() {
-    return responseContent;
+    byte[] content = responseContent;
+    if (content == null && contentSource != null) {
+      synchronized (this) {
+        content = responseContent;
+        if (content == null) {
+          try (InputStream in = contentSource.openStream()) {
+            content = IOUtils.toByteArray(in);
+          } catch (IOException e) {
+            throw new UncheckedIOException("Error reading content for " + url + ".", e);
+          }
+          responseContent = content;
+        }
+      }
+    }
+    return content;
+  }
+
+  /**
+   * Open a stream of the content of the response. If it has not been
+   * read, it is read from its source as the stream is read, and is not
+   * kept.
+   *
+   * @return stream of the raw response file, or null if there is none
+   * @throws IOException if the content cannot be read
+   */
+  @Override
+  public InputStream getResponseContentStream() throws IOException {
+    final byte[] content = responseContent;
+    if (content != null) {
+      return new ByteArrayInputStream(content);
+    }
+    return contentSource == null ? null : contentSource.openStream();
+  }
+
+  /**
+   * Check whether the content of the response is held in memory.
+   *
+   * @return false if the content has yet to be read from its source
+   */
+  public boolean isContentLoaded() {
+    return responseContent != null || contentSource == null;
   }
 
   @Override
@@ -226,6 +289,11 @@ public final class StorageRecord<T> implements Record<T> {
      */
     private byte[] responseContent;
 
+    /**
+     * The source of the content of the response.
+     */
+    private ContentSource contentSource;
+
     /**
      * The md5 hash of the content.
      */
@@ -333,6 +401,18 @@ public final class StorageRecord<T> implements Record<T> {
       return this;
     }
 
+    /**
+     * Sets the source to read the response content from, when it is
+     * first accessed. Ignored if the content is set.
+     *
+     * @param contentSource source of the content of the response
+     * @return this
+     */
+    public Builder<T> setContentSource(final ContentSource contentSource) {
+      this.contentSource = contentSource;
+      return this;
+    }
+
     /**
      * Sets the md5 hash of the response content for the record.
      *
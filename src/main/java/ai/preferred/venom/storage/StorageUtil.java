@@ -16,11 +16,18 @@
 
 package ai.preferred.venom.storage;
 
+import ai.preferred.venom.request.Request;
 import ai.preferred.venom.response.Response;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.tika.mime.MimeType;
 import org.apache.tika.mime.MimeTypeException;
 import org.apache.tika.mime.MimeTypes;
 
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
  * A utility for storage needs.
  *
@@ -59,4 +66,79 @@ public final class StorageUtil {
     return mimeType.getExtension();
   }
 
+  /**
+   * Convert request body into map.
+   *
+   * @param request the instance of request with body
+   * @return a map of request body
+   */
+  static Map<String, String> getRequestBody(final Request request) {
+    return getRequestBody(request.getBody());
+  }
+
+  /**
+   * Convert a request body into map.
+   *
+   * @param body the request body, or null if none
+   * @return a map of request body
+   */
+  static Map<String, String> getRequestBody(final String body) {
+    final Map<String, String> requestBody = new HashMap<>();
+    if (body != null) {
+      for (final String pair : body.split("&")) {
+        final String[] nvp = pair.split("=");
+        final String value = nvp.length > 1 ? nvp[1] : "";
+        requestBody.put(nvp[0], value);
+      }
+    }
+    return requestBody;
+  }
+
+  /**
+   * Get the fingerprint of a request, the SHA-1 hash of its method,
+   * url, headers and body in canonical form.
+   *
+   * @param method  the request method
+   * @param url     the request url
+   * @param headers the request headers
+   * @param body    the request body parameters
+   * @return the fingerprint
+   */
+  static byte[] getFingerprint(final String method, final String url, final Map<String, String> headers,
+                               final Map<String, String> body) {
+    final StringBuilder canonical = new StringBuilder(url.length() + 256)
+        .append(method).append('\n')
+        .append(url).append('\n');
+    appendCanonical(canonical, headers);
+    appendCanonical(canonical, body);
+    return DigestUtils.sha1(canonical.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Get the fingerprint of a request.
+   *
+   * @param request the request
+   * @return the fingerprint
+   */
+  static byte[] getFingerprint(final Request request) {
+    return getFingerprint(request.getMethod().name(), request.getUrl(), request.getHeaders(),
+        getRequestBody(request));
+  }
+
+  /**
+   * Append a map in canonical form, sorted by name and without null
+   * values as in its JSON form.
+   *
+   * @param canonical the builder to append to
+   * @param map       the map
+   */
+  private static void appendCanonical(final StringBuilder canonical, final Map<String, String> map) {
+    for (final Map.Entry<String, String> entry : new TreeMap<>(map).entrySet()) {
+      if (entry.getValue() != null) {
+        canonical.append(entry.getKey()).append('\0').append(entry.getValue()).append('\n');
+      }
+    }
+    canonical.append('\n');
+  }
+
 }
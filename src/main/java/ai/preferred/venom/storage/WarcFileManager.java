@@ -0,0 +1,1341 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ai.preferred.venom.storage;
+
+import ai.preferred.venom.fetcher.Callback;
+import ai.preferred.venom.request.Request;
+import ai.preferred.venom.response.Response;
+import org.apache.commons.codec.binary.Base32;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.ParseException;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHeader;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.validation.constraints.NotNull;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * This class implements a FileManager that writes responses to WARC
+ * files, the format used to exchange archived crawl data.
+ * <p>
+ * Each response is written as a WARC response record followed by a
+ * request record, each compressed as a gzip member of its own, and
+ * appended to the active WARC file. A new file is started when the
+ * active one would exceed the maximum file size, and whenever the file
+ * manager is opened, so existing files are never written again. The id
+ * of a record is its file name and offset, followed by the offset of
+ * its request record if that does not follow it.
+ * </p>
+ * <p>
+ * Every response is also appended as a line to a CDXJ index, with the
+ * url key, timestamp, offset and length of its record and the
+ * fingerprint of its request. The index is loaded when the file manager
+ * is opened, so that a record is read by seeking to its offset and
+ * decompressing only its gzip members. Use it with
+ * {@link ai.preferred.venom.fetcher.StorageFetcher} to replay a crawl
+ * from WARC files.
+ * </p>
+ * <p>
+ * WARC files written by other tools can be replayed too, if they are
+ * compressed per record. Files in the directory that no index line
+ * refers to are indexed member by member when the file manager is
+ * opened, pairing each response with its request record, and index
+ * lines written by other tools without a request fingerprint are
+ * loaded. Such records are looked up by url and request method, and a
+ * response without a request record is read as a GET request without
+ * headers.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public final class WarcFileManager implements FileManager<String> {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(WarcFileManager.class);
+
+  /**
+   * The suffix of WARC files.
+   */
+  private static final String SUFFIX = ".warc.gz";
+
+  /**
+   * The name of the index file.
+   */
+  private static final String INDEX_FILE = "index.cdxj";
+
+  /**
+   * The version line of WARC records.
+   */
+  private static final String WARC_VERSION = "WARC/1.0";
+
+  /**
+   * The line separator of WARC records.
+   */
+  private static final String CRLF = "\r\n";
+
+  /**
+   * The format of dates in WARC records.
+   */
+  private static final DateTimeFormatter WARC_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'")
+      .withZone(ZoneOffset.UTC);
+
+  /**
+   * The format of timestamps in the index.
+   */
+  private static final DateTimeFormatter CDX_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss")
+      .withZone(ZoneOffset.UTC);
+
+  /**
+   * Response headers that do not apply to the stored content, in lower
+   * case.
+   */
+  private static final Set<String> SKIPPED_HEADERS = new HashSet<>(Arrays.asList(
+      "content-type", "content-length", "content-encoding", "transfer-encoding"));
+
+  /**
+   * Default content type of response if not given.
+   */
+  private static final ContentType DEFAULT_CONTENT_TYPE = ContentType.APPLICATION_OCTET_STREAM;
+
+  /**
+   * The directory holding the WARC files and index.
+   */
+  private final Path directory;
+
+  /**
+   * The prefix of WARC file names.
+   */
+  private final String prefix;
+
+  /**
+   * The size at which a new WARC file is started.
+   */
+  private final long maxFileSize;
+
+  /**
+   * The callback to trigger upon response.
+   */
+  private final Callback callback;
+
+  /**
+   * The id of the latest record of each request fingerprint.
+   */
+  private final Map<String, String> index = new ConcurrentHashMap<>();
+
+  /**
+   * The id of the latest record of each url, for records indexed
+   * without a request fingerprint.
+   */
+  private final Map<String, String> urlIndex = new ConcurrentHashMap<>();
+
+  /**
+   * The channels to read WARC files, by file name.
+   */
+  private final Map<String, FileChannel> readers = new ConcurrentHashMap<>();
+
+  /**
+   * An object to synchronise upon, to append to the WARC files and index.
+   */
+  private final Object writeLock = new Object();
+
+  /**
+   * The channel of the index file.
+   */
+  private final FileChannel indexFile;
+
+  /**
+   * The size of the index file.
+   */
+  private long indexPosition;
+
+  /**
+   * The number of the active WARC file.
+   */
+  private int file;
+
+  /**
+   * The name of the active WARC file.
+   */
+  private String fileName;
+
+  /**
+   * The channel of the active WARC file, or null if none is open.
+   */
+  private FileChannel channel;
+
+  /**
+   * The size of the active WARC file.
+   */
+  private long position;
+
+  /**
+   * The number of responses in the active WARC file.
+   */
+  private int count;
+
+  /**
+   * Whether this file manager has been closed.
+   */
+  private boolean closed;
+
+  /**
+   * Constructs an instance of WARC file manager.
+   *
+   * @param builder an instance of builder
+   * @throws IOException if the index cannot be opened
+   */
+  private WarcFileManager(final Builder builder) throws IOException {
+    this.directory = Files.createDirectories(builder.directory);
+    this.prefix = builder.prefix;
+    this.maxFileSize = builder.maxFileSize;
+    this.callback = new FileManagerCallback(this);
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "-*" + SUFFIX)) {
+      for (final Path path : files) {
+        final String name = path.getFileName().toString();
+        try {
+          file = Math.max(file, Integer.parseInt(
+              name.substring(prefix.length() + 1, name.length() - SUFFIX.length())));
+        } catch (NumberFormatException e) {
+          LOGGER.warn("Ignoring unknown file {} in WARC directory.", path);
+        }
+      }
+    }
+    this.indexFile = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      final Set<String> indexed = loadIndex();
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+        for (final Path path : files) {
+          if (!indexed.contains(path.getFileName().toString())) {
+            indexWarc(path.getFileName().toString());
+          }
+        }
+      }
+    } catch (IOException e) {
+      try {
+        close();
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @param directory the directory holding the WARC files and index
+   * @return A new instance of builder
+   */
+  public static Builder builder(final @NotNull Path directory) {
+    return new Builder(directory);
+  }
+
+  /**
+   * Get the id of the record of an index line.
+   *
+   * @param json the JSON block of the index line
+   * @return the id of the record
+   */
+  private static String getId(final JSONObject json) {
+    final String id = json.getString("filename") + ":" + json.getLong("offset");
+    return json.has("request-offset") ? id + ":" + json.getLong("request-offset") : id;
+  }
+
+  /**
+   * Load the index, truncating a line that was not completely written
+   * before a crash.
+   *
+   * @return the names of the files the index refers to
+   * @throws IOException if an I/O error occurs
+   */
+  private Set<String> loadIndex() throws IOException {
+    long size = indexFile.size();
+    final ByteBuffer last = ByteBuffer.allocate(1);
+    while (size > 0) {
+      ((Buffer) last).clear();
+      indexFile.read(last, size - 1);
+      if (last.get(0) == '\n') {
+        break;
+      }
+      size--;
+    }
+    if (size < indexFile.size()) {
+      LOGGER.warn("Truncating {} incomplete bytes from index {}.", indexFile.size() - size,
+          directory.resolve(INDEX_FILE));
+      indexFile.truncate(size);
+    }
+    indexPosition = size;
+
+    final Set<String> indexed = new HashSet<>();
+    int malformed = 0;
+    try (BufferedReader reader = Files.newBufferedReader(directory.resolve(INDEX_FILE), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        final int start = line.indexOf('{');
+        try {
+          if (start < 0) {
+            throw new JSONException("No JSON block.");
+          }
+          final JSONObject json = new JSONObject(line.substring(start));
+          if (json.has("fingerprint")) {
+            index.put(json.getString("fingerprint"), getId(json));
+          } else if (!json.optString("mime").startsWith("warc/")) {
+            urlIndex.put(json.getString("url"), getId(json));
+          }
+          indexed.add(json.getString("filename"));
+        } catch (JSONException e) {
+          malformed++;
+        }
+      }
+    }
+    if (malformed > 0) {
+      LOGGER.warn("Ignored {} malformed lines in index {}.", malformed, directory.resolve(INDEX_FILE));
+    }
+    return indexed;
+  }
+
+  /**
+   * Index the response records of a WARC file written by another tool,
+   * appending a line for each to the index.
+   *
+   * @param name the name of the file
+   * @throws IOException if the file cannot be read
+   */
+  private void indexWarc(final String name) throws IOException {
+    LOGGER.info("Indexing WARC file {}.", directory.resolve(name));
+    final FileChannel reader = getReader(name);
+    final long size = reader.size();
+    final List<IndexEntry> responses = new ArrayList<>();
+    final Map<String, Long> requestsById = new HashMap<>();
+    final Map<String, Long> requestsByResponse = new HashMap<>();
+    long offset = 0;
+    while (offset < size) {
+      final ByteArrayOutputStream member = new ByteArrayOutputStream(8192);
+      final long next;
+      final WarcRecord record;
+      try {
+        next = inflateMember(reader, offset, member);
+        record = readRecord(new ByteArrayInputStream(member.toByteArray()));
+      } catch (IOException e) {
+        LOGGER.warn("Stopped indexing WARC file {} at offset {}, it must be compressed per record.", name, offset, e);
+        break;
+      }
+      final String recordId = record.headers.get("WARC-Record-ID");
+      final String type = record.headers.get("WARC-Type");
+      if ("response".equals(type)) {
+        final IndexEntry entry = createIndexEntry(name, offset, next, record);
+        if (entry != null) {
+          responses.add(entry);
+        }
+      } else if ("request".equals(type)) {
+        if (recordId != null) {
+          requestsById.put(recordId, offset);
+        }
+        if (record.headers.get("WARC-Concurrent-To") != null) {
+          requestsByResponse.put(record.headers.get("WARC-Concurrent-To"), offset);
+        }
+      }
+      offset = next;
+    }
+
+    final StringBuilder lines = new StringBuilder();
+    for (final IndexEntry entry : responses) {
+      Long request = entry.recordId == null ? null : requestsByResponse.get(entry.recordId);
+      if (request == null && entry.concurrentTo != null) {
+        request = requestsById.get(entry.concurrentTo);
+      }
+      if (request != null && request != entry.next) {
+        entry.json.put("request-offset", String.valueOf(request));
+      }
+      urlIndex.put(entry.json.getString("url"), getId(entry.json));
+      lines.append(entry.key).append(' ').append(entry.json).append('\n');
+    }
+    appendIndex(lines.toString());
+    LOGGER.info("Indexed {} responses in WARC file {}.", responses.size(), directory.resolve(name));
+  }
+
+  /**
+   * Create the index entry of a response record.
+   *
+   * @param name   the name of the file
+   * @param offset the offset of the record
+   * @param next   the offset of the next record
+   * @param record the response record
+   * @return the index entry, or null if the record cannot be indexed
+   * @throws IOException if the record cannot be read
+   */
+  private static IndexEntry createIndexEntry(final String name, final long offset, final long next,
+                                             final WarcRecord record) throws IOException {
+    final String url = record.headers.get("WARC-Target-URI");
+    final Instant date;
+    try {
+      date = Instant.parse(String.valueOf(record.headers.get("WARC-Date")));
+    } catch (DateTimeParseException e) {
+      LOGGER.warn("Ignoring response record with an invalid date at offset {} of {}.", offset, name);
+      return null;
+    }
+    if (url == null) {
+      LOGGER.warn("Ignoring response record without a target at offset {} of {}.", offset, name);
+      return null;
+    }
+    final InputStream in = new ByteArrayInputStream(record.block);
+    final String[] statusLine = String.valueOf(readLine(in)).split(" ", 3);
+    String contentType = null;
+    for (final Header header : readHeaders(in)) {
+      if ("Content-Type".equalsIgnoreCase(header.getName())) {
+        contentType = header.getValue();
+      }
+    }
+    final String digest = record.headers.get("WARC-Payload-Digest");
+
+    final JSONObject json = new JSONObject()
+        .put("url", url)
+        .put("mime", getContentType(contentType).getMimeType())
+        .put("status", statusLine.length > 1 ? statusLine[1] : "-")
+        .put("length", String.valueOf(next - offset))
+        .put("offset", String.valueOf(offset))
+        .put("filename", name);
+    if (digest != null) {
+      json.put("digest", digest.startsWith("sha1:") ? digest.substring(5) : digest);
+    }
+    return new IndexEntry(getUrlKey(url) + " " + CDX_TIMESTAMP.format(date), json, next,
+        record.headers.get("WARC-Record-ID"), record.headers.get("WARC-Concurrent-To"));
+  }
+
+  /**
+   * Append lines to the index, must be called with the write lock once
+   * the file manager is open.
+   *
+   * @param lines the lines
+   * @throws IOException if an I/O error occurs
+   */
+  private void appendIndex(final String lines) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+    while (buffer.hasRemaining()) {
+      indexPosition += indexFile.write(buffer, indexPosition);
+    }
+  }
+
+  /**
+   * Read an unsigned byte.
+   *
+   * @param in the input
+   * @return the byte
+   * @throws IOException if the input has ended
+   */
+  private static int readByte(final InputStream in) throws IOException {
+    final int b = in.read();
+    if (b < 0) {
+      throw new EOFException("Unexpected end of gzip member.");
+    }
+    return b;
+  }
+
+  /**
+   * Decompress the gzip member at an offset of a file.
+   *
+   * @param channel the channel of the file
+   * @param offset  the offset of the member
+   * @param out     the output to write the decompressed member to
+   * @return the offset of the next member
+   * @throws IOException if there is no valid gzip member at the offset
+   */
+  private static long inflateMember(final FileChannel channel, final long offset, final OutputStream out)
+      throws IOException {
+    final InputStream in = new BufferedInputStream(new ChannelInputStream(channel, offset), 65536);
+    if (readByte(in) != 0x1f || readByte(in) != 0x8b || readByte(in) != 8) {
+      throw new IOException("No gzip member at offset " + offset + ".");
+    }
+    final int flags = readByte(in);
+    IOUtils.skipFully(in, 6);
+    long length = 10;
+    if ((flags & 4) != 0) {
+      final int extra = readByte(in) | readByte(in) << 8;
+      IOUtils.skipFully(in, extra);
+      length += 2 + extra;
+    }
+    for (final int flag : new int[]{8, 16}) {
+      if ((flags & flag) != 0) {
+        do {
+          length++;
+        } while (readByte(in) != 0);
+      }
+    }
+    if ((flags & 2) != 0) {
+      IOUtils.skipFully(in, 2);
+      length += 2;
+    }
+
+    final Inflater inflater = new Inflater(true);
+    final CRC32 crc = new CRC32();
+    try {
+      final byte[] input = new byte[65536];
+      final byte[] output = new byte[65536];
+      while (!inflater.finished()) {
+        if (inflater.needsInput()) {
+          final int n = in.read(input);
+          if (n < 0) {
+            throw new EOFException("Truncated gzip member at offset " + offset + ".");
+          }
+          inflater.setInput(input, 0, n);
+        }
+        final int n = inflater.inflate(output);
+        crc.update(output, 0, n);
+        out.write(output, 0, n);
+      }
+      length += inflater.getBytesRead();
+    } catch (DataFormatException e) {
+      throw new IOException("Invalid gzip member at offset " + offset + ".", e);
+    } finally {
+      inflater.end();
+    }
+
+    final byte[] trailer = new byte[8];
+    IOUtils.readFully(new ChannelInputStream(channel, offset + length), trailer);
+    if ((ByteBuffer.wrap(trailer).order(ByteOrder.LITTLE_ENDIAN).getInt() & 0xffffffffL) != crc.getValue()) {
+      throw new IOException("Corrupt gzip member at offset " + offset + ".");
+    }
+    return offset + length + trailer.length;
+  }
+
+  /**
+   * Get the url key of a url, its host in reverse order followed by its
+   * path and query, in lower case.
+   *
+   * @param url the url
+   * @return the url key
+   */
+  static String getUrlKey(final String url) {
+    try {
+      final URI uri = new URI(url);
+      String host = uri.getHost();
+      if (host == null) {
+        return url.toLowerCase(Locale.ROOT);
+      }
+      host = host.toLowerCase(Locale.ROOT);
+      if (host.startsWith("www.")) {
+        host = host.substring(4);
+      }
+      final String[] labels = host.split("\\.");
+      final StringBuilder key = new StringBuilder(url.length());
+      for (int i = labels.length - 1; i >= 0; i--) {
+        key.append(labels[i]);
+        if (i > 0) {
+          key.append(',');
+        }
+      }
+      final int port = uri.getPort();
+      if (port != -1 && !(port == 80 && "http".equalsIgnoreCase(uri.getScheme()))
+          && !(port == 443 && "https".equalsIgnoreCase(uri.getScheme()))) {
+        key.append(':').append(port);
+      }
+      key.append(')').append(getTarget(uri));
+      return key.toString().toLowerCase(Locale.ROOT);
+    } catch (URISyntaxException e) {
+      return url.toLowerCase(Locale.ROOT);
+    }
+  }
+
+  /**
+   * Get the path and query of a uri, as in an HTTP request line.
+   *
+   * @param uri the uri
+   * @return the path and query
+   */
+  private static String getTarget(final URI uri) {
+    final String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+    return uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery();
+  }
+
+  /**
+   * Create a new WARC record id.
+   *
+   * @return the record id
+   */
+  private static String newRecordId() {
+    return "<urn:uuid:" + UUID.randomUUID() + ">";
+  }
+
+  /**
+   * Encode a WARC record and compress it as a gzip member.
+   *
+   * @param headers the WARC headers, except content length
+   * @param block   the content block
+   * @return the compressed record
+   * @throws IOException if an I/O error occurs
+   */
+  private static byte[] encodeRecord(final Map<String, String> headers, final byte[] block) throws IOException {
+    final StringBuilder head = new StringBuilder(512).append(WARC_VERSION).append(CRLF);
+    for (final Map.Entry<String, String> header : headers.entrySet()) {
+      head.append(header.getKey()).append(": ").append(header.getValue()).append(CRLF);
+    }
+    head.append("Content-Length: ").append(block.length).append(CRLF).append(CRLF);
+
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream(block.length / 4 + 512);
+    try (OutputStream out = new GZIPOutputStream(compressed)) {
+      out.write(head.toString().getBytes(StandardCharsets.UTF_8));
+      out.write(block);
+      out.write((CRLF + CRLF).getBytes(StandardCharsets.UTF_8));
+    }
+    return compressed.toByteArray();
+  }
+
+  /**
+   * Encode a response as an HTTP response message.
+   *
+   * @param response the response
+   * @return the message
+   */
+  private static byte[] encodeResponse(final Response response) {
+    final String reason = EnglishReasonPhraseCatalog.INSTANCE.getReason(response.getStatusCode(), Locale.ENGLISH);
+    final StringBuilder head = new StringBuilder(1024)
+        .append("HTTP/1.1 ").append(response.getStatusCode()).append(' ').append(reason == null ? "" : reason)
+        .append(CRLF);
+    for (final Header header : response.getHeaders()) {
+      if (!SKIPPED_HEADERS.contains(header.getName().toLowerCase(Locale.ROOT))) {
+        head.append(header.getName()).append(": ").append(header.getValue()).append(CRLF);
+      }
+    }
+    head.append("Content-Type: ").append(response.getContentType()).append(CRLF)
+        .append("Content-Length: ").append(response.getContent().length).append(CRLF)
+        .append(CRLF);
+    final byte[] headBytes = head.toString().getBytes(StandardCharsets.UTF_8);
+    final byte[] message = Arrays.copyOf(headBytes, headBytes.length + response.getContent().length);
+    System.arraycopy(response.getContent(), 0, message, headBytes.length, response.getContent().length);
+    return message;
+  }
+
+  /**
+   * Encode a request as an HTTP request message.
+   *
+   * @param request the request
+   * @return the message
+   */
+  private static byte[] encodeRequest(final Request request) {
+    String target;
+    try {
+      target = getTarget(new URI(request.getUrl()));
+    } catch (URISyntaxException e) {
+      target = request.getUrl();
+    }
+    final StringBuilder message = new StringBuilder(512)
+        .append(request.getMethod().name()).append(' ').append(target).append(" HTTP/1.1").append(CRLF);
+    for (final Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+      message.append(header.getKey()).append(": ").append(header.getValue()).append(CRLF);
+    }
+    message.append(CRLF);
+    if (request.getBody() != null) {
+      message.append(request.getBody());
+    }
+    return message.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Read a line, without its line separator.
+   *
+   * @param in the input
+   * @return the line, or null if the input has ended
+   * @throws IOException if an I/O error occurs
+   */
+  private static String readLine(final InputStream in) throws IOException {
+    final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+    int b;
+    while ((b = in.read()) != '\n') {
+      if (b < 0) {
+        if (line.size() == 0) {
+          return null;
+        }
+        break;
+      }
+      line.write(b);
+    }
+    final byte[] bytes = line.toByteArray();
+    final int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Read header lines up to the first empty line.
+   *
+   * @param in the input
+   * @return the headers, in order
+   * @throws IOException if an I/O error occurs
+   */
+  private static List<Header> readHeaders(final InputStream in) throws IOException {
+    final List<Header> headers = new ArrayList<>();
+    String line;
+    while ((line = readLine(in)) != null && !line.isEmpty()) {
+      final int colon = line.indexOf(':');
+      if (colon > 0) {
+        headers.add(new BasicHeader(line.substring(0, colon).trim(), line.substring(colon + 1).trim()));
+      }
+    }
+    return headers;
+  }
+
+  /**
+   * Read a WARC record.
+   *
+   * @param in the decompressed input
+   * @return the record
+   * @throws IOException if the input is not a WARC record
+   */
+  private static WarcRecord readRecord(final InputStream in) throws IOException {
+    final String version = readLine(in);
+    if (version == null) {
+      throw new EOFException("Unexpected end of WARC file.");
+    }
+    if (!version.startsWith("WARC/")) {
+      throw new IOException("Invalid WARC record version " + version + ".");
+    }
+    final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    for (final Header header : readHeaders(in)) {
+      headers.put(header.getName(), header.getValue());
+    }
+    final long length;
+    try {
+      length = Long.parseLong(headers.get("Content-Length"));
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid WARC record length.", e);
+    }
+    if (length < 0 || length > Integer.MAX_VALUE) {
+      throw new IOException("Invalid WARC record length " + length + ".");
+    }
+    final byte[] block = new byte[(int) length];
+    IOUtils.readFully(in, block);
+    return new WarcRecord(headers, block);
+  }
+
+  /**
+   * Get content type from record, if not found return default.
+   *
+   * @param value the value of the content type header
+   * @return an instance of content type
+   */
+  private static ContentType getContentType(final String value) {
+    if (value != null) {
+      try {
+        return ContentType.parse(value);
+      } catch (ParseException e) {
+        LOGGER.warn("Could not parse content type", e);
+      } catch (UnsupportedCharsetException e) {
+        LOGGER.warn("Charset is not available in this instance of the Java virtual machine", e);
+      }
+    }
+    return DEFAULT_CONTENT_TYPE;
+  }
+
+  /**
+   * Create an instance of record from a response record and its request
+   * record.
+   *
+   * @param id       the id of the record
+   * @param response the response record
+   * @param request  the request record, or null to read as a GET request
+   * @return an instance of record
+   * @throws IOException if the records cannot be parsed
+   */
+  private static StorageRecord<String> createRecord(final String id, final WarcRecord response,
+                                                    final WarcRecord request) throws IOException {
+    final InputStream responseIn = new ByteArrayInputStream(response.block);
+    final String[] statusLine = String.valueOf(readLine(responseIn)).split(" ", 3);
+    final Header[] responseHeaders = readHeaders(responseIn).toArray(new Header[0]);
+    final byte[] content = IOUtils.toByteArray(responseIn);
+    String contentType = null;
+    for (final Header header : responseHeaders) {
+      if ("Content-Type".equalsIgnoreCase(header.getName())) {
+        contentType = header.getValue();
+      }
+    }
+
+    final InputStream requestIn = new ByteArrayInputStream(request == null
+        ? ("GET / HTTP/1.1" + CRLF + CRLF).getBytes(StandardCharsets.UTF_8) : request.block);
+    final String[] requestLine = String.valueOf(readLine(requestIn)).split(" ", 3);
+    final Map<String, String> requestHeaders = new HashMap<>();
+    for (final Header header : readHeaders(requestIn)) {
+      requestHeaders.put(header.getName(), header.getValue());
+    }
+    final byte[] body = IOUtils.toByteArray(requestIn);
+
+    try {
+      return StorageRecord.builder(id)
+          .setUrl(response.headers.get("WARC-Target-URI"))
+          .setRequestMethod(Request.Method.valueOf(requestLine[0]))
+          .setRequestHeaders(requestHeaders)
+          .setRequestBody(StorageUtil.getRequestBody(body.length > 0
+              ? new String(body, StandardCharsets.UTF_8) : null))
+          .setStatusCode(Integer.parseInt(statusLine[1]))
+          .setResponseHeaders(responseHeaders)
+          .setContentType(getContentType(contentType))
+          .setMD5(DigestUtils.md5Hex(content))
+          .setDateCreated(Instant.parse(response.headers.get("WARC-Date")).toEpochMilli())
+          .setResponseContent(content)
+          .build();
+    } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | NullPointerException
+        | DateTimeParseException e) {
+      throw new IOException("Invalid WARC record " + id + ".", e);
+    }
+  }
+
+  /**
+   * Start a new WARC file, beginning with a warcinfo record, must be
+   * called with the write lock.
+   *
+   * @throws IOException if the file cannot be created
+   */
+  private void roll() throws IOException {
+    if (channel != null) {
+      channel.force(false);
+      channel.close();
+      channel = null;
+    }
+    file++;
+    fileName = String.format("%s-%05d%s", prefix, file, SUFFIX);
+    channel = FileChannel.open(directory.resolve(fileName), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    position = 0;
+    count = 0;
+
+    final Map<String, String> headers = new LinkedHashMap<>();
+    headers.put("WARC-Type", "warcinfo");
+    headers.put("WARC-Record-ID", newRecordId());
+    headers.put("WARC-Date", WARC_DATE.format(Instant.now()));
+    headers.put("WARC-Filename", fileName);
+    headers.put("Content-Type", "application/warc-fields");
+    final byte[] info = ("software: venom" + CRLF + "format: WARC File Format 1.0" + CRLF)
+        .getBytes(StandardCharsets.UTF_8);
+    write(encodeRecord(headers, info));
+  }
+
+  /**
+   * Append to the active WARC file, must be called with the write lock.
+   *
+   * @param records the compressed records
+   * @throws IOException if an I/O error occurs
+   */
+  private void write(final byte[]... records) throws IOException {
+    final ByteBuffer[] buffers = new ByteBuffer[records.length];
+    long length = 0;
+    for (int i = 0; i < records.length; i++) {
+      buffers[i] = ByteBuffer.wrap(records[i]);
+      length += records[i].length;
+    }
+    while (buffers[buffers.length - 1].hasRemaining()) {
+      channel.write(buffers);
+    }
+    position += length;
+  }
+
+  @Override
+  public Callback getCallback() {
+    return callback;
+  }
+
+  @Override
+  public String put(final @NotNull Request request, final @NotNull Response response) throws StorageException {
+    final Instant now = Instant.now();
+    final byte[] digest = DigestUtils.sha1(response.getContent());
+    final String payloadDigest = new Base32().encodeAsString(digest);
+    final String responseId = newRecordId();
+    final byte[] responseRecord;
+    final byte[] requestRecord;
+    try {
+      final Map<String, String> headers = new LinkedHashMap<>();
+      headers.put("WARC-Type", "response");
+      headers.put("WARC-Record-ID", responseId);
+      headers.put("WARC-Date", WARC_DATE.format(now));
+      headers.put("WARC-Target-URI", request.getUrl());
+      headers.put("WARC-Payload-Digest", "sha1:" + payloadDigest);
+      headers.put("Content-Type", "application/http; msgtype=response");
+      responseRecord = encodeRecord(headers, encodeResponse(response));
+
+      headers.clear();
+      headers.put("WARC-Type", "request");
+      headers.put("WARC-Record-ID", newRecordId());
+      headers.put("WARC-Date", WARC_DATE.format(now));
+      headers.put("WARC-Target-URI", request.getUrl());
+      headers.put("WARC-Concurrent-To", responseId);
+      headers.put("Content-Type", "application/http; msgtype=request");
+      requestRecord = encodeRecord(headers, encodeRequest(request));
+    } catch (IOException e) {
+      throw new StorageException("Cannot encode the record for " + request.getUrl() + ".", e);
+    }
+    final String fingerprint = Hex.encodeHexString(StorageUtil.getFingerprint(request));
+
+    synchronized (writeLock) {
+      if (closed) {
+        throw new StorageException("File manager is closed.");
+      }
+      try {
+        if (channel == null || (count > 0 && position + responseRecord.length + requestRecord.length > maxFileSize)) {
+          roll();
+        }
+        final long offset = position;
+        write(responseRecord, requestRecord);
+        count++;
+
+        final JSONObject json = new JSONObject()
+            .put("url", request.getUrl())
+            .put("mime", response.getContentType().getMimeType())
+            .put("status", String.valueOf(response.getStatusCode()))
+            .put("digest", payloadDigest)
+            .put("length", String.valueOf(responseRecord.length))
+            .put("offset", String.valueOf(offset))
+            .put("filename", fileName)
+            .put("fingerprint", fingerprint);
+        appendIndex(getUrlKey(request.getUrl()) + " " + CDX_TIMESTAMP.format(now) + " " + json + "\n");
+
+        final String id = fileName + ":" + offset;
+        index.put(fingerprint, id);
+        LOGGER.debug("Response from request {} has been saved to record {}", request.getUrl(), id);
+        return id;
+      } catch (IOException e) {
+        LOGGER.error("Cannot append the record for {}", request.getUrl(), e);
+        throw new StorageException("Cannot append the record for " + request.getUrl() + ".", e);
+      }
+    }
+  }
+
+  /**
+   * Get a channel to read a WARC file.
+   *
+   * @param name the name of the file
+   * @return the channel
+   * @throws IOException if the file cannot be opened
+   */
+  private FileChannel getReader(final String name) throws IOException {
+    final FileChannel reader = readers.get(name);
+    if (reader != null) {
+      return reader;
+    }
+    synchronized (readers) {
+      final FileChannel current = readers.get(name);
+      if (current != null) {
+        return current;
+      }
+      final FileChannel opened = FileChannel.open(directory.resolve(name), StandardOpenOption.READ);
+      readers.put(name, opened);
+      return opened;
+    }
+  }
+
+  /**
+   * Check if a request record belongs to a response record.
+   *
+   * @param response the response record
+   * @param request  the request record
+   * @return true if the records were written concurrently
+   */
+  private static boolean isConcurrent(final WarcRecord response, final WarcRecord request) {
+    final String responseId = response.headers.get("WARC-Record-ID");
+    final String requestId = request.headers.get("WARC-Record-ID");
+    return "request".equals(request.headers.get("WARC-Type"))
+        && ((responseId != null && responseId.equals(request.headers.get("WARC-Concurrent-To")))
+        || (requestId != null && requestId.equals(response.headers.get("WARC-Concurrent-To"))));
+  }
+
+  @Override
+  public Record<String> get(final String id) throws StorageException {
+    final int separator = id == null ? -1 : id.lastIndexOf(':');
+    if (separator < 0) {
+      LOGGER.debug("No record found for id: {}", id);
+      return null;
+    }
+    String name = id.substring(0, separator);
+    final long offset;
+    long requestOffset = -1;
+    try {
+      final int previous = name.lastIndexOf(':');
+      if (!name.endsWith(SUFFIX) && previous >= 0) {
+        requestOffset = Long.parseLong(id.substring(separator + 1));
+        offset = Long.parseLong(name.substring(previous + 1));
+        name = name.substring(0, previous);
+      } else {
+        offset = Long.parseLong(id.substring(separator + 1));
+      }
+    } catch (NumberFormatException e) {
+      LOGGER.debug("No record found for id: {}", id);
+      return null;
+    }
+    if (!name.endsWith(SUFFIX) || name.indexOf('/') >= 0 || name.indexOf('\\') >= 0) {
+      LOGGER.debug("No record found for id: {}", id);
+      return null;
+    }
+
+    try (InputStream in = new BufferedInputStream(new GZIPInputStream(
+        new ChannelInputStream(getReader(name), offset)))) {
+      final WarcRecord response = readRecord(in);
+      if (!"response".equals(response.headers.get("WARC-Type"))) {
+        throw new IOException("No response record at " + id + ".");
+      }
+      WarcRecord request = null;
+      if (requestOffset >= 0) {
+        try (InputStream requestIn = new BufferedInputStream(new GZIPInputStream(
+            new ChannelInputStream(getReader(name), requestOffset)))) {
+          request = readRecord(requestIn);
+        }
+      } else {
+        try {
+          readLine(in);
+          readLine(in);
+          request = readRecord(in);
+        } catch (EOFException e) {
+          LOGGER.debug("No request record follows record {}", id);
+        }
+      }
+      if (request != null && !isConcurrent(response, request)) {
+        if (requestOffset >= 0) {
+          throw new IOException("No request record for " + id + ".");
+        }
+        request = null;
+      }
+      return createRecord(id, response, request);
+    } catch (NoSuchFileException e) {
+      LOGGER.debug("No record found for id: {}", id);
+      return null;
+    } catch (IOException e) {
+      LOGGER.error("Record read failure for id: {}", id, e);
+      throw new StorageException("Cannot retrieve the record", e);
+    }
+  }
+
+  @Override
+  public Record<String> get(final @NotNull Request request) throws StorageException {
+    final String id = index.get(Hex.encodeHexString(StorageUtil.getFingerprint(request)));
+    if (id != null) {
+      final Record<String> record = get(id);
+      if (record != null && request.getUrl().equals(record.getURL())) {
+        LOGGER.debug("Record found for request: {}", request.getUrl());
+        return record;
+      }
+    }
+    final String urlId = urlIndex.get(request.getUrl());
+    if (urlId != null) {
+      final Record<String> record = get(urlId);
+      if (record != null && request.getUrl().equals(record.getURL())
+          && request.getMethod() == record.getRequestMethod()) {
+        LOGGER.debug("Record found by url for request: {}", request.getUrl());
+        return record;
+      }
+    }
+    LOGGER.debug("No record found for request: {}", request.getUrl());
+    return null;
+  }
+
+  /**
+   * Force records put to disk.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  public void flush() throws IOException {
+    synchronized (writeLock) {
+      if (closed) {
+        return;
+      }
+      if (channel != null) {
+        channel.force(false);
+      }
+      indexFile.force(false);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (writeLock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        if (channel != null) {
+          channel.force(false);
+          channel.close();
+          channel = null;
+        }
+        indexFile.force(false);
+      } finally {
+        indexFile.close();
+        synchronized (readers) {
+          for (final FileChannel reader : readers.values()) {
+            reader.close();
+          }
+          readers.clear();
+        }
+      }
+    }
+  }
+
+  /**
+   * A WARC record, with its headers and content block.
+   */
+  private static final class WarcRecord {
+
+    /**
+     * The WARC headers.
+     */
+    private final Map<String, String> headers;
+
+    /**
+     * The content block.
+     */
+    private final byte[] block;
+
+    /**
+     * Constructs an instance of WARC record.
+     *
+     * @param headers the WARC headers
+     * @param block   the content block
+     */
+    private WarcRecord(final Map<String, String> headers, final byte[] block) {
+      this.headers = headers;
+      this.block = block;
+    }
+
+  }
+
+  /**
+   * The index line of a response record of a file being indexed.
+   */
+  private static final class IndexEntry {
+
+    /**
+     * The url key and timestamp of the line.
+     */
+    private final String key;
+
+    /**
+     * The JSON block of the line.
+     */
+    private final JSONObject json;
+
+    /**
+     * The offset of the record following the response record.
+     */
+    private final long next;
+
+    /**
+     * The record id of the response record.
+     */
+    private final String recordId;
+
+    /**
+     * The record id the response record is concurrent to.
+     */
+    private final String concurrentTo;
+
+    /**
+     * Constructs an instance of index entry.
+     *
+     * @param key          the url key and timestamp of the line
+     * @param json         the JSON block of the line
+     * @param next         the offset of the record following the response record
+     * @param recordId     the record id of the response record
+     * @param concurrentTo the record id the response record is concurrent to
+     */
+    private IndexEntry(final String key, final JSONObject json, final long next, final String recordId,
+                       final String concurrentTo) {
+      this.key = key;
+      this.json = json;
+      this.next = next;
+      this.recordId = recordId;
+      this.concurrentTo = concurrentTo;
+    }
+
+  }
+
+  /**
+   * An input stream reading a file channel from an offset, without
+   * changing the position of the channel.
+   */
+  private static final class ChannelInputStream extends InputStream {
+
+    /**
+     * The channel.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The position of the next byte to read.
+     */
+    private long position;
+
+    /**
+     * Constructs an instance of channel input stream.
+     *
+     * @param channel  the channel
+     * @param position the position to read from
+     */
+    private ChannelInputStream(final FileChannel channel, final long position) {
+      this.channel = channel;
+      this.position = position;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(final @Nonnull byte[] b, final int off, final int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      final int n = channel.read(ByteBuffer.wrap(b, off, len), position);
+      if (n > 0) {
+        position += n;
+      }
+      return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.max(0, Math.min(Integer.MAX_VALUE, channel.size() - position));
+    }
+
+  }
+
+  /**
+   * A builder for WARC file manager class.
+   */
+  public static final class Builder {
+
+    /**
+     * The directory holding the WARC files and index.
+     */
+    private final Path directory;
+
+    /**
+     * The prefix of WARC file names.
+     */
+    private String prefix;
+
+    /**
+     * The size at which a new WARC file is started.
+     */
+    private long maxFileSize;
+
+    /**
+     * Constructs an instance of builder with default values.
+     *
+     * @param directory the directory holding the WARC files and index
+     */
+    private Builder(final Path directory) {
+      if (directory == null) {
+        throw new IllegalStateException("Attribute 'directory' cannot be null.");
+      }
+      this.directory = directory;
+      prefix = "venom";
+      maxFileSize = 1L << 30;
+    }
+
+    /**
+     * Sets the prefix of WARC file names, files are named with the
+     * prefix followed by a sequence number. Defaults to "venom".
+     *
+     * @param prefix the prefix of file names
+     * @return this
+     */
+    public Builder setPrefix(final @NotNull String prefix) {
+      if (prefix == null || prefix.isEmpty() || prefix.indexOf('/') >= 0 || prefix.indexOf('\\') >= 0) {
+        throw new IllegalStateException("Attribute 'prefix' must be a non-empty file name.");
+      }
+      this.prefix = prefix;
+      return this;
+    }
+
+    /**
+     * Sets the size at which a new WARC file is started, a response
+     * larger than it is written to a file of its own. Defaults to 1 GiB.
+     *
+     * @param maxFileSize the maximum file size in bytes
+     * @return this
+     */
+    public Builder setMaxFileSize(final long maxFileSize) {
+      if (maxFileSize < 1) {
+        throw new IllegalStateException("Attribute 'maxFileSize' must be more or equal to 1.");
+      }
+      this.maxFileSize = maxFileSize;
+      return this;
+    }
+
+    /**
+     * Opens the file manager with the options specified.
+     *
+     * @return an instance of WARC file manager
+     * @throws IOException if the index cannot be opened
+     */
+    public WarcFileManager build() throws IOException {
+      return new WarcFileManager(this);
+    }
+
+  }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ai.preferred.venom.storage;
+
+import com.github.luben.zstd.Zstd;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+
+/**
+ * This class implements a storage codec compressing content with
+ * Zstandard, which is faster than gzip to both compress and decompress.
+ * <p>
+ * This codec requires {@code com.github.luben:zstd-jni} on the
+ * classpath, it is an optional dependency of venom. Only static
+ * functions of zstd-jni are referenced, so this class loads without it
+ * and fails on use.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public final class ZstdCodec implements StorageCodec {
+
+  /**
+   * The id of this codec.
+   */
+  public static final int ID = 2;
+
+  /**
+   * The compression level.
+   */
+  private final int level;
+
+  /**
+   * Constructs an instance of zstd codec with the default level of 3.
+   */
+  public ZstdCodec() {
+    this(3);
+  }
+
+  /**
+   * Constructs an instance of zstd codec.
+   *
+   * @param level the compression level, from 1 to 22
+   */
+  public ZstdCodec(final int level) {
+    if (level < 1 || level > 22) {
+      throw new IllegalArgumentException("Zstd level must be between 1 and 22.");
+    }
+    this.level = level;
+  }
+
+  /**
+   * Create the exception thrown when zstd-jni cannot be loaded.
+   *
+   * @param e the error loading zstd-jni
+   * @return the exception
+   */
+  static IOException unavailable(final LinkageError e) {
+    return new IOException("Zstd storage codec requires com.github.luben:zstd-jni on the classpath.", e);
+  }
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  public byte[] encode(final @NotNull byte[] content, final String key) throws IOException {
+    try {
+      return Zstd.compress(content, level);
+    } catch (RuntimeException e) {
+      throw new IOException("Zstd compress failed.", e);
+    } catch (LinkageError e) {
+      throw unavailable(e);
+    }
+  }
+
+  @Override
+  public byte[] decode(final @NotNull byte[] data) throws IOException {
+    try {
+      final long size = Zstd.decompressedSize(data);
+      if (size < 0 || size > Integer.MAX_VALUE) {
+        throw new IOException("Invalid zstd frame size " + size + ".");
+      }
+      return Zstd.decompress(data, (int) size);
+    } catch (RuntimeException e) {
+      throw new IOException("Zstd decompress failed.", e);
+    } catch (LinkageError e) {
+      throw unavailable(e);
+    }
+  }
+
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ai.preferred.venom.storage;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.constraints.NotNull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class implements a storage codec compressing content with
+ * Zstandard and a dictionary per site.
+ * <p>
+ * The dictionary of a site is trained by zstd from its sampled pages.
+ * Content of a site without a dictionary is compressed without one.
+ * </p>
+ * <p>
+ * This codec requires {@code com.github.luben:zstd-jni} on the
+ * classpath, it is an optional dependency of venom. Use
+ * {@link DictionaryCodec} where it is not available.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public final class ZstdDictionaryCodec extends AbstractDictionaryCodec {
+
+  /**
+   * The id of this codec.
+   */
+  public static final int ID = 4;
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ZstdDictionaryCodec.class);
+
+  /**
+   * The compression level.
+   */
+  private final int level;
+
+  /**
+   * The maximum size of a dictionary.
+   */
+  private final int dictionarySize;
+
+  /**
+   * The dictionaries prepared for compression, by id.
+   */
+  private final Map<Integer, ZstdDictCompress> compressDictionaries = new ConcurrentHashMap<>();
+
+  /**
+   * The dictionaries prepared for decompression, by id.
+   */
+  private final Map<Integer, ZstdDictDecompress> decompressDictionaries = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs an instance of zstd dictionary codec.
+   *
+   * @param builder an instance of builder
+   * @throws IOException if the dictionaries cannot be read
+   */
+  private ZstdDictionaryCodec(final Builder builder) throws IOException {
+    super(builder.directory, builder.sampleSize, builder.maxSampledSites);
+    this.level = builder.level;
+    this.dictionarySize = builder.dictionarySize;
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @param directory the directory holding the dictionaries
+   * @return A new instance of builder
+   */
+  public static Builder builder(final @NotNull Path directory) {
+    return new Builder(directory);
+  }
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  protected byte[] createDictionary(final List<byte[]> pages) throws IOException {
+    int size = 0;
+    for (final byte[] page : pages) {
+      size += page.length;
+    }
+    try {
+      final ZstdDictTrainer trainer = new ZstdDictTrainer(size, dictionarySize);
+      for (final byte[] page : pages) {
+        trainer.addSample(page);
+      }
+      return trainer.trainSamples();
+    } catch (RuntimeException e) {
+      // Zstd cannot train from too few or too small samples.
+      LOGGER.debug("Unable to train zstd dictionary from {} samples: {}", pages.size(), e.getMessage());
+      return new byte[0];
+    } catch (LinkageError e) {
+      throw ZstdCodec.unavailable(e);
+    }
+  }
+
+  @Override
+  protected void compress(final byte[] content, final int id, final ByteArrayOutputStream out) throws IOException {
+    try {
+      if (id == 0) {
+        out.write(Zstd.compress(content, level));
+        return;
+      }
+      ZstdDictCompress dictionary = compressDictionaries.get(id);
+      if (dictionary == null) {
+        dictionary = new ZstdDictCompress(getDictionary(id), level);
+        compressDictionaries.put(id, dictionary);
+      }
+      out.write(Zstd.compress(content, dictionary));
+    } catch (RuntimeException e) {
+      throw new IOException("Zstd compress failed.", e);
+    } catch (LinkageError e) {
+      throw ZstdCodec.unavailable(e);
+    }
+  }
+
+  @Override
+  protected byte[] decompress(final byte[] data, final int offset, final int id) throws IOException {
+    try {
+      final byte[] frame = Arrays.copyOfRange(data, offset, data.length);
+      final long size = Zstd.decompressedSize(frame);
+      if (size < 0 || size > Integer.MAX_VALUE) {
+        throw new IOException("Invalid zstd frame size " + size + ".");
+      }
+      if (id == 0) {
+        return Zstd.decompress(frame, (int) size);
+      }
+      ZstdDictDecompress dictionary = decompressDictionaries.get(id);
+      if (dictionary == null) {
+        dictionary = new ZstdDictDecompress(getDictionary(id));
+        decompressDictionaries.put(id, dictionary);
+      }
+      return Zstd.decompress(frame, dictionary, (int) size);
+    } catch (RuntimeException e) {
+      throw new IOException("Zstd decompress failed.", e);
+    } catch (LinkageError e) {
+      throw ZstdCodec.unavailable(e);
+    }
+  }
+
+  /**
+   * A builder for zstd dictionary codec class.
+   */
+  public static final class Builder {
+
+    /**
+     * The directory holding the dictionaries.
+     */
+    private final Path directory;
+
+    /**
+     * The compression level.
+     */
+    private int level;
+
+    /**
+     * The maximum size of a dictionary.
+     */
+    private int dictionarySize;
+
+    /**
+     * The number of bytes of pages to sample from a site before training.
+     */
+    private int sampleSize;
+
+    /**
+     * The maximum number of sites to keep samples of.
+     */
+    private int maxSampledSites;
+
+    /**
+     * Constructs an instance of builder with default values.
+     *
+     * @param directory the directory holding the dictionaries
+     */
+    private Builder(final Path directory) {
+      if (directory == null) {
+        throw new IllegalStateException("Attribute 'directory' cannot be null.");
+      }
+      this.directory = directory;
+      level = 3;
+      dictionarySize = 32 * 1024;
+      sampleSize = 256 * 1024;
+      maxSampledSites = 64;
+    }
+
+    /**
+     * Sets the zstd compression level. Defaults to 3.
+     *
+     * @param level the compression level, from 1 to 22
+     * @return this
+     */
+    public Builder setLevel(final int level) {
+      if (level < 1 || level > 22) {
+        throw new IllegalStateException("Attribute 'level' must be between 1 and 22.");
+      }
+      this.level = level;
+      return this;
+    }
+
+    /**
+     * Sets the maximum size of a dictionary. Defaults to 32 KiB.
+     *
+     * @param dictionarySize the dictionary size in bytes
+     * @return this
+     */
+    public Builder setDictionarySize(final int dictionarySize) {
+      if (dictionarySize < 256) {
+        throw new IllegalStateException("Attribute 'dictionarySize' must be more or equal to 256.");
+      }
+      this.dictionarySize = dictionarySize;
+      return this;
+    }
+
+    /**
+     * Sets the number of bytes of pages sampled from a site without a
+     * dictionary before one is trained for it, or 0 to only use
+     * dictionaries trained with {@link ZstdDictionaryCodec#train(String, List)}.
+     * Defaults to 256 KiB.
+     *
+     * @param sampleSize the sample size in bytes
+     * @return this
+     */
+    public Builder setSampleSize(final int sampleSize) {
+      if (sampleSize < 0) {
+        throw new IllegalStateException("Attribute 'sampleSize' must be more or equal to 0.");
+      }
+      this.sampleSize = sampleSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of sites to keep samples of, bounding the
+     * memory held by samples to this many times the sample size. The
+     * samples of the least recently encoded site are dropped first.
+     * Defaults to 64.
+     *
+     * @param maxSampledSites the maximum number of sites
+     * @return this
+     */
+    public Builder setMaxSampledSites(final int maxSampledSites) {
+      if (maxSampledSites < 1) {
+        throw new IllegalStateException("Attribute 'maxSampledSites' must be more or equal to 1.");
+      }
+      this.maxSampledSites = maxSampledSites;
+      return this;
+    }
+
+    /**
+     * Opens the codec with the options specified, loading the
+     * dictionaries in the directory.
+     *
+     * @return an instance of zstd dictionary codec
+     * @throws IOException if the dictionaries cannot be read
+     */
+    public ZstdDictionaryCodec build() throws IOException {
+      return new ZstdDictionaryCodec(this);
+    }
+
+  }
+
+}
@@ -0,0 +1,568 @@
+/*
+ * Copyright 2018 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.utils;
+
+import ai.preferred.venom.response.Response;
+
+import javax.validation.constraints.NotNull;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * This class extracts links from the raw bytes of an html document.
+ * <p>
+ * The content is scanned for <code>a</code>, <code>area</code> and
+ * <code>base</code> tags without decoding the document or building a
+ * tree, skipping comments, scripts and styles. Only the values of
+ * <code>href</code> attributes are decoded. Links are resolved against
+ * the document url or its <code>base</code> element, canonicalized with
+ * {@link UrlUtil#canonicalize(String, Predicate)} and deduplicated, so
+ * that they are ready to be scheduled. The content must be in an ascii
+ * compatible charset, such as UTF-8 or ISO-8859-1.
+ * </p>
+ *
+ * @author Ween Jiann Lee
+ */
+public final class LinkExtractor {
+
+  /**
+   * The schemes of links to keep.
+   */
+  private final Set<String> schemes;
+
+  /**
+   * Accepts the names of query parameters to keep, or null to keep all.
+   */
+  private final Predicate<String> parameterFilter;
+
+  /**
+   * Whether links are canonicalized.
+   */
+  private final boolean canonicalize;
+
+  /**
+   * Accepts the links to keep, or null to keep all.
+   */
+  private final Predicate<String> linkFilter;
+
+  /**
+   * Constructs an instance of link extractor.
+   *
+   * @param builder an instance of builder
+   */
+  private LinkExtractor(final Builder builder) {
+    this.schemes = new HashSet<>(builder.schemes);
+    this.parameterFilter = builder.parameterFilter;
+    this.canonicalize = builder.canonicalize;
+    this.linkFilter = builder.linkFilter;
+  }
+
+  /**
+   * Create an instance of builder.
+   *
+   * @return A new instance of builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Extract links from a response.
+   *
+   * @param response the response
+   * @return links in document order without duplicates
+   */
+  @NotNull
+  public List<String> extract(final @NotNull Response response) {
+    final Charset charset = response.getContentType() == null ? null : response.getContentType().getCharset();
+    return extract(response.getContent(), charset == null ? StandardCharsets.UTF_8 : charset, response.getUrl());
+  }
+
+  /**
+   * Extract links from html content.
+   *
+   * @param content the html content
+   * @param charset the ascii compatible charset of the content
+   * @param url     the absolute url of the document
+   * @return links in document order without duplicates
+   */
+  @NotNull
+  public List<String> extract(final @NotNull byte[] content, final @NotNull Charset charset,
+                              final @NotNull String url) {
+    final List<String> links = new ArrayList<>();
+    final Set<String> seen = new HashSet<>();
+    String base = url;
+    boolean baseSeen = false;
+
+    final int length = content.length;
+    int i = indexOf(content, '<', 0);
+    while (i >= 0 && i + 1 < length) {
+      final int next = content[i + 1];
+      if (next == '!') {
+        i = startsWith(content, i + 2, "--") ? indexOf(content, "-->", i + 4) : indexOf(content, '>', i + 2);
+        i = i < 0 ? -1 : indexOf(content, '<', i);
+        continue;
+      }
+      final int nameEnd = nameEnd(content, i + 1);
+      final Tag tag = nameEnd > i + 1 ? Tag.of(content, i + 1, nameEnd) : Tag.OTHER;
+      if (tag == Tag.OTHER) {
+        i = indexOf(content, '<', i + 1);
+        continue;
+      }
+      final int[] value = {-1, -1};
+      final int end = findHref(content, nameEnd, value);
+      if (tag == Tag.SCRIPT || tag == Tag.STYLE) {
+        final int close = end < 0 ? -1 : indexOfIgnoreCase(content, tag == Tag.SCRIPT ? "</script" : "</style", end);
+        i = close < 0 ? -1 : indexOf(content, '<', close + 1);
+        continue;
+      }
+      if (value[0] >= 0) {
+        final String href = decodeEntities(new String(content, value[0], value[1] - value[0], charset));
+        if (tag == Tag.BASE) {
+          if (!baseSeen) {
+            baseSeen = true;
+            base = resolve(url, href);
+            if (base == null) {
+              base = url;
+            }
+          }
+        } else {
+          final String link = toLink(base, href);
+          if (link != null && seen.add(link)) {
+            links.add(link);
+          }
+        }
+      }
+      i = end < 0 ? -1 : indexOf(content, '<', end);
+    }
+    return links;
+  }
+
+  /**
+   * Resolve, filter and canonicalize a link.
+   *
+   * @param base the base url
+   * @param href the value of href
+   * @return link or null if dropped
+   */
+  private String toLink(final String base, final String href) {
+    final String resolved = resolve(base, href);
+    if (resolved == null) {
+      return null;
+    }
+    final int colon = resolved.indexOf(':');
+    if (colon < 0 || !schemes.contains(resolved.substring(0, colon).toLowerCase(Locale.ROOT))) {
+      return null;
+    }
+    final String link = canonicalize ? UrlUtil.canonicalize(resolved, parameterFilter) : resolved;
+    if (linkFilter != null && !linkFilter.test(link)) {
+      return null;
+    }
+    return link;
+  }
+
+  /**
+   * Resolve a reference against a base url.
+   *
+   * @param base      the base url
+   * @param reference the reference
+   * @return resolved url or null if it cannot be resolved
+   */
+  private static String resolve(final String base, final String reference) {
+    try {
+      return UrlUtil.resolve(base, reference);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Decode the character references that commonly appear in urls.
+   *
+   * @param value the attribute value
+   * @return decoded value
+   */
+  private static String decodeEntities(final String value) {
+    if (value.indexOf('&') < 0) {
+      return value;
+    }
+    return value.replace("&amp;", "&").replace("&#38;", "&").replace("&#x26;", "&")
+        .replace("&quot;", "\"").replace("&#39;", "'").replace("&lt;", "<").replace("&gt;", ">");
+  }
+
+  /**
+   * Returns true if the byte is whitespace in html.
+   *
+   * @param b the byte
+   * @return true if whitespace
+   */
+  private static boolean isWhitespace(final int b) {
+    return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f';
+  }
+
+  /**
+   * Returns the end of the tag or attribute name starting at an index.
+   *
+   * @param content the content
+   * @param start   start index
+   * @return end index, exclusive
+   */
+  private static int nameEnd(final byte[] content, final int start) {
+    int i = start;
+    while (i < content.length) {
+      final int b = content[i];
+      if (isWhitespace(b) || b == '>' || b == '/' || b == '=') {
+        break;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Scan the attributes of a tag for href.
+   *
+   * @param content the content
+   * @param start   index after the tag name
+   * @param value   receives the start and end index of the href value
+   * @return index after the end of the tag, or -1 if not closed
+   */
+  private static int findHref(final byte[] content, final int start, final int[] value) {
+    final int length = content.length;
+    int i = start;
+    while (i < length) {
+      int b = content[i];
+      if (b == '>') {
+        return i + 1;
+      }
+      if (isWhitespace(b) || b == '/') {
+        i++;
+        continue;
+      }
+      final int nameStart = i;
+      i = nameEnd(content, i);
+      if (i == nameStart) {
+        // a stray '='
+        i++;
+        continue;
+      }
+      final boolean href = i - nameStart == 4 && startsWithIgnoreCase(content, nameStart, "href");
+      while (i < length && isWhitespace(content[i])) {
+        i++;
+      }
+      if (i >= length || content[i] != '=') {
+        continue;
+      }
+      i++;
+      while (i < length && isWhitespace(content[i])) {
+        i++;
+      }
+      if (i >= length) {
+        break;
+      }
+      b = content[i];
+      final int valueStart;
+      final int valueEnd;
+      if (b == '"' || b == '\'') {
+        valueStart = i + 1;
+        valueEnd = indexOf(content, (char) b, valueStart);
+        if (valueEnd < 0) {
+          return -1;
+        }
+        i = valueEnd + 1;
+      } else {
+        valueStart = i;
+        while (i < length && !isWhitespace(content[i]) && content[i] != '>') {
+          i++;
+        }
+        valueEnd = i;
+      }
+      if (href && value[0] < 0) {
+        value[0] = valueStart;
+        value[1] = valueEnd;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index of a byte, or -1 if not found.
+   *
+   * @param content the content
+   * @param c       the ascii char to find
+   * @param from    start index
+   * @return index or -1
+   */
+  private static int indexOf(final byte[] content, final char c, final int from) {
+    for (int i = from; i < content.length; i++) {
+      if (content[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index of an ascii string, or -1 if not found.
+   *
+   * @param content the content
+   * @param s       the string to find
+   * @param from    start index
+   * @return index or -1
+   */
+  private static int indexOf(final byte[] content, final String s, final int from) {
+    for (int i = indexOf(content, s.charAt(0), from); i >= 0; i = indexOf(content, s.charAt(0), i + 1)) {
+      if (startsWith(content, i, s)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index of an ascii string ignoring case, or -1 if not found.
+   *
+   * @param content the content
+   * @param s       the lower case string to find
+   * @param from    start index
+   * @return index or -1
+   */
+  private static int indexOfIgnoreCase(final byte[] content, final String s, final int from) {
+    for (int i = indexOf(content, s.charAt(0), from); i >= 0; i = indexOf(content, s.charAt(0), i + 1)) {
+      if (startsWithIgnoreCase(content, i, s)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns true if the content has an ascii string at an index.
+   *
+   * @param content the content
+   * @param offset  the index
+   * @param s       the string
+   * @return true if present
+   */
+  private static boolean startsWith(final byte[] content, final int offset, final String s) {
+    if (offset + s.length() > content.length) {
+      return false;
+    }
+    for (int i = 0; i < s.length(); i++) {
+      if (content[offset + i] != s.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns true if the content has an ascii string at an index, ignoring case.
+   *
+   * @param content the content
+   * @param offset  the index
+   * @param s       the lower case string
+   * @return true if present
+   */
+  private static boolean startsWithIgnoreCase(final byte[] content, final int offset, final String s) {
+    if (offset + s.length() > content.length) {
+      return false;
+    }
+    for (int i = 0; i < s.length(); i++) {
+      int b = content[offset + i];
+      if (b >= 'A' && b <= 'Z') {
+        b += 'a' - 'A';
+      }
+      if (b != s.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The tags of interest.
+   */
+  private enum Tag {
+
+    /**
+     * A link.
+     */
+    A("a"),
+
+    /**
+     * An image map link.
+     */
+    AREA("area"),
+
+    /**
+     * The base url.
+     */
+    BASE("base"),
+
+    /**
+     * A script, whose content is skipped.
+     */
+    SCRIPT("script"),
+
+    /**
+     * A style, whose content is skipped.
+     */
+    STYLE("style"),
+
+    /**
+     * Any other tag.
+     */
+    OTHER("");
+
+    /**
+     * The lower case tag name.
+     */
+    private final String name;
+
+    /**
+     * Constructs a tag.
+     *
+     * @param name the lower case tag name
+     */
+    Tag(final String name) {
+      this.name = name;
+    }
+
+    /**
+     * Get the tag of a name in the content.
+     *
+     * @param content the content
+     * @param start   start index of the name
+     * @param end     end index of the name
+     * @return the tag
+     */
+    private static Tag of(final byte[] content, final int start, final int end) {
+      for (final Tag tag : values()) {
+        if (tag != OTHER && tag.name.length() == end - start && startsWithIgnoreCase(content, start, tag.name)) {
+          return tag;
+        }
+      }
+      return OTHER;
+    }
+
+  }
+
+  /**
+   * A builder for link extractor class.
+   */
+  public static final class Builder {
+
+    /**
+     * The schemes of links to keep.
+     */
+    private final Set<String> schemes = new HashSet<>();
+
+    /**
+     * Accepts the names of query parameters to keep.
+     */
+    private Predicate<String> parameterFilter;
+
+    /**
+     * Whether links are canonicalized.
+     */
+    private boolean canonicalize;
+
+    /**
+     * Accepts the links to keep.
+     */
+    private Predicate<String> linkFilter;
+
+    /**
+     * Constructs an instance of builder with default values, keeping
+     * canonicalized http and https links.
+     */
+    private Builder() {
+      schemes.add("http");
+      schemes.add("https");
+      canonicalize = true;
+    }
+
+    /**
+     * Sets the schemes of links to keep, defaults to <code>http</code> and
+     * <code>https</code>.
+     *
+     * @param schemes the schemes to keep
+     * @return this
+     */
+    public Builder setSchemes(final @NotNull String... schemes) {
+      this.schemes.clear();
+      for (final String scheme : schemes) {
+        this.schemes.add(scheme.toLowerCase(Locale.ROOT));
+      }
+      return this;
+    }
+
+    /**
+     * Sets the filter for the names of query parameters to keep, such as
+     * to drop session ids and tracking parameters, defaults to keep all.
+     *
+     * @param parameterFilter accepts the names of query parameters to keep
+     * @return this
+     */
+    public Builder setParameterFilter(final Predicate<String> parameterFilter) {
+      this.parameterFilter = parameterFilter;
+      return this;
+    }
+
+    /**
+     * Sets whether links are canonicalized, defaults to true. If false,
+     * links are only resolved.
+     *
+     * @param canonicalize whether links are canonicalized
+     * @return this
+     */
+    public Builder setCanonicalize(final boolean canonicalize) {
+      this.canonicalize = canonicalize;
+      return this;
+    }
+
+    /**
+     * Sets the filter for links to keep, tested after canonicalization,
+     * defaults to keep all.
+     *
+     * @param linkFilter accepts the links to keep
+     * @return this
+     */
+    public Builder setLinkFilter(final Predicate<String> linkFilter) {
+      this.linkFilter = linkFilter;
+      return this;
+    }
+
+    /**
+     * Builds the link extractor with the options specified.
+     *
+     * @return an instance of link extractor
+     */
+    public LinkExtractor build() {
+      return new LinkExtractor(this);
+    }
+
+  }
+
+}
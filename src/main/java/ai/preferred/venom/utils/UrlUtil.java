@@ -18,11 +18,28 @@ package ai.preferred.venom.utils;
 
 import ai.preferred.venom.request.Request;
 
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
 
 /**
  * A utility for managing URLs.
+ * <p>
+ * Resolution and canonicalization work on strings following RFC 3986,
+ * they are lenient where <code>java.net.URI</code> would reject real
+ * world urls, such as unencoded spaces or non-ascii characters.
+ * </p>
  *
  * @author Ween Jiann Lee
  */
@@ -49,4 +66,498 @@ public final class UrlUtil {
     return baseUri.toString();
   }
 
+  /**
+   * Get the host of a request, used as the key of the site of a request.
+   *
+   * @param request an instance of request
+   * @return the host in lower case, or the url if it is malformed
+   */
+  @NotNull
+  public static String getHost(final @NotNull Request request) {
+    try {
+      return new URL(request.getUrl()).getHost().toLowerCase(Locale.ROOT);
+    } catch (final MalformedURLException e) {
+      return request.getUrl();
+    }
+  }
+
+  /**
+   * Resolve a reference against a base url, as specified in RFC 3986
+   * section 5.2.
+   *
+   * @param base      an absolute base url
+   * @param reference a relative or absolute reference
+   * @return resolved url
+   * @throws IllegalArgumentException if base url is not absolute
+   */
+  @NotNull
+  public static String resolve(final @NotNull String base, final @NotNull String reference) {
+    final Parts b = Parts.parse(strip(base));
+    if (b.scheme == null) {
+      throw new IllegalArgumentException("Base url is not absolute: " + base);
+    }
+    final Parts r = Parts.parse(strip(reference));
+    final Parts t = new Parts();
+    if (r.scheme != null) {
+      t.scheme = r.scheme;
+      t.authority = r.authority;
+      t.path = removeDotSegments(r.path);
+      t.query = r.query;
+    } else {
+      if (r.authority != null) {
+        t.authority = r.authority;
+        t.path = removeDotSegments(r.path);
+        t.query = r.query;
+      } else {
+        if (r.path.isEmpty()) {
+          t.path = b.path;
+          t.query = r.query != null ? r.query : b.query;
+        } else {
+          if (r.path.startsWith("/")) {
+            t.path = removeDotSegments(r.path);
+          } else {
+            t.path = removeDotSegments(merge(b, r.path));
+          }
+          t.query = r.query;
+        }
+        t.authority = b.authority;
+      }
+      t.scheme = b.scheme;
+    }
+    t.fragment = r.fragment;
+    return t.toString();
+  }
+
+  /**
+   * Canonicalize an absolute url, keeping all query parameters.
+   *
+   * @param url an absolute url
+   * @return canonical url
+   * @throws IllegalArgumentException if url is not absolute
+   * @see #canonicalize(String, Predicate)
+   */
+  @NotNull
+  public static String canonicalize(final @NotNull String url) {
+    return canonicalize(url, null);
+  }
+
+  /**
+   * Canonicalize an absolute url, so that equivalent urls compare equal.
+   * <p>
+   * Scheme and host are lower cased, default ports and dot segments are
+   * removed, percent-encoding is normalised, query parameters that are
+   * not accepted by the filter are dropped and the rest are sorted, and
+   * the fragment is removed.
+   * </p>
+   *
+   * @param url             an absolute url
+   * @param parameterFilter accepts the names of query parameters to keep, or null to keep all
+   * @return canonical url
+   * @throws IllegalArgumentException if url is not absolute
+   */
+  @NotNull
+  public static String canonicalize(final @NotNull String url, final @Nullable Predicate<String> parameterFilter) {
+    final Parts parts = Parts.parse(strip(url));
+    if (parts.scheme == null) {
+      throw new IllegalArgumentException("Url is not absolute: " + url);
+    }
+    parts.scheme = parts.scheme.toLowerCase(Locale.ROOT);
+    if (parts.authority != null) {
+      parts.authority = canonicalizeAuthority(parts.scheme, parts.authority);
+      if (parts.path.isEmpty()) {
+        parts.path = "/";
+      }
+    }
+    parts.path = normalizeEncoding(removeDotSegments(parts.path), false);
+    if (parts.query != null) {
+      parts.query = canonicalizeQuery(parts.query, parameterFilter);
+    }
+    parts.fragment = null;
+    return parts.toString();
+  }
+
+  /**
+   * Remove leading and trailing whitespace, and tabs and newlines within.
+   *
+   * @param url the url
+   * @return stripped url
+   */
+  private static String strip(final String url) {
+    final String trimmed = url.trim();
+    if (trimmed.indexOf('\t') < 0 && trimmed.indexOf('\n') < 0 && trimmed.indexOf('\r') < 0) {
+      return trimmed;
+    }
+    final StringBuilder builder = new StringBuilder(trimmed.length());
+    for (int i = 0; i < trimmed.length(); i++) {
+      final char c = trimmed.charAt(i);
+      if (c != '\t' && c != '\n' && c != '\r') {
+        builder.append(c);
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Merge a relative path with the path of a base url.
+   *
+   * @param base the base url
+   * @param path the relative path
+   * @return merged path
+   */
+  private static String merge(final Parts base, final String path) {
+    if (base.authority != null && base.path.isEmpty()) {
+      return "/" + path;
+    }
+    final int slash = base.path.lastIndexOf('/');
+    if (slash < 0) {
+      return path;
+    }
+    return base.path.substring(0, slash + 1) + path;
+  }
+
+  /**
+   * Remove "." and ".." segments from a path.
+   *
+   * @param path the path
+   * @return path without dot segments
+   */
+  private static String removeDotSegments(final String path) {
+    if (path.indexOf('.') < 0) {
+      return path;
+    }
+    final boolean absolute = path.startsWith("/");
+    final String[] segments = path.split("/", -1);
+    final Deque<String> output = new ArrayDeque<>(segments.length);
+    for (int i = absolute ? 1 : 0; i < segments.length; i++) {
+      final String segment = segments[i];
+      final boolean last = i == segments.length - 1;
+      if (".".equals(segment) || "..".equals(segment)) {
+        if ("..".equals(segment) && !output.isEmpty()) {
+          output.removeLast();
+        }
+        if (last) {
+          output.addLast("");
+        }
+        continue;
+      }
+      output.addLast(segment);
+    }
+    return (absolute ? "/" : "") + String.join("/", output);
+  }
+
+  /**
+   * Lower case the host and remove the default port of an authority.
+   *
+   * @param scheme    the lower cased scheme
+   * @param authority the authority
+   * @return canonical authority
+   */
+  private static String canonicalizeAuthority(final String scheme, final String authority) {
+    final int at = authority.lastIndexOf('@');
+    final String userInfo = at >= 0 ? authority.substring(0, at + 1) : "";
+    String hostPort = authority.substring(at + 1).toLowerCase(Locale.ROOT);
+    final int colon = hostPort.lastIndexOf(':');
+    if (colon >= 0 && colon > hostPort.lastIndexOf(']')) {
+      final String port = hostPort.substring(colon + 1);
+      if (port.isEmpty() || port.equals(getDefaultPort(scheme))) {
+        hostPort = hostPort.substring(0, colon);
+      }
+    }
+    if (hostPort.endsWith(".")) {
+      hostPort = hostPort.substring(0, hostPort.length() - 1);
+    }
+    return userInfo + hostPort;
+  }
+
+  /**
+   * Get the default port of a scheme.
+   *
+   * @param scheme the lower cased scheme
+   * @return default port or null if unknown
+   */
+  @Nullable
+  private static String getDefaultPort(final String scheme) {
+    switch (scheme) {
+      case "http":
+      case "ws":
+        return "80";
+      case "https":
+      case "wss":
+        return "443";
+      case "ftp":
+        return "21";
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Filter, normalise and sort query parameters.
+   *
+   * @param query           the query without the question mark
+   * @param parameterFilter accepts the names of query parameters to keep, or null to keep all
+   * @return canonical query or null if no parameters remain
+   */
+  @Nullable
+  private static String canonicalizeQuery(final String query, final @Nullable Predicate<String> parameterFilter) {
+    final List<String> parameters = new ArrayList<>();
+    int start = 0;
+    while (start <= query.length()) {
+      int end = query.indexOf('&', start);
+      if (end < 0) {
+        end = query.length();
+      }
+      if (end > start) {
+        final String parameter = query.substring(start, end);
+        final int equals = parameter.indexOf('=');
+        final String name = equals >= 0 ? parameter.substring(0, equals) : parameter;
+        if (parameterFilter == null || parameterFilter.test(name)) {
+          parameters.add(normalizeEncoding(parameter, true));
+        }
+      }
+      start = end + 1;
+    }
+    if (parameters.isEmpty()) {
+      return null;
+    }
+    Collections.sort(parameters);
+    return String.join("&", parameters);
+  }
+
+  /**
+   * Returns true if the char is unreserved in RFC 3986.
+   *
+   * @param c the char
+   * @return true if unreserved
+   */
+  private static boolean isUnreserved(final int c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+        || c == '-' || c == '.' || c == '_' || c == '~';
+  }
+
+  /**
+   * Returns true if the char may appear unencoded in a path or query.
+   *
+   * @param c     the char
+   * @param query true if in query
+   * @return true if allowed
+   */
+  private static boolean isAllowed(final int c, final boolean query) {
+    if (isUnreserved(c)) {
+      return true;
+    }
+    switch (c) {
+      case '!':
+      case '$':
+      case '&':
+      case '\'':
+      case '(':
+      case ')':
+      case '*':
+      case '+':
+      case ',':
+      case ';':
+      case '=':
+      case ':':
+      case '@':
+      case '/':
+        return true;
+      case '?':
+        return query;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Returns the value of a hex digit.
+   *
+   * @param c the char
+   * @return value or -1 if not a hex digit
+   */
+  private static int hexValue(final char c) {
+    return Character.digit(c, 16);
+  }
+
+  /**
+   * Normalise percent-encoding: decode unreserved chars, upper case hex
+   * digits and encode chars that are not allowed.
+   *
+   * @param value the path or query
+   * @param query true if query
+   * @return normalised value
+   */
+  private static String normalizeEncoding(final String value, final boolean query) {
+    StringBuilder builder = null;
+    final int length = value.length();
+    for (int i = 0; i < length; i++) {
+      final char c = value.charAt(i);
+      if (c == '%') {
+        final int high = i + 2 < length ? hexValue(value.charAt(i + 1)) : -1;
+        final int low = high >= 0 ? hexValue(value.charAt(i + 2)) : -1;
+        if (builder == null) {
+          builder = new StringBuilder(length + 16).append(value, 0, i);
+        }
+        if (low < 0) {
+          builder.append("%25");
+          continue;
+        }
+        final int decoded = (high << 4) | low;
+        if (isUnreserved(decoded)) {
+          builder.append((char) decoded);
+        } else {
+          appendEscaped(builder, decoded);
+        }
+        i += 2;
+      } else if (isAllowed(c, query)) {
+        if (builder != null) {
+          builder.append(c);
+        }
+      } else {
+        if (builder == null) {
+          builder = new StringBuilder(length + 16).append(value, 0, i);
+        }
+        final int codePoint = value.codePointAt(i);
+        final byte[] bytes = new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8);
+        for (final byte b : bytes) {
+          appendEscaped(builder, b & 0xFF);
+        }
+        i += Character.charCount(codePoint) - 1;
+      }
+    }
+    return builder == null ? value : builder.toString();
+  }
+
+  /**
+   * Append a percent-encoded octet.
+   *
+   * @param builder the builder
+   * @param octet   the octet
+   */
+  private static void appendEscaped(final StringBuilder builder, final int octet) {
+    builder.append('%')
+        .append(Character.toUpperCase(Character.forDigit(octet >> 4, 16)))
+        .append(Character.toUpperCase(Character.forDigit(octet & 0xF, 16)));
+  }
+
+  /**
+   * The components of a url, as specified in RFC 3986 section 3.
+   */
+  private static final class Parts {
+
+    /**
+     * The scheme or null.
+     */
+    private String scheme;
+
+    /**
+     * The authority or null.
+     */
+    private String authority;
+
+    /**
+     * The path, may be empty.
+     */
+    private String path = "";
+
+    /**
+     * The query or null.
+     */
+    private String query;
+
+    /**
+     * The fragment or null.
+     */
+    private String fragment;
+
+    /**
+     * Split a url into its components.
+     *
+     * @param url the url
+     * @return components
+     */
+    private static Parts parse(final String url) {
+      final Parts parts = new Parts();
+      int start = 0;
+      final int length = url.length();
+
+      final int colon = url.indexOf(':');
+      if (colon > 0 && isScheme(url, colon)) {
+        parts.scheme = url.substring(0, colon);
+        start = colon + 1;
+      }
+
+      if (url.startsWith("//", start)) {
+        int end = start + 2;
+        while (end < length && "/?#".indexOf(url.charAt(end)) < 0) {
+          end++;
+        }
+        parts.authority = url.substring(start + 2, end);
+        start = end;
+      }
+
+      int end = start;
+      while (end < length && url.charAt(end) != '?' && url.charAt(end) != '#') {
+        end++;
+      }
+      parts.path = url.substring(start, end);
+      start = end;
+
+      if (start < length && url.charAt(start) == '?') {
+        end = url.indexOf('#', start);
+        if (end < 0) {
+          end = length;
+        }
+        parts.query = url.substring(start + 1, end);
+        start = end;
+      }
+
+      if (start < length && url.charAt(start) == '#') {
+        parts.fragment = url.substring(start + 1);
+      }
+      return parts;
+    }
+
+    /**
+     * Returns true if the url starts with a valid scheme ending at colon.
+     *
+     * @param url   the url
+     * @param colon index of the colon
+     * @return true if valid scheme
+     */
+    private static boolean isScheme(final String url, final int colon) {
+      final char first = url.charAt(0);
+      if (!((first >= 'a' && first <= 'z') || (first >= 'A' && first <= 'Z'))) {
+        return false;
+      }
+      for (int i = 1; i < colon; i++) {
+        final char c = url.charAt(i);
+        if (!(Character.isLetterOrDigit(c) && c < 128) && c != '+' && c != '-' && c != '.') {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder builder = new StringBuilder();
+      if (scheme != null) {
+        builder.append(scheme).append(':');
+      }
+      if (authority != null) {
+        builder.append("//").append(authority);
+      }
+      builder.append(path);
+      if (query != null) {
+        builder.append('?').append(query);
+      }
+      if (fragment != null) {
+        builder.append('#').append(fragment);
+      }
+      return builder.toString();
+    }
+
+  }
+
 }
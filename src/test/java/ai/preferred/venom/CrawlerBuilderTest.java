@@ -21,6 +21,8 @@ import ai.preferred.venom.job.FIFOJobQueue;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Paths;
+
 public class CrawlerBuilderTest {
 
   @Test
@@ -81,6 +83,14 @@ public class CrawlerBuilderTest {
     Crawler.builder().setSession(Session.EMPTY_SESSION);
   }
 
+  @Test
+  void testSetCheckpoint() {
+    Assertions.assertThrows(IllegalStateException.class,
+        () -> Crawler.builder().setCheckpoint(Paths.get("checkpoint")).build());
+    Assertions.assertThrows(IllegalStateException.class,
+        () -> Crawler.builder().registerCheckpointHandler("handler", null));
+  }
+
   @Test
   void testSetSleepScheduler() {
     Crawler.builder().setSleepScheduler(null);
@@ -16,22 +16,36 @@
 
 package ai.preferred.venom;
 
+import ai.preferred.venom.fetcher.Callback;
 import ai.preferred.venom.fetcher.FakeFetcher;
 import ai.preferred.venom.fetcher.Fetcher;
 import ai.preferred.venom.job.FIFOJobQueue;
+import ai.preferred.venom.job.FairShareJobQueue;
 import ai.preferred.venom.job.LazyPriorityJobQueue;
 import ai.preferred.venom.job.Scheduler;
+import ai.preferred.venom.job.TaskJobAttribute;
 import ai.preferred.venom.request.Request;
 import ai.preferred.venom.request.VRequest;
+import ai.preferred.venom.response.Response;
 import ai.preferred.venom.response.VResponse;
+import ai.preferred.venom.validator.Validator;
 import org.apache.http.HttpHost;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.opentest4j.AssertionFailedError;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CrawlerTest {
 
@@ -331,6 +345,45 @@ public class CrawlerTest {
     Assertions.assertEquals(1, fetcher.getCounter());
   }
 
+  @Test
+  public void testRouteResolvedOncePerJob() throws Exception {
+    final LinkedList<FakeFetcher.Status> statuses = new LinkedList<>();
+    statuses.add(FakeFetcher.Status.FAILED);
+    statuses.add(FakeFetcher.Status.FAILED);
+    statuses.add(FakeFetcher.Status.COMPLETE);
+
+    final FakeFetcher fetcher = new FakeFetcher(statuses);
+
+    final AtomicInteger routed = new AtomicInteger();
+    final Router router = new Router() {
+      @Override
+      public Handler getHandler(final Request request) {
+        routed.incrementAndGet();
+        return handler;
+      }
+
+      @Override
+      public Validator getValidator(final Request request) {
+        return Validator.ALWAYS_VALID;
+      }
+    };
+    try (final Crawler crawler = Crawler.builder()
+        .setFetcher(fetcher)
+        .setMaxConnections(1)
+        .setMaxTries(5)
+        .setJobQueue(new FIFOJobQueue())
+        .setSleepScheduler(new SleepScheduler(0))
+        .setHandlerRouter(router)
+        .build()
+        .start()) {
+
+      crawler.getScheduler().add(vRequest);
+    }
+
+    Assertions.assertEquals(3, fetcher.getCounter());
+    Assertions.assertEquals(1, routed.get());
+  }
+
   @Test
   public void testFatalHandlerException() {
     Assertions.assertThrows(FatalHandlerException.class, () -> {
@@ -472,6 +525,82 @@ public class CrawlerTest {
     Assertions.assertEquals(0, fetcher.getCounter());
   }
 
+  @Test
+  public void testChildKeepsTask() throws Exception {
+    final LinkedList<FakeFetcher.Status> statuses = new LinkedList<>();
+    statuses.add(FakeFetcher.Status.COMPLETE);
+    statuses.add(FakeFetcher.Status.COMPLETE);
+
+    final FakeFetcher fetcher = new FakeFetcher(statuses);
+    final FairShareJobQueue jobQueue = new FairShareJobQueue();
+    final Handler parentHandler = new Handler() {
+      @Override
+      public void tokenize() {
+
+      }
+
+      @Override
+      public void parse() {
+        getScheduler().add(new VRequest(url + "/child"), handler);
+      }
+
+      @Override
+      public void extract() {
+
+      }
+    };
+
+    try (final Crawler crawler = Crawler.builder()
+        .setFetcher(fetcher)
+        .setMaxConnections(1)
+        .setMaxTries(1)
+        .setJobQueue(jobQueue)
+        .setSleepScheduler(new SleepScheduler(0))
+        .build()
+        .start()) {
+
+      crawler.getScheduler().add(vRequest, parentHandler, new TaskJobAttribute("a"));
+    }
+
+    Assertions.assertEquals(2, fetcher.getCounter());
+    Assertions.assertEquals(2, jobQueue.getTaskStatistics("a").getCompleted());
+  }
+
+  @Test
+  public void testResumeCancelledJob(@TempDir final Path tempDir) throws Exception {
+    final Path checkpoint = tempDir.resolve("checkpoint");
+    final HangingFetcher hangingFetcher = new HangingFetcher();
+    final Crawler crawler = Crawler.builder()
+        .setFetcher(hangingFetcher)
+        .setMaxConnections(1)
+        .setJobQueue(new FIFOJobQueue())
+        .setCheckpoint(checkpoint)
+        .registerCheckpointHandler("handler", handler)
+        .setSleepScheduler(new SleepScheduler(0))
+        .build()
+        .start();
+    crawler.getScheduler().add(vRequest, handler);
+    Assertions.assertTrue(hangingFetcher.fetching.await(5, TimeUnit.SECONDS));
+    crawler.interruptAndClose();
+
+    final FakeFetcher fetcher = new FakeFetcher(new LinkedList<>(
+        Collections.singletonList(FakeFetcher.Status.COMPLETE)));
+    try (final Crawler resumed = Crawler.builder()
+        .setFetcher(fetcher)
+        .setMaxConnections(1)
+        .setJobQueue(new FIFOJobQueue())
+        .setCheckpoint(checkpoint)
+        .setResume(true)
+        .registerCheckpointHandler("handler", handler)
+        .setSleepScheduler(new SleepScheduler(0))
+        .build()
+        .start()) {
+      Assertions.assertNotNull(resumed);
+    }
+
+    Assertions.assertEquals(1, fetcher.getCounter());
+  }
+
   @Test
   public void testStopCodeException() throws Exception {
     final List<FakeFetcher.Status> statuses = Arrays.asList(
@@ -498,4 +627,49 @@ public class CrawlerTest {
     Assertions.assertEquals(3, fetcher.getCounter());
   }
 
+  /**
+   * A fetcher that never responds, and cancels its fetches when interrupted.
+   */
+  private static final class HangingFetcher implements Fetcher, Interruptible {
+
+    private final List<Request> requests = new ArrayList<>();
+
+    private final List<Callback> callbacks = new ArrayList<>();
+
+    private final CountDownLatch fetching = new CountDownLatch(1);
+
+    @Override
+    public void start() {
+      // do nothing
+    }
+
+    @Override
+    public Future<Response> fetch(final Request request) {
+      return fetch(request, Callback.EMPTY_CALLBACK);
+    }
+
+    @Override
+    public synchronized Future<Response> fetch(final Request request, final Callback callback) {
+      requests.add(request);
+      callbacks.add(callback);
+      fetching.countDown();
+      return new CompletableFuture<>();
+    }
+
+    @Override
+    public synchronized void interrupt() {
+      for (int i = 0; i < callbacks.size(); i++) {
+        callbacks.get(i).cancelled(requests.get(i));
+      }
+      requests.clear();
+      callbacks.clear();
+    }
+
+    @Override
+    public void close() {
+      // do nothing
+    }
+
+  }
+
 }
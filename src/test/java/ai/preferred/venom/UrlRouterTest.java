@@ -276,4 +276,40 @@ public class UrlRouterTest {
     Assertions.assertEquals(Validator.ALWAYS_VALID, urlRouter.getValidator(new VRequest("fail")));
   }
 
+  @Test
+  public void testGetRoute() {
+    final Handler handler = new Handler() {
+      @Override
+      public void tokenize() {
+
+      }
+
+      @Override
+      public void parse() {
+
+      }
+
+      @Override
+      public void extract() {
+
+      }
+    };
+    final Validator validator = (request, response) -> null;
+
+    final UrlRouter urlRouter = new UrlRouter();
+    urlRouter.register(Pattern.compile("pass"), handler, validator);
+
+    final Route route = urlRouter.getRoute(new VRequest("pass"));
+    Assertions.assertEquals(urlRouter, route.getRouter());
+    Assertions.assertEquals(handler, route.getHandler());
+    Assertions.assertEquals(validator, route.getValidator());
+
+    final Route failRoute = urlRouter.getRoute(new VRequest("fail"));
+    Assertions.assertNull(failRoute.getHandler());
+    Assertions.assertEquals(Validator.ALWAYS_VALID, failRoute.getValidator());
+
+    urlRouter.register(Pattern.compile("fail"), handler);
+    Assertions.assertEquals(handler, urlRouter.getRoute(new VRequest("fail")).getHandler());
+  }
+
 }
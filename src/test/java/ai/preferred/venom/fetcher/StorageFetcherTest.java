@@ -31,16 +31,65 @@ import org.apache.http.message.BasicHeader;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class StorageFetcherTest {
 
+  @Test
+  public void testPrefetch() throws Exception {
+    final Map<Request, Record<?>> records = new HashMap<>();
+    final List<Request> requests = Arrays.asList(
+        new VRequest("http://127.0.0.1/a"),
+        new VRequest("http://127.0.0.1/b"),
+        new VRequest("http://127.0.0.1/c")
+    );
+    for (final Request request : requests) {
+      records.put(request, StorageRecord.builder("")
+          .setUrl(request.getUrl())
+          .setRequestMethod(request.getMethod())
+          .setStatusCode(200)
+          .setResponseContent(request.getUrl().getBytes())
+          .setContentType(ContentType.TEXT_PLAIN)
+          .build());
+    }
+
+    final AtomicInteger batches = new AtomicInteger();
+    final FakeFileManager fileManager = new FakeFileManager(records) {
+      @Override
+      public List<Record<Object>> getAll(final List<? extends Request> batch) throws StorageException {
+        batches.incrementAndGet();
+        return super.getAll(batch);
+      }
+    };
+    try (final StorageFetcher fetcher = StorageFetcher.builder(fileManager)
+        .setValidator(Validator.ALWAYS_VALID)
+        .setPrefetchSize(16)
+        .build()) {
+      fetcher.start();
+      Assertions.assertEquals(3, fetcher.prefetch(requests));
+      Assertions.assertEquals(0, fetcher.prefetch(requests.subList(0, 1)));
+      for (final Request request : requests) {
+        final Response response = fetcher.fetch(request).get();
+        Assertions.assertArrayEquals(request.getUrl().getBytes(), response.getContent());
+      }
+      Assertions.assertEquals(1, batches.get());
+
+      final Response response = fetcher.fetch(requests.get(0)).get();
+      Assertions.assertArrayEquals(requests.get(0).getUrl().getBytes(), response.getContent());
+      Assertions.assertEquals(1, batches.get());
+    }
+  }
+
   @Test
   public void testTrue() throws Exception {
     final String path = "/test-fetch";
@@ -179,10 +228,10 @@ public class StorageFetcherTest {
     try (final Fetcher fetcher = StorageFetcher.builder(fileManager).setValidator(validator)
         .setHeaders(headerMap).build()) {
       final Future<Response> responseFuture = fetcher.fetch(request);
-      Assertions.assertTrue(responseFuture.isCancelled());
       try {
         responseFuture.get();
       } catch (CancellationException e) {
+        Assertions.assertTrue(responseFuture.isCancelled());
         thrown.set(true);
       } catch (InterruptedException | ExecutionException e) {
         Assertions.fail("Wrong exception");
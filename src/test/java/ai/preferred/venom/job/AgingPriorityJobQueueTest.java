@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2019 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import ai.preferred.venom.request.VRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+class AgingPriorityJobQueueTest {
+
+  private final String url = "https://venom.preferred.ai";
+
+  private Job job(final String path, final Priority priority) {
+    return new Job(new VRequest(url + path), null, new PriorityJobAttribute(priority));
+  }
+
+  @Test
+  void testPriorityOrder() throws InterruptedException {
+    final AgingPriorityJobQueue jobQueue = new AgingPriorityJobQueue(1, TimeUnit.HOURS);
+    jobQueue.add(job("/low", Priority.LOW));
+    jobQueue.add(job("/normal1", Priority.NORMAL));
+    jobQueue.add(job("/high", Priority.HIGH));
+    jobQueue.add(job("/normal2", Priority.NORMAL));
+    jobQueue.add(new Job(new VRequest(url + "/default")));
+
+    Assertions.assertEquals(5, jobQueue.size());
+    Assertions.assertEquals(url + "/high", jobQueue.peek().getRequest().getUrl());
+    Assertions.assertEquals(url + "/high", jobQueue.poll().getRequest().getUrl());
+    Assertions.assertEquals(url + "/normal1", jobQueue.poll().getRequest().getUrl());
+    Assertions.assertEquals(url + "/normal2", jobQueue.poll().getRequest().getUrl());
+    Assertions.assertEquals(url + "/default", jobQueue.poll(1, TimeUnit.SECONDS).getRequest().getUrl());
+    Assertions.assertEquals(url + "/low", jobQueue.poll().getRequest().getUrl());
+    Assertions.assertNull(jobQueue.poll());
+    Assertions.assertTrue(jobQueue.isEmpty());
+  }
+
+  @Test
+  void testAging() throws InterruptedException {
+    final AgingPriorityJobQueue jobQueue = new AgingPriorityJobQueue(20, TimeUnit.MILLISECONDS);
+    final Job retry = job("/retry", Priority.NORMAL);
+    retry.prepareRetry();
+    Assertions.assertEquals(Priority.LOW, retry.getJobAttribute(PriorityJobAttribute.class).getPriority());
+    jobQueue.add(retry);
+
+    Thread.sleep(60);
+    final List<Job> fresh = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      fresh.add(job("/" + i, Priority.NORMAL));
+    }
+    jobQueue.addAll(fresh);
+
+    Assertions.assertSame(retry, jobQueue.poll());
+    Assertions.assertEquals(url + "/0", jobQueue.poll().getRequest().getUrl());
+  }
+
+  @Test
+  void testWaitStatistics() throws InterruptedException {
+    final AgingPriorityJobQueue jobQueue = new AgingPriorityJobQueue();
+    jobQueue.add(job("/1", Priority.HIGH));
+    jobQueue.add(job("/2", Priority.HIGH));
+    jobQueue.add(job("/3", Priority.LOWEST));
+    Thread.sleep(10);
+    jobQueue.poll();
+
+    final WaitStatistics high = jobQueue.getWaitStatistics(Priority.HIGH);
+    Assertions.assertEquals(1, high.getQueued());
+    Assertions.assertEquals(1, high.getCount());
+    Assertions.assertTrue(high.getMaxWait() >= TimeUnit.MILLISECONDS.toNanos(10));
+    Assertions.assertEquals(high.getTotalWait(), high.getMeanWait(), 1);
+
+    final WaitStatistics lowest = jobQueue.getWaitStatistics(Priority.LOWEST);
+    Assertions.assertEquals(1, lowest.getQueued());
+    Assertions.assertEquals(0, lowest.getCount());
+    Assertions.assertEquals(0, lowest.getMeanWait());
+    Assertions.assertEquals(0, jobQueue.getWaitStatistics(Priority.NORMAL).getQueued());
+  }
+
+  @Test
+  void testIteratorRemove() {
+    final AgingPriorityJobQueue jobQueue = new AgingPriorityJobQueue();
+    final Job low = job("/low", Priority.LOW);
+    jobQueue.add(job("/high", Priority.HIGH));
+    jobQueue.add(low);
+
+    Assertions.assertTrue(jobQueue.remove(low));
+    Assertions.assertEquals(1, jobQueue.size());
+    Assertions.assertEquals(0, jobQueue.getWaitStatistics(Priority.LOW).getQueued());
+    final Iterator<Job> iterator = jobQueue.iterator();
+    Assertions.assertEquals(url + "/high", iterator.next().getRequest().getUrl());
+    Assertions.assertFalse(iterator.hasNext());
+  }
+
+}
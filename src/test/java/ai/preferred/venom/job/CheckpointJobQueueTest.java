@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2019 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import ai.preferred.venom.Handler;
+import ai.preferred.venom.request.Request;
+import ai.preferred.venom.request.VRequest;
+import org.apache.http.HttpHost;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+class CheckpointJobQueueTest {
+
+  private final String url = "https://venom.preferred.ai";
+
+  @TempDir
+  Path tempDir;
+
+  private Handler handler() {
+    return new Handler() {
+      @Override
+      public void tokenize() {
+      }
+
+      @Override
+      public void parse() {
+      }
+
+      @Override
+      public void extract() {
+      }
+    };
+  }
+
+  private List<Job> pollAll(final CheckpointJobQueue jobQueue) throws InterruptedException {
+    final List<Job> jobs = new ArrayList<>();
+    Job job;
+    while ((job = jobQueue.poll(10, TimeUnit.MILLISECONDS)) != null) {
+      jobs.add(job);
+    }
+    return jobs;
+  }
+
+  @Test
+  void testResume() throws Exception {
+    final Path file = tempDir.resolve("checkpoint");
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file, new FIFOJobQueue()).build()) {
+      final Scheduler scheduler = new Scheduler(jobQueue);
+      for (int i = 0; i < 10; i++) {
+        scheduler.add(new VRequest(url + "/" + i), Priority.HIGH);
+      }
+      final Request post = VRequest.Builder.post(url + "/post")
+          .setBody("a=1")
+          .addHeader("X-Test", "yes")
+          .setProxy(new HttpHost("proxy.local", 8080))
+          .build();
+      scheduler.add(post, new PriorityJobAttribute(Priority.LOW, Priority.LOWEST), new NotBeforeJobAttribute(42),
+          new DepthJobAttribute(3), new TaskJobAttribute("t"));
+
+      final List<Job> jobs = pollAll(jobQueue);
+      Assertions.assertEquals(11, jobs.size());
+      for (int i = 0; i < 5; i++) {
+        jobQueue.complete(jobs.get(i));
+      }
+      final Job retried = jobs.get(5);
+      retried.prepareRetry();
+      jobQueue.add(retried);
+    }
+
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file, new FIFOJobQueue())
+        .setResume(true)
+        .build()) {
+      Assertions.assertEquals(6, jobQueue.size());
+      final List<Job> jobs = pollAll(jobQueue);
+      Assertions.assertEquals(6, jobs.size());
+
+      boolean foundRetried = false;
+      boolean foundPost = false;
+      for (final Job job : jobs) {
+        Assertions.assertNull(job.getHandler());
+        if (job.getRequest().getUrl().equals(url + "/5")) {
+          foundRetried = true;
+          Assertions.assertEquals(2, job.getTryCount());
+          Assertions.assertEquals(Priority.NORMAL, job.getJobAttribute(PriorityJobAttribute.class).getPriority());
+        } else if (job.getRequest().getUrl().equals(url + "/post")) {
+          foundPost = true;
+          Assertions.assertEquals(Request.Method.POST, job.getRequest().getMethod());
+          Assertions.assertEquals("a=1", job.getRequest().getBody());
+          Assertions.assertEquals("yes", job.getRequest().getHeaders().get("X-Test"));
+          Assertions.assertEquals(new HttpHost("proxy.local", 8080), job.getRequest().getProxy());
+          final PriorityJobAttribute priority = job.getJobAttribute(PriorityJobAttribute.class);
+          Assertions.assertEquals(Priority.LOW, priority.getPriority());
+          Assertions.assertEquals(Priority.LOWEST, priority.getPriorityFloor());
+          Assertions.assertEquals(42, job.getJobAttribute(NotBeforeJobAttribute.class).getNotBefore());
+          Assertions.assertEquals(3, DepthJobAttribute.getDepth(job));
+          Assertions.assertEquals("t", job.getJobAttribute(TaskJobAttribute.class).getTask());
+        } else {
+          Assertions.assertEquals(1, job.getTryCount());
+          Assertions.assertNull(job.getJobAttribute(DepthJobAttribute.class));
+          Assertions.assertNull(job.getJobAttribute(TaskJobAttribute.class));
+        }
+      }
+      Assertions.assertTrue(foundRetried);
+      Assertions.assertTrue(foundPost);
+
+      // New jobs must not reuse ids of restored jobs.
+      jobQueue.add(new Job(new VRequest(url + "/new")));
+      for (final Job job : jobs) {
+        jobQueue.complete(job);
+      }
+    }
+
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file, new FIFOJobQueue())
+        .setResume(true)
+        .build()) {
+      Assertions.assertEquals(1, jobQueue.size());
+      Assertions.assertEquals(url + "/new", jobQueue.poll().getRequest().getUrl());
+    }
+  }
+
+  @Test
+  void testHandlers() throws Exception {
+    final Path file = tempDir.resolve("checkpoint");
+    final Handler handler = handler();
+    final Handler unregistered = handler();
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file, new FIFOJobQueue())
+        .registerHandler("handler", handler)
+        .setHandlerRequired(true)
+        .build()) {
+      jobQueue.add(new Job(new VRequest(url), handler));
+      Assertions.assertThrows(IllegalStateException.class, () -> jobQueue.add(new Job(new VRequest(url + "/a"))));
+      Assertions.assertThrows(IllegalStateException.class,
+          () -> jobQueue.add(new Job(new VRequest(url + "/b"), unregistered)));
+      Assertions.assertEquals(1, jobQueue.size());
+    }
+
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file, new FIFOJobQueue())
+        .registerHandler("handler", handler)
+        .setResume(true)
+        .build()) {
+      Assertions.assertSame(handler, jobQueue.poll().getHandler());
+      jobQueue.add(new Job(new VRequest(url + "/c"), handler));
+    }
+
+    Assertions.assertThrows(IOException.class, () -> CheckpointJobQueue.builder(file, new FIFOJobQueue())
+        .setResume(true)
+        .build());
+
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(tempDir.resolve("routed"), new FIFOJobQueue())
+        .registerHandler("handler", handler)
+        .build()) {
+      jobQueue.add(new Job(new VRequest(url)));
+      Assertions.assertThrows(IllegalStateException.class,
+          () -> jobQueue.add(new Job(new VRequest(url + "/b"), unregistered)));
+      Assertions.assertEquals(1, jobQueue.size());
+    }
+  }
+
+  @Test
+  void testAbandon() throws Exception {
+    final Path file = tempDir.resolve("checkpoint");
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file, new FIFOJobQueue()).build()) {
+      jobQueue.add(new Job(new VRequest(url + "/done")));
+      jobQueue.add(new Job(new VRequest(url + "/abandoned")));
+      jobQueue.complete(jobQueue.poll());
+      jobQueue.abandon(jobQueue.poll());
+    }
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file, new FIFOJobQueue())
+        .setResume(true)
+        .build()) {
+      Assertions.assertEquals(1, jobQueue.size());
+      Assertions.assertEquals(url + "/abandoned", jobQueue.poll().getRequest().getUrl());
+    }
+  }
+
+  @Test
+  void testNoResume() throws Exception {
+    final Path file = tempDir.resolve("checkpoint");
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file, new FIFOJobQueue()).build()) {
+      jobQueue.add(new Job(new VRequest(url)));
+    }
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file, new FIFOJobQueue()).build()) {
+      Assertions.assertTrue(jobQueue.isEmpty());
+    }
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file, new FIFOJobQueue())
+        .setResume(true)
+        .build()) {
+      Assertions.assertTrue(jobQueue.isEmpty());
+    }
+  }
+
+  @Test
+  void testTornRecord() throws Exception {
+    final Path file = tempDir.resolve("checkpoint");
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file, new FIFOJobQueue()).build()) {
+      jobQueue.add(new Job(new VRequest(url + "/1")));
+      jobQueue.add(new Job(new VRequest(url + "/2")));
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file, new FIFOJobQueue())
+        .setResume(true)
+        .build()) {
+      Assertions.assertEquals(1, jobQueue.size());
+      Assertions.assertEquals(url + "/1", jobQueue.poll().getRequest().getUrl());
+    }
+  }
+
+  @Test
+  void testUnsupportedVersion() throws Exception {
+    final Path file = tempDir.resolve("checkpoint");
+    final byte[] payload = ByteBuffer.allocate(11).put((byte) 1).putLong(1).put((byte) 99).put((byte) 0).array();
+    final CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+    try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+      out.writeInt(payload.length);
+      out.write(payload);
+      out.writeInt((int) crc.getValue());
+    }
+    Assertions.assertThrows(IOException.class, () -> CheckpointJobQueue.builder(file, new FIFOJobQueue())
+        .setResume(true)
+        .build());
+  }
+
+  @Test
+  void testCompaction() throws Exception {
+    final Path file = tempDir.resolve("checkpoint");
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file, new FIFOJobQueue())
+        .setCompactionThreshold(16)
+        .build()) {
+      jobQueue.add(new Job(new VRequest(url + "/kept")));
+      for (int i = 0; i < 1000; i++) {
+        jobQueue.add(new Job(new VRequest(url + "/" + i)));
+      }
+      final List<Job> jobs = pollAll(jobQueue);
+      for (int i = 1; i < jobs.size(); i++) {
+        jobQueue.complete(jobs.get(i));
+      }
+    }
+    Assertions.assertTrue(Files.size(file) < 200);
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file, new FIFOJobQueue())
+        .setResume(true)
+        .build()) {
+      Assertions.assertEquals(1, jobQueue.size());
+      Assertions.assertEquals(url + "/kept", jobQueue.poll().getRequest().getUrl());
+    }
+  }
+
+  @Test
+  void testPrefetchedJobs() throws Exception {
+    final Path file = tempDir.resolve("checkpoint");
+    final List<Request> requests = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      requests.add(new VRequest(url + "/" + i));
+    }
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file,
+        PrefetchingJobQueue.builder(requests.iterator()).setLowWatermark(2).setHighWatermark(8).build()).build()) {
+      for (int i = 0; i < 20; i++) {
+        final Job job = jobQueue.poll(1, TimeUnit.SECONDS);
+        Assertions.assertNotNull(job);
+        if (i % 2 == 0) {
+          jobQueue.complete(job);
+        }
+      }
+    }
+    try (CheckpointJobQueue jobQueue = CheckpointJobQueue.builder(file, new FIFOJobQueue())
+        .setResume(true)
+        .build()) {
+      Assertions.assertEquals(10, jobQueue.size());
+    }
+  }
+
+  @Test
+  void testUnwritableCheckpoint() {
+    final Path file = tempDir.resolve("missing").resolve("checkpoint");
+    Assertions.assertThrows(IOException.class,
+        () -> CheckpointJobQueue.builder(file, new FIFOJobQueue()).build());
+  }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2019 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import ai.preferred.venom.request.VRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+class CrawlBudgetTest {
+
+  @Test
+  void testDepth() {
+    final FIFOJobQueue jobQueue = new FIFOJobQueue();
+    final CrawlBudget budget = CrawlBudget.builder().setMaxDepth(1).build();
+    final Scheduler scheduler = new Scheduler(jobQueue, budget);
+
+    scheduler.add(new VRequest("https://venom.preferred.ai/"));
+    final Job seed = jobQueue.poll();
+    Assertions.assertNotNull(seed);
+    Assertions.assertEquals(0, DepthJobAttribute.getDepth(seed));
+
+    scheduler.forParent(seed).add(new VRequest("https://venom.preferred.ai/a"));
+    final Job child = jobQueue.poll();
+    Assertions.assertNotNull(child);
+    Assertions.assertEquals(1, DepthJobAttribute.getDepth(child));
+
+    scheduler.forParent(child).add(new VRequest("https://venom.preferred.ai/b"));
+    Assertions.assertNull(jobQueue.poll());
+    Assertions.assertEquals(1, budget.getDroppedByDepth());
+  }
+
+  @Test
+  void testDepthAttributeGiven() {
+    final FIFOJobQueue jobQueue = new FIFOJobQueue();
+    final Scheduler scheduler = new Scheduler(jobQueue);
+    final Job parent = new Job(new VRequest("https://venom.preferred.ai/"), null, new DepthJobAttribute(3));
+    scheduler.forParent(parent).add(new VRequest("https://venom.preferred.ai/a"), new DepthJobAttribute(0));
+    final Job job = jobQueue.poll();
+    Assertions.assertNotNull(job);
+    Assertions.assertEquals(0, DepthJobAttribute.getDepth(job));
+  }
+
+  @Test
+  void testPages() {
+    final FIFOJobQueue jobQueue = new FIFOJobQueue();
+    final CrawlBudget budget = CrawlBudget.builder().setMaxPages(2).build();
+    final Scheduler scheduler = new Scheduler(jobQueue, budget);
+
+    final int added = scheduler.addAll(Arrays.asList(
+        new VRequest("https://venom.preferred.ai/a"),
+        new VRequest("https://venom.preferred.ai/b"),
+        new VRequest("https://VENOM.preferred.ai/c"),
+        new VRequest("https://preferred.ai/a")
+    ));
+    Assertions.assertEquals(3, added);
+    Assertions.assertEquals(3, jobQueue.size());
+    Assertions.assertEquals(2, budget.getPages("venom.preferred.ai"));
+    Assertions.assertEquals(1, budget.getPages("preferred.ai"));
+    Assertions.assertEquals(1, budget.getDroppedByPages());
+  }
+
+  @Test
+  void testBytes() {
+    final FIFOJobQueue jobQueue = new FIFOJobQueue();
+    final CrawlBudget budget = CrawlBudget.builder().setMaxBytes(100).build();
+    final Scheduler scheduler = new Scheduler(jobQueue, budget);
+    final VRequest request = new VRequest("https://venom.preferred.ai/a");
+
+    scheduler.add(request);
+    budget.addBytes(request, 60);
+    scheduler.add(new VRequest("https://venom.preferred.ai/b"));
+    budget.addBytes(request, 60);
+    scheduler.add(new VRequest("https://venom.preferred.ai/c"));
+
+    Assertions.assertEquals(2, jobQueue.size());
+    Assertions.assertEquals(120, budget.getBytes("venom.preferred.ai"));
+    Assertions.assertEquals(1, budget.getDroppedByBytes());
+  }
+
+  @Test
+  void testKeyFunction() {
+    final FIFOJobQueue jobQueue = new FIFOJobQueue();
+    final CrawlBudget budget = CrawlBudget.builder()
+        .setMaxPages(1)
+        .setKeyFunction(request -> request.getUrl().contains("/search") ? "search" : "other")
+        .build();
+    final Scheduler scheduler = new Scheduler(jobQueue, budget);
+    scheduler.add(new VRequest("https://venom.preferred.ai/search?q=1"));
+    scheduler.add(new VRequest("https://venom.preferred.ai/search?q=2"));
+    scheduler.add(new VRequest("https://venom.preferred.ai/item"));
+    Assertions.assertEquals(2, jobQueue.size());
+    Assertions.assertEquals(1, budget.getPages("search"));
+    Assertions.assertEquals(1, budget.getDroppedByPages());
+  }
+
+  @Test
+  void testConcurrentPages() throws InterruptedException {
+    final FIFOJobQueue jobQueue = new FIFOJobQueue();
+    final CrawlBudget budget = CrawlBudget.builder().setMaxPages(1000).build();
+    final Scheduler scheduler = new Scheduler(jobQueue, budget);
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    for (int t = 0; t < 8; t++) {
+      final int thread = t;
+      executor.execute(() -> {
+        final List<VRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+          requests.add(new VRequest("https://venom.preferred.ai/" + thread + "/" + i));
+        }
+        scheduler.addAll(requests);
+      });
+    }
+    executor.shutdown();
+    Assertions.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    Assertions.assertEquals(1000, jobQueue.size());
+    Assertions.assertEquals(1000, budget.getPages("venom.preferred.ai"));
+    Assertions.assertEquals(3000, budget.getDroppedByPages());
+  }
+
+  @Test
+  void testInvalidBuilder() {
+    Assertions.assertThrows(IllegalStateException.class, () -> CrawlBudget.builder().setMaxDepth(-1));
+    Assertions.assertThrows(IllegalStateException.class, () -> CrawlBudget.builder().setMaxPages(-1));
+    Assertions.assertThrows(IllegalStateException.class, () -> CrawlBudget.builder().setKeyFunction(null));
+  }
+
+}
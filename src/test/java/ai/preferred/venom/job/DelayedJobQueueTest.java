@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2019 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import ai.preferred.venom.request.VRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+class DelayedJobQueueTest {
+
+  private final String url = "https://venom.preferred.ai";
+
+  @Test
+  void testImmediate() throws InterruptedException {
+    final DelayedJobQueue jobQueue = DelayedJobQueue.builder().build();
+    final Scheduler scheduler = new Scheduler(jobQueue);
+    scheduler.add(new VRequest(url + "/1"));
+    scheduler.add(new VRequest(url + "/2"), new NotBeforeJobAttribute(System.currentTimeMillis() - 1000));
+    Assertions.assertEquals(0, jobQueue.getScheduledCount());
+    Assertions.assertEquals(2, jobQueue.size());
+    Assertions.assertNotNull(jobQueue.poll());
+    Assertions.assertNotNull(jobQueue.poll(0, TimeUnit.MILLISECONDS));
+    Assertions.assertTrue(jobQueue.isEmpty());
+  }
+
+  @Test
+  void testDelayed() throws InterruptedException {
+    final DelayedJobQueue jobQueue = DelayedJobQueue.builder().setTickMillis(10).build();
+    final Scheduler scheduler = new Scheduler(jobQueue);
+    scheduler.add(new VRequest(url + "/later"), NotBeforeJobAttribute.after(200, TimeUnit.MILLISECONDS));
+    scheduler.add(new VRequest(url + "/soon"), NotBeforeJobAttribute.after(50, TimeUnit.MILLISECONDS));
+
+    Assertions.assertEquals(2, jobQueue.getScheduledCount());
+    Assertions.assertFalse(jobQueue.isEmpty());
+    Assertions.assertNull(jobQueue.poll());
+
+    final Job soon = jobQueue.poll(1, TimeUnit.SECONDS);
+    Assertions.assertNotNull(soon);
+    Assertions.assertEquals(url + "/soon", soon.getRequest().getUrl());
+    Assertions.assertTrue(System.currentTimeMillis()
+        >= soon.getJobAttribute(NotBeforeJobAttribute.class).getNotBefore());
+
+    final Job later = jobQueue.take();
+    Assertions.assertEquals(url + "/later", later.getRequest().getUrl());
+    Assertions.assertTrue(System.currentTimeMillis()
+        >= later.getJobAttribute(NotBeforeJobAttribute.class).getNotBefore());
+    Assertions.assertTrue(jobQueue.isEmpty());
+  }
+
+  @Test
+  void testManyDelays() throws InterruptedException {
+    final DelayedJobQueue jobQueue = DelayedJobQueue.builder().setTickMillis(1).build();
+    final Random random = new Random(1);
+    final long now = System.currentTimeMillis();
+    final List<Job> jobs = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      jobs.add(new Job(new VRequest(url + "/" + i), null,
+          new NotBeforeJobAttribute(now + random.nextInt(400))));
+    }
+    jobQueue.addAll(jobs);
+
+    int released = 0;
+    while (released < jobs.size()) {
+      final Job job = jobQueue.poll(1, TimeUnit.SECONDS);
+      Assertions.assertNotNull(job);
+      Assertions.assertTrue(System.currentTimeMillis() >= job.getJobAttribute(NotBeforeJobAttribute.class)
+          .getNotBefore());
+      released++;
+    }
+    Assertions.assertTrue(jobQueue.isEmpty());
+    Assertions.assertEquals(0, jobQueue.getScheduledCount());
+  }
+
+  @Test
+  void testFarFuture() {
+    final DelayedJobQueue jobQueue = DelayedJobQueue.builder().setTickMillis(1).build();
+    final Job job = new Job(new VRequest(url), null, NotBeforeJobAttribute.after(36500, TimeUnit.DAYS));
+    jobQueue.add(job);
+    jobQueue.add(new Job(new VRequest(url + "/now")));
+
+    Assertions.assertEquals(1, jobQueue.getScheduledCount());
+    Assertions.assertEquals(2, jobQueue.size());
+    final Iterator<Job> iterator = jobQueue.iterator();
+    Assertions.assertEquals(url + "/now", iterator.next().getRequest().getUrl());
+    Assertions.assertSame(job, iterator.next());
+    Assertions.assertFalse(iterator.hasNext());
+
+    Assertions.assertNotNull(jobQueue.poll());
+    Assertions.assertNull(jobQueue.poll());
+    Assertions.assertFalse(jobQueue.isEmpty());
+  }
+
+  @Test
+  void testRetry() throws InterruptedException {
+    final DelayedJobQueue jobQueue = DelayedJobQueue.builder().setTickMillis(5).build();
+    jobQueue.addAll(Collections.singletonList(
+        new Job(new VRequest(url), null, NotBeforeJobAttribute.after(20, TimeUnit.MILLISECONDS))));
+    final Job job = jobQueue.poll(1, TimeUnit.SECONDS);
+    Assertions.assertNotNull(job);
+    job.prepareRetry();
+    jobQueue.add(job);
+    Assertions.assertEquals(0, jobQueue.getScheduledCount());
+    Assertions.assertSame(job, jobQueue.poll());
+  }
+
+}
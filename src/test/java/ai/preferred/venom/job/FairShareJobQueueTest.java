@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2019 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import ai.preferred.venom.request.VRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+class FairShareJobQueueTest {
+
+  private Job job(final String task, final String path) {
+    return new Job(new VRequest("https://venom.preferred.ai/" + path), null, new TaskJobAttribute(task));
+  }
+
+  private String task(final Job job) {
+    return job.getJobAttribute(TaskJobAttribute.class).getTask();
+  }
+
+  @Test
+  void testRoundRobin() {
+    final FairShareJobQueue jobQueue = new FairShareJobQueue();
+    final List<Job> jobs = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      jobs.add(job("big", "big/" + i));
+    }
+    jobs.add(job("small", "small/0"));
+    jobs.add(job("small", "small/1"));
+    jobQueue.addAll(jobs);
+
+    Assertions.assertEquals(102, jobQueue.size());
+    Assertions.assertEquals("big", task(jobQueue.poll()));
+    Assertions.assertEquals("small", task(jobQueue.poll()));
+    Assertions.assertEquals("big", task(jobQueue.poll()));
+    Assertions.assertEquals("small", task(jobQueue.poll()));
+    Assertions.assertEquals("big", task(jobQueue.poll()));
+    Assertions.assertEquals("big", task(jobQueue.poll()));
+  }
+
+  @Test
+  void testWeight() {
+    final FairShareJobQueue jobQueue = new FairShareJobQueue()
+        .setTask("a", 3, Integer.MAX_VALUE);
+    for (int i = 0; i < 30; i++) {
+      jobQueue.add(job("a", "a/" + i));
+      jobQueue.add(job("b", "b/" + i));
+    }
+    int a = 0;
+    for (int i = 0; i < 20; i++) {
+      if (task(jobQueue.poll()).equals("a")) {
+        a++;
+      }
+    }
+    Assertions.assertEquals(15, a);
+  }
+
+  @Test
+  void testPriorityWithinTask() {
+    final FairShareJobQueue jobQueue = new FairShareJobQueue();
+    final Job low = new Job(new VRequest("https://venom.preferred.ai/low"), null,
+        new TaskJobAttribute("a"), new PriorityJobAttribute(Priority.LOW));
+    final Job high = new Job(new VRequest("https://venom.preferred.ai/high"), null,
+        new TaskJobAttribute("a"), new PriorityJobAttribute(Priority.HIGH));
+    jobQueue.add(low);
+    jobQueue.add(high);
+    Assertions.assertSame(high, jobQueue.poll());
+    Assertions.assertSame(low, jobQueue.poll());
+  }
+
+  @Test
+  void testMaxInFlight() throws InterruptedException {
+    final FairShareJobQueue jobQueue = new FairShareJobQueue()
+        .setTask("a", 1, 1);
+    jobQueue.add(job("a", "0"));
+    jobQueue.add(job("a", "1"));
+
+    final Job first = jobQueue.poll();
+    Assertions.assertNotNull(first);
+    Assertions.assertNull(jobQueue.poll());
+    Assertions.assertFalse(jobQueue.isEmpty());
+
+    jobQueue.add(job("b", "0"));
+    Assertions.assertEquals("b", task(jobQueue.poll()));
+
+    final Thread completer = new Thread(() -> {
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      jobQueue.complete(first);
+    });
+    completer.start();
+    final Job second = jobQueue.poll(5, TimeUnit.SECONDS);
+    completer.join();
+    Assertions.assertNotNull(second);
+    Assertions.assertEquals("a", task(second));
+
+    final TaskStatistics statistics = jobQueue.getTaskStatistics("a");
+    Assertions.assertNotNull(statistics);
+    Assertions.assertEquals(0, statistics.getQueued());
+    Assertions.assertEquals(1, statistics.getInFlight());
+    Assertions.assertEquals(2, statistics.getDispatched());
+    Assertions.assertEquals(1, statistics.getCompleted());
+  }
+
+  @Test
+  void testRetryReleasesSlot() {
+    final FairShareJobQueue jobQueue = new FairShareJobQueue()
+        .setTask("a", 1, 1);
+    jobQueue.add(job("a", "0"));
+    final Job job = jobQueue.poll();
+    Assertions.assertNotNull(job);
+    job.prepareRetry();
+    jobQueue.add(job);
+    Assertions.assertSame(job, jobQueue.poll());
+    Assertions.assertEquals(0, jobQueue.getTaskStatistics("a").getCompleted());
+  }
+
+  @Test
+  void testAbandonReleasesSlot() {
+    final FairShareJobQueue jobQueue = new FairShareJobQueue()
+        .setTask("a", 1, 1);
+    jobQueue.add(job("a", "0"));
+    jobQueue.add(job("a", "1"));
+    final Job job = jobQueue.poll();
+    Assertions.assertNotNull(job);
+    Assertions.assertNull(jobQueue.poll());
+    jobQueue.abandon(job);
+    Assertions.assertNotNull(jobQueue.poll());
+    Assertions.assertEquals(0, jobQueue.getTaskStatistics("a").getCompleted());
+  }
+
+  @Test
+  void testDefaultTask() {
+    final FairShareJobQueue jobQueue = new FairShareJobQueue();
+    jobQueue.add(new Job(new VRequest("https://venom.preferred.ai/")));
+    final Job job = jobQueue.poll();
+    Assertions.assertNotNull(job);
+    Assertions.assertEquals(TaskJobAttribute.DEFAULT_TASK, task(job));
+    Assertions.assertTrue(jobQueue.getTasks().contains(TaskJobAttribute.DEFAULT_TASK));
+    Assertions.assertNull(jobQueue.getTaskStatistics("unknown"));
+  }
+
+  @Test
+  void testInvalidTask() {
+    final FairShareJobQueue jobQueue = new FairShareJobQueue();
+    Assertions.assertThrows(IllegalArgumentException.class, () -> jobQueue.setTask("a", 0, 1));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> jobQueue.setTask("a", 1, 0));
+  }
+
+}
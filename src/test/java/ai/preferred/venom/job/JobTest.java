@@ -94,4 +94,28 @@ class JobTest {
     Assertions.assertEquals(fakeJobAttribute, jobAttribute);
   }
 
+  @Test
+  void testReplaceJobAttributes() {
+    final String url = "https://venom.preferred.ai";
+    final VRequest vRequest = new VRequest(url);
+
+    final FakeJobAttribute fakeJobAttribute = new FakeJobAttribute();
+    final PriorityJobAttribute priorityJobAttribute = new PriorityJobAttribute(Priority.HIGH);
+    final Job job = new Job(vRequest, null, fakeJobAttribute, priorityJobAttribute);
+    Assertions.assertEquals(fakeJobAttribute, job.getJobAttribute(FakeJobAttribute.class));
+    Assertions.assertEquals(priorityJobAttribute, job.getJobAttribute(PriorityJobAttribute.class));
+
+    final FakeJobAttribute replacement = new FakeJobAttribute();
+    final PriorityJobAttribute priorityReplacement = new PriorityJobAttribute(Priority.LOW);
+    job.setJobAttribute(replacement).setJobAttribute(priorityReplacement);
+    Assertions.assertEquals(replacement, job.getJobAttribute(FakeJobAttribute.class));
+    Assertions.assertEquals(priorityReplacement, job.getJobAttribute(PriorityJobAttribute.class));
+
+    job.prepareRetry();
+    Assertions.assertEquals(0, fakeJobAttribute.getCount());
+    Assertions.assertEquals(1, replacement.getCount());
+    Assertions.assertEquals(Priority.LOW, priorityReplacement.getPriority());
+    Assertions.assertNull(job.getJobAttribute(JobAttribute.class));
+  }
+
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2019 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.job;
+
+import ai.preferred.venom.request.Request;
+import ai.preferred.venom.request.VRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class PrefetchingJobQueueTest {
+
+  private final String url = "https://venom.preferred.ai";
+
+  private List<Request> createRequests(final int count) {
+    final List<Request> requests = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      requests.add(new VRequest(url + "/" + i));
+    }
+    return requests;
+  }
+
+  @Test
+  void testPollAll() throws InterruptedException {
+    final List<Request> requests = createRequests(100);
+    try (PrefetchingJobQueue jobQueue = PrefetchingJobQueue.builder(requests.iterator())
+        .setLowWatermark(4)
+        .setHighWatermark(16)
+        .build()) {
+      for (final Request request : requests) {
+        final Job job = jobQueue.poll(1, TimeUnit.SECONDS);
+        Assertions.assertNotNull(job);
+        Assertions.assertEquals(request, job.getRequest());
+        Assertions.assertNotNull(job.getJobAttribute(PriorityJobAttribute.class));
+        Assertions.assertTrue(jobQueue.getBufferSize() <= 16);
+      }
+      Assertions.assertNull(jobQueue.poll(50, TimeUnit.MILLISECONDS));
+      Assertions.assertTrue(jobQueue.isEmpty());
+    }
+  }
+
+  @Test
+  void testQueueBeforeBuffer() throws InterruptedException {
+    final List<Request> requests = createRequests(10);
+    try (PrefetchingJobQueue jobQueue = PrefetchingJobQueue.builder(requests.iterator()).build()) {
+      final Job job = new Job(new VRequest(url), null, new PriorityJobAttribute(Priority.LOW));
+      jobQueue.add(job);
+      Assertions.assertEquals(job, jobQueue.poll(1, TimeUnit.SECONDS));
+      Assertions.assertEquals(requests.get(0), jobQueue.poll(1, TimeUnit.SECONDS).getRequest());
+    }
+  }
+
+  @Test
+  void testSlowBatchSource() throws InterruptedException {
+    final AtomicInteger batches = new AtomicInteger();
+    final RequestSource source = maxSize -> {
+      if (batches.incrementAndGet() > 3) {
+        return Collections.emptyList();
+      }
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return createRequests(Math.min(maxSize, 5));
+    };
+    try (PrefetchingJobQueue jobQueue = PrefetchingJobQueue.builder(source).setLowWatermark(0).setHighWatermark(5)
+        .build()) {
+      Assertions.assertFalse(jobQueue.isEmpty());
+      int count = 0;
+      while (jobQueue.poll(1, TimeUnit.SECONDS) != null) {
+        count++;
+      }
+      Assertions.assertEquals(15, count);
+      Assertions.assertTrue(jobQueue.isEmpty());
+    }
+  }
+
+  @Test
+  void testInvalidWatermarks() {
+    Assertions.assertThrows(IllegalStateException.class, () -> PrefetchingJobQueue
+        .builder(Collections.<Request>emptyIterator()).setLowWatermark(8).setHighWatermark(8).build());
+  }
+
+}
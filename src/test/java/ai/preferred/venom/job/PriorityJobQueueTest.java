@@ -21,6 +21,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 class PriorityJobQueueTest {
@@ -91,4 +92,30 @@ class PriorityJobQueueTest {
     Assertions.assertEquals(pollJob, job);
   }
 
+  @Test
+  void testAddAll() {
+    final Job high = new Job(vRequest, null, new PriorityJobAttribute(Priority.HIGH));
+    Assertions.assertTrue(jobQueue.addAll(Arrays.asList(job, high)));
+    Assertions.assertEquals(2, jobQueue.size());
+    Assertions.assertEquals(high, jobQueue.poll());
+    final Job pollJob = jobQueue.poll();
+    Assertions.assertEquals(job, pollJob);
+    Assertions.assertNotNull(pollJob.getJobAttribute(PriorityJobAttribute.class));
+  }
+
+  @Test
+  void testTakeAfterAddAll() throws InterruptedException {
+    final Thread thread = new Thread(() -> {
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      jobQueue.addAll(Arrays.asList(job));
+    });
+    thread.start();
+    Assertions.assertEquals(job, jobQueue.take());
+    thread.join();
+  }
+
 }
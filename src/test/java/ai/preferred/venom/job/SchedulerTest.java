@@ -21,6 +21,8 @@ import ai.preferred.venom.request.VRequest;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+
 class SchedulerTest {
 
   private final String url = "https://venom.preferred.ai";
@@ -90,4 +92,38 @@ class SchedulerTest {
     Assertions.assertEquals(priorityJobAttribute, job.getJobAttribute(priorityJobAttribute.getClass()));
   }
 
+  @Test
+  void testAddAll() {
+    final FIFOJobQueue jobQueue = new FIFOJobQueue();
+    final Scheduler scheduler = new Scheduler(jobQueue);
+    final VRequest other = new VRequest(url + "/other");
+    final int added = scheduler.addAll(Arrays.asList(vRequest, other, new VRequest(url)), handler);
+    Assertions.assertEquals(2, added);
+    Assertions.assertEquals(2, jobQueue.size());
+    final Job job = jobQueue.poll();
+    Assertions.assertNotNull(job);
+    Assertions.assertEquals(vRequest, job.getRequest());
+    Assertions.assertEquals(handler, job.getHandler());
+    Assertions.assertEquals(other, jobQueue.poll().getRequest());
+  }
+
+  @Test
+  void testAddAllJobAttribute() {
+    final PriorityJobQueue jobQueue = new PriorityJobQueue();
+    final Scheduler scheduler = new Scheduler(jobQueue);
+    final VRequest high = new VRequest(url + "/high");
+    final int added = scheduler.addAll(Arrays.asList(vRequest, high, vRequest), null, false,
+        request -> new JobAttribute[]{new PriorityJobAttribute(request == high ? Priority.HIGH : Priority.LOW)});
+    Assertions.assertEquals(3, added);
+    final Job job = jobQueue.poll();
+    Assertions.assertNotNull(job);
+    Assertions.assertEquals(high, job.getRequest());
+    Assertions.assertNull(job.getHandler());
+    final PriorityJobAttribute first = jobQueue.poll().getJobAttribute(PriorityJobAttribute.class);
+    final PriorityJobAttribute second = jobQueue.poll().getJobAttribute(PriorityJobAttribute.class);
+    Assertions.assertEquals(Priority.LOW, first.getPriority());
+    Assertions.assertNotSame(first, second);
+    Assertions.assertEquals(0, scheduler.addAll(Arrays.asList()));
+  }
+
 }
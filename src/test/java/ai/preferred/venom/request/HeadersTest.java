@@ -0,0 +1,67 @@
+package ai.preferred.venom.request;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class HeadersTest {
+
+  @Test
+  public void testInterned() {
+    final Map<String, String> map = new HashMap<>();
+    map.put("Cookie", "a=b");
+    map.put("Accept", "text/html");
+
+    final Headers headers = Headers.of(map);
+    Assertions.assertEquals(map, headers);
+    Assertions.assertEquals(headers, map);
+    Assertions.assertEquals(map.hashCode(), headers.hashCode());
+    Assertions.assertSame(headers, Headers.of(new HashMap<>(map)));
+    Assertions.assertSame(headers, Headers.of(headers));
+    Assertions.assertSame(Headers.EMPTY, Headers.of(new HashMap<>()));
+    Assertions.assertEquals("a=b", headers.get("Cookie"));
+    Assertions.assertNull(headers.get("cookie"));
+    Assertions.assertThrows(UnsupportedOperationException.class, () -> headers.put("X", "y"));
+  }
+
+  @Test
+  public void testPrepend() {
+    final Map<String, String> map = new HashMap<>();
+    map.put("Cookie", "a=b");
+    final Map<String, String> defaults = new HashMap<>();
+    defaults.put("Cookie", "default");
+    defaults.put("User-Agent", "venom");
+    final Headers pre = Headers.of(defaults);
+
+    final Headers merged = Headers.of(map).prepend(pre);
+    Assertions.assertEquals(2, merged.size());
+    Assertions.assertEquals("a=b", merged.get("Cookie"));
+    Assertions.assertEquals("venom", merged.get("User-Agent"));
+    Assertions.assertSame(merged, Headers.of(map).prepend(pre));
+    Assertions.assertSame(pre, Headers.EMPTY.prepend(pre));
+  }
+
+  @Test
+  public void testToJson() {
+    final Map<String, String> map = new HashMap<>();
+    map.put("Cookie", "a=\"b\"");
+    final Headers headers = Headers.of(map);
+    Assertions.assertEquals(new JSONObject(map).toString(), headers.toJson());
+    Assertions.assertSame(headers.toJson(), headers.toJson());
+  }
+
+  @Test
+  public void testRequestsShareHeaders() {
+    final Map<String, String> map = new HashMap<>();
+    map.put("Cookie", "a=b");
+    final VRequest first = new VRequest("https://venom.preferred.ai/1", map);
+    final VRequest second = new VRequest("https://venom.preferred.ai/2", map);
+    Assertions.assertSame(first.getHeaders(), second.getHeaders());
+    Assertions.assertSame(first.getHeaders(), new HttpFetcherRequest(first).getHeaders());
+    Assertions.assertSame(first.getHeaders(), new StorageFetcherRequest(first).getHeaders());
+  }
+
+}
@@ -0,0 +1,148 @@
+package ai.preferred.venom.response;
+
+import org.apache.http.Header;
+import org.apache.http.entity.ContentType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class HtmlExtractorTest {
+
+  private static final String HTML = "<!DOCTYPE html>\n"
+      + "<html>\n"
+      + "<head><title>A &amp; B</title>"
+      + "<script>if (a < b) { document.write('<div class=\"item\">x</div>'); }</script></head>\n"
+      + "<body>\n"
+      + "<!-- <div class=\"item\">commented</div> -->\n"
+      + "<div class=\"item first\" id=\"one\"><h2>First</h2><p>Price: 10<br>USD</p><a href=\"/one\">more</a></div>\n"
+      + "<div class=item><h2>Second &#38; last</h2><a href='two?x=1'>more</a><img src=\"a.png\"></div>\n"
+      + "<ul><li>a<li>b<li><a href=\"#c\">c</a></ul>\n"
+      + "<a href=\"http://other.com/\">other</a>\n"
+      + "</body>\n"
+      + "</html>\n";
+
+  private static final String URL = "http://127.0.0.1/list/page";
+
+  @Test
+  public void testSelectText() {
+    final List<HtmlElement> elements = new ArrayList<>();
+    final HtmlExtractor extractor = HtmlExtractor.builder()
+        .select("div.item", elements::add)
+        .build();
+    extractor.extract(HTML.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, URL);
+
+    Assertions.assertEquals(2, elements.size());
+    Assertions.assertEquals("one", elements.get(0).getAttribute("id"));
+    Assertions.assertEquals("First Price: 10 USD more", elements.get(0).getText());
+    Assertions.assertEquals(Arrays.asList("http://127.0.0.1/one"), elements.get(0).getLinks());
+    Assertions.assertEquals("Second & last more", elements.get(1).getText());
+    Assertions.assertEquals(Arrays.asList("http://127.0.0.1/list/two?x=1"), elements.get(1).getLinks());
+  }
+
+  @Test
+  public void testSelectCombinators() {
+    final List<String> matched = new ArrayList<>();
+    final HtmlExtractor extractor = HtmlExtractor.builder()
+        .select("div#one > h2, ul li", element -> matched.add(element.getTagName() + ":" + element.getText()))
+        .select("body img[src]", element -> matched.add(element.absUrl("src")))
+        .select("body > a[href=\"http://other.com/\"]", element -> matched.add(element.getText()))
+        .build();
+    extractor.extract(HTML.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, URL);
+
+    Assertions.assertEquals(Arrays.asList("h2:First", "http://127.0.0.1/list/a.png", "li:a", "li:b", "li:c", "other"),
+        matched);
+  }
+
+  @Test
+  public void testLinks() {
+    final List<String> links = new ArrayList<>();
+    final HtmlExtractor extractor = HtmlExtractor.builder()
+        .onLink(links::add)
+        .build();
+    extractor.extract(HTML.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, URL);
+
+    Assertions.assertEquals(Arrays.asList(
+        "http://127.0.0.1/one",
+        "http://127.0.0.1/list/two?x=1",
+        "http://127.0.0.1/list/page#c",
+        "http://other.com/"
+    ), links);
+  }
+
+  @Test
+  public void testBaseHref() {
+    final String html = "<html><head><base href=\"http://cdn.example.com/root/\"></head>"
+        + "<body><a href=\"page\">page</a></body></html>";
+    final List<String> links = new ArrayList<>();
+    HtmlExtractor.builder().onLink(links::add).build()
+        .extract(html.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, URL);
+
+    Assertions.assertEquals(Arrays.asList("http://cdn.example.com/root/page"), links);
+  }
+
+  @Test
+  public void testRawText() {
+    final List<String> titles = new ArrayList<>();
+    final List<HtmlElement> items = new ArrayList<>();
+    final HtmlExtractor extractor = HtmlExtractor.builder()
+        .select("title", element -> titles.add(element.getText()))
+        .select("script .item", items::add)
+        .build();
+    extractor.extract(HTML.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, URL);
+
+    Assertions.assertEquals(Arrays.asList("A & B"), titles);
+    Assertions.assertTrue(items.isEmpty());
+  }
+
+  @Test
+  public void testScriptText() {
+    final String html = "<html><head><script>var s = '</scr' + 'ipt>';</SCRIPT></head>"
+        + "<body><p>after</p></body></html>";
+    final List<String> texts = new ArrayList<>();
+    HtmlExtractor.builder()
+        .select("script, p", element -> texts.add(element.getTagName() + ":" + element.getText()))
+        .build()
+        .extract(html.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, URL);
+
+    Assertions.assertEquals(Arrays.asList("script:var s = '</scr' + 'ipt>';", "p:after"), texts);
+  }
+
+  @Test
+  public void testSelectCommaInValue() {
+    final String html = "<body><a href=\"a,b\">ab</a><a href='c'>c</a><a href=\"d\">d</a></body>";
+    final List<String> texts = new ArrayList<>();
+    HtmlExtractor.builder()
+        .select("a[href=\"a,b\"], a[href='c']", element -> texts.add(element.getText()))
+        .build()
+        .extract(html.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, URL);
+
+    Assertions.assertEquals(Arrays.asList("ab", "c"), texts);
+  }
+
+  @Test
+  public void testVResponseExtract() {
+    final BaseResponse baseResponse = new BaseResponse(200, URL, HTML.getBytes(StandardCharsets.UTF_8),
+        ContentType.create("text/html", StandardCharsets.UTF_8), new Header[0], null);
+    final List<String> headings = new ArrayList<>();
+    new VResponse(baseResponse).extract(HtmlExtractor.builder()
+        .select("h2", element -> headings.add(element.getText()))
+        .build());
+
+    Assertions.assertEquals(Arrays.asList("First", "Second & last"), headings);
+  }
+
+  @Test
+  public void testInvalidSelector() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> HtmlExtractor.builder().select("div >", e -> {
+    }));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> HtmlExtractor.builder().select("a[href", e -> {
+    }));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> HtmlExtractor.builder().select("a:hover", e -> {
+    }));
+  }
+
+}
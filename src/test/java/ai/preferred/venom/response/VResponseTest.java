@@ -4,9 +4,12 @@ import org.apache.http.Header;
 import org.apache.http.HttpHost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.message.BasicHeader;
+import org.jsoup.nodes.Document;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+
 public class VResponseTest {
 
   @Test
@@ -64,4 +67,28 @@ public class VResponseTest {
 
   }
 
+  @Test
+  public void testMemoization() {
+    final String url = "http://127.0.0.1/test-response";
+    final byte[] content = "<html><body><p>caf\u00e9</p></body></html>".getBytes(StandardCharsets.UTF_8);
+    final BaseResponse baseResponse = new BaseResponse(200, url, content,
+        ContentType.create("text/html", StandardCharsets.UTF_8), new Header[0], null);
+    final VResponse vResponse = new VResponse(baseResponse);
+
+    final String html = vResponse.getHtml();
+    Assertions.assertSame(html, vResponse.getHtml());
+    Assertions.assertSame(html, vResponse.getHtml(VResponse.DEFAULT_CHARSET));
+
+    final Document document = vResponse.getJsoup();
+    Assertions.assertSame(document, vResponse.getJsoup());
+
+    final String latin = vResponse.getHtml(StandardCharsets.ISO_8859_1);
+    Assertions.assertNotEquals(html, latin);
+    Assertions.assertNotSame(document, vResponse.getJsoup(StandardCharsets.ISO_8859_1));
+
+    vResponse.release();
+    Assertions.assertNotSame(document, vResponse.getJsoup());
+    Assertions.assertEquals(html, vResponse.getHtml());
+  }
+
 }
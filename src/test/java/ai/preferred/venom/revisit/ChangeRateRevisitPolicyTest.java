@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2019 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.revisit;
+
+import ai.preferred.venom.job.JobAttribute;
+import ai.preferred.venom.job.NotBeforeJobAttribute;
+import ai.preferred.venom.job.Priority;
+import ai.preferred.venom.job.PriorityJobAttribute;
+import ai.preferred.venom.request.VRequest;
+import ai.preferred.venom.storage.FetchHistory;
+import ai.preferred.venom.storage.StorageException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+class ChangeRateRevisitPolicyTest {
+
+  private final VRequest request = new VRequest("https://venom.preferred.ai");
+
+  private final long now = System.currentTimeMillis();
+
+  private List<FetchHistory.Fetch> history(final int count, final long interval, final int changeEvery) {
+    final List<FetchHistory.Fetch> fetches = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      fetches.add(new FetchHistory.Fetch("md5-" + (i / changeEvery), now - i * interval));
+    }
+    return fetches;
+  }
+
+  private ChangeRateRevisitPolicy policy(final List<FetchHistory.Fetch> fetches) {
+    return ChangeRateRevisitPolicy.builder((request, limit) -> fetches.subList(0, Math.min(limit, fetches.size())))
+        .build();
+  }
+
+  @Test
+  void testNoHistory() {
+    final Revisit revisit = policy(Collections.emptyList()).getRevisit(request);
+    Assertions.assertTrue(revisit.getTime() <= System.currentTimeMillis());
+    Assertions.assertEquals(Priority.DEFAULT, revisit.getPriority());
+    Assertions.assertTrue(Double.isNaN(revisit.getChangeRate()));
+  }
+
+  @Test
+  void testSingleFetch() {
+    final Revisit revisit = policy(history(1, 0, 1)).getRevisit(request);
+    Assertions.assertEquals(now + TimeUnit.DAYS.toMillis(1), revisit.getTime());
+    Assertions.assertEquals(Priority.DEFAULT, revisit.getPriority());
+  }
+
+  @Test
+  void testUnchanged() {
+    final Revisit revisit = policy(history(10, TimeUnit.DAYS.toMillis(1), 100)).getRevisit(request);
+    Assertions.assertEquals(0, revisit.getChangeRate());
+    Assertions.assertEquals(now + TimeUnit.DAYS.toMillis(30), revisit.getTime());
+    Assertions.assertEquals(Priority.LOWEST, revisit.getPriority());
+  }
+
+  @Test
+  void testVolatile() {
+    final Revisit revisit = policy(history(10, TimeUnit.HOURS.toMillis(1), 1)).getRevisit(request);
+    Assertions.assertTrue(revisit.getChangeRate() > 24);
+    Assertions.assertEquals(now + TimeUnit.HOURS.toMillis(1), revisit.getTime());
+    Assertions.assertEquals(Priority.HIGHEST, revisit.getPriority());
+  }
+
+  @Test
+  void testOrdering() {
+    final Revisit daily = policy(history(16, TimeUnit.DAYS.toMillis(1), 1)).getRevisit(request);
+    final Revisit sometimes = policy(history(16, TimeUnit.DAYS.toMillis(1), 4)).getRevisit(request);
+    Assertions.assertTrue(daily.getChangeRate() > sometimes.getChangeRate());
+    Assertions.assertTrue(daily.getTime() < sometimes.getTime());
+    Assertions.assertTrue(daily.getPriority().compareTo(sometimes.getPriority()) <= 0);
+    Assertions.assertTrue(sometimes.getTime() < now + TimeUnit.DAYS.toMillis(30));
+  }
+
+  @Test
+  void testEstimateChangeRate() {
+    Assertions.assertTrue(Double.isNaN(ChangeRateRevisitPolicy.estimateChangeRate(history(1, 1000, 1))));
+    Assertions.assertTrue(Double.isNaN(ChangeRateRevisitPolicy.estimateChangeRate(history(3, 0, 1))));
+    Assertions.assertEquals(0, ChangeRateRevisitPolicy.estimateChangeRate(history(5, 1000, 10)));
+    final double rate = ChangeRateRevisitPolicy.estimateChangeRate(history(11, 1000, 2));
+    Assertions.assertEquals(-Math.log(5.5 / 10.5) / 1000, rate, 1e-12);
+  }
+
+  @Test
+  void testStorageException() {
+    final ChangeRateRevisitPolicy policy = ChangeRateRevisitPolicy.builder((request, limit) -> {
+      throw new StorageException("unavailable");
+    }).setInitialInterval(2, TimeUnit.HOURS).build();
+    final Revisit revisit = policy.getRevisit(request);
+    Assertions.assertTrue(revisit.getTime() >= now + TimeUnit.HOURS.toMillis(2));
+    Assertions.assertEquals(Priority.DEFAULT, revisit.getPriority());
+  }
+
+  @Test
+  void testJobAttributes() {
+    final JobAttribute[] attributes = policy(history(10, TimeUnit.DAYS.toMillis(1), 100)).getJobAttributes(request);
+    Assertions.assertEquals(2, attributes.length);
+    Assertions.assertEquals(now + TimeUnit.DAYS.toMillis(30), ((NotBeforeJobAttribute) attributes[0]).getNotBefore());
+    Assertions.assertEquals(Priority.LOWEST, ((PriorityJobAttribute) attributes[1]).getPriority());
+  }
+
+  @Test
+  void testBuilder() {
+    final ChangeRateRevisitPolicy.Builder builder = ChangeRateRevisitPolicy.builder((request, limit) -> null);
+    Assertions.assertThrows(IllegalStateException.class, () -> builder.setTargetProbability(1));
+    Assertions.assertThrows(IllegalStateException.class, () -> builder.setHistorySize(1));
+    Assertions.assertThrows(IllegalStateException.class,
+        () -> builder.setMinInterval(2, TimeUnit.DAYS).setMaxInterval(1, TimeUnit.DAYS).build());
+  }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2019 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.seed;
+
+import ai.preferred.venom.job.Job;
+import ai.preferred.venom.job.PrefetchingJobQueue;
+import ai.preferred.venom.request.Request;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+class SeedFileSourceTest {
+
+  private final String url = "https://venom.preferred.ai";
+
+  @TempDir
+  Path tempDir;
+
+  private Path write(final String name, final String content, final boolean gzip) throws IOException {
+    final Path path = tempDir.resolve(name);
+    try (OutputStream out = gzip ? new GZIPOutputStream(Files.newOutputStream(path)) : Files.newOutputStream(path);
+         Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+      writer.write(content);
+    }
+    return path;
+  }
+
+  private String lines(final int count) {
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      builder.append(url).append('/').append(i).append('\n');
+    }
+    return builder.toString();
+  }
+
+  private List<String> readAll(final SeedFileSource source, final int batchSize) {
+    final List<String> urls = new ArrayList<>();
+    List<? extends Request> batch;
+    while (!(batch = source.next(batchSize)).isEmpty()) {
+      Assertions.assertTrue(batch.size() <= batchSize);
+      for (final Request request : batch) {
+        urls.add(request.getUrl());
+      }
+    }
+    return urls;
+  }
+
+  @Test
+  void testLines() throws IOException {
+    final Path path = write("seeds.txt", "# comment\n" + url + "/a\r\n\n  " + url + "/b  \n" + url + "/c", false);
+    try (SeedFileSource source = SeedFileSource.builder(path).build()) {
+      Assertions.assertEquals(SeedCompression.NONE, source.getCompression());
+      final List<String> urls = readAll(source, 2);
+      Assertions.assertEquals(3, urls.size());
+      Assertions.assertEquals(url + "/a", urls.get(0));
+      Assertions.assertEquals(url + "/b", urls.get(1));
+      Assertions.assertEquals(url + "/c", urls.get(2));
+      Assertions.assertEquals(Files.size(path), source.getReadOffset());
+      Assertions.assertEquals(0, source.getOffset());
+    }
+  }
+
+  @Test
+  void testSmallWindow() throws IOException {
+    final Path path = write("seeds.txt", lines(200), false);
+    try (SeedFileSource source = SeedFileSource.builder(path).setWindowSize(16).build()) {
+      final List<String> urls = readAll(source, 7);
+      Assertions.assertEquals(200, urls.size());
+      for (int i = 0; i < urls.size(); i++) {
+        Assertions.assertEquals(url + "/" + i, urls.get(i));
+      }
+    }
+  }
+
+  @Test
+  void testGzip() throws IOException {
+    final Path path = write("seeds.txt.gz", lines(10000), true);
+    try (SeedFileSource source = SeedFileSource.builder(path).build()) {
+      Assertions.assertEquals(SeedCompression.GZIP, source.getCompression());
+      final List<String> urls = readAll(source, 1000);
+      Assertions.assertEquals(10000, urls.size());
+      Assertions.assertEquals(url + "/9999", urls.get(9999));
+    }
+  }
+
+  @Test
+  void testResume() throws IOException {
+    for (final boolean gzip : new boolean[]{false, true}) {
+      final Path path = write(gzip ? "resume.txt.gz" : "resume.txt", lines(100), gzip);
+      final long offset;
+      try (SeedFileSource source = SeedFileSource.builder(path).build()) {
+        Assertions.assertEquals(30, source.next(30).size());
+        offset = source.getReadOffset();
+      }
+      try (SeedFileSource source = SeedFileSource.builder(path).setOffset(offset).build()) {
+        final List<String> urls = readAll(source, 50);
+        Assertions.assertEquals(70, urls.size());
+        Assertions.assertEquals(url + "/30", urls.get(0));
+      }
+    }
+  }
+
+  @Test
+  void testCsv() throws IOException {
+    final String content = "id,link\n1,\"" + url + "/a\"\n2," + url + "/b\n3,\n";
+    final Path path = write("seeds.csv", content, false);
+    try (SeedFileSource source = SeedFileSource.builder(path)
+        .setFormat(SeedFormat.CSV)
+        .setHeader(true)
+        .setField("link")
+        .build()) {
+      final List<String> urls = readAll(source, 10);
+      Assertions.assertEquals(2, urls.size());
+      Assertions.assertEquals(url + "/a", urls.get(0));
+      Assertions.assertEquals(url + "/b", urls.get(1));
+    }
+
+    try (SeedFileSource source = SeedFileSource.builder(path)
+        .setFormat(SeedFormat.CSV)
+        .setColumn(1)
+        .build()) {
+      Assertions.assertEquals(3, readAll(source, 10).size());
+    }
+  }
+
+  @Test
+  void testJsonLines() throws IOException {
+    final String content = "{\"url\":\"" + url + "/a\"}\nnot json\n{\"other\":1}\n{\"url\":\"" + url + "/b\"}\n";
+    final Path path = write("seeds.jsonl.gz", content, true);
+    try (SeedFileSource source = SeedFileSource.builder(path).setFormat(SeedFormat.JSONL).build()) {
+      final List<String> urls = readAll(source, 10);
+      Assertions.assertEquals(2, urls.size());
+      Assertions.assertEquals(url + "/b", urls.get(1));
+    }
+  }
+
+  @Test
+  void testZstd() throws IOException {
+    final Path path = tempDir.resolve("seeds.txt.zst");
+    try (OutputStream out = new ZstdOutputStream(Files.newOutputStream(path))) {
+      out.write(lines(1000).getBytes(StandardCharsets.UTF_8));
+    }
+    try (SeedFileSource source = SeedFileSource.builder(path).build()) {
+      Assertions.assertEquals(SeedCompression.ZSTD, source.getCompression());
+      final List<String> urls = readAll(source, 100);
+      Assertions.assertEquals(1000, urls.size());
+      Assertions.assertEquals(url + "/999", urls.get(999));
+    }
+  }
+
+  @Test
+  void testPrefetchingJobQueue() throws IOException, InterruptedException {
+    final Path path = write("seeds.txt.gz", lines(500), true);
+    try (SeedFileSource source = SeedFileSource.builder(path).build();
+         PrefetchingJobQueue jobQueue = PrefetchingJobQueue.builder(source)
+             .setLowWatermark(8)
+             .setHighWatermark(32)
+             .build()) {
+      for (int i = 0; i < 500; i++) {
+        final Job job = jobQueue.poll(1, TimeUnit.SECONDS);
+        Assertions.assertNotNull(job);
+        Assertions.assertEquals(url + "/" + i, job.getRequest().getUrl());
+      }
+      Assertions.assertNull(jobQueue.poll(50, TimeUnit.MILLISECONDS));
+      Assertions.assertTrue(jobQueue.isEmpty());
+    }
+  }
+
+  @Test
+  void testPolledOffset() throws IOException, InterruptedException {
+    final Path path = write("polled.txt", lines(100), false);
+    final long offset;
+    try (SeedFileSource source = SeedFileSource.builder(path).build();
+         PrefetchingJobQueue jobQueue = PrefetchingJobQueue.builder(source)
+             .setLowWatermark(8)
+             .setHighWatermark(32)
+             .build()) {
+      for (int i = 0; i < 10; i++) {
+        Assertions.assertNotNull(jobQueue.poll(1, TimeUnit.SECONDS));
+      }
+      offset = source.getOffset();
+      Assertions.assertEquals(lines(10).length(), offset);
+      Assertions.assertTrue(source.getReadOffset() > offset);
+    }
+    try (SeedFileSource source = SeedFileSource.builder(path).setOffset(offset).build()) {
+      final List<String> urls = readAll(source, 50);
+      Assertions.assertEquals(90, urls.size());
+      Assertions.assertEquals(url + "/10", urls.get(0));
+    }
+  }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2019 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ai.preferred.venom.storage;
+
+import ai.preferred.venom.request.Request;
+import ai.preferred.venom.request.VRequest;
+import ai.preferred.venom.response.BaseResponse;
+import ai.preferred.venom.response.Response;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.Header;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHeader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+class LocalFileManagerTest {
+
+  private static final ContentType CONTENT_TYPE = ContentType.create("text/html", StandardCharsets.UTF_8);
+
+  @TempDir
+  Path directory;
+
+  private Response response(final String url, final String content) {
+    final Header[] headers = {new BasicHeader("Server", "venom")};
+    return new BaseResponse(200, url, content.getBytes(StandardCharsets.UTF_8), CONTENT_TYPE, headers, null);
+  }
+
+  private String content(final Record<?> record) {
+    return new String(record.getResponseContent(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void testPutGet() throws IOException, StorageException {
+    final String url = "https://preferred.ai/";
+    final Map<String, String> requestHeaders = new HashMap<>();
+    requestHeaders.put("Accept", "text/html");
+    final Request request = new VRequest(url, requestHeaders);
+
+    try (LocalFileManager fileManager = LocalFileManager.builder(directory).build()) {
+      final long id = Long.parseLong(fileManager.put(request, response(url, "This is put test data.")));
+      final Record<Long> record = fileManager.get(id);
+      Assertions.assertNotNull(record);
+      Assertions.assertEquals(id, record.getId());
+      Assertions.assertEquals(url, record.getURL());
+      Assertions.assertEquals(Request.Method.GET, record.getRequestMethod());
+      Assertions.assertEquals(requestHeaders, record.getRequestHeaders());
+      Assertions.assertEquals(200, record.getStatusCode());
+      Assertions.assertEquals("venom", record.getResponseHeaders()[0].getValue());
+      Assertions.assertEquals(CONTENT_TYPE.toString(), record.getContentType().toString());
+      Assertions.assertEquals(DigestUtils.md5Hex("This is put test data."), ((StorageRecord<Long>) record).getMD5());
+      Assertions.assertEquals("This is put test data.", content(record));
+
+      Assertions.assertNull(fileManager.get(id + 1000));
+      Assertions.assertThrows(StorageException.class, () -> fileManager.get(id + 1));
+    }
+  }
+
+  @Test
+  void testGetRequest() throws IOException, StorageException {
+    final String url = "https://preferred.ai/get";
+    final Map<String, String> requestHeaders = new HashMap<>();
+    requestHeaders.put("Accept", "text/html");
+    requestHeaders.put("User-Agent", "venom");
+
+    try (LocalFileManager fileManager = LocalFileManager.builder(directory).build()) {
+      fileManager.put(new VRequest(url, requestHeaders), response(url, "old"));
+      fileManager.put(new VRequest(url, requestHeaders), response(url, "get"));
+      fileManager.put(new VRequest(url), response(url, "other"));
+
+      final Record<Long> record = fileManager.get(new VRequest(url, new HashMap<>(requestHeaders)));
+      Assertions.assertNotNull(record);
+      Assertions.assertEquals("get", content(record));
+      Assertions.assertEquals("other", content(fileManager.get(new VRequest(url))));
+      Assertions.assertNull(fileManager.get(new VRequest(url, Collections.singletonMap("Accept", "text/html"))));
+      Assertions.assertEquals(2, fileManager.size());
+    }
+  }
+
+  @Test
+  void testReopen() throws IOException, StorageException {
+    final long id;
+    try (LocalFileManager fileManager = LocalFileManager.builder(directory).build()) {
+      for (int i = 0; i < 2000; i++) {
+        final String url = "https://preferred.ai/" + i;
+        fileManager.put(new VRequest(url), response(url, "content " + i));
+      }
+      id = Long.parseLong(fileManager.put(new VRequest("https://preferred.ai/1"), response("", "updated")));
+    }
+    try (LocalFileManager fileManager = LocalFileManager.builder(directory).build()) {
+      Assertions.assertEquals(2000, fileManager.size());
+      Assertions.assertEquals("content 1999", content(fileManager.get(new VRequest("https://preferred.ai/1999"))));
+      final Record<Long> record = fileManager.get(new VRequest("https://preferred.ai/1"));
+      Assertions.assertEquals(id, record.getId());
+      Assertions.assertEquals("updated", content(record));
+    }
+  }
+
+  @Test
+  void testRecoverTornWrite() throws IOException, StorageException {
+    final long first;
+    try (LocalFileManager fileManager = LocalFileManager.builder(directory).build()) {
+      first = Long.parseLong(fileManager.put(new VRequest("https://preferred.ai/1"), response("", "first")));
+      fileManager.put(new VRequest("https://preferred.ai/2"), response("", "second"));
+    }
+    try (FileChannel channel = FileChannel.open(directory.resolve("records.log"), StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+    try (LocalFileManager fileManager = LocalFileManager.builder(directory).setSync(true).build()) {
+      Assertions.assertEquals("first", content(fileManager.get(first)));
+      Assertions.assertNull(fileManager.get(new VRequest("https://preferred.ai/2")));
+      fileManager.put(new VRequest("https://preferred.ai/3"), response("", "third"));
+      Assertions.assertEquals("third", content(fileManager.get(new VRequest("https://preferred.ai/3"))));
+    }
+  }
+
+  @Test
+  void testRebuildIndex() throws IOException, StorageException {
+    try (LocalFileManager fileManager = LocalFileManager.builder(directory).build()) {
+      for (int i = 0; i < 10; i++) {
+        final String url = "https://preferred.ai/" + i;
+        fileManager.put(new VRequest(url), response(url, "content " + i));
+      }
+    }
+    Files.delete(directory.resolve("records.idx"));
+    try (LocalFileManager fileManager = LocalFileManager.builder(directory).build()) {
+      Assertions.assertEquals(10, fileManager.size());
+      Assertions.assertEquals("content 7", content(fileManager.get(new VRequest("https://preferred.ai/7"))));
+    }
+    Assertions.assertEquals(10 * 28, Files.size(directory.resolve("records.idx")));
+  }
+
+  @Test
+  void testCompleteCallback() throws IOException, StorageException {
+    final String url = "https://preferred.ai/callback";
+    try (LocalFileManager fileManager = LocalFileManager.builder(directory).build()) {
+      fileManager.getCallback().completed(new VRequest(url), response(url, "callback"));
+      Assertions.assertEquals("callback", content(fileManager.get(new VRequest(url))));
+    }
+  }
+
+}
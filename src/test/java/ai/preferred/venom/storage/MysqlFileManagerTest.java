@@ -22,9 +22,11 @@ import ai.preferred.venom.response.BaseResponse;
 import ai.preferred.venom.response.Response;
 import ch.vorburger.exec.ManagedProcessException;
 import ch.vorburger.mariadb4j.DB;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.http.Header;
 import org.apache.http.entity.ContentType;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -32,10 +34,24 @@ import org.springframework.util.SocketUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public class MysqlFileManagerTest {
@@ -43,6 +59,7 @@ public class MysqlFileManagerTest {
   private DB db;
   private MysqlFileManager fileManager;
   private Path storage;
+  private String jdbcUrl;
 
   @BeforeAll
   void setUp() throws ManagedProcessException, IOException {
@@ -50,8 +67,8 @@ public class MysqlFileManagerTest {
     db = DB.newEmbeddedDB(randomPort);
     db.start();
     storage = Files.createTempDirectory("test_storage_directory");
-    fileManager = new MysqlFileManager("jdbc:mysql://localhost:" + randomPort + "/test?&serverTimezone=UTC",
-        "test", "root", "", storage.toFile());
+    jdbcUrl = "jdbc:mysql://localhost:" + randomPort + "/test?&serverTimezone=UTC";
+    fileManager = new MysqlFileManager(jdbcUrl, "test", "root", "", storage.toFile());
   }
 
   @AfterAll
@@ -105,6 +122,188 @@ public class MysqlFileManagerTest {
     // TODO: Check DB
   }
 
+  @Test
+  void testGetRequest() throws StorageException {
+    final String url = "https://preferred.ai/get";
+    final ContentType contentType = ContentType.create("text/html", StandardCharsets.UTF_8);
+    final Header[] headers = {};
+    final Map<String, String> requestHeaders = new HashMap<>();
+    requestHeaders.put("Accept", "text/html");
+    requestHeaders.put("User-Agent", "venom");
+    final Request request = new VRequest(url, requestHeaders);
+
+    fileManager.put(request, new BaseResponse(200, url, "get".getBytes(), contentType, headers, null));
+    fileManager.put(new VRequest(url), new BaseResponse(200, url, "other".getBytes(), contentType, headers, null));
+
+    final Record<Integer> record = fileManager.get(new VRequest(url, new TreeMap<>(requestHeaders)));
+    Assertions.assertNotNull(record);
+    Assertions.assertEquals("get", new String(record.getResponseContent(), StandardCharsets.UTF_8));
+    Assertions.assertNull(fileManager.get(new VRequest(url, Collections.singletonMap("Accept", "text/html"))));
+  }
+
+  @Test
+  void testMigrateFingerprint() throws SQLException, IOException, StorageException {
+    final String url = "https://preferred.ai/legacy";
+    try (Connection conn = DriverManager.getConnection(jdbcUrl, "root", "");
+         Statement statement = conn.createStatement()) {
+      statement.execute("CREATE TABLE `legacy` ("
+          + "`id` int(11) NOT NULL AUTO_INCREMENT,"
+          + "`url` varchar(1024) NOT NULL,"
+          + "`method` ENUM('GET', 'POST', 'HEAD', 'PUT', 'DELETE', 'OPTIONS') NOT NULL,"
+          + "`request_headers` JSON DEFAULT NULL,"
+          + "`request_body` JSON DEFAULT NULL,"
+          + "`status_code` int(3) NOT NULL DEFAULT 200,"
+          + "`response_headers` JSON DEFAULT NULL,"
+          + "`mime_type` varchar(255) NOT NULL,"
+          + "`encoding` varchar(255) NULL DEFAULT NULL,"
+          + "`md5` varchar(32) NOT NULL,"
+          + "`location` varchar(3) NOT NULL,"
+          + "`date_created` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,"
+          + "PRIMARY KEY (`id`),"
+          + "INDEX `url_idx` (`url` ASC)"
+          + ") CHARACTER SET latin1 COLLATE latin1_swedish_ci");
+      statement.execute("INSERT INTO `legacy` (id, url, method, request_headers, request_body, status_code, "
+          + "response_headers, mime_type, encoding, md5, location) VALUES (7, '" + url + "', 'GET', "
+          + "'{\"User-Agent\": \"venom\"}', '{}', 200, '{}', 'text/html', 'UTF-8', 'abcdef', 'abc')");
+      statement.execute("INSERT INTO `legacy` (id, url, method, request_headers, request_body, status_code, "
+          + "response_headers, mime_type, encoding, md5, location) VALUES (8, '" + url + "/bare', 'GET', "
+          + "NULL, NULL, 200, '{}', 'text/html', 'UTF-8', 'abcdef', 'abc')");
+    }
+    final Path dir = Files.createDirectories(storage.resolve("abc"));
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(dir.resolve("7.html.gz")))) {
+      out.write("legacy".getBytes(StandardCharsets.UTF_8));
+    }
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(dir.resolve("8.html.gz")))) {
+      out.write("bare".getBytes(StandardCharsets.UTF_8));
+    }
+
+    try (MysqlFileManager legacy = new MysqlFileManager(jdbcUrl, "legacy", "root", "", storage.toFile())) {
+      final Record<Integer> record = legacy.get(new VRequest(url, Collections.singletonMap("User-Agent", "venom")));
+      Assertions.assertNotNull(record);
+      Assertions.assertEquals(7, record.getId());
+      Assertions.assertEquals("legacy", new String(record.getResponseContent(), StandardCharsets.UTF_8));
+      Assertions.assertEquals(8, legacy.get(new VRequest(url + "/bare")).getId());
+    }
+
+    // An interrupted migration leaves records without a fingerprint behind.
+    try (Connection conn = DriverManager.getConnection(jdbcUrl, "root", "");
+         Statement statement = conn.createStatement()) {
+      statement.execute("UPDATE `legacy` SET `fingerprint` = NULL WHERE `id` = 8");
+    }
+    try (MysqlFileManager legacy = new MysqlFileManager(jdbcUrl, "legacy", "root", "", storage.toFile())) {
+      Assertions.assertEquals(8, legacy.get(new VRequest(url + "/bare")).getId());
+    }
+  }
+
+  @Test
+  void testContentStore() throws IOException, StorageException, SQLException {
+    final String url = "https://preferred.ai/segment";
+    final ContentType contentType = ContentType.create("text/html", StandardCharsets.UTF_8);
+    final Header[] headers = {};
+    final Request request = new VRequest(url);
+    final Path segments = storage.resolve("segments");
+
+    try (MysqlFileManager segmented = MysqlFileManager.builder(jdbcUrl, "segmented", "root", "", storage.toFile())
+        .setContentStore(SegmentContentStore.builder(segments).build())
+        .build()) {
+      segmented.put(request, new BaseResponse(200, url, "segment".getBytes(), contentType, headers, null));
+      final StorageRecord<Integer> record = (StorageRecord<Integer>) segmented.get(request);
+      Assertions.assertNotNull(record);
+      Assertions.assertFalse(record.isContentLoaded());
+      Assertions.assertEquals("segment", new String(record.getResponseContent(), StandardCharsets.UTF_8));
+      Assertions.assertTrue(record.isContentLoaded());
+    }
+    Assertions.assertTrue(Files.exists(segments.resolve("00000001.seg")));
+  }
+
+  @Test
+  void testDeduplicate() throws IOException, StorageException, SQLException, InterruptedException {
+    final String url = "https://preferred.ai/dedup";
+    final ContentType contentType = ContentType.create("text/html", StandardCharsets.UTF_8);
+    final Header[] headers = {};
+
+    try (MysqlFileManager dedup = MysqlFileManager.builder(jdbcUrl, "dedup", "root", "", storage.toFile())
+        .setContentStore(SegmentContentStore.builder(storage.resolve("dedup")).build())
+        .setDeduplicate(true)
+        .build()) {
+      dedup.put(new VRequest(url), new BaseResponse(200, url, "same".getBytes(), contentType, headers, null));
+      dedup.put(new VRequest(url), new BaseResponse(200, url, "same".getBytes(), contentType, headers, null));
+      for (int i = 0; i < 10; i++) {
+        final byte[] content = (i % 2 == 0 ? "same" : "different").getBytes();
+        dedup.getCallback().completed(new VRequest(url + i), new BaseResponse(200, url + i, content, contentType,
+            headers, null));
+      }
+      dedup.flush();
+
+      final Record<Integer> record = dedup.get(new VRequest(url + 1));
+      Assertions.assertNotNull(record);
+      Assertions.assertEquals("different", new String(record.getResponseContent(), StandardCharsets.UTF_8));
+    }
+
+    try (Connection conn = DriverManager.getConnection(jdbcUrl, "root", "");
+         Statement statement = conn.createStatement();
+         ResultSet rs = statement.executeQuery("SELECT `prehash`, `size`, `sha256`, `location` "
+             + "FROM `dedup_content` ORDER BY `size`")) {
+      Assertions.assertTrue(rs.next());
+      Assertions.assertEquals(4, rs.getInt("size"));
+      final long prehash = rs.getLong("prehash");
+      final byte[] sha256 = rs.getBytes("sha256");
+      Assertions.assertNotNull(sha256);
+      Assertions.assertTrue(rs.next());
+      Assertions.assertEquals(9, rs.getInt("size"));
+      Assertions.assertFalse(rs.next());
+
+      try (PreparedStatement duplicate = conn.prepareStatement("INSERT INTO `dedup_content` "
+          + "(prehash, size, sha256, location) VALUES (?, 4, ?, 'copy')")) {
+        duplicate.setLong(1, prehash);
+        duplicate.setBytes(2, sha256);
+        Assertions.assertThrows(SQLException.class, duplicate::executeUpdate);
+      }
+    }
+  }
+
+  @Test
+  void testGetAll() throws StorageException {
+    final String url = "https://preferred.ai/all";
+    final ContentType contentType = ContentType.create("text/html", StandardCharsets.UTF_8);
+    final Header[] headers = {};
+    final Request first = new VRequest(url + "/1");
+    final Request second = new VRequest(url + "/2");
+
+    fileManager.put(first, new BaseResponse(200, url, "old".getBytes(), contentType, headers, null));
+    fileManager.put(first, new BaseResponse(200, url, "first".getBytes(), contentType, headers, null));
+    fileManager.put(second, new BaseResponse(200, url, "second".getBytes(), contentType, headers, null));
+
+    final List<Record<Integer>> records = fileManager.getAll(Arrays.asList(
+        second, new VRequest(url + "/none"), first, second));
+    Assertions.assertEquals(4, records.size());
+    Assertions.assertTrue(((StorageRecord<Integer>) records.get(0)).isContentLoaded());
+    Assertions.assertEquals("second", new String(records.get(0).getResponseContent(), StandardCharsets.UTF_8));
+    Assertions.assertNull(records.get(1));
+    Assertions.assertEquals("first", new String(records.get(2).getResponseContent(), StandardCharsets.UTF_8));
+    Assertions.assertEquals("second", new String(records.get(3).getResponseContent(), StandardCharsets.UTF_8));
+    Assertions.assertTrue(fileManager.getAll(Collections.emptyList()).isEmpty());
+  }
+
+  @Test
+  void testGetHistory() throws StorageException {
+    final String url = "https://preferred.ai/history";
+    final ContentType contentType = ContentType.create("text/html", StandardCharsets.UTF_8);
+    final Header[] headers = {};
+    final Request request = new VRequest(url);
+
+    fileManager.put(request, new BaseResponse(200, url, "first".getBytes(), contentType, headers, null));
+    fileManager.put(request, new BaseResponse(200, url, "second".getBytes(), contentType, headers, null));
+
+    final List<FetchHistory.Fetch> history = fileManager.getHistory(request, 10);
+    Assertions.assertEquals(2, history.size());
+    Assertions.assertEquals(DigestUtils.md5Hex("second"), history.get(0).getMD5());
+    Assertions.assertEquals(DigestUtils.md5Hex("first"), history.get(1).getMD5());
+    Assertions.assertTrue(history.get(0).getDateCreated() >= history.get(1).getDateCreated());
+    Assertions.assertEquals(1, fileManager.getHistory(request, 1).size());
+    Assertions.assertTrue(fileManager.getHistory(new VRequest(url + "/none"), 10).isEmpty());
+  }
+
   @Test
   void testCompleteCallback() {
     final int statusCode = 200;
@@ -120,6 +319,29 @@ public class MysqlFileManagerTest {
     // TODO: Check DB
   }
 
+  @Test
+  void testCompleteCallbackBatch() throws StorageException, InterruptedException {
+    final String url = "https://preferred.ai/batch/";
+    final ContentType contentType = ContentType.create("text/html", StandardCharsets.UTF_8);
+    final Header[] headers = {};
+
+    for (int i = 0; i < 100; i++) {
+      final Request request = new VRequest(url + i);
+      final byte[] content = ("This is batch test data " + i + ".").getBytes();
+      fileManager.getCallback().completed(request, new BaseResponse(200, url + i, content, contentType, headers,
+          null));
+    }
+    fileManager.flush();
+
+    for (int i = 0; i < 100; i++) {
+      final String md5 = DigestUtils.md5Hex("This is batch test data " + i + ".");
+      final List<FetchHistory.Fetch> history = fileManager.getHistory(new VRequest(url + i), 10);
+      Assertions.assertEquals(1, history.size());
+      Assertions.assertEquals(md5, history.get(0).getMD5());
+      Assertions.assertTrue(Files.isDirectory(storage.resolve(md5.substring(0, 3))));
+    }
+  }
+
   @Test
   void testFailedCallback() {
     final String url = "https://preferred.ai/";
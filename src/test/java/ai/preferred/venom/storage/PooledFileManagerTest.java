@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2019 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ai.preferred.venom.storage;
+
+import ai.preferred.venom.request.Request;
+import ai.preferred.venom.request.VRequest;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class PooledFileManagerTest {
+
+  @Test
+  void testGet() throws Exception {
+    final Request request = new VRequest("https://preferred.ai/");
+    final Record<Object> record = StorageRecord.builder(new Object()).setUrl(request.getUrl()).build();
+    final FakeFileManager fileManager = new FakeFileManager(ImmutableMap.of(request, record));
+    try (PooledFileManager<Object> pooled = PooledFileManager.builder(fileManager).build()) {
+      Assertions.assertSame(fileManager, pooled.getFileManager());
+      Assertions.assertSame(record, pooled.getAsync(request).get());
+      Assertions.assertNull(pooled.getAsync(new VRequest("https://preferred.ai/none")).get());
+    }
+    Assertions.assertTrue(fileManager.getClosed());
+  }
+
+  @Test
+  void testFailure() throws Exception {
+    final FakeFileManager fileManager = new FakeFileManager(Collections.singletonMap(null, null));
+    final PooledFileManager<Object> pooled = PooledFileManager.builder(fileManager).build();
+    final ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+        () -> pooled.getAsync(new VRequest("https://preferred.ai/")).get());
+    Assertions.assertTrue(e.getCause() instanceof StorageException);
+    final ExecutionException unsupported = Assertions.assertThrows(ExecutionException.class,
+        () -> pooled.getAsync(new Object()).get());
+    Assertions.assertTrue(unsupported.getCause() instanceof UnsupportedOperationException);
+
+    pooled.close();
+    final CompletableFuture<Record<Object>> closed = pooled.getAsync(new VRequest("https://preferred.ai/"));
+    Assertions.assertTrue(closed.isCompletedExceptionally());
+  }
+
+  @Test
+  void testConcurrentAndCallerRuns() throws Exception {
+    final CountDownLatch started = new CountDownLatch(2);
+    final CountDownLatch release = new CountDownLatch(1);
+    final FakeFileManager fileManager = new FakeFileManager() {
+      @Override
+      public Record<Object> get(final Request request) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return null;
+      }
+    };
+    try (PooledFileManager<Object> pooled = PooledFileManager.builder(fileManager)
+        .setThreads(2).setQueueCapacity(1).build()) {
+      final List<CompletableFuture<Record<Object>>> futures = new ArrayList<>();
+      futures.add(pooled.getAsync(new VRequest("https://preferred.ai/1")));
+      futures.add(pooled.getAsync(new VRequest("https://preferred.ai/2")));
+      Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+      futures.add(pooled.getAsync(new VRequest("https://preferred.ai/3")));
+      for (final CompletableFuture<Record<Object>> future : futures) {
+        Assertions.assertFalse(future.isDone());
+      }
+
+      final Thread caller = new Thread(() -> futures.add(pooled.getAsync(new VRequest("https://preferred.ai/4"))));
+      caller.start();
+      caller.join(200);
+      Assertions.assertTrue(caller.isAlive());
+      release.countDown();
+      caller.join();
+      for (final CompletableFuture<Record<Object>> future : futures) {
+        Assertions.assertNull(future.get(10, TimeUnit.SECONDS));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2019 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ai.preferred.venom.storage;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class SegmentContentStoreTest {
+
+  @TempDir
+  Path directory;
+
+  private byte[] content(final int i) {
+    return ("<html><body>Content number " + i + "</body></html>").getBytes(StandardCharsets.UTF_8);
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().collect(Collectors.toList());
+    }
+  }
+
+  @Test
+  void testWriteRead() throws IOException {
+    try (SegmentContentStore store = SegmentContentStore.builder(directory).build()) {
+      final List<String> locations = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        locations.add(store.write(content(i)));
+      }
+      for (int i = 99; i >= 0; i--) {
+        Assertions.assertArrayEquals(content(i), store.read(locations.get(i)));
+      }
+      Assertions.assertArrayEquals(new byte[0], store.read(store.write(new byte[0])));
+    }
+    Assertions.assertEquals(1, segments().size());
+  }
+
+  @Test
+  void testSync() throws IOException {
+    final SegmentContentStore store = SegmentContentStore.builder(directory).build();
+    final String location = store.write(content(0));
+    store.sync();
+    Assertions.assertArrayEquals(content(0), store.read(location));
+    store.close();
+    Assertions.assertThrows(IOException.class, store::sync);
+  }
+
+  @Test
+  void testOpenStream() throws IOException {
+    try (SegmentContentStore store = SegmentContentStore.builder(directory).build()) {
+      final String location = store.write(content(1));
+      try (InputStream in = store.openStream(location)) {
+        Assertions.assertArrayEquals(content(1), IOUtils.toByteArray(in));
+      }
+      Assertions.assertThrows(IOException.class, () -> store.openStream("1:0:1000"));
+    }
+  }
+
+  @Test
+  void testSegmentRoll() throws IOException {
+    final List<String> locations = new ArrayList<>();
+    try (SegmentContentStore store = SegmentContentStore.builder(directory).setSegmentSize(256).build()) {
+      for (int i = 0; i < 20; i++) {
+        locations.add(store.write(content(i)));
+      }
+      for (int i = 0; i < 20; i++) {
+        Assertions.assertArrayEquals(content(i), store.read(locations.get(i)));
+      }
+    }
+    Assertions.assertTrue(segments().size() > 1);
+    for (final Path segment : segments()) {
+      Assertions.assertTrue(Files.size(segment) <= 256);
+    }
+  }
+
+  @Test
+  void testReopen() throws IOException {
+    final String first;
+    try (SegmentContentStore store = SegmentContentStore.builder(directory).build()) {
+      first = store.write(content(1));
+    }
+    try (SegmentContentStore store = SegmentContentStore.builder(directory).build()) {
+      final String second = store.write(content(2));
+      Assertions.assertNotEquals(first, second);
+      Assertions.assertArrayEquals(content(1), store.read(first));
+      Assertions.assertArrayEquals(content(2), store.read(second));
+    }
+  }
+
+  @Test
+  void testRecoverTornWrite() throws IOException {
+    final String first;
+    try (SegmentContentStore store = SegmentContentStore.builder(directory).build()) {
+      first = store.write(content(1));
+      store.write(content(2));
+    }
+    final Path segment = segments().get(0);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+    try (SegmentContentStore store = SegmentContentStore.builder(directory).build()) {
+      Assertions.assertArrayEquals(content(1), store.read(first));
+      final String third = store.write(content(3));
+      Assertions.assertArrayEquals(content(3), store.read(third));
+    }
+  }
+
+  @Test
+  void testInvalidLocation() throws IOException {
+    try (SegmentContentStore store = SegmentContentStore.builder(directory).build()) {
+      final String location = store.write(content(1));
+      Assertions.assertThrows(IOException.class, () -> store.read("invalid"));
+      Assertions.assertThrows(IOException.class, () -> store.read("1:0:1"));
+      Assertions.assertThrows(IOException.class, () -> store.read("9:0:1"));
+      Assertions.assertArrayEquals(content(1), store.read(location));
+    }
+  }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2019 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ai.preferred.venom.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+class StorageCodecTest {
+
+  @TempDir
+  Path directory;
+
+  private byte[] page(final int i) {
+    final StringBuilder page = new StringBuilder("<html>\n<head>\n<title>Product " + i + "</title>\n");
+    page.append("<link rel=\"stylesheet\" href=\"/static/css/main.css\">\n</head>\n<body>\n");
+    page.append("<nav class=\"navbar navbar-expand-lg\"><a href=\"/\">Home</a><a href=\"/about\">About</a></nav>\n");
+    page.append("<div class=\"price\">").append(i * 7).append("</div>\n");
+    page.append("<footer class=\"footer\">Copyright Preferred.AI, all rights reserved.</footer>\n");
+    page.append("</body>\n</html>\n");
+    return page.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void testGzip() throws IOException {
+    final byte[] data = GzipCodec.INSTANCE.encode(page(1), null);
+    Assertions.assertArrayEquals(page(1), GzipCodec.INSTANCE.decode(data));
+  }
+
+  @Test
+  void testZstd() throws IOException {
+    final ZstdCodec codec = new ZstdCodec();
+    final byte[] encoded = codec.encode(page(1), null);
+    Assertions.assertTrue(encoded.length < page(1).length);
+    Assertions.assertArrayEquals(page(1), codec.decode(encoded));
+    Assertions.assertThrows(IOException.class, () -> codec.decode(new byte[]{1, 2, 3, 4}));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new ZstdCodec(0));
+  }
+
+  @Test
+  void testDictionary() throws IOException {
+    final DictionaryCodec codec = DictionaryCodec.builder(directory).setSampleSize(2048).build();
+    final List<byte[]> untrained = new ArrayList<>();
+    for (int i = 0; codec.getDictionaryId("preferred.ai") == 0; i++) {
+      Assertions.assertTrue(i < 100);
+      untrained.add(codec.encode(page(i), "preferred.ai"));
+    }
+    final int id = codec.getDictionaryId("preferred.ai");
+    Assertions.assertEquals(0, codec.getDictionaryId("example.com"));
+
+    final byte[] trained = codec.encode(page(1000), "preferred.ai");
+    Assertions.assertTrue(trained.length < GzipCodec.INSTANCE.encode(page(1000), null).length / 2);
+    Assertions.assertArrayEquals(page(1000), codec.decode(trained));
+    Assertions.assertArrayEquals(page(0), codec.decode(untrained.get(0)));
+
+    final DictionaryCodec reopened = DictionaryCodec.builder(directory).build();
+    Assertions.assertEquals(id, reopened.getDictionaryId("preferred.ai"));
+    Assertions.assertArrayEquals(page(1000), reopened.decode(trained));
+
+    final int retrained = reopened.train("preferred.ai", Arrays.asList(page(1), page(2), page(3)));
+    Assertions.assertNotEquals(id, retrained);
+    Assertions.assertArrayEquals(page(1000), reopened.decode(trained));
+    Assertions.assertArrayEquals(page(2000), reopened.decode(reopened.encode(page(2000), "preferred.ai")));
+    Assertions.assertEquals(0, reopened.train("example.com", Arrays.asList(page(1), "other".getBytes())));
+  }
+
+  @Test
+  void testZstdDictionary() throws IOException {
+    final ZstdDictionaryCodec codec = ZstdDictionaryCodec.builder(directory).setSampleSize(4096).build();
+    final List<byte[]> untrained = new ArrayList<>();
+    for (int i = 0; codec.getDictionaryId("preferred.ai") == 0; i++) {
+      Assertions.assertTrue(i < 100);
+      untrained.add(codec.encode(page(i), "preferred.ai"));
+    }
+    final int id = codec.getDictionaryId("preferred.ai");
+
+    final byte[] trained = codec.encode(page(1000), "preferred.ai");
+    Assertions.assertTrue(trained.length < new ZstdCodec().encode(page(1000), null).length / 2);
+    Assertions.assertArrayEquals(page(1000), codec.decode(trained));
+    Assertions.assertArrayEquals(page(0), codec.decode(untrained.get(0)));
+    Assertions.assertArrayEquals(page(1), codec.decode(codec.encode(page(1), null)));
+
+    final ZstdDictionaryCodec reopened = ZstdDictionaryCodec.builder(directory).build();
+    Assertions.assertEquals(id, reopened.getDictionaryId("preferred.ai"));
+    Assertions.assertArrayEquals(page(1000), reopened.decode(trained));
+    Assertions.assertEquals(0, reopened.train("example.com", Arrays.asList(page(1), page(2))));
+
+    final byte[] unknown = trained.clone();
+    unknown[3] = 9;
+    Assertions.assertThrows(IOException.class, () -> reopened.decode(unknown));
+  }
+
+  @Test
+  void testDictionarySampledSites() throws IOException {
+    final DictionaryCodec codec = DictionaryCodec.builder(directory).setSampleSize(2048).setMaxSampledSites(1)
+        .build();
+    final byte[] unique = new byte[4096];
+    new Random(0).nextBytes(unique);
+    codec.encode(unique, "example.com");
+    for (int i = 0; i < 10; i++) {
+      codec.encode(page(i), "example.com");
+    }
+    Assertions.assertEquals(0, codec.getDictionaryId("example.com"));
+
+    // Sampling another site evicts the failed one, which is then sampled again.
+    codec.encode(page(0), "preferred.ai");
+    for (int i = 0; codec.getDictionaryId("example.com") == 0; i++) {
+      Assertions.assertTrue(i < 100);
+      codec.encode(page(i), "example.com");
+    }
+  }
+
+  @Test
+  void testSegmentContentStoreCodec() throws IOException {
+    final String gzip;
+    try (SegmentContentStore store = SegmentContentStore.builder(directory.resolve("segments")).build()) {
+      gzip = store.write(page(1));
+    }
+    final DictionaryCodec codec = DictionaryCodec.builder(directory.resolve("dictionaries")).build();
+    codec.train("preferred.ai", Arrays.asList(page(1), page(2)));
+    try (SegmentContentStore store = SegmentContentStore.builder(directory.resolve("segments"))
+        .setCodec(codec).build()) {
+      final String location = store.write(page(3), "preferred.ai");
+      Assertions.assertTrue(location.endsWith(":" + DictionaryCodec.ID));
+      Assertions.assertArrayEquals(page(3), store.read(location));
+      Assertions.assertArrayEquals(page(1), store.read(gzip));
+      Assertions.assertThrows(IOException.class, () -> store.read(location.replaceAll(":3$", ":9")));
+    }
+    Assertions.assertThrows(IllegalStateException.class, () -> SegmentContentStore.builder(directory)
+        .addCodec(DictionaryCodec.builder(directory.resolve("other")).build()).setCodec(codec));
+  }
+
+}
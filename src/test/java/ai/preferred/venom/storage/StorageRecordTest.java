@@ -24,8 +24,13 @@ import org.apache.http.message.BasicHeader;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class StorageRecordTest {
 
@@ -73,4 +78,35 @@ public class StorageRecordTest {
     Assertions.assertEquals(body, storageRecord.getRequestBody());
   }
 
+  @Test
+  void testContentSource() throws IOException {
+    final byte[] content = "This is a test".getBytes();
+    final AtomicInteger opened = new AtomicInteger();
+    final StorageRecord<Object> storageRecord = StorageRecord.builder(new Object())
+        .setContentSource(() -> {
+          opened.incrementAndGet();
+          return new ByteArrayInputStream(content);
+        })
+        .build();
+
+    Assertions.assertFalse(storageRecord.isContentLoaded());
+    Assertions.assertEquals(0, opened.get());
+    try (InputStream in = storageRecord.getResponseContentStream()) {
+      Assertions.assertEquals(content.length, in.available());
+    }
+    Assertions.assertFalse(storageRecord.isContentLoaded());
+    Assertions.assertArrayEquals(content, storageRecord.getResponseContent());
+    Assertions.assertArrayEquals(content, storageRecord.getResponseContent());
+    Assertions.assertTrue(storageRecord.isContentLoaded());
+    Assertions.assertEquals(2, opened.get());
+
+    final StorageRecord<Object> failing = StorageRecord.builder(new Object())
+        .setContentSource(() -> {
+          throw new IOException("Missing.");
+        })
+        .build();
+    Assertions.assertThrows(UncheckedIOException.class, failing::getResponseContent);
+    Assertions.assertNull(StorageRecord.builder(new Object()).build().getResponseContentStream());
+  }
+
 }
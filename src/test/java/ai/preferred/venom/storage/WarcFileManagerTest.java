@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2019 Preferred.AI
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ai.preferred.venom.storage;
+
+import ai.preferred.venom.fetcher.Fetcher;
+import ai.preferred.venom.fetcher.StorageFetcher;
+import ai.preferred.venom.request.Request;
+import ai.preferred.venom.request.VRequest;
+import ai.preferred.venom.response.BaseResponse;
+import ai.preferred.venom.response.Response;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHeader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+class WarcFileManagerTest {
+
+  private static final ContentType CONTENT_TYPE = ContentType.create("text/html", StandardCharsets.UTF_8);
+
+  @TempDir
+  Path directory;
+
+  private Response response(final String url, final String content) {
+    final Header[] headers = {new BasicHeader("Server", "venom"), new BasicHeader("Content-Encoding", "gzip")};
+    return new BaseResponse(200, url, content.getBytes(StandardCharsets.UTF_8), CONTENT_TYPE, headers, null);
+  }
+
+  private String content(final Record<?> record) {
+    return new String(record.getResponseContent(), StandardCharsets.UTF_8);
+  }
+
+  private byte[] member(final String headers, final String block) throws IOException {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream out = new GZIPOutputStream(compressed)) {
+      out.write(("WARC/1.0\r\n" + headers + "Content-Length: " + block.length() + "\r\n\r\n" + block + "\r\n\r\n")
+          .getBytes(StandardCharsets.UTF_8));
+    }
+    return compressed.toByteArray();
+  }
+
+  private List<Path> warcFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(path -> path.toString().endsWith(".warc.gz")).sorted().collect(Collectors.toList());
+    }
+  }
+
+  @Test
+  void testPutGet() throws IOException, StorageException {
+    final String url = "https://www.preferred.ai/search?q=venom";
+    final Map<String, String> requestHeaders = new HashMap<>();
+    requestHeaders.put("Accept", "text/html");
+    final Request request = VRequest.Builder.post(url).setBody("a=1&b=2").addHeaders(requestHeaders).build();
+
+    try (WarcFileManager fileManager = WarcFileManager.builder(directory).build()) {
+      final String id = fileManager.put(request, response(url, "This is put test data."));
+      final Record<String> record = fileManager.get(id);
+      Assertions.assertNotNull(record);
+      Assertions.assertEquals(id, record.getId());
+      Assertions.assertEquals(url, record.getURL());
+      Assertions.assertEquals(Request.Method.POST, record.getRequestMethod());
+      Assertions.assertEquals(requestHeaders, record.getRequestHeaders());
+      Assertions.assertEquals("2", record.getRequestBody().get("b"));
+      Assertions.assertEquals(200, record.getStatusCode());
+      Assertions.assertEquals(CONTENT_TYPE.toString(), record.getContentType().toString());
+      Assertions.assertEquals("This is put test data.", content(record));
+      for (final Header header : record.getResponseHeaders()) {
+        Assertions.assertNotEquals("Content-Encoding", header.getName());
+      }
+      Assertions.assertNull(fileManager.get("invalid"));
+      Assertions.assertNull(fileManager.get("../venom-00001.warc.gz:0"));
+    }
+
+    final List<Path> files = warcFiles();
+    Assertions.assertEquals(1, files.size());
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(files.get(0)))) {
+      final String warc = IOUtils.toString(in, StandardCharsets.UTF_8);
+      Assertions.assertTrue(warc.startsWith("WARC/1.0\r\nWARC-Type: warcinfo\r\n"));
+      Assertions.assertTrue(warc.contains("WARC-Type: response\r\n"));
+      Assertions.assertTrue(warc.contains("WARC-Type: request\r\n"));
+      Assertions.assertTrue(warc.contains("POST /search?q=venom HTTP/1.1\r\n"));
+    }
+    final String index = new String(Files.readAllBytes(directory.resolve("index.cdxj")), StandardCharsets.UTF_8);
+    Assertions.assertTrue(index.startsWith("ai,preferred)/search?q=venom "));
+  }
+
+  @Test
+  void testGetRequest() throws IOException, StorageException {
+    final String url = "https://preferred.ai/get";
+    final Map<String, String> requestHeaders = Collections.singletonMap("User-Agent", "venom");
+
+    try (WarcFileManager fileManager = WarcFileManager.builder(directory).build()) {
+      fileManager.put(new VRequest(url, requestHeaders), response(url, "old"));
+      fileManager.put(new VRequest(url, requestHeaders), response(url, "get"));
+      fileManager.put(new VRequest(url), response(url, "other"));
+
+      Assertions.assertEquals("get", content(fileManager.get(new VRequest(url, new HashMap<>(requestHeaders)))));
+      Assertions.assertEquals("other", content(fileManager.get(new VRequest(url))));
+      Assertions.assertNull(fileManager.get(new VRequest(url, Collections.singletonMap("Accept", "text/html"))));
+    }
+  }
+
+  @Test
+  void testRollAndReopen() throws IOException, StorageException {
+    try (WarcFileManager fileManager = WarcFileManager.builder(directory).setMaxFileSize(1024).build()) {
+      for (int i = 0; i < 20; i++) {
+        final String url = "https://preferred.ai/" + i;
+        fileManager.put(new VRequest(url), response(url, "content " + i));
+      }
+    }
+    final int files = warcFiles().size();
+    Assertions.assertTrue(files > 1);
+
+    try (WarcFileManager fileManager = WarcFileManager.builder(directory).setMaxFileSize(1024).build()) {
+      for (int i = 0; i < 20; i++) {
+        Assertions.assertEquals("content " + i, content(fileManager.get(new VRequest("https://preferred.ai/" + i))));
+      }
+      Assertions.assertEquals(files, warcFiles().size());
+      fileManager.put(new VRequest("https://preferred.ai/1"), response("", "updated"));
+      Assertions.assertEquals("updated", content(fileManager.get(new VRequest("https://preferred.ai/1"))));
+    }
+    Assertions.assertEquals(files + 1, warcFiles().size());
+  }
+
+  @Test
+  void testTornIndex() throws IOException, StorageException {
+    try (WarcFileManager fileManager = WarcFileManager.builder(directory).build()) {
+      fileManager.put(new VRequest("https://preferred.ai/1"), response("", "first"));
+    }
+    Files.write(directory.resolve("index.cdxj"), "ai,preferred)/2 2019".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+    try (WarcFileManager fileManager = WarcFileManager.builder(directory).build()) {
+      fileManager.put(new VRequest("https://preferred.ai/3"), response("", "third"));
+      Assertions.assertEquals("first", content(fileManager.get(new VRequest("https://preferred.ai/1"))));
+    }
+    try (WarcFileManager fileManager = WarcFileManager.builder(directory).build()) {
+      Assertions.assertEquals("third", content(fileManager.get(new VRequest("https://preferred.ai/3"))));
+    }
+  }
+
+  @Test
+  void testForeignWarc() throws IOException, StorageException {
+    final ByteArrayOutputStream warc = new ByteArrayOutputStream();
+    warc.write(member("WARC-Type: warcinfo\r\nWARC-Date: 2020-01-01T00:00:00Z\r\n", "software: wget\r\n"));
+    warc.write(member("WARC-Type: request\r\nWARC-Record-ID: <urn:uuid:1>\r\nWARC-Date: 2020-01-01T00:00:00Z\r\n"
+            + "WARC-Target-URI: http://example.com/page\r\n",
+        "GET /page HTTP/1.1\r\nUser-Agent: Wget\r\nHost: example.com\r\n\r\n"));
+    warc.write(member("WARC-Type: response\r\nWARC-Record-ID: <urn:uuid:2>\r\nWARC-Concurrent-To: <urn:uuid:1>\r\n"
+            + "WARC-Date: 2020-01-01T00:00:00Z\r\nWARC-Target-URI: http://example.com/page\r\n",
+        "HTTP/1.1 200 OK\r\nContent-Type: text/html\r\n\r\nwget page"));
+    warc.write(member("WARC-Type: response\r\nWARC-Record-ID: <urn:uuid:3>\r\nWARC-Date: 2020-01-01T00:00:01Z\r\n"
+            + "WARC-Target-URI: http://example.com/other\r\n",
+        "HTTP/1.1 404 Not Found\r\nContent-Type: text/plain\r\n\r\nother page"));
+    Files.write(directory.resolve("wget.warc.gz"), warc.toByteArray());
+
+    final byte[] plain = member("WARC-Type: response\r\nWARC-Record-ID: <urn:uuid:4>\r\n"
+            + "WARC-Date: 2020-01-01T00:00:00Z\r\nWARC-Target-URI: http://example.com/plain\r\n",
+        "HTTP/1.1 200 OK\r\nContent-Type: text/html\r\n\r\nplain page");
+    Files.write(directory.resolve("plain.warc.gz"), plain);
+    Files.write(directory.resolve("index.cdxj"), ("com,example)/plain 20200101000000 {\"url\": "
+        + "\"http://example.com/plain\", \"mime\": \"text/html\", \"status\": \"200\", \"length\": \"" + plain.length
+        + "\", \"offset\": \"0\", \"filename\": \"plain.warc.gz\"}\n").getBytes(StandardCharsets.UTF_8));
+
+    try (WarcFileManager fileManager = WarcFileManager.builder(directory).build()) {
+      final Record<String> page = fileManager.get(new VRequest("http://example.com/page"));
+      Assertions.assertEquals("wget page", content(page));
+      Assertions.assertEquals("Wget", page.getRequestHeaders().get("User-Agent"));
+      Assertions.assertTrue(page.getId().startsWith("wget.warc.gz:"));
+      Assertions.assertNull(fileManager.get(VRequest.Builder.post("http://example.com/page").build()));
+
+      final Record<String> other = fileManager.get(new VRequest("http://example.com/other"));
+      Assertions.assertEquals("other page", content(other));
+      Assertions.assertEquals(404, other.getStatusCode());
+      Assertions.assertEquals(Request.Method.GET, other.getRequestMethod());
+      Assertions.assertTrue(other.getRequestHeaders().isEmpty());
+
+      Assertions.assertEquals("plain page", content(fileManager.get(new VRequest("http://example.com/plain"))));
+    }
+    final List<String> index = Files.readAllLines(directory.resolve("index.cdxj"));
+    Assertions.assertEquals(3, index.size());
+
+    try (WarcFileManager fileManager = WarcFileManager.builder(directory).build()) {
+      Assertions.assertEquals("wget page", content(fileManager.get(new VRequest("http://example.com/page"))));
+      fileManager.put(new VRequest("http://example.com/page"), response("", "venom page"));
+      Assertions.assertEquals("venom page", content(fileManager.get(new VRequest("http://example.com/page"))));
+    }
+    Assertions.assertEquals(4, Files.readAllLines(directory.resolve("index.cdxj")).size());
+  }
+
+  @Test
+  void testReplay() throws Exception {
+    final String url = "https://preferred.ai/replay";
+    try (WarcFileManager fileManager = WarcFileManager.builder(directory).build()) {
+      fileManager.put(new VRequest(url), response(url, "replay"));
+    }
+    try (Fetcher fetcher = StorageFetcher.builder(WarcFileManager.builder(directory).build()).build()) {
+      fetcher.start();
+      final Response response = fetcher.fetch(new VRequest(url)).get();
+      Assertions.assertEquals(200, response.getStatusCode());
+      Assertions.assertEquals("replay", new String(response.getContent(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  void testUrlKey() {
+    Assertions.assertEquals("ai,preferred)/", WarcFileManager.getUrlKey("https://www.Preferred.AI"));
+    Assertions.assertEquals("ai,preferred:8080)/a?b=c", WarcFileManager.getUrlKey("http://preferred.ai:8080/a?b=c"));
+    Assertions.assertEquals("ai,preferred)/a", WarcFileManager.getUrlKey("http://preferred.ai:80/a"));
+  }
+
+}
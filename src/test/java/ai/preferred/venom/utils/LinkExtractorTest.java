@@ -0,0 +1,74 @@
+package ai.preferred.venom.utils;
+
+import ai.preferred.venom.response.BaseResponse;
+import org.apache.http.Header;
+import org.apache.http.entity.ContentType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class LinkExtractorTest {
+
+  private static final String URL = "http://example.com/list/page?p=1";
+
+  private static final String HTML = "<html><head>"
+      + "<script>var s = '<a href=\"/script\">';</script>"
+      + "<style>a[href] { color: red; }</style>"
+      + "</head><body>\n"
+      + "<!-- <a href=\"/comment\">x</a> -->\n"
+      + "<A HREF=\"item?id=1&amp;utm_source=feed#reviews\">1</A>\n"
+      + "<a class='x' href='../item?utm_source=feed&id=1'>1 again</a>\n"
+      + "<a href=/other/./path>2</a>\n"
+      + "<a name=\"anchor\">no href</a>\n"
+      + "<a href=\"mailto:someone@example.com\">mail</a>\n"
+      + "<a href=\"javascript:void(0)\">js</a>\n"
+      + "<area shape=\"rect\" href=\"HTTPS://Example.com:443/map\">\n"
+      + "<a href=\"http://other.com/café\">3</a>\n"
+      + "</body></html>";
+
+  @Test
+  public void testExtract() {
+    final LinkExtractor extractor = LinkExtractor.builder()
+        .setParameterFilter(name -> !name.startsWith("utm_"))
+        .build();
+    final List<String> links = extractor.extract(HTML.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, URL);
+
+    Assertions.assertEquals(Arrays.asList(
+        "http://example.com/list/item?id=1",
+        "http://example.com/item?id=1",
+        "http://example.com/other/path",
+        "https://example.com/map",
+        "http://other.com/caf%C3%A9"
+    ), links);
+  }
+
+  @Test
+  public void testExtractWithoutCanonicalize() {
+    final LinkExtractor extractor = LinkExtractor.builder()
+        .setCanonicalize(false)
+        .setSchemes("mailto")
+        .build();
+    final List<String> links = extractor.extract(HTML.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, URL);
+
+    Assertions.assertEquals(Collections.singletonList("mailto:someone@example.com"), links);
+  }
+
+  @Test
+  public void testBaseAndResponse() {
+    final String html = "<head><base href=\"/root/\"><base href=\"/ignored/\"></head>"
+        + "<a href=\"a\">a</a><a href=\"b\">b</a><a href=\"a\">a</a>";
+    final BaseResponse response = new BaseResponse(200, URL, html.getBytes(StandardCharsets.UTF_8),
+        ContentType.TEXT_HTML, new Header[0], null);
+    final List<String> links = LinkExtractor.builder()
+        .setLinkFilter(link -> !link.endsWith("/b"))
+        .build()
+        .extract(response);
+
+    Assertions.assertEquals(Collections.singletonList("http://example.com/root/a"), links);
+  }
+
+}
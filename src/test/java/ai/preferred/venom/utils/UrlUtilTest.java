@@ -0,0 +1,61 @@
+package ai.preferred.venom.utils;
+
+import ai.preferred.venom.request.VRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class UrlUtilTest {
+
+  @Test
+  public void testGetHost() {
+    Assertions.assertEquals("example.com", UrlUtil.getHost(new VRequest("https://Example.COM:8080/a?b")));
+    Assertions.assertEquals("not a url", UrlUtil.getHost(new VRequest("not a url")));
+  }
+
+  @Test
+  public void testResolve() {
+    // RFC 3986 section 5.4
+    final String base = "http://a/b/c/d;p?q";
+    Assertions.assertEquals("g:h", UrlUtil.resolve(base, "g:h"));
+    Assertions.assertEquals("http://a/b/c/g", UrlUtil.resolve(base, "g"));
+    Assertions.assertEquals("http://a/b/c/g", UrlUtil.resolve(base, "./g"));
+    Assertions.assertEquals("http://a/b/c/g/", UrlUtil.resolve(base, "g/"));
+    Assertions.assertEquals("http://a/g", UrlUtil.resolve(base, "/g"));
+    Assertions.assertEquals("http://g", UrlUtil.resolve(base, "//g"));
+    Assertions.assertEquals("http://a/b/c/d;p?y", UrlUtil.resolve(base, "?y"));
+    Assertions.assertEquals("http://a/b/c/g?y", UrlUtil.resolve(base, "g?y"));
+    Assertions.assertEquals("http://a/b/c/d;p?q#s", UrlUtil.resolve(base, "#s"));
+    Assertions.assertEquals("http://a/b/c/;x", UrlUtil.resolve(base, ";x"));
+    Assertions.assertEquals("http://a/b/c/d;p?q", UrlUtil.resolve(base, ""));
+    Assertions.assertEquals("http://a/b/c/", UrlUtil.resolve(base, "."));
+    Assertions.assertEquals("http://a/b/", UrlUtil.resolve(base, ".."));
+    Assertions.assertEquals("http://a/b/g", UrlUtil.resolve(base, "../g"));
+    Assertions.assertEquals("http://a/", UrlUtil.resolve(base, "../../"));
+    Assertions.assertEquals("http://a/g", UrlUtil.resolve(base, "../../../g"));
+    Assertions.assertEquals("http://a/g", UrlUtil.resolve(base, "/./g"));
+    Assertions.assertEquals("http://a/b/c/g.", UrlUtil.resolve(base, "g."));
+    Assertions.assertEquals("http://a/b/c/..g", UrlUtil.resolve(base, "..g"));
+    Assertions.assertEquals("http://a/b/c/g/h", UrlUtil.resolve(base, "g/./h"));
+    Assertions.assertEquals("http://a/b/c/h", UrlUtil.resolve(base, "g/../h"));
+    Assertions.assertEquals("http://a/b/c/y", UrlUtil.resolve(base, "g;x=1/../y"));
+    Assertions.assertEquals("http://a/b/c/g#s/../x", UrlUtil.resolve(base, "g#s/../x"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> UrlUtil.resolve("/relative", "g"));
+  }
+
+  @Test
+  public void testCanonicalize() {
+    Assertions.assertEquals("http://example.com/", UrlUtil.canonicalize("HTTP://Example.COM:80"));
+    Assertions.assertEquals("https://example.com/a/c", UrlUtil.canonicalize("https://example.com:443/a/./b/../c"));
+    Assertions.assertEquals("http://example.com:8080/", UrlUtil.canonicalize("http://example.com:8080/#top"));
+    Assertions.assertEquals("http://example.com/~a%2Fb%20c?a=1&b=%C3%A9&z",
+        UrlUtil.canonicalize("http://example.com/%7ea%2fb c?z&b=é&&a=1"));
+    Assertions.assertEquals("http://example.com/p?id=2",
+        UrlUtil.canonicalize("http://example.com/p?utm_source=x&id=2&sid=abc", name -> !name.startsWith("utm_")
+            && !"sid".equals(name)));
+    Assertions.assertEquals("http://example.com/p", UrlUtil.canonicalize("http://example.com/p?utm_source=x",
+        name -> !name.startsWith("utm_")));
+    Assertions.assertEquals("http://example.com/100%25", UrlUtil.canonicalize("http://example.com/100%"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> UrlUtil.canonicalize("example.com/a"));
+  }
+
+}